@@ -19,6 +19,7 @@ import java.lang.reflect.Proxy;
 import java.lang.reflect.Type;
 import java.util.Arrays;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
 import org.freedesktop.dbus.annotations.DBusInterfaceName;
 import org.freedesktop.dbus.annotations.DBusMemberName;
@@ -40,6 +41,7 @@ public class RemoteInvocationHandler implements InvocationHandler {
   public static final int CALL_TYPE_SYNC = 0;
   public static final int CALL_TYPE_ASYNC = 1;
   public static final int CALL_TYPE_CALLBACK = 2;
+  public static final int CALL_TYPE_FUTURE = 3;
 
   private static final Logger LOGGER = LoggerFactory.getLogger(RemoteInvocationHandler.class);
 
@@ -118,7 +120,7 @@ public class RemoteInvocationHandler implements InvocationHandler {
     if (!ro.isAutostart()) {
       flags |= Message.Flags.NO_AUTO_START;
     }
-    if (syncmethod == CALL_TYPE_ASYNC) {
+    if (syncmethod == CALL_TYPE_ASYNC || syncmethod == CALL_TYPE_FUTURE) {
       flags |= Message.Flags.ASYNC;
     }
     if (m.isAnnotationPresent(MethodNoReply.class)) {
@@ -144,6 +146,9 @@ public class RemoteInvocationHandler implements InvocationHandler {
       LOGGER.debug("Failed to construct outgoing method call.", dbe);
       throw new DBusExecutionException("Failed to construct outgoing method call: " + dbe.getMessage());
     }
+    if (ro.getReplyTimeout() > 0) {
+      call.setTimeout(ro.getReplyTimeout());
+    }
     if (!conn.isConnected()) {
       throw new NotConnected("Not Connected");
     }
@@ -156,6 +161,18 @@ public class RemoteInvocationHandler implements InvocationHandler {
         conn.queueCallback(call, m, callback);
         conn.sendMessage(call);
         return null;
+      case CALL_TYPE_FUTURE:
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        if (m.isAnnotationPresent(MethodNoReply.class)) {
+          conn.sendMessage(call);
+          future.complete(null);
+        } else {
+          // the reply is set by the reader thread, dependent stages must not run there
+          call.setReplyHandler(reply ->
+              conn.executeReplyHandler(reply, () -> completeFuture(future, reply, m, conn)));
+          conn.sendMessage(call);
+        }
+        return future;
       case CALL_TYPE_SYNC:
         conn.sendMessage(call);
         break;
@@ -183,6 +200,24 @@ public class RemoteInvocationHandler implements InvocationHandler {
     }
   }
 
+  private static void completeFuture(CompletableFuture<Object> _future, Message _reply, Method _method,
+      AbstractConnection _conn) {
+    if (_reply instanceof Error) {
+      _future.completeExceptionally(((Error) _reply).getException());
+      return;
+    }
+    try {
+      _future.complete(convertRV(_reply.getSig(), _reply.getParameters(), _method, _conn));
+    } catch (DBusExecutionException exDee) {
+      _future.completeExceptionally(exDee);
+    } catch (DBusException e) {
+      LOGGER.debug("", e);
+      _future.completeExceptionally(new DBusExecutionException(e.getMessage()));
+    } catch (RuntimeException e) {
+      _future.completeExceptionally(e);
+    }
+  }
+
   // CHECKSTYLE:OFF
   AbstractConnection conn;
   RemoteObject remote;
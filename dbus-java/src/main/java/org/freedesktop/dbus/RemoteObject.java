@@ -19,6 +19,7 @@ public class RemoteObject {
   private String objectpath;
   private final Class<? extends DBusInterface> iface;
   private final boolean autostart;
+  private volatile long replyTimeout;
 
   public RemoteObject(String _busname, String _objectpath, Class<? extends DBusInterface> _iface, boolean _autostart) {
     this.busname = _busname;
@@ -66,6 +67,19 @@ public class RemoteObject {
     return autostart;
   }
 
+  /**
+   * Timeout for replies to method calls on this object.
+   *
+   * @return timeout in ms, 0 if the default timeout is used
+   */
+  public long getReplyTimeout() {
+    return replyTimeout;
+  }
+
+  public void setReplyTimeout(long _replyTimeout) {
+    replyTimeout = _replyTimeout;
+  }
+
   public String getBusName() {
     return busname;
   }
@@ -0,0 +1,17 @@
+package org.freedesktop.dbus.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Signal handler and callback handler classes annotated with this return quickly and never block,
+ * so they may run directly on the thread reading messages when inline dispatch is enabled.
+ *
+ * @see org.freedesktop.dbus.connections.AbstractConnection#setInlineDispatch(boolean)
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface NonBlockingHandler {
+}
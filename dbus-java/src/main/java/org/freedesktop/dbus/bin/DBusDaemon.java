@@ -16,20 +16,23 @@ import java.io.Closeable;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.lang.ref.WeakReference;
 import java.lang.reflect.InvocationTargetException;
 import java.net.InetAddress;
 import java.net.Socket;
 import java.net.UnknownHostException;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.spi.SelectorProvider;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import lombok.extern.slf4j.Slf4j;
 import org.freedesktop.DBus;
@@ -40,122 +43,45 @@ import org.freedesktop.dbus.connections.impl.DirectConnection;
 import org.freedesktop.dbus.connections.transports.TransportFactory;
 import org.freedesktop.dbus.errors.Error;
 import org.freedesktop.dbus.errors.MatchRuleInvalid;
+import org.freedesktop.dbus.errors.MatchRuleNotFound;
 import org.freedesktop.dbus.exceptions.DBusException;
 import org.freedesktop.dbus.exceptions.DBusExecutionException;
-import org.freedesktop.dbus.interfaces.FatalException;
 import org.freedesktop.dbus.interfaces.Introspectable;
 import org.freedesktop.dbus.interfaces.Peer;
 import org.freedesktop.dbus.messages.DBusSignal;
 import org.freedesktop.dbus.messages.Message;
 import org.freedesktop.dbus.messages.MethodCall;
 import org.freedesktop.dbus.messages.MethodReturn;
-import org.freedesktop.dbus.spi.InputStreamMessageReader;
-import org.freedesktop.dbus.spi.OutputStreamMessageWriter;
 import org.freedesktop.dbus.types.UInt32;
 import org.freedesktop.dbus.types.Variant;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import jnr.unixsocket.UnixSocket;
-
-// TODO: review completely the architecture
-
 /**
- * A replacement DBusDaemon
+ * A replacement DBusDaemon.
+ * <p>
+ * Client connections are served by a small number of {@link SelectorLoop} threads, each connection
+ * has its own read state machine and outbound queue. Messages are routed by the loop which read them,
+ * so every loop is a routing shard: the messages of one client are routed in the order they were sent,
+ * clients of different loops are routed in parallel. Names and match rules are looked up without a
+ * global lock, only calls to the bus itself are handled one at a time.
+ * The outbound queues can be limited, a client which does not keep up is handled according to a
+ * {@link SlowConsumerPolicy} without delaying the other clients.
+ * </p>
  */
 @Slf4j
 public class DBusDaemon extends Thread implements Closeable {
   @SuppressWarnings("unused")
   public static final int QUEUE_POLL_WAIT = 500;
+  private static final String BUS_NAME = "org.freedesktop.DBus";
+  /** Default number of selector loop threads. */
+  public static final int DEFAULT_SELECTOR_LOOPS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
 
-  static class Connstruct {
-    // CHECKSTYLE:OFF
-    public UnixSocket usock;
-    public Socket tsock;
-    public InputStreamMessageReader min;
-    public OutputStreamMessageWriter mout;
-    public String unique;
-    // CHECKSTYLE:ON
-
-    @SuppressWarnings("unused")
-    Connstruct(UnixSocket sock) throws IOException {
-      this.usock = sock;
-      min = new InputStreamMessageReader(sock.getInputStream());
-      mout = new OutputStreamMessageWriter(sock.getOutputStream());
-    }
-
-    Connstruct(Socket sock) throws IOException {
-      this.tsock = sock;
-      min = new InputStreamMessageReader(sock.getInputStream());
-      mout = new OutputStreamMessageWriter(sock.getOutputStream());
-    }
-
-    @Override
-    public String toString() {
-      return null == unique ? ":?-?" : unique;
-    }
-  }
-
-  @Slf4j
-  static class MagicMap<A, B> {
-    private final Map<A, LinkedList<B>> m;
-    private final LinkedList<A> q;
-    private final String name;
-
-    MagicMap(String _name) {
-      m = new HashMap<>();
-      q = new LinkedList<>();
-      this.name = _name;
-    }
-
-    public A head() {
-      return q.getFirst();
-    }
-
-    public void putFirst(A a, B b) {
-      LOGGER.debug("<{}> Queueing {{} => {}}", name, a, b);
-
-      if (m.containsKey(a)) {
-        m.get(a).add(b);
-      } else {
-        LinkedList<B> l = new LinkedList<>();
-        l.add(b);
-        m.put(a, l);
-      }
-      q.addFirst(a);
-    }
-
-    public void putLast(A a, B b) {
-      LOGGER.debug("<{}> Queueing {{} => {}}", name, a, b);
-
-      if (m.containsKey(a)) {
-        m.get(a).add(b);
-      } else {
-        LinkedList<B> l = new LinkedList<>();
-        l.add(b);
-        m.put(a, l);
-      }
-      q.addLast(a);
-    }
-
-    public List<B> remove(A a) {
-      LOGGER.debug("<{}> Removing {{}}", name, a);
-
-      q.remove(a);
-      return m.remove(a);
-    }
-
-    public int size() {
-      return q.size();
-    }
-  }
-
-  class DBusServer extends Thread implements DBus, Introspectable, Peer {
+  class DBusServer implements DBus, Introspectable, Peer {
     private final Logger SRV_LOGGER = LoggerFactory.getLogger(getClass());
     private final String machineId;
 
     public DBusServer() {
-      setName("Server");
       String ascii;
       try {
         ascii = Hexdump.toAscii(MessageDigest.getInstance("MD5").digest(InetAddress.getLocalHost().getHostName().getBytes()));
@@ -167,7 +93,7 @@ public class DBusDaemon extends Thread implements Closeable {
     }
 
 
-    private Connstruct c;
+    private DaemonConnection c;
     @SuppressWarnings({"FieldCanBeLocal", "unused"})
     private Message m;
 
@@ -183,22 +109,19 @@ public class DBusDaemon extends Thread implements Closeable {
 
       //noinspection SynchronizeOnNonFinalField
       synchronized (c) {
-        if (null != c.unique) {
+        if (null != c.getUnique()) {
           throw new org.freedesktop.dbus.errors.AccessDenied("Connection has already sent a Hello message");
         }
-        synchronized (uniqueLock) {
-          c.unique = ":1." + (++nextUnique);
-        }
-      }
-      synchronized (names) {
-        names.put(c.unique, c);
+        c.setUnique(":1." + nextUnique.incrementAndGet());
       }
+      String unique = c.getUnique();
+      names.put(unique, c);
 
-      SRV_LOGGER.info("Client {} registered", c.unique);
+      SRV_LOGGER.info("Client {} registered", unique);
 
       try {
-        send(c, new DBusSignal("org.freedesktop.DBus", "/org/freedesktop/DBus", "org.freedesktop.DBus", "NameAcquired", "s", c.unique));
-        DBusSignal s = new DBusSignal("org.freedesktop.DBus", "/org/freedesktop/DBus", "org.freedesktop.DBus", "NameOwnerChanged", "sss", c.unique, "", c.unique);
+        send(c, new DBusSignal("org.freedesktop.DBus", "/org/freedesktop/DBus", "org.freedesktop.DBus", "NameAcquired", "s", unique));
+        DBusSignal s = new DBusSignal("org.freedesktop.DBus", "/org/freedesktop/DBus", "org.freedesktop.DBus", "NameOwnerChanged", "sss", unique, "", unique);
         send(null, s);
       } catch (DBusException dbe) {
         SRV_LOGGER.debug("", dbe);
@@ -206,17 +129,16 @@ public class DBusDaemon extends Thread implements Closeable {
 
       SRV_LOGGER.debug("exit");
 
-      return c.unique;
+      return unique;
     }
 
     @Override
     public String[] ListNames() {
       SRV_LOGGER.debug("enter");
-      String[] ns;
-      synchronized (names) {
-        Set<String> nss = names.keySet();
-        ns = nss.toArray(new String[0]);
-      }
+      List<String> nss = new ArrayList<>();
+      nss.add(BUS_NAME);
+      nss.addAll(names.keySet());
+      String[] ns = nss.toArray(new String[0]);
 
       SRV_LOGGER.debug("exit");
 
@@ -228,10 +150,7 @@ public class DBusDaemon extends Thread implements Closeable {
 
       SRV_LOGGER.debug("enter");
 
-      boolean rv;
-      synchronized (names) {
-        rv = names.containsKey(name);
-      }
+      boolean rv = BUS_NAME.equals(name) || getNameOwner(name) != null;
 
       SRV_LOGGER.debug("exit");
 
@@ -241,12 +160,12 @@ public class DBusDaemon extends Thread implements Closeable {
     @Override
     public String GetNameOwner(String name) {
       SRV_LOGGER.debug("enter");
-      Connstruct owner = names.get(name);
+      DaemonConnection owner = getNameOwner(name);
       String o;
       if (null == owner) {
         o = "";
       } else {
-        o = owner.unique;
+        o = owner.getUnique();
       }
 
       SRV_LOGGER.debug("exit");
@@ -275,24 +194,19 @@ public class DBusDaemon extends Thread implements Closeable {
     public UInt32 RequestName(String name, UInt32 flags) {
       SRV_LOGGER.debug("enter");
 
-      boolean exists;
-      synchronized (names) {
-        if (!(exists = names.containsKey(name))) {
-          names.put(name, c);
-        }
-      }
+      boolean exists = BUS_NAME.equals(name) || null != names.putIfAbsent(name, c);
 
       int rv;
       if (exists) {
         rv = DBus.DBUS_REQUEST_NAME_REPLY_EXISTS;
       } else {
 
-        SRV_LOGGER.info("Client {} acquired name {}", c.unique, name);
+        SRV_LOGGER.info("Client {} acquired name {}", c.getUnique(), name);
 
         rv = DBus.DBUS_REQUEST_NAME_REPLY_PRIMARY_OWNER;
         try {
           send(c, new DBusSignal("org.freedesktop.DBus", "/org/freedesktop/DBus", "org.freedesktop.DBus", "NameAcquired", "s", name));
-          send(null, new DBusSignal("org.freedesktop.DBus", "/org/freedesktop/DBus", "org.freedesktop.DBus", "NameOwnerChanged", "sss", name, "", c.unique));
+          send(null, new DBusSignal("org.freedesktop.DBus", "/org/freedesktop/DBus", "org.freedesktop.DBus", "NameOwnerChanged", "sss", name, "", c.getUnique()));
         } catch (DBusException dbe) {
           SRV_LOGGER.debug("", dbe);
         }
@@ -307,22 +221,17 @@ public class DBusDaemon extends Thread implements Closeable {
     public UInt32 ReleaseName(String name) {
       SRV_LOGGER.debug("enter");
 
-      boolean exists = false;
-      synchronized (names) {
-        if (names.containsKey(name) && names.get(name).equals(c)) {
-          exists = names.remove(name) != null;
-        }
-      }
+      boolean exists = names.remove(name, c);
 
       int rv;
       if (!exists) {
         rv = DBus.DBUS_RELEASE_NAME_REPLY_NON_EXISTANT;
       } else {
-        SRV_LOGGER.info("Client {} acquired name {}", c.unique, name);
+        SRV_LOGGER.info("Client {} acquired name {}", c.getUnique(), name);
         rv = DBus.DBUS_RELEASE_NAME_REPLY_RELEASED;
         try {
           send(c, new DBusSignal("org.freedesktop.DBus", "/org/freedesktop/DBus", "org.freedesktop.DBus", "NameLost", "s", name));
-          send(null, new DBusSignal("org.freedesktop.DBus", "/org/freedesktop/DBus", "org.freedesktop.DBus", "NameOwnerChanged", "sss", name, c.unique, ""));
+          send(null, new DBusSignal("org.freedesktop.DBus", "/org/freedesktop/DBus", "org.freedesktop.DBus", "NameOwnerChanged", "sss", name, c.getUnique(), ""));
         } catch (DBusException dbe) {
           SRV_LOGGER.debug("", dbe);
         }
@@ -340,11 +249,7 @@ public class DBusDaemon extends Thread implements Closeable {
 
       SRV_LOGGER.trace("Adding match rule: {}", matchrule);
 
-      synchronized (sigrecips) {
-        if (!sigrecips.contains(c)) {
-          sigrecips.add(c);
-        }
-      }
+      matchRules.add(c, DaemonMatchRule.parse(matchrule));
 
       SRV_LOGGER.debug("exit");
 
@@ -357,6 +262,10 @@ public class DBusDaemon extends Thread implements Closeable {
 
       SRV_LOGGER.trace("Removing match rule: {}", matchrule);
 
+      if (!matchRules.remove(c, DaemonMatchRule.parse(matchrule))) {
+        throw new MatchRuleNotFound("The given match rule wasn't found and can't be removed: " + matchrule);
+      }
+
       SRV_LOGGER.debug("exit");
 
     }
@@ -391,11 +300,14 @@ public class DBusDaemon extends Thread implements Closeable {
     }
 
 
-    private void handleMessage(Connstruct _c, Message _m) throws DBusException {
+    /**
+     * Handle a message addressed to the bus. Called by the selector loops, one message at a time.
+     */
+    private synchronized void handleMessage(DaemonConnection _c, Message _m) throws DBusException {
 
       SRV_LOGGER.debug("enter");
 
-      SRV_LOGGER.trace("Handling message {}  from {}", _m, _c.unique);
+      SRV_LOGGER.trace("Handling message {}  from {}", _m, _c);
 
       if (!(_m instanceof MethodCall)) {
         return;
@@ -418,10 +330,10 @@ public class DBusDaemon extends Thread implements Closeable {
           this.m = _m;
           rv = meth.invoke(dbusServer, args);
           if (null == rv) {
-            send(_c, new MethodReturn("org.freedesktop.DBus", (MethodCall) _m, null), true);
+            send(_c, new MethodReturn("org.freedesktop.DBus", (MethodCall) _m, null));
           } else {
             String sig = Marshalling.getDBusType(meth.getGenericReturnType())[0];
-            send(_c, new MethodReturn("org.freedesktop.DBus", (MethodCall) _m, sig, rv), true);
+            send(_c, new MethodReturn("org.freedesktop.DBus", (MethodCall) _m, sig, rv));
           }
         } catch (InvocationTargetException ite) {
           SRV_LOGGER.debug("", ite);
@@ -431,10 +343,10 @@ public class DBusDaemon extends Thread implements Closeable {
           send(_c, new org.freedesktop.dbus.errors.Error("org.freedesktop.DBus", _m, dbee));
         } catch (Exception e) {
           SRV_LOGGER.debug("", e);
-          send(_c, new org.freedesktop.dbus.errors.Error("org.freedesktop.DBus", _c.unique, "org.freedesktop.DBus.Error.GeneralError", _m.getSerial(), "s", "An error occurred while calling " + _m.getName()));
+          send(_c, new org.freedesktop.dbus.errors.Error("org.freedesktop.DBus", _c.getUnique(), "org.freedesktop.DBus.Error.GeneralError", _m.getSerial(), "s", "An error occurred while calling " + _m.getName()));
         }
       } catch (NoSuchMethodException exNsm) {
-        send(_c, new org.freedesktop.dbus.errors.Error("org.freedesktop.DBus", _c.unique, "org.freedesktop.DBus.Error.UnknownMethod", _m.getSerial(), "s", "This service does not support " + _m.getName()));
+        send(_c, new org.freedesktop.dbus.errors.Error("org.freedesktop.DBus", _c.getUnique(), "org.freedesktop.DBus.Error.UnknownMethod", _m.getSerial(), "s", "This service does not support " + _m.getName()));
       }
 
       SRV_LOGGER.debug("exit");
@@ -465,49 +377,6 @@ public class DBusDaemon extends Thread implements Closeable {
     public void Ping() {
     }
 
-    @Override
-    public void run() {
-
-      SRV_LOGGER.debug("enter");
-
-      while (isRunning()) {
-        Message msg;
-        List<WeakReference<Connstruct>> wcs;
-        // block on outqueue
-        synchronized (localqueue) {
-          while (localqueue.size() == 0) {
-            try {
-              localqueue.wait();
-            } catch (InterruptedException ex) {
-              return;
-            }
-          }
-          msg = localqueue.head();
-          wcs = localqueue.remove(msg);
-        }
-        if (null != wcs) {
-          try {
-            for (WeakReference<Connstruct> wc : wcs) {
-              Connstruct constructor = wc.get();
-              if (null != constructor) {
-
-                SRV_LOGGER.trace("<localqueue> Got message {} from {}", msg, constructor);
-
-                handleMessage(constructor, msg);
-              }
-            }
-          } catch (DBusException dbe) {
-            SRV_LOGGER.debug("", dbe);
-          }
-        } else if (SRV_LOGGER.isDebugEnabled()) {
-          SRV_LOGGER.info("Discarding {} connection reaped", msg);
-        }
-      }
-
-      SRV_LOGGER.debug("exit");
-
-    }
-
     @Override
     public String[] ListActivatableNames() {
       return null;
@@ -541,189 +410,134 @@ public class DBusDaemon extends Thread implements Closeable {
   }
   // end Server
 
-  class Sender extends Thread {
-    private final Logger SND_LOGGER = LoggerFactory.getLogger(getClass());
-
-    public Sender() {
-      setName("Sender");
-    }
-
-    @Override
-    public void run() {
-
-      SND_LOGGER.debug("enter");
-
-      while (isRunning()) {
-
-        SND_LOGGER.trace("Acquiring lock on outqueue and blocking for data");
-
-        Message m;
-        List<WeakReference<Connstruct>> wcs;
-        // block on outqueue
-        synchronized (outqueue) {
-          while (outqueue.size() == 0) {
-            try {
-              outqueue.wait();
-            } catch (InterruptedException ex) {
-              return;
-            }
-          }
-
-          m = outqueue.head();
-          wcs = outqueue.remove(m);
-        }
-        if (null != wcs) {
-          for (WeakReference<Connstruct> wc : wcs) {
-            Connstruct c = wc.get();
-            if (null != c) {
-
-              SND_LOGGER.trace("<outqueue> Got message {} for {}", m, c.unique);
-              SND_LOGGER.info("Sending message {} to {}", m, c.unique);
-
-              try {
-                c.mout.writeMessage(m);
-              } catch (IOException ioe) {
-                SND_LOGGER.debug("", ioe);
-                removeConnection(c);
-              }
-            }
-          }
-        } else {
-          SND_LOGGER.info("Discarding {} connection reaped", m);
-        }
-      }
-
-      SND_LOGGER.debug("exit");
+  private final Set<DaemonConnection> conns = ConcurrentHashMap.newKeySet();
+  /* owners of the unique and well-known names, the bus name itself has no connection and is not contained */
+  private final Map<String, DaemonConnection> names = new ConcurrentHashMap<>();
+  private final MatchRuleIndex matchRules = new MatchRuleIndex();
+  private final AtomicBoolean run = new AtomicBoolean(true);
+  private final AtomicInteger nextUnique = new AtomicInteger();
+  private final SelectorLoop[] loops;
+  private final AtomicInteger nextLoop = new AtomicInteger();
+  private volatile int maxOutboundMessages = Integer.MAX_VALUE;
+  private volatile long maxOutboundBytes = Long.MAX_VALUE;
+  private volatile SlowConsumerPolicy slowConsumerPolicy = SlowConsumerPolicy.BLOCK_SENDER;
+  DBusServer dbusServer = new DBusServer();
 
-    }
+  public DBusDaemon() {
+    this(SelectorProvider.provider(), DEFAULT_SELECTOR_LOOPS);
   }
 
-  class Reader extends Thread {
-    private final Logger RDR_LOGGER = LoggerFactory.getLogger(getClass());
-
-    private Connstruct conn;
-    private final WeakReference<Connstruct> weakconn;
-    private boolean lrun = true;
-
-    public Reader(Connstruct _conn) {
-      this.conn = _conn;
-      weakconn = new WeakReference<>(_conn);
-      setName("Reader");
+  /**
+   * Create a daemon serving its connections with the given number of selector loops.
+   *
+   * @param _provider provider of the selectors, must match the channels passed to {@link #addSock(SocketChannel)}
+   * @param _selectorLoops number of selector loop threads
+   */
+  public DBusDaemon(SelectorProvider _provider, int _selectorLoops) {
+    if (_selectorLoops < 1) {
+      throw new IllegalArgumentException("At least one selector loop required");
     }
-
-    public void stopRunning() {
-      lrun = false;
+    setName("Daemon");
+    loops = new SelectorLoop[_selectorLoops];
+    for (int i = 0; i < loops.length; i++) {
+      loops[i] = new SelectorLoop(this, _provider, i);
     }
+  }
 
-    @Override
-    public void run() {
-
-      RDR_LOGGER.debug("enter");
-
-      while (isRunning() && lrun) {
-
-        Message m = null;
-        try {
-          m = conn.min.readMessage();
-        } catch (IOException ioe) {
-          RDR_LOGGER.debug("", ioe);
-          removeConnection(conn);
-        } catch (DBusException dbe) {
-          RDR_LOGGER.debug("", dbe);
-          if (dbe instanceof FatalException) {
-            removeConnection(conn);
-          }
-        }
-
-        if (null != m) {
-          RDR_LOGGER.info("Read {} from {}", m, conn.unique);
-
-          synchronized (inqueue) {
-            inqueue.putLast(m, weakconn);
-            inqueue.notifyAll();
-          }
-        }
-      }
-      conn = null;
+  /**
+   * Limit the outbound queue of every client. A client exceeding one of the limits is lagging,
+   * the policy decides what happens to further messages for it. By default the queues are unlimited.
+   *
+   * @param _maxMessages maximum number of queued messages per client
+   * @param _maxBytes maximum number of queued bytes per client (a single larger message is still queued)
+   * @param _policy what to do with messages for a lagging client
+   */
+  public void setOutboundLimits(int _maxMessages, long _maxBytes, SlowConsumerPolicy _policy) {
+    if (_maxMessages < 1 || _maxBytes < 1) {
+      throw new IllegalArgumentException("Outbound limits must be positive");
+    }
+    slowConsumerPolicy = Objects.requireNonNull(_policy, "Slow consumer policy required");
+    maxOutboundMessages = _maxMessages;
+    maxOutboundBytes = _maxBytes;
+  }
 
-      RDR_LOGGER.debug("exit");
+  public int getMaxOutboundMessages() {
+    return maxOutboundMessages;
+  }
 
-    }
+  public long getMaxOutboundBytes() {
+    return maxOutboundBytes;
   }
 
-  private final Map<Connstruct, Reader> conns = new HashMap<>();
-  private final HashMap<String, Connstruct> names = new HashMap<>();
-  private final MagicMap<Message, WeakReference<Connstruct>> outqueue = new MagicMap<>("out");
-  private final MagicMap<Message, WeakReference<Connstruct>> inqueue = new MagicMap<>("in");
-  private final MagicMap<Message, WeakReference<Connstruct>> localqueue = new MagicMap<>("local");
-  private final List<Connstruct> sigrecips = new ArrayList<>();
-  private final AtomicBoolean run = new AtomicBoolean(true);
-  private int nextUnique = 0;
-  private final Object uniqueLock = new Object();
-  DBusServer dbusServer = new DBusServer();
-  Sender sender = new Sender();
+  public SlowConsumerPolicy getSlowConsumerPolicy() {
+    return slowConsumerPolicy;
+  }
 
-  public DBusDaemon() {
-    setName("Daemon");
-    synchronized (names) {
-      names.put("org.freedesktop.DBus", null);
-    }
+  /**
+   * Outbound queue statistics of all clients, the clients with the most queued bytes first.
+   *
+   * @return statistics
+   */
+  public List<DaemonConnectionStats> getConnectionStats() {
+    List<DaemonConnectionStats> stats = new ArrayList<>();
+    for (DaemonConnection c : conns) {
+      stats.add(c.getStats());
+    }
+    stats.sort(Comparator.comparingLong(DaemonConnectionStats::getQueuedBytes).reversed());
+    return stats;
   }
 
-  private void send(Connstruct c, Message m) {
-    send(c, m, false);
+  /**
+   * Queue a message created by the daemon for a client.
+   *
+   * @param c client, null to send a signal to all clients having a matching rule
+   * @param m message
+   */
+  private void send(DaemonConnection c, Message m) {
+    send(c, m, null);
   }
 
-  private void send(Connstruct c, Message m, boolean head) {
+  /**
+   * Queue a message for a client.
+   *
+   * @param c client, null to send a signal to all clients having a matching rule
+   * @param m message
+   * @param sender client which sent the message, null if it was created by the daemon
+   */
+  private void send(DaemonConnection c, Message m, DaemonConnection sender) {
 
     LOGGER.debug("enter");
     if (null == c) {
-      LOGGER.trace("Queing message {} for all connections", m);
+      LOGGER.trace("Queing message {} for all matching connections", m);
     } else {
-      LOGGER.trace("Queing message {} for {}", m, c.unique);
+      LOGGER.trace("Queing message {} for {}", m, c);
     }
 
-    // send to all connections
     if (null == c) {
-      synchronized (conns) {
-        synchronized (outqueue) {
-          for (Connstruct d : conns.keySet()) {
-            if (head) {
-              outqueue.putFirst(m, new WeakReference<>(d));
-            } else {
-              outqueue.putLast(m, new WeakReference<>(d));
-            }
-          }
-          outqueue.notifyAll();
-        }
+      for (DaemonConnection d : findSignalMatches(m, sender)) {
+        d.send(m, sender);
       }
     } else {
-      synchronized (outqueue) {
-        if (head) {
-          outqueue.putFirst(m, new WeakReference<>(c));
-        } else {
-          outqueue.putLast(m, new WeakReference<>(c));
-        }
-        outqueue.notifyAll();
-      }
+      c.send(m, sender);
     }
 
     LOGGER.debug("exit");
 
   }
 
-  private List<Connstruct> findSignalMatches(@SuppressWarnings("unused") DBusSignal sig) {
-
-    LOGGER.debug("enter");
-
-    List<Connstruct> l;
-    synchronized (sigrecips) {
-      l = new ArrayList<>(sigrecips);
-    }
-
-    LOGGER.debug("exit");
+  /**
+   * Find the clients having a match rule for the signal.
+   *
+   * @param sig signal
+   * @param sender client which sent the signal, null if it was sent by the daemon
+   * @return matching clients
+   */
+  private Set<DaemonConnection> findSignalMatches(Message sig, DaemonConnection sender) {
+    return matchRules.find(sig, sender, this::getNameOwner);
+  }
 
-    return l;
+  private DaemonConnection getNameOwner(String name) {
+    return null == name ? null : names.get(name);
   }
 
   @Override
@@ -731,68 +545,16 @@ public class DBusDaemon extends Thread implements Closeable {
 
     LOGGER.debug("enter");
 
-    while (isRunning()) {
+    for (SelectorLoop loop : loops) {
+      loop.start();
+    }
+    // the selector loops do all the work, wait for them to terminate
+    for (SelectorLoop loop : loops) {
       try {
-        Message m;
-        List<WeakReference<Connstruct>> wcs;
-        synchronized (inqueue) {
-          while (0 == inqueue.size()) {
-            try {
-              inqueue.wait();
-            } catch (InterruptedException ex) {
-              LOGGER.warn("Interrupted wait on inqueue!!");
-              return;
-            }
-          }
-
-          m = inqueue.head();
-          wcs = inqueue.remove(m);
-        }
-        if (null != wcs) {
-          for (WeakReference<Connstruct> wc : wcs) {
-            Connstruct c = wc.get();
-            if (null != c) {
-              LOGGER.info("<inqueue> Got message {} from {}", m, c.unique);
-              // check if they have hello'd
-              if (null == c.unique && (!(m instanceof MethodCall) || !"org.freedesktop.DBus".equals(m.getDestination()) || !"Hello".equals(m.getName()))) {
-                send(c, new Error("org.freedesktop.DBus", null, "org.freedesktop.DBus.Error.AccessDenied", m.getSerial(), "s", "You must send a Hello message"));
-              } else {
-                try {
-                  if (null != c.unique) {
-                    m.setSource(c.unique);
-                  }
-                } catch (DBusException dbe) {
-                  LOGGER.debug("", dbe);
-                  send(c, new Error("org.freedesktop.DBus", null, "org.freedesktop.DBus.Error.GeneralError", m.getSerial(), "s", "Sending message failed"));
-                }
-
-                if ("org.freedesktop.DBus".equals(m.getDestination())) {
-                  synchronized (localqueue) {
-                    localqueue.putLast(m, wc);
-                    localqueue.notifyAll();
-                  }
-                } else {
-                  if (m instanceof DBusSignal) {
-                    List<Connstruct> list = findSignalMatches((DBusSignal) m);
-                    for (Connstruct d : list) {
-                      send(d, m);
-                    }
-                  } else {
-                    Connstruct dest = names.get(m.getDestination());
-
-                    if (null == dest) {
-                      send(c, new Error("org.freedesktop.DBus", null, "org.freedesktop.DBus.Error.ServiceUnknown", m.getSerial(), "s", String.format("The name `%s' does not exist", m.getDestination())));
-                    } else {
-                      send(dest, m);
-                    }
-                  }
-                }
-              }
-            }
-          }
-        }
-      } catch (DBusException dbe) {
-        LOGGER.debug("", dbe);
+        loop.join();
+      } catch (InterruptedException ex) {
+        LOGGER.debug("Interrupted while waiting for selector loops");
+        break;
       }
     }
 
@@ -800,44 +562,65 @@ public class DBusDaemon extends Thread implements Closeable {
 
   }
 
-  private void removeConnection(Connstruct c) {
-
-    LOGGER.debug("enter");
-
-    boolean exists = false;
-    synchronized (conns) {
-      if (conns.containsKey(c)) {
-        Reader r = conns.get(c);
-        exists = true;
-        r.stopRunning();
-        conns.remove(c);
+  /**
+   * Route a message received from a client. Called by the selector loop of the client.
+   *
+   * @param c client which sent the message
+   * @param m message
+   */
+  void route(DaemonConnection c, Message m) {
+    LOGGER.debug("Read {} from {}", m, c);
+    try {
+      // check if they have hello'd
+      if (null == c.getUnique() && (!(m instanceof MethodCall) || !"org.freedesktop.DBus".equals(m.getDestination()) || !"Hello".equals(m.getName()))) {
+        send(c, new Error("org.freedesktop.DBus", null, "org.freedesktop.DBus.Error.AccessDenied", m.getSerial(), "s", "You must send a Hello message"));
+        return;
       }
-    }
-    if (exists) {
       try {
-        if (null != c.usock) {
-          c.usock.close();
+        if (null != c.getUnique()) {
+          m.setSource(c.getUnique());
         }
-        if (null != c.tsock) {
-          c.tsock.close();
-        }
-      } catch (IOException exIo) {
-        LOGGER.error("Error removing connection", exIo);
+      } catch (DBusException dbe) {
+        LOGGER.debug("", dbe);
+        send(c, new Error("org.freedesktop.DBus", null, "org.freedesktop.DBus.Error.GeneralError", m.getSerial(), "s", "Sending message failed"));
       }
-      synchronized (names) {
-        List<String> toRemove = new ArrayList<>();
-        for (String name : names.keySet()) {
-          if (names.get(name) == c) {
-            toRemove.add(name);
-            try {
-              send(null, new DBusSignal("org.freedesktop.DBus", "/org/freedesktop/DBus", "org.freedesktop.DBus", "NameOwnerChanged", "sss", name, c.unique, ""));
-            } catch (DBusException dbe) {
-              LOGGER.debug("", dbe);
-            }
+
+      if ("org.freedesktop.DBus".equals(m.getDestination())) {
+        dbusServer.handleMessage(c, m);
+      } else if (m instanceof DBusSignal && null == m.getDestination()) {
+        send(null, m, c);
+      } else {
+        DaemonConnection dest = getNameOwner(m.getDestination());
+
+        if (null == dest) {
+          if (m instanceof DBusSignal) {
+            LOGGER.debug("Discarding signal {} for unknown destination", m);
+            return;
           }
+          send(c, new Error("org.freedesktop.DBus", null, "org.freedesktop.DBus.Error.ServiceUnknown", m.getSerial(), "s", String.format("The name `%s' does not exist", m.getDestination())));
+        } else {
+          send(dest, m, c);
         }
-        for (String name : toRemove) {
-          names.remove(name);
+      }
+    } catch (DBusException dbe) {
+      LOGGER.debug("", dbe);
+    }
+  }
+
+  void removeConnection(DaemonConnection c) {
+
+    LOGGER.debug("enter");
+
+    if (conns.remove(c)) {
+      c.close();
+      matchRules.removeAll(c);
+      for (Map.Entry<String, DaemonConnection> e : names.entrySet()) {
+        if (e.getValue() == c && names.remove(e.getKey(), c)) {
+          try {
+            send(null, new DBusSignal("org.freedesktop.DBus", "/org/freedesktop/DBus", "org.freedesktop.DBus", "NameOwnerChanged", "sss", e.getKey(), c.getUnique(), ""));
+          } catch (DBusException dbe) {
+            LOGGER.debug("", dbe);
+          }
         }
       }
     }
@@ -846,26 +629,66 @@ public class DBusDaemon extends Thread implements Closeable {
 
   }
 
+  /**
+   * Add an authenticated client socket, the socket must have a channel.
+   *
+   * @param s socket
+   * @throws IOException if the socket has no channel or cannot be switched to non-blocking mode
+   */
   public void addSock(Socket s) throws IOException {
+    if (null == s.getChannel()) {
+      throw new IOException("Socket without channel is not supported: " + s);
+    }
+    addSock(s.getChannel());
+  }
+
+  /**
+   * Add an authenticated client channel, it is served by one of the selector loops from now on.
+   *
+   * @param s channel
+   * @throws IOException if the channel cannot be switched to non-blocking mode or the daemon stopped serving
+   */
+  public void addSock(SocketChannel s) throws IOException {
 
     LOGGER.debug("enter");
 
     LOGGER.debug("New Client");
 
-    Connstruct c = new Connstruct(s);
-    Reader r = new Reader(c);
-    synchronized (conns) {
-      conns.put(c, r);
+    s.configureBlocking(false);
+    SelectorLoop loop = nextLoop();
+    if (null == loop) {
+      s.close();
+      throw new IOException("No selector loop serving connections");
     }
-    r.start();
+    DaemonConnection c = new DaemonConnection(this, s, loop);
+    conns.add(c);
+    loop.register(c);
 
     LOGGER.debug("exit");
 
   }
 
+  /**
+   * Pick the loop for a new connection round robin, skipping loops which terminated.
+   *
+   * @return loop, null if no loop is serving anymore
+   */
+  private SelectorLoop nextLoop() {
+    for (int i = 0; i < loops.length; i++) {
+      SelectorLoop loop = loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)];
+      if (loop.isServing()) {
+        return loop;
+      }
+    }
+    return null;
+  }
+
   @Override
   public void close() {
     run.set(false);
+    for (SelectorLoop loop : loops) {
+      loop.shutdown();
+    }
     interrupt();
   }
 
@@ -0,0 +1,429 @@
+package org.freedesktop.dbus.bin;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import lombok.extern.slf4j.Slf4j;
+import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.exceptions.MessageFormatException;
+import org.freedesktop.dbus.exceptions.MessageProtocolVersionException;
+import org.freedesktop.dbus.messages.Message;
+import org.freedesktop.dbus.messages.MessageFactory;
+
+/**
+ * Client connection of the {@link DBusDaemon}, served by one {@link SelectorLoop}.
+ * <p>
+ * Received bytes are fed through a read state machine (fixed header, then header fields and body)
+ * which emits every complete message. Messages for the client are queued by any thread and written
+ * by the loop of the connection whenever the (non-blocking) channel accepts data. The queue is
+ * limited as configured on the daemon, see {@link SlowConsumerPolicy}.
+ * </p>
+ */
+@Slf4j
+class DaemonConnection {
+  /** Fixed header (yyyyuu) plus the length of the header field array. */
+  private static final int FIXED_HEADER_LENGTH = 16;
+  private static final int READ_BUFFER_SIZE = 64 * 1024;
+  /** Maximum number of buffers passed to one gathering write. */
+  private static final int MAX_WRITE_BUFFERS = 64;
+
+  private final DBusDaemon daemon;
+  private final SocketChannel channel;
+  private final SelectorLoop loop;
+
+  /* read state, only used by the loop thread */
+  private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+  private final ByteBuffer fixedHeader = ByteBuffer.allocate(FIXED_HEADER_LENGTH);
+  private byte[] header;
+  private byte[] body;
+  private ByteBuffer headerTarget;
+  private ByteBuffer bodyTarget;
+
+  /* wire data of the messages waiting to be written and the queue counters, guarded by outbound */
+  private final ArrayDeque<ByteBuffer[]> outbound = new ArrayDeque<>();
+  private boolean writeScheduled;
+  private boolean closed;
+  private int queuedMessages;
+  private long queuedBytes;
+  private long maxQueuedBytes;
+  private long sentMessages;
+  private long droppedSignals;
+  private long overflows;
+  /* set by an overflow, cleared when the queue is drained to half of the limits */
+  private boolean lagging;
+  /* clients which stopped reading because they sent to this client while it was lagging */
+  private final Set<DaemonConnection> blockedSenders = new HashSet<>();
+
+  private final AtomicInteger readPauses = new AtomicInteger();
+  /* only used by the loop thread */
+  private boolean waitingForWrite;
+
+  private volatile String unique;
+
+  DaemonConnection(DBusDaemon _daemon, SocketChannel _channel, SelectorLoop _loop) {
+    daemon = _daemon;
+    channel = _channel;
+    loop = _loop;
+  }
+
+  SocketChannel getChannel() {
+    return channel;
+  }
+
+  SelectorLoop getLoop() {
+    return loop;
+  }
+
+  String getUnique() {
+    return unique;
+  }
+
+  void setUnique(String _unique) {
+    unique = _unique;
+  }
+
+  /**
+   * Read the available bytes from the channel and collect all messages completed by them.
+   * Called by the loop when the channel is readable.
+   *
+   * @param _messages receives the complete messages
+   * @throws IOException if reading fails or the client closed the connection
+   * @throws DBusException if the stream does not contain valid messages
+   */
+  void read(List<Message> _messages) throws IOException, DBusException {
+    if (channel.read(readBuffer) < 0) {
+      throw new EOFException("Connection closed by client " + this);
+    }
+    readBuffer.flip();
+    try {
+      while (readBuffer.hasRemaining()) {
+        if (null == headerTarget) {
+          transfer(readBuffer, fixedHeader);
+          if (!fixedHeader.hasRemaining()) {
+            startMessage();
+          }
+        } else {
+          if (headerTarget.hasRemaining()) {
+            transfer(readBuffer, headerTarget);
+          }
+          if (!headerTarget.hasRemaining() && bodyTarget.hasRemaining()) {
+            transfer(readBuffer, bodyTarget);
+          }
+        }
+
+        if (null != headerTarget && !headerTarget.hasRemaining() && !bodyTarget.hasRemaining()) {
+          Message m = completeMessage();
+          if (null != m) {
+            _messages.add(m);
+          }
+        }
+      }
+    } finally {
+      readBuffer.compact();
+    }
+  }
+
+  /**
+   * The fixed header is complete, prepare the buffers for header fields and body.
+   */
+  private void startMessage() throws IOException, DBusException {
+    byte endian = fixedHeader.get(0);
+    byte protover = fixedHeader.get(3);
+    if (protover > Message.PROTOCOL) {
+      throw new MessageProtocolVersionException(String.format("Protocol version %s is unsupported", protover));
+    }
+
+    fixedHeader.order(endian == Message.Endian.BIG ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+    long bodylen = fixedHeader.getInt(4) & 0xFFFFFFFFL;
+    long headerlen = fixedHeader.getInt(12) & 0xFFFFFFFFL;
+    if (0 != headerlen % 8) {
+      headerlen += 8 - (headerlen % 8);
+    }
+    if (headerlen + bodylen > Message.MAXIMUM_MESSAGE_LENGTH) {
+      throw new MessageFormatException(String.format("Message length %s exceeds maximum", headerlen + bodylen));
+    }
+
+    /* header array length at offset 0, fields start 8-aligned (like on the wire) */
+    header = new byte[(int) headerlen + 8];
+    fixedHeader.position(12);
+    fixedHeader.get(header, 0, 4);
+    body = new byte[(int) bodylen];
+    headerTarget = ByteBuffer.wrap(header, 8, (int) headerlen);
+    bodyTarget = ByteBuffer.wrap(body);
+  }
+
+  /**
+   * Header fields and body are complete, create the message and reset the state machine.
+   *
+   * @return message, null if the message could not be created (it is skipped)
+   */
+  private Message completeMessage() {
+    byte[] buf = new byte[12];
+    fixedHeader.position(0);
+    fixedHeader.get(buf);
+    byte type = buf[1];
+
+    byte[] h = header;
+    byte[] b = body;
+    fixedHeader.clear();
+    header = null;
+    body = null;
+    headerTarget = null;
+    bodyTarget = null;
+
+    try {
+      return MessageFactory.createMessage(type, buf, h, b, null);
+    } catch (DBusException | IOException | RuntimeException _ex) {
+      LOGGER.debug("Skipping invalid message from {}", this, _ex);
+      return null;
+    }
+  }
+
+  private static void transfer(ByteBuffer _src, ByteBuffer _dst) {
+    int n = Math.min(_src.remaining(), _dst.remaining());
+    if (n == _src.remaining()) {
+      _dst.put(_src);
+    } else {
+      ByteBuffer part = _src.duplicate();
+      part.limit(part.position() + n);
+      _dst.put(part);
+      _src.position(_src.position() + n);
+    }
+  }
+
+  /**
+   * Queue a message for this client, may be called by any thread.
+   * <p>
+   * If the queue exceeds the limits of the daemon, the {@link SlowConsumerPolicy} of the daemon decides
+   * what happens to the message.
+   * </p>
+   *
+   * @param _message message
+   * @param _sender client which sent the message, null if it was sent by the daemon
+   */
+  void send(Message _message, DaemonConnection _sender) {
+    ByteBuffer[] buffers = _message.getWireBuffers();
+    if (null == buffers) {
+      LOGGER.warn("Message {} wire-data was null!", _message);
+      return;
+    }
+    long bytes = 0;
+    for (ByteBuffer buf : buffers) {
+      bytes += buf.remaining();
+    }
+
+    boolean schedule;
+    boolean block = false;
+    boolean disconnect = false;
+    synchronized (outbound) {
+      if (closed) {
+        return;
+      }
+      if (0 < queuedMessages && (queuedMessages >= daemon.getMaxOutboundMessages()
+          || queuedBytes + bytes > daemon.getMaxOutboundBytes())) {
+        overflows++;
+        lagging = true;
+        switch (daemon.getSlowConsumerPolicy()) {
+          case DISCONNECT:
+            disconnect = true;
+            break;
+          case DROP_SIGNALS:
+            if (Message.MessageType.SIGNAL == _message.getType()) {
+              droppedSignals++;
+              return;
+            }
+            break;
+          default:
+            // a client sending to itself would never be resumed
+            if (null != _sender && this != _sender) {
+              block = blockedSenders.add(_sender);
+            }
+        }
+      }
+      if (!disconnect) {
+        outbound.add(buffers);
+        queuedMessages++;
+        queuedBytes += bytes;
+        maxQueuedBytes = Math.max(maxQueuedBytes, queuedBytes);
+      }
+      schedule = !writeScheduled;
+      writeScheduled = true;
+    }
+
+    if (disconnect) {
+      LOGGER.info("Disconnecting client {}, it does not read its messages", this);
+      daemon.removeConnection(this);
+      return;
+    }
+    if (block) {
+      LOGGER.debug("Pausing client {} until client {} has caught up", _sender, this);
+      _sender.pauseReading();
+    }
+    if (schedule) {
+      loop.scheduleWrite(this);
+    }
+  }
+
+  /**
+   * Write as much of the queued data as the channel accepts. Called by the loop.
+   *
+   * @return true if all queued data was written
+   * @throws IOException if writing fails
+   */
+  boolean flush() throws IOException {
+    ByteBuffer[] buffers = new ByteBuffer[MAX_WRITE_BUFFERS];
+    try {
+      while (true) {
+        int count = 0;
+        synchronized (outbound) {
+          collect:
+          for (ByteBuffer[] message : outbound) {
+            for (ByteBuffer buf : message) {
+              if (count == buffers.length) {
+                break collect;
+              }
+              // the first message may be written partially
+              if (buf.hasRemaining()) {
+                buffers[count++] = buf;
+              }
+            }
+          }
+          if (0 == count) {
+            writeScheduled = false;
+            waitingForWrite = false;
+            return true;
+          }
+        }
+
+        long written = channel.write(buffers, 0, count);
+
+        synchronized (outbound) {
+          if (closed) {
+            return true;
+          }
+          queuedBytes -= written;
+          while (!outbound.isEmpty() && isWritten(outbound.peekFirst())) {
+            outbound.pollFirst();
+            queuedMessages--;
+            sentMessages++;
+          }
+        }
+        resumeBlockedSenders(false);
+
+        if (buffers[count - 1].hasRemaining()) {
+          // socket buffer is full, continue when the channel is writable again
+          waitingForWrite = true;
+          return false;
+        }
+      }
+    } finally {
+      Arrays.fill(buffers, null);
+    }
+  }
+
+  private static boolean isWritten(ByteBuffer[] _message) {
+    for (ByteBuffer buf : _message) {
+      if (buf.hasRemaining()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Once the queue of a lagging client is drained to half of the limits, it is no longer lagging
+   * and the blocked senders continue.
+   *
+   * @param _all true to resume all of them regardless of the queue (connection is closed)
+   */
+  private void resumeBlockedSenders(boolean _all) {
+    List<DaemonConnection> resumed;
+    synchronized (outbound) {
+      if (!lagging
+          || !_all && (queuedMessages > daemon.getMaxOutboundMessages() / 2 || queuedBytes > daemon.getMaxOutboundBytes() / 2)) {
+        return;
+      }
+      lagging = false;
+      if (blockedSenders.isEmpty()) {
+        return;
+      }
+      resumed = new ArrayList<>(blockedSenders);
+      blockedSenders.clear();
+    }
+    for (DaemonConnection sender : resumed) {
+      LOGGER.debug("Resuming client {}", sender);
+      sender.resumeReading();
+    }
+  }
+
+  /**
+   * Stop reading from this client, it sent a message to a client which does not keep up.
+   * Pauses are counted, reading continues when every pause was resumed.
+   */
+  void pauseReading() {
+    if (1 == readPauses.incrementAndGet()) {
+      loop.updateInterest(this);
+    }
+  }
+
+  void resumeReading() {
+    if (0 == readPauses.decrementAndGet()) {
+      loop.updateInterest(this);
+    }
+  }
+
+  /**
+   * Operations the loop has to wait for.
+   *
+   * @return interest set for the selection key of the channel
+   */
+  int interestOps() {
+    return (0 < readPauses.get() ? 0 : SelectionKey.OP_READ) | (waitingForWrite ? SelectionKey.OP_WRITE : 0);
+  }
+
+  /**
+   * Snapshot of the outbound queue and its counters.
+   *
+   * @return statistics
+   */
+  DaemonConnectionStats getStats() {
+    synchronized (outbound) {
+      return new DaemonConnectionStats(unique, queuedMessages, queuedBytes, maxQueuedBytes, sentMessages,
+          droppedSignals, overflows, lagging, 0 < readPauses.get());
+    }
+  }
+
+  /**
+   * Close the channel and discard queued data.
+   */
+  void close() {
+    synchronized (outbound) {
+      closed = true;
+      outbound.clear();
+      queuedMessages = 0;
+      queuedBytes = 0;
+    }
+    resumeBlockedSenders(true);
+    try {
+      channel.close();
+    } catch (IOException _ex) {
+      LOGGER.debug("Error closing connection {}", this, _ex);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return null == unique ? ":?-?" : unique;
+  }
+}
@@ -0,0 +1,117 @@
+package org.freedesktop.dbus.bin;
+
+/**
+ * Snapshot of the outbound queue of a client connection of the {@link DBusDaemon}.
+ */
+public final class DaemonConnectionStats {
+  private final String name;
+  private final int queuedMessages;
+  private final long queuedBytes;
+  private final long maxQueuedBytes;
+  private final long sentMessages;
+  private final long droppedSignals;
+  private final long overflows;
+  private final boolean lagging;
+  private final boolean blocked;
+
+  DaemonConnectionStats(String _name, int _queuedMessages, long _queuedBytes, long _maxQueuedBytes,
+      long _sentMessages, long _droppedSignals, long _overflows, boolean _lagging, boolean _blocked) {
+    name = _name;
+    queuedMessages = _queuedMessages;
+    queuedBytes = _queuedBytes;
+    maxQueuedBytes = _maxQueuedBytes;
+    sentMessages = _sentMessages;
+    droppedSignals = _droppedSignals;
+    overflows = _overflows;
+    lagging = _lagging;
+    blocked = _blocked;
+  }
+
+  /**
+   * Unique name of the client.
+   *
+   * @return name, null if the client did not send Hello yet
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Number of messages waiting to be written to the client.
+   *
+   * @return queued messages
+   */
+  public int getQueuedMessages() {
+    return queuedMessages;
+  }
+
+  /**
+   * Number of bytes waiting to be written to the client.
+   *
+   * @return queued bytes
+   */
+  public long getQueuedBytes() {
+    return queuedBytes;
+  }
+
+  /**
+   * Highest number of bytes queued at any time.
+   *
+   * @return bytes
+   */
+  public long getMaxQueuedBytes() {
+    return maxQueuedBytes;
+  }
+
+  /**
+   * Number of messages written to the client.
+   *
+   * @return sent messages
+   */
+  public long getSentMessages() {
+    return sentMessages;
+  }
+
+  /**
+   * Number of signals discarded because the queue was full.
+   *
+   * @return dropped signals
+   */
+  public long getDroppedSignals() {
+    return droppedSignals;
+  }
+
+  /**
+   * Number of messages queued for the client while its queue was full.
+   *
+   * @return overflows
+   */
+  public long getOverflows() {
+    return overflows;
+  }
+
+  /**
+   * Checks if the queue of the client exceeded its limits and was not yet drained to half of them.
+   *
+   * @return true if the client is lagging
+   */
+  public boolean isLagging() {
+    return lagging;
+  }
+
+  /**
+   * Checks if the daemon stopped reading from the client because it sent to a lagging client.
+   *
+   * @return true if blocked
+   */
+  public boolean isBlocked() {
+    return blocked;
+  }
+
+  @Override
+  public String toString() {
+    return "DaemonConnectionStats[name=" + name + ", queuedMessages=" + queuedMessages + ", queuedBytes=" + queuedBytes
+        + ", maxQueuedBytes=" + maxQueuedBytes + ", sentMessages=" + sentMessages + ", droppedSignals=" + droppedSignals
+        + ", overflows=" + overflows + ", lagging=" + lagging + ", blocked=" + blocked + "]";
+  }
+}
@@ -0,0 +1,342 @@
+package org.freedesktop.dbus.bin;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import org.freedesktop.dbus.DBusPath;
+import org.freedesktop.dbus.errors.MatchRuleInvalid;
+import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.messages.Message;
+import org.freedesktop.dbus.messages.Message.ArgumentType;
+import org.freedesktop.dbus.messages.MessageBodyReader;
+
+/**
+ * Match rule sent by a client of the {@link DBusDaemon} with AddMatch, parsed from its string form
+ * (e.g. {@code type='signal',interface='org.foo',arg0='bar'}).
+ * <p>
+ * Supported keys are type, sender, interface, member, path, path_namespace, destination,
+ * arg0..arg63, arg0path..arg63path and arg0namespace; eavesdrop is accepted and ignored.
+ * </p>
+ */
+class DaemonMatchRule {
+  private static final int MAX_ARGS = 64;
+
+  private final String rule;
+  private Byte type;
+  private String sender;
+  private String iface;
+  private String member;
+  private String path;
+  private String pathNamespace;
+  private String destination;
+  private String arg0namespace;
+  /* string (index 2n) and path (index 2n + 1) conditions of argument n, null if there are none.
+     Only grown as far as needed, so equal rules have equal arrays */
+  private String[] args;
+
+  private DaemonMatchRule(String _rule) {
+    rule = _rule;
+  }
+
+  /**
+   * Parse a match rule.
+   *
+   * @param _rule rule string
+   * @return rule
+   * @throws MatchRuleInvalid if the rule cannot be parsed or contains unsupported keys
+   */
+  static DaemonMatchRule parse(String _rule) {
+    if (null == _rule) {
+      throw new MatchRuleInvalid("Match rule required");
+    }
+    DaemonMatchRule r = new DaemonMatchRule(_rule);
+    int len = _rule.length();
+    int i = 0;
+    while (i < len) {
+      while (i < len && Character.isWhitespace(_rule.charAt(i))) {
+        i++;
+      }
+      if (i == len) {
+        break;
+      }
+      int eq = _rule.indexOf('=', i);
+      if (eq < 0) {
+        throw new MatchRuleInvalid("Missing '=' in match rule: " + _rule);
+      }
+      String key = _rule.substring(i, eq).trim();
+
+      // quoted parts are taken literally, \' outside of quotes is a quote
+      StringBuilder value = new StringBuilder();
+      boolean quoted = false;
+      i = eq + 1;
+      for (; i < len; i++) {
+        char c = _rule.charAt(i);
+        if ('\'' == c) {
+          quoted = !quoted;
+        } else if (!quoted && '\\' == c && i + 1 < len && '\'' == _rule.charAt(i + 1)) {
+          value.append('\'');
+          i++;
+        } else if (!quoted && ',' == c) {
+          break;
+        } else {
+          value.append(c);
+        }
+      }
+      if (quoted) {
+        throw new MatchRuleInvalid("Unterminated quote in match rule: " + _rule);
+      }
+      i++;
+      r.set(key, value.toString());
+    }
+    if (null != r.path && null != r.pathNamespace) {
+      throw new MatchRuleInvalid("path and path_namespace cannot be combined: " + _rule);
+    }
+    return r;
+  }
+
+  private void set(String _key, String _value) {
+    switch (_key) {
+      case "type":
+        type = checkUnset(type, _key, parseType(_value));
+        break;
+      case "sender":
+        sender = checkUnset(sender, _key, _value);
+        break;
+      case "interface":
+        iface = checkUnset(iface, _key, _value);
+        break;
+      case "member":
+        member = checkUnset(member, _key, _value);
+        break;
+      case "path":
+        path = checkUnset(path, _key, _value);
+        break;
+      case "path_namespace":
+        pathNamespace = checkUnset(pathNamespace, _key, _value);
+        break;
+      case "destination":
+        destination = checkUnset(destination, _key, _value);
+        break;
+      case "arg0namespace":
+        arg0namespace = checkUnset(arg0namespace, _key, _value);
+        break;
+      case "eavesdrop":
+        break;
+      default:
+        setArg(_key, _value);
+    }
+  }
+
+  private void setArg(String _key, String _value) {
+    if (!_key.startsWith("arg")) {
+      throw new MatchRuleInvalid("Unsupported key in match rule: " + _key);
+    }
+    boolean pathArg = _key.endsWith("path");
+    String number = _key.substring(3, pathArg ? _key.length() - 4 : _key.length());
+    int n;
+    try {
+      n = Integer.parseInt(number);
+    } catch (NumberFormatException _ex) {
+      throw new MatchRuleInvalid("Unsupported key in match rule: " + _key);
+    }
+    if (n < 0 || n >= MAX_ARGS || (number.length() > 1 && number.startsWith("0"))) {
+      throw new MatchRuleInvalid("Invalid argument index in match rule: " + _key);
+    }
+    int index = 2 * n + (pathArg ? 1 : 0);
+    if (null == args) {
+      args = new String[index + 1];
+    } else if (args.length <= index) {
+      args = Arrays.copyOf(args, index + 1);
+    }
+    args[index] = checkUnset(args[index], _key, _value);
+  }
+
+  private static <T> T checkUnset(T _current, String _key, T _value) {
+    if (null != _current) {
+      throw new MatchRuleInvalid("Duplicate key in match rule: " + _key);
+    }
+    return _value;
+  }
+
+  private static Byte parseType(String _type) {
+    switch (_type) {
+      case "signal":
+        return Message.MessageType.SIGNAL;
+      case "method_call":
+        return Message.MessageType.METHOD_CALL;
+      case "method_return":
+        return Message.MessageType.METHOD_RETURN;
+      case "error":
+        return Message.MessageType.ERROR;
+      default:
+        throw new MatchRuleInvalid("Unsupported message type in match rule: " + _type);
+    }
+  }
+
+  String getInterface() {
+    return iface;
+  }
+
+  String getMember() {
+    return member;
+  }
+
+  String getPath() {
+    return path;
+  }
+
+  /**
+   * Checks if the message matches this rule.
+   *
+   * @param _message message
+   * @param _senderOwns true if the sender of the message owns the (well-known) sender name of this rule
+   * @return true if all conditions of the rule are met
+   */
+  boolean matches(Message _message, boolean _senderOwns) {
+    if (null != type && type != _message.getType()) {
+      return false;
+    }
+    if (null != sender && !_senderOwns) {
+      return false;
+    }
+    if (null != iface && !iface.equals(_message.getInterface())) {
+      return false;
+    }
+    if (null != member && !member.equals(_message.getName())) {
+      return false;
+    }
+    if (null != path && !path.equals(_message.getPath())) {
+      return false;
+    }
+    if (null != pathNamespace && !inPathNamespace(_message.getPath())) {
+      return false;
+    }
+    if (null != destination && !destination.equals(_message.getDestination())) {
+      return false;
+    }
+    if (null != args || null != arg0namespace) {
+      return argsMatch(_message);
+    }
+    return true;
+  }
+
+  /**
+   * Sender name of this rule, the message sender has to own it.
+   *
+   * @return name, null if the rule matches all senders
+   */
+  String getSender() {
+    return sender;
+  }
+
+  private boolean inPathNamespace(String _path) {
+    if (null == _path) {
+      return false;
+    }
+    if ("/".equals(pathNamespace) || _path.equals(pathNamespace)) {
+      return true;
+    }
+    return _path.startsWith(pathNamespace) && '/' == _path.charAt(pathNamespace.length());
+  }
+
+  private boolean argsMatch(Message _message) {
+    Object[] params;
+    try {
+      params = leadingArgs(_message, null == args ? 1 : (args.length + 1) / 2);
+    } catch (DBusException | RuntimeException _ex) {
+      // a body which cannot be decoded matches no argument condition
+      return false;
+    }
+    if (null != arg0namespace) {
+      String arg0 = 0 < params.length && params[0] instanceof String ? (String) params[0] : null;
+      if (null == arg0 || !(arg0.equals(arg0namespace) || arg0.startsWith(arg0namespace + "."))) {
+        return false;
+      }
+    }
+    if (null == args) {
+      return true;
+    }
+    for (int i = 0; i < args.length; i++) {
+      String expected = args[i];
+      if (null == expected) {
+        continue;
+      }
+      int n = i / 2;
+      Object actual = n < params.length ? params[n] : null;
+      if (0 == i % 2) {
+        if (!(actual instanceof String) || !expected.equals(actual)) {
+          return false;
+        }
+      } else {
+        String value = actual instanceof String ? (String) actual
+            : actual instanceof DBusPath ? ((DBusPath) actual).getPath() : null;
+        if (null == value || !pathMatches(expected, value)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Decode the leading arguments of the message which the conditions refer to, the rest of the body is not read.
+   * Only strings and object paths are decoded, arguments of other types are null.
+   *
+   * @param _message message
+   * @param _count number of leading arguments
+   * @return arguments
+   * @throws DBusException if the body cannot be decoded
+   */
+  private static Object[] leadingArgs(Message _message, int _count) throws DBusException {
+    MessageBodyReader reader = _message.getBodyReader();
+    if (null == reader) {
+      // created by the daemon itself, not received
+      return _message.getParameters();
+    }
+    Object[] params = new Object[_count];
+    for (int n = 0; n < _count && reader.hasNext(); n++) {
+      byte type = reader.peekType();
+      if (ArgumentType.STRING == type) {
+        params[n] = reader.readString();
+      } else if (ArgumentType.OBJECT_PATH == type) {
+        params[n] = new DBusPath(reader.readObjectPath());
+      } else {
+        reader.skip();
+      }
+    }
+    return params;
+  }
+
+  private static boolean pathMatches(String _expected, String _actual) {
+    return _expected.equals(_actual)
+        || _expected.endsWith("/") && _actual.startsWith(_expected)
+        || _actual.endsWith("/") && _expected.startsWith(_actual);
+  }
+
+  @Override
+  public boolean equals(Object _obj) {
+    if (this == _obj) {
+      return true;
+    }
+    if (!(_obj instanceof DaemonMatchRule)) {
+      return false;
+    }
+    DaemonMatchRule other = (DaemonMatchRule) _obj;
+    return Objects.equals(type, other.type) && Objects.equals(sender, other.sender)
+        && Objects.equals(iface, other.iface) && Objects.equals(member, other.member)
+        && Objects.equals(path, other.path) && Objects.equals(pathNamespace, other.pathNamespace)
+        && Objects.equals(destination, other.destination) && Objects.equals(arg0namespace, other.arg0namespace)
+        && Arrays.equals(args, other.args);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(type, sender, iface, member, path, pathNamespace, destination, arg0namespace)
+        + 31 * Arrays.hashCode(args);
+  }
+
+  @Override
+  public String toString() {
+    return rule;
+  }
+}
@@ -3,8 +3,12 @@ package org.freedesktop.dbus.bin;
 import java.io.Closeable;
 import java.io.IOException;
 import java.net.InetAddress;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.spi.SelectorProvider;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -31,6 +35,14 @@ public class EmbeddedDBusDaemon implements Closeable {
 
   private int authTypes = SASL.AUTH_EXTERNAL;
 
+  private int selectorLoops = DBusDaemon.DEFAULT_SELECTOR_LOOPS;
+
+  private int maxOutboundMessages = Integer.MAX_VALUE;
+
+  private long maxOutboundBytes = Long.MAX_VALUE;
+
+  private SlowConsumerPolicy slowConsumerPolicy = SlowConsumerPolicy.BLOCK_SENDER;
+
   private Closeable listenSocket;
 
   private final AtomicBoolean closed = new AtomicBoolean(false);
@@ -47,8 +59,6 @@ public class EmbeddedDBusDaemon implements Closeable {
     }
     if (daemonThread != null) {
       daemonThread.close();
-      daemonThread.dbusServer.interrupt();
-      daemonThread.sender.interrupt();
       daemonThread = null;
     }
   }
@@ -57,11 +67,6 @@ public class EmbeddedDBusDaemon implements Closeable {
 
     Objects.requireNonNull(address, "busAddress not set");
 
-    daemonThread = new DBusDaemon();
-    daemonThread.start();
-    daemonThread.sender.start();
-    daemonThread.dbusServer.start();
-
     try {
       listen();
     } catch (IOException ex) {
@@ -92,6 +97,17 @@ public class EmbeddedDBusDaemon implements Closeable {
     }
   }
 
+  /**
+   * Start the daemon once the listen socket is bound, its selectors must come from the provider of the listen channel.
+   */
+  private DBusDaemon startDaemon(SelectorProvider _provider) {
+    DBusDaemon daemon = new DBusDaemon(_provider, selectorLoops);
+    daemon.setOutboundLimits(maxOutboundMessages, maxOutboundBytes, slowConsumerPolicy);
+    daemonThread = daemon;
+    daemon.start();
+    return daemon;
+  }
+
   private void startUnixSocket(BusAddress address) throws IOException {
     LOGGER.debug("enter");
     UnixServerSocketChannel uss;
@@ -103,13 +119,13 @@ public class EmbeddedDBusDaemon implements Closeable {
       uss.socket().bind(new UnixSocketAddress(address.getPath()));
     }
     listenSocket = uss;
+    DBusDaemon daemon = startDaemon(uss.provider());
 
     // accept new connections
-    while (daemonThread.isRunning()) {
+    while (daemon.isRunning()) {
       UnixSocketChannel s = uss.accept();
       if ((new SASL(true)).auth(SASL.SaslMode.SERVER, authTypes, address.getGuid(), s.socket().getOutputStream(), s.socket().getInputStream(), s.socket())) {
-        // s.setBlocking(false);
-        daemonThread.addSock(s.socket());
+        daemon.addSock(s);
       } else {
         s.close();
       }
@@ -123,20 +139,22 @@ public class EmbeddedDBusDaemon implements Closeable {
 
     LOGGER.debug("enter");
 
-    try (ServerSocket ss = new ServerSocket(address.getPort(), 10, InetAddress.getByName(address.getHost()))) {
+    try (ServerSocketChannel ss = ServerSocketChannel.open()) {
+      ss.bind(new InetSocketAddress(InetAddress.getByName(address.getHost()), address.getPort()), 10);
       listenSocket = ss;
+      DBusDaemon daemon = startDaemon(ss.provider());
 
       // accept new connections
-      while (daemonThread.isRunning()) {
-        Socket s = ss.accept();
+      while (daemon.isRunning()) {
+        SocketChannel s = ss.accept();
         boolean authOK = false;
         try {
-          authOK = (new SASL(false)).auth(SASL.SaslMode.SERVER, authTypes, address.getGuid(), s.getOutputStream(), s.getInputStream(), null);
+          authOK = (new SASL(false)).auth(SASL.SaslMode.SERVER, authTypes, address.getGuid(), s.socket().getOutputStream(), s.socket().getInputStream(), null);
         } catch (Exception e) {
           LOGGER.debug("", e);
         }
         if (authOK) {
-          daemonThread.addSock(s);
+          daemon.addSock(s);
         } else {
           s.close();
         }
@@ -157,4 +175,44 @@ public class EmbeddedDBusDaemon implements Closeable {
   public void setAuthTypes(int authTypes) {
     this.authTypes = authTypes;
   }
+
+  /**
+   * Set the number of selector loop threads serving the client connections, used when the daemon is started.
+   *
+   * @param selectorLoops number of threads, at least 1
+   */
+  @SuppressWarnings("unused")
+  public void setSelectorLoops(int selectorLoops) {
+    if (selectorLoops < 1) {
+      throw new IllegalArgumentException("At least one selector loop required");
+    }
+    this.selectorLoops = selectorLoops;
+  }
+
+  /**
+   * Limit the outbound queue of every client, see {@link DBusDaemon#setOutboundLimits(int, long, SlowConsumerPolicy)}.
+   * Used when the daemon is started.
+   *
+   * @param maxMessages maximum number of queued messages per client
+   * @param maxBytes maximum number of queued bytes per client
+   * @param policy what to do with messages for a client exceeding the limits
+   */
+  public void setOutboundLimits(int maxMessages, long maxBytes, SlowConsumerPolicy policy) {
+    if (maxMessages < 1 || maxBytes < 1) {
+      throw new IllegalArgumentException("Outbound limits must be positive");
+    }
+    this.maxOutboundMessages = maxMessages;
+    this.maxOutboundBytes = maxBytes;
+    this.slowConsumerPolicy = Objects.requireNonNull(policy, "Slow consumer policy required");
+  }
+
+  /**
+   * Outbound queue statistics of all clients, see {@link DBusDaemon#getConnectionStats()}.
+   *
+   * @return statistics, empty if the daemon is not running
+   */
+  public List<DaemonConnectionStats> getConnectionStats() {
+    DBusDaemon daemon = daemonThread;
+    return null == daemon ? Collections.emptyList() : daemon.getConnectionStats();
+  }
 }
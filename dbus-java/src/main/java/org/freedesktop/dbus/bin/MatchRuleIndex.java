@@ -0,0 +1,180 @@
+package org.freedesktop.dbus.bin;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+import org.freedesktop.dbus.messages.Message;
+
+/**
+ * Match rules of all clients of the {@link DBusDaemon}, indexed to find the recipients of a signal
+ * without evaluating every rule.
+ * <p>
+ * Each rule is filed under its most selective exact condition: the member, else the interface, else the path.
+ * Rules without any of them are kept in a list checked for every message. Only the rules of the
+ * buckets the message falls into are evaluated. Lookups do not lock, changes are serialized.
+ * </p>
+ */
+class MatchRuleIndex {
+  private final Map<String, List<Entry>> byMember = new ConcurrentHashMap<>();
+  private final Map<String, List<Entry>> byInterface = new ConcurrentHashMap<>();
+  private final Map<String, List<Entry>> byPath = new ConcurrentHashMap<>();
+  private final List<Entry> unindexed = new CopyOnWriteArrayList<>();
+
+  /* rules by connection, guarded by this */
+  private final Map<DaemonConnection, List<Entry>> byConnection = new HashMap<>();
+
+  /**
+   * Add a rule of the connection. A rule added twice has to be removed twice.
+   *
+   * @param _connection client
+   * @param _rule rule
+   */
+  synchronized void add(DaemonConnection _connection, DaemonMatchRule _rule) {
+    Entry entry = new Entry(_rule, _connection);
+    byConnection.computeIfAbsent(_connection, c -> new ArrayList<>()).add(entry);
+    bucketOf(_rule, true).add(entry);
+  }
+
+  /**
+   * Remove one instance of a rule of the connection.
+   *
+   * @param _connection client
+   * @param _rule rule
+   * @return false if the connection has no such rule
+   */
+  synchronized boolean remove(DaemonConnection _connection, DaemonMatchRule _rule) {
+    List<Entry> entries = byConnection.get(_connection);
+    if (null == entries) {
+      return false;
+    }
+    for (Iterator<Entry> it = entries.iterator(); it.hasNext();) {
+      Entry entry = it.next();
+      if (entry.rule.equals(_rule)) {
+        it.remove();
+        if (entries.isEmpty()) {
+          byConnection.remove(_connection);
+        }
+        removeFromBucket(entry);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Remove all rules of a connection which is gone.
+   *
+   * @param _connection client
+   */
+  synchronized void removeAll(DaemonConnection _connection) {
+    List<Entry> entries = byConnection.remove(_connection);
+    if (null != entries) {
+      for (Entry entry : entries) {
+        removeFromBucket(entry);
+      }
+    }
+  }
+
+  /**
+   * Find the connections having at least one rule matching the message.
+   *
+   * @param _message message
+   * @param _sender connection which sent the message, null if it was sent by the daemon
+   * @param _nameOwners resolves a bus name to its owner, for rules with a well-known sender name
+   * @return matching connections, each contained once
+   */
+  Set<DaemonConnection> find(Message _message, DaemonConnection _sender, Function<String, DaemonConnection> _nameOwners) {
+    Set<DaemonConnection> result = new LinkedHashSet<>();
+    collect(lookup(byMember, _message.getName()), _message, _sender, _nameOwners, result);
+    collect(lookup(byInterface, _message.getInterface()), _message, _sender, _nameOwners, result);
+    collect(lookup(byPath, _message.getPath()), _message, _sender, _nameOwners, result);
+    collect(unindexed, _message, _sender, _nameOwners, result);
+    return result;
+  }
+
+  private static List<Entry> lookup(Map<String, List<Entry>> _index, String _key) {
+    return null == _key ? null : _index.get(_key);
+  }
+
+  private static void collect(List<Entry> _entries, Message _message, DaemonConnection _sender,
+      Function<String, DaemonConnection> _nameOwners, Set<DaemonConnection> _result) {
+    if (null == _entries) {
+      return;
+    }
+    for (Entry entry : _entries) {
+      if (_result.contains(entry.connection)) {
+        continue;
+      }
+      String sender = entry.rule.getSender();
+      boolean senderOwns = null == sender || sender.equals(_message.getSource())
+          || null != _sender && _nameOwners.apply(sender) == _sender;
+      if (entry.rule.matches(_message, senderOwns)) {
+        _result.add(entry.connection);
+      }
+    }
+  }
+
+  private List<Entry> bucketOf(DaemonMatchRule _rule, boolean _create) {
+    Map<String, List<Entry>> index = indexOf(_rule);
+    if (null == index) {
+      return unindexed;
+    }
+    String key = keyOf(_rule);
+    return _create ? index.computeIfAbsent(key, k -> new CopyOnWriteArrayList<>()) : index.get(key);
+  }
+
+  private void removeFromBucket(Entry _entry) {
+    List<Entry> bucket = bucketOf(_entry.rule, false);
+    if (null != bucket) {
+      bucket.remove(_entry);
+      Map<String, List<Entry>> index = indexOf(_entry.rule);
+      if (bucket.isEmpty() && null != index) {
+        index.remove(keyOf(_entry.rule), bucket);
+      }
+    }
+  }
+
+  /**
+   * Index the rule is filed in, null if it is not indexed.
+   */
+  private Map<String, List<Entry>> indexOf(DaemonMatchRule _rule) {
+    if (null != _rule.getMember()) {
+      return byMember;
+    } else if (null != _rule.getInterface()) {
+      return byInterface;
+    } else if (null != _rule.getPath()) {
+      return byPath;
+    }
+    return null;
+  }
+
+  private static String keyOf(DaemonMatchRule _rule) {
+    if (null != _rule.getMember()) {
+      return _rule.getMember();
+    } else if (null != _rule.getInterface()) {
+      return _rule.getInterface();
+    }
+    return _rule.getPath();
+  }
+
+  /**
+   * Rule of one connection. Identity matters, a rule added twice is stored as two entries.
+   */
+  private static final class Entry {
+    private final DaemonMatchRule rule;
+    private final DaemonConnection connection;
+
+    Entry(DaemonMatchRule _rule, DaemonConnection _connection) {
+      rule = _rule;
+      connection = _connection;
+    }
+  }
+}
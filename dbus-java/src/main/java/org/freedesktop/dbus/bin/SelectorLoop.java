@@ -0,0 +1,229 @@
+package org.freedesktop.dbus.bin;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.spi.SelectorProvider;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import lombok.extern.slf4j.Slf4j;
+import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.messages.Message;
+
+/**
+ * Thread serving the I/O of a share of the {@link DBusDaemon} connections with one selector.
+ * <p>
+ * Received messages are routed by the loop thread itself, messages for other connections
+ * are queued on the target connection and written by the loop of that connection.
+ * </p>
+ */
+@Slf4j
+class SelectorLoop extends Thread {
+  private final DBusDaemon daemon;
+  private final SelectorProvider provider;
+
+  private final Queue<DaemonConnection> registrations = new ConcurrentLinkedQueue<>();
+  private final Queue<DaemonConnection> writes = new ConcurrentLinkedQueue<>();
+  private final Queue<DaemonConnection> interestUpdates = new ConcurrentLinkedQueue<>();
+
+  private volatile Selector selector;
+  private volatile boolean running = true;
+
+  SelectorLoop(DBusDaemon _daemon, SelectorProvider _provider, int _index) {
+    daemon = _daemon;
+    provider = _provider;
+    setName("DBusDaemon Loop-" + _index);
+    setDaemon(true);
+  }
+
+  /**
+   * Add a connection (with a non-blocking channel) to this loop.
+   *
+   * @param _connection connection
+   */
+  void register(DaemonConnection _connection) {
+    registrations.add(_connection);
+    if (running) {
+      wakeup();
+    } else {
+      // the loop terminated meanwhile, nobody else will pick it up
+      dropPending();
+    }
+  }
+
+  /**
+   * Write the queued data of the connection from the loop thread.
+   *
+   * @param _connection connection having data to write
+   */
+  void scheduleWrite(DaemonConnection _connection) {
+    writes.add(_connection);
+    if (Thread.currentThread() != this) {
+      wakeup();
+    }
+  }
+
+  /**
+   * Apply the {@link DaemonConnection#interestOps() interest set} of the connection,
+   * e.g. after reading from it was paused or resumed.
+   *
+   * @param _connection connection
+   */
+  void updateInterest(DaemonConnection _connection) {
+    if (Thread.currentThread() == this) {
+      applyInterest(_connection);
+    } else {
+      interestUpdates.add(_connection);
+      wakeup();
+    }
+  }
+
+  /**
+   * Checks if the loop accepts connections, false once it was shut down or failed.
+   *
+   * @return true if running
+   */
+  boolean isServing() {
+    return running;
+  }
+
+  void shutdown() {
+    running = false;
+    wakeup();
+  }
+
+  private void wakeup() {
+    Selector sel = selector;
+    if (null != sel) {
+      sel.wakeup();
+    }
+  }
+
+  @Override
+  public void run() {
+    LOGGER.debug("enter");
+    try {
+      selector = provider.openSelector();
+    } catch (IOException _ex) {
+      LOGGER.error("Unable to open selector", _ex);
+      running = false;
+      dropPending();
+      return;
+    }
+
+    List<Message> received = new ArrayList<>();
+    try {
+      while (running && daemon.isRunning()) {
+        // connections may have been added before the selector was opened, register them before blocking
+        registerPending();
+        selector.select();
+
+        Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+        while (it.hasNext()) {
+          SelectionKey key = it.next();
+          it.remove();
+          DaemonConnection conn = (DaemonConnection) key.attachment();
+          try {
+            if (key.isReadable()) {
+              received.clear();
+              conn.read(received);
+              for (Message m : received) {
+                daemon.route(conn, m);
+              }
+            }
+            if (key.isValid() && key.isWritable()) {
+              write(conn);
+            }
+          } catch (IOException | DBusException | CancelledKeyException _ex) {
+            LOGGER.debug("Closing connection {}", conn, _ex);
+            daemon.removeConnection(conn);
+          } catch (RuntimeException _ex) {
+            // e.g. a malformed message, only the connection which sent it is affected
+            LOGGER.warn("Unexpected exception, closing connection {}", conn, _ex);
+            daemon.removeConnection(conn);
+          }
+        }
+
+        DaemonConnection conn;
+        while (null != (conn = writes.poll())) {
+          write(conn);
+        }
+        while (null != (conn = interestUpdates.poll())) {
+          applyInterest(conn);
+        }
+      }
+    } catch (IOException _ex) {
+      LOGGER.error("Selector failed", _ex);
+    } finally {
+      running = false;
+      // also when the selector failed: the clients of this loop are gone for the daemon
+      for (SelectionKey key : selector.keys()) {
+        daemon.removeConnection((DaemonConnection) key.attachment());
+      }
+      dropPending();
+      try {
+        selector.close();
+      } catch (IOException _ex) {
+        LOGGER.debug("", _ex);
+      }
+    }
+    LOGGER.debug("exit");
+  }
+
+  private void registerPending() {
+    DaemonConnection conn;
+    while (null != (conn = registrations.poll())) {
+      try {
+        conn.getChannel().register(selector, conn.interestOps(), conn);
+        // messages may have been queued before the registration
+        write(conn);
+      } catch (IOException _ex) {
+        LOGGER.debug("Unable to register connection", _ex);
+        daemon.removeConnection(conn);
+      }
+    }
+  }
+
+  /**
+   * Remove the connections which were added but will never be registered.
+   */
+  private void dropPending() {
+    DaemonConnection conn;
+    while (null != (conn = registrations.poll())) {
+      daemon.removeConnection(conn);
+    }
+  }
+
+  private void write(DaemonConnection _conn) {
+    SelectionKey key = _conn.getChannel().keyFor(selector);
+    if (null == key || !key.isValid()) {
+      // not registered yet (flushed on registration) or already closed
+      return;
+    }
+    try {
+      _conn.flush();
+      key.interestOps(_conn.interestOps());
+    } catch (IOException | CancelledKeyException _ex) {
+      LOGGER.debug("Closing connection {}", _conn, _ex);
+      daemon.removeConnection(_conn);
+    }
+  }
+
+  private void applyInterest(DaemonConnection _conn) {
+    SelectionKey key = _conn.getChannel().keyFor(selector);
+    if (null == key || !key.isValid()) {
+      // the interest set is applied on registration
+      return;
+    }
+    try {
+      key.interestOps(_conn.interestOps());
+    } catch (CancelledKeyException _ex) {
+      LOGGER.debug("Connection {} already closed", _conn, _ex);
+    }
+  }
+}
@@ -0,0 +1,19 @@
+package org.freedesktop.dbus.bin;
+
+/**
+ * What the {@link DBusDaemon} does when a message is queued for a client whose outbound queue is full,
+ * because the client does not read its messages fast enough.
+ *
+ * @see DBusDaemon#setOutboundLimits(int, long, SlowConsumerPolicy)
+ */
+public enum SlowConsumerPolicy {
+  /** The slow client is disconnected. */
+  DISCONNECT,
+  /** Signals for the slow client are discarded, other messages are still queued. */
+  DROP_SIGNALS,
+  /**
+   * The message is queued and the daemon stops reading from the client which sent it, until the queue
+   * of the slow client is drained to half of its limits (default). Messages sent by the daemon itself are queued.
+   */
+  BLOCK_SENDER
+}
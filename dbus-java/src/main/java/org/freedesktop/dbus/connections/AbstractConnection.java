@@ -15,6 +15,8 @@ package org.freedesktop.dbus.connections;
 import com.github.hypfvieh.threads.NameableThreadFactory;
 import lombok.extern.slf4j.Slf4j;
 import org.freedesktop.dbus.*;
+import org.freedesktop.dbus.annotations.NonBlockingHandler;
+import org.freedesktop.dbus.connections.PendingCallTable.PendingCall;
 import org.freedesktop.dbus.connections.transports.AbstractTransport;
 import org.freedesktop.dbus.connections.transports.TransportFactory;
 import org.freedesktop.dbus.errors.Error;
@@ -24,10 +26,14 @@ import org.freedesktop.dbus.exceptions.DBusException;
 import org.freedesktop.dbus.exceptions.DBusExecutionException;
 import org.freedesktop.dbus.exceptions.FatalDBusException;
 import org.freedesktop.dbus.exceptions.NotConnected;
+import org.freedesktop.dbus.exceptions.OutboundQueueFullException;
+import org.freedesktop.dbus.handlers.ConflatingPropertiesChangedHandler;
 import org.freedesktop.dbus.interfaces.CallbackHandler;
 import org.freedesktop.dbus.interfaces.DBusInterface;
 import org.freedesktop.dbus.interfaces.DBusSigHandler;
+import org.freedesktop.dbus.interfaces.Properties.PropertiesChanged;
 import org.freedesktop.dbus.messages.*;
+import org.freedesktop.dbus.spi.IWorkerExecutorProvider;
 
 import java.io.Closeable;
 import java.io.EOFException;
@@ -39,8 +45,7 @@ import java.nio.ByteOrder;
 import java.util.*;
 import java.util.Map.Entry;
 import java.util.concurrent.*;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 
 /**
@@ -50,6 +55,12 @@ import java.util.regex.Pattern;
 public abstract class AbstractConnection implements Closeable {
 
   private static final Map<Thread, DBusCallInfo> INFOMAP = new ConcurrentHashMap<>();
+  private static final ClassValue<Boolean> NON_BLOCKING_HANDLERS = new ClassValue<Boolean>() {
+    @Override
+    protected Boolean computeValue(Class<?> _type) {
+      return _type.isAnnotationPresent(NonBlockingHandler.class);
+    }
+  };
   /**
    * Default thread pool size
    */
@@ -78,32 +89,33 @@ public abstract class AbstractConnection implements Closeable {
   private final Map<String, ExportedObject> exportedObjects;
   private final Map<DBusInterface, RemoteObject> importedObjects;
 
-  private final PendingCallbackManager callbackManager;
+  private final ReplyTimeoutManager replyTimeoutManager;
 
   private final FallbackContainer fallbackContainer;
 
   private final Queue<Error> pendingErrorQueue;
 
-  private final Map<SignalTuple, Queue<DBusSigHandler<? extends DBusSignal>>> handledSignals;
-  private final Map<SignalTuple, Queue<DBusSigHandler<DBusSignal>>> genericHandledSignals;
-  private final Map<Long, MethodCall> pendingCalls;
+  private final SignalHandlerIndex<DBusSigHandler<? extends DBusSignal>> handledSignals;
+  private final SignalHandlerIndex<DBusSigHandler<DBusSignal>> genericHandledSignals;
+  private final PendingCallTable pendingCalls;
+  /* serials are allocated per connection, 0 is not a valid serial */
+  private final AtomicInteger serialCounter = new AtomicInteger();
 
   private final IncomingMessageThread readerThread;
-  // private final SenderThread senderThread;
+  private final SenderThread senderThread;
 
   private final BusAddress busAddress;
 
-  private final ExecutorService senderService;
-
   private volatile boolean run;
 
   private boolean weakreferences = false;
   private boolean connected;
 
   private AbstractTransport transport;
-  private volatile ThreadPoolExecutor workerThreadPool;
-  private final ReadWriteLock workerThreadPoolLock =
-      new ReentrantReadWriteLock();
+  private final Map<DispatchLane, DispatchLaneExecutor> dispatchLanes = new EnumMap<>(DispatchLane.class);
+  private volatile DispatchOrder dispatchOrder = DispatchOrder.UNORDERED;
+  private volatile boolean inlineDispatch;
+  private final InboundFlowControl inboundFlowControl = new InboundFlowControl();
 
   protected AbstractConnection(String address, int timeout) throws DBusException {
     exportedObjects = new HashMap<>();
@@ -111,17 +123,21 @@ public abstract class AbstractConnection implements Closeable {
 
     exportedObjects.put(null, new ExportedObject(new GlobalHandler(this), weakreferences));
 
-    handledSignals = new ConcurrentHashMap<>();
-    genericHandledSignals = new ConcurrentHashMap<>();
-    pendingCalls = Collections.synchronizedMap(new LinkedHashMap<>());
-    callbackManager = new PendingCallbackManager();
+    handledSignals = new SignalHandlerIndex<>();
+    genericHandledSignals = new SignalHandlerIndex<>();
+    pendingCalls = new PendingCallTable();
+    replyTimeoutManager = new ReplyTimeoutManager(this);
 
     pendingErrorQueue = new ConcurrentLinkedQueue<>();
-    workerThreadPool = (ThreadPoolExecutor) Executors.newFixedThreadPool(THREADCOUNT,
-        new NameableThreadFactory("DBus Worker Thread-", false));
+    ExecutorService providedExecutor = createProvidedWorkerExecutor(address);
+    WorkerExecutorUsage executorUsage = new WorkerExecutorUsage();
+    for (DispatchLane lane : DispatchLane.values()) {
+      dispatchLanes.put(lane, new DispatchLaneExecutor(lane,
+          null == providedExecutor ? createWorkerThreadPool(lane) : providedExecutor, true,
+          DispatchLane.CALLBACK == lane ? null : inboundFlowControl, executorUsage));
+    }
 
-    senderService =
-        Executors.newFixedThreadPool(1, new NameableThreadFactory("DBus Sender Thread-", false));
+    senderThread = new SenderThread(this);
 
     objectTree = new ObjectTree();
     fallbackContainer = new FallbackContainer();
@@ -132,6 +148,7 @@ public abstract class AbstractConnection implements Closeable {
       busAddress = new BusAddress(address);
       transport = TransportFactory.createTransport(busAddress, timeout);
       connected = true;
+      senderThread.start();
     } catch (IOException | DBusException _ex) {
       LOGGER.debug("Error creating transport", _ex);
       disconnect();
@@ -204,28 +221,175 @@ public abstract class AbstractConnection implements Closeable {
   }
 
   /**
-   * Change the number of worker threads to receive method calls and handle signals. Default is 4 threads
+   * Creates the worker executor using the first {@link IWorkerExecutorProvider} which returns one.
+   * This executor is used by all dispatch lanes.
+   *
+   * @param _address bus address
+   * @return executor, null if there is no provider
+   */
+  private static ExecutorService createProvidedWorkerExecutor(String _address) {
+    for (IWorkerExecutorProvider provider : ServiceLoader.load(IWorkerExecutorProvider.class)) {
+      ExecutorService executor = provider.createWorkerExecutor(_address);
+      if (executor != null) {
+        LOGGER.debug("Using worker executor {} of provider {}", executor, provider);
+        return executor;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Creates the default executor of a dispatch lane, a pool of {@value #THREADCOUNT} threads.
+   * Idle threads are stopped, so lanes which are not used do not keep threads.
+   *
+   * @param _lane lane
+   * @return executor
+   */
+  private static ExecutorService createWorkerThreadPool(DispatchLane _lane) {
+    ThreadPoolExecutor pool = new ThreadPoolExecutor(THREADCOUNT, THREADCOUNT, 60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(), new NameableThreadFactory("DBus " + _lane.getDescription() + " Thread-", false));
+    pool.allowCoreThreadTimeOut(true);
+    return pool;
+  }
+
+  /**
+   * Change the number of worker threads of all dispatch lanes. Default is 4 threads per lane.
+   * The pools are resized in place, queued tasks are kept.
+   * Only supported for thread pool executors owned by this connection, ignored otherwise.
    *
    * @param _newPoolSize The new number of worker Threads to use.
    */
   public void changeThreadCount(byte _newPoolSize) {
-    if (workerThreadPool.getMaximumPoolSize() != _newPoolSize) {
-      workerThreadPoolLock.writeLock().lock();
-      try {
-        List<Runnable> remainingTasks = workerThreadPool.shutdownNow(); // kill previous threadpool
-        workerThreadPool = (ThreadPoolExecutor) Executors.newFixedThreadPool(_newPoolSize,
-            new NameableThreadFactory("DbusWorkerThreads", false));
-        // re-schedule previously waiting tasks
-        for (Runnable runnable : remainingTasks) {
-          workerThreadPool.execute(runnable);
-        }
-      } finally {
-        workerThreadPoolLock.writeLock().unlock();
-      }
+    for (DispatchLane lane : DispatchLane.values()) {
+      changeThreadCount(lane, _newPoolSize);
+    }
+  }
 
+  /**
+   * Change the number of worker threads of one dispatch lane, see {@link #changeThreadCount(byte)}.
+   *
+   * @param _lane lane
+   * @param _newPoolSize new number of threads
+   */
+  public void changeThreadCount(DispatchLane _lane, int _newPoolSize) {
+    dispatchLanes.get(_lane).changeThreadCount(_newPoolSize);
+  }
+
+  /**
+   * Use the given executor to dispatch method calls, signals and callbacks of this connection.
+   * <p>
+   * Tasks already queued on the previous executors are still run by them. The previous executors
+   * are shut down if they were owned by this connection (created by default or by an {@link IWorkerExecutorProvider})
+   * and no other lane still uses them.
+   * </p>
+   *
+   * @param _executor executor to use for all lanes, e.g. a {@link ForkJoinPool} or a pool with instrumentation
+   * @param _shutdownOnDisconnect true to let this connection shut down the executor on disconnect,
+   *          false if the executor is managed (or shared with other connections) by the caller
+   */
+  public void setWorkerExecutor(ExecutorService _executor, boolean _shutdownOnDisconnect) {
+    for (DispatchLane lane : DispatchLane.values()) {
+      setWorkerExecutor(lane, _executor, _shutdownOnDisconnect);
     }
   }
 
+  /**
+   * Use the given executor for one dispatch lane, see {@link #setWorkerExecutor(ExecutorService, boolean)}.
+   *
+   * @param _lane lane
+   * @param _executor executor to use
+   * @param _shutdownOnDisconnect true to let this connection shut down the executor on disconnect
+   */
+  public void setWorkerExecutor(DispatchLane _lane, ExecutorService _executor, boolean _shutdownOnDisconnect) {
+    Objects.requireNonNull(_lane, "Lane required");
+    Objects.requireNonNull(_executor, "Executor required");
+    dispatchLanes.get(_lane).setExecutor(_executor, _shutdownOnDisconnect);
+  }
+
+  /**
+   * Run reply callbacks and non-blocking signal handlers directly on the thread reading messages.
+   * <p>
+   * This saves the hand-over to a worker thread (queueing and a context switch) for every message.
+   * When enabled, the signal handlers and {@link CallbackHandler}s whose class is annotated with
+   * {@link NonBlockingHandler} are run inline, other handlers still use the worker executor.
+   * Errors for calls without a reply in time are not read, their callbacks always use the worker executor.
+   * Inline handlers must return quickly and must never wait for a reply, as no further messages
+   * are read while they run. They are not subject to the {@link DispatchOrder} of the worker executor.
+   * </p>
+   * Replies of synchronous calls are always set by the reading thread,
+   * {@link CompletableFuture}s are always completed on the {@link DispatchLane#CALLBACK} lane.
+   * Disabled by default.
+   *
+   * @param _inline true to enable inline dispatch
+   */
+  public void setInlineDispatch(boolean _inline) {
+    inlineDispatch = _inline;
+  }
+
+  public boolean isInlineDispatch() {
+    return inlineDispatch;
+  }
+
+  /**
+   * Limit the number of received messages waiting for dispatch.
+   * <p>
+   * When the number of queued method calls and signal handler invocations reaches _highWatermark,
+   * this connection stops reading until it dropped to _lowWatermark, so the sender is slowed down
+   * by the socket buffers instead of growing the heap of this process. Disabled by default.
+   * </p>
+   * <p>
+   * Replies are not read while reading is paused. Method call and signal handlers which wait for
+   * replies to their own calls need enough worker threads to not keep the queue above the low watermark.
+   * </p>
+   *
+   * @param _highWatermark number of waiting tasks at which reading pauses
+   * @param _lowWatermark number of waiting tasks at which reading resumes, must be lower than _highWatermark
+   */
+  public void setInboundFlowControl(int _highWatermark, int _lowWatermark) {
+    if (_lowWatermark < 0 || _lowWatermark >= _highWatermark) {
+      throw new IllegalArgumentException("Low watermark must be between 0 and the high watermark");
+    }
+    inboundFlowControl.configure(_highWatermark, _lowWatermark);
+  }
+
+  /**
+   * Wait until received messages may be read again, see {@link #setInboundFlowControl(int, int)}.
+   *
+   * @throws InterruptedException when interrupted while waiting
+   */
+  void awaitInboundCapacity() throws InterruptedException {
+    inboundFlowControl.awaitCapacity();
+  }
+
+  /**
+   * Returns the current queue depth and wait times of a dispatch lane.
+   *
+   * @param _lane lane
+   * @return metrics snapshot
+   */
+  public DispatchLaneStats getDispatchLaneStats(DispatchLane _lane) {
+    return dispatchLanes.get(_lane).getStats();
+  }
+
+  /**
+   * Set the ordering guarantee for method calls, signals and callbacks handled by the worker executor.
+   * <p>
+   * With an ordered mode, e.g. {@link DispatchOrder#SENDER}, messages with the same key are handled
+   * one after another in the order they were received, so handlers do not have to serialize themselves.
+   * Messages with different keys still run in parallel, so the number of worker threads
+   * (see {@link #changeThreadCount(byte)}) can be raised without losing ordering.
+   * </p>
+   *
+   * @param _order ordering, {@link DispatchOrder#UNORDERED} by default
+   */
+  public void setDispatchOrder(DispatchOrder _order) {
+    dispatchOrder = Objects.requireNonNull(_order, "Dispatch order required");
+  }
+
+  public DispatchOrder getDispatchOrder() {
+    return dispatchOrder;
+  }
+
   public String getExportedObject(DBusInterface _interface) throws DBusException {
 
     Optional<Entry<String, ExportedObject>> foundInterface =
@@ -333,11 +497,65 @@ public abstract class AbstractConnection implements Closeable {
    * Send a message or signal to the DBus daemon.
    *
    * @param _message message to send
+   * @throws OutboundQueueFullException if the outbound queue is full and its policy rejects the message
    */
   public void sendMessage(Message _message) {
-    Runnable runnable = () -> sendMessageInternally(_message);
+    boolean queued;
+    try {
+      // the reader thread sends error replies and runs inline handlers, it must never wait or fail here
+      queued = senderThread.queueMessage(_message, Thread.currentThread() != readerThread);
+    } catch (OutboundQueueFullException _ex) {
+      if (_message instanceof MethodCall) {
+        // calls with a callback are already pending, no reply will arrive
+        pendingCalls.remove(_message.getSerial(), (MethodCall) _message);
+      }
+      throw _ex;
+    }
+    if (!queued) { // already disconnected, this will set the proper error reply
+      handleSendError(_message, new NotConnected("Disconnected"));
+    }
+  }
 
-    senderService.execute(runnable);
+  /**
+   * Bound the queue of messages waiting to be sent by this connection.
+   * <p>
+   * If a peer (or the bus) reads slower than messages are sent, the queue grows. With a bound,
+   * the given policy decides what happens to messages sent while the queue is full.
+   * The queue is unbounded by default.
+   * </p>
+   *
+   * @param _capacity maximum number of queued messages
+   * @param _policy   policy applied when the queue is full
+   */
+  public void setOutboundQueue(int _capacity, OutboundQueuePolicy _policy) {
+    senderThread.setOutboundQueue(_capacity, Objects.requireNonNull(_policy, "Policy required"));
+  }
+
+  /**
+   * Returns the depth of the outbound queue and the number of rejected, dropped and conflated messages.
+   *
+   * @return snapshot of the outbound queue
+   */
+  public OutboundQueueStats getOutboundQueueStats() {
+    return senderThread.getOutboundQueueStats();
+  }
+
+  /**
+   * Configure coalescing of outgoing messages.
+   * <p>
+   * If enabled, all messages queued for this connection (up to _maxBatchSize) are written
+   * as one batch and flushed once. When more than one message was queued, the sender waits
+   * up to _latencyBudget for further messages to fill the batch. A message sent while
+   * nothing else is queued is always written immediately.
+   * </p>
+   * Default is a batch size of 1, which disables coalescing.
+   *
+   * @param _maxBatchSize  maximum number of messages written at once, 1 disables coalescing
+   * @param _latencyBudget maximum time a message is held back waiting for further messages, 0 to never wait
+   * @param _unit          unit of _latencyBudget
+   */
+  public void setWriteCoalescing(int _maxBatchSize, long _latencyBudget, TimeUnit _unit) {
+    senderThread.setCoalescing(_maxBatchSize, _latencyBudget, _unit);
   }
 
   /**
@@ -426,18 +644,7 @@ public abstract class AbstractConnection implements Closeable {
 
   protected <T extends DBusSignal> void addSigHandlerWithoutMatch(Class<? extends DBusSignal> signal,
                                                                   DBusSigHandler<T> handler) throws DBusException {
-    DBusMatchRule rule = new DBusMatchRule(signal);
-    SignalTuple key = new SignalTuple(rule.getInterface(), rule.getMember(), rule.getObject(), rule.getSource());
-    synchronized (getHandledSignals()) {
-      Queue<DBusSigHandler<? extends DBusSignal>> v = getHandledSignals().get(key);
-      if (null == v) {
-        v = new ConcurrentLinkedQueue<>();
-        v.add(handler);
-        getHandledSignals().put(key, v);
-      } else {
-        v.add(handler);
-      }
-    }
+    getHandledSignals().add(new DBusMatchRule(signal), handler);
   }
 
   /**
@@ -479,21 +686,25 @@ public abstract class AbstractConnection implements Closeable {
 
     LOGGER.debug("Disconnecting Abstract Connection");
 
-    workerThreadPoolLock.writeLock().lock();
     try {
-      // try to wait for all pending tasks.
-      workerThreadPool.shutdown();
-      workerThreadPool.awaitTermination(10, TimeUnit.SECONDS); // 10 seconds should be enough, otherwise fail
-
+      // try to wait for all pending tasks, executors not owned by this connection are left alone
+      for (DispatchLaneExecutor lane : dispatchLanes.values()) {
+        lane.shutdown(10, TimeUnit.SECONDS); // 10 seconds should be enough, otherwise fail
+      }
     } catch (InterruptedException _ex) {
       LOGGER.error("Interrupted while waiting for worker threads to be terminated.", _ex);
-    } finally {
-      workerThreadPoolLock.writeLock().unlock();
     }
 
-    // shutdown sender executor service, send all remaining messages in main thread
-    for (Runnable runnable : senderService.shutdownNow()) {
-      runnable.run();
+    replyTimeoutManager.terminate();
+
+    // shutdown sender thread, it will send all remaining messages before terminating
+    senderThread.terminate();
+    if (Thread.currentThread() != senderThread) {
+      try {
+        senderThread.join(TimeUnit.SECONDS.toMillis(10));
+      } catch (InterruptedException _ex) {
+        LOGGER.error("Interrupted while waiting for sender thread to be terminated.", _ex);
+      }
     }
 
     // stop the main thread
@@ -513,13 +724,8 @@ public abstract class AbstractConnection implements Closeable {
     }
 
     // stop all the workers
-    workerThreadPoolLock.writeLock().lock();
-    try {
-      if (!workerThreadPool.isTerminated()) { // try forceful shutdown
-        workerThreadPool.shutdownNow();
-      }
-    } finally {
-      workerThreadPoolLock.writeLock().unlock();
+    for (DispatchLaneExecutor lane : dispatchLanes.values()) {
+      lane.shutdownNow();
     }
   }
 
@@ -601,6 +807,61 @@ public abstract class AbstractConnection implements Closeable {
     }
   }
 
+  /**
+   * Call a method asynchronously and get a future completed with the reply.
+   * <p>
+   * No thread waits for the reply: the future is completed on the {@link DispatchLane#CALLBACK} lane,
+   * like the callbacks of {@link #callWithCallback(DBusInterface, String, CallbackHandler, Object...)}.
+   * Dependent stages which block occupy a callback worker, add them with the <code>*Async</code> methods
+   * of {@link CompletableFuture} if that is not wanted. Use
+   * {@link CompletableFuture#orTimeout(long, TimeUnit)} to limit the time to wait for a reply.
+   * </p>
+   *
+   * @param <T>        return type of the method
+   * @param object     The remote object on which to call the method.
+   * @param m          The name of the method on the interface to call.
+   * @param parameters The parameters to call the method with.
+   * @return future completed with the return value, or exceptionally with a {@link DBusExecutionException}
+   */
+  @SuppressWarnings("unchecked")
+  public <T> CompletableFuture<T> callMethodFuture(DBusInterface object, String m, Object... parameters) {
+    Class<?>[] types = createTypesArray(parameters);
+    RemoteObject ro = getImportedObjects().get(object);
+
+    try {
+      Method me;
+      if (null == ro.getInterface()) {
+        me = object.getClass().getMethod(m, types);
+      } else {
+        me = ro.getInterface().getMethod(m, types);
+      }
+      return (CompletableFuture<T>) RemoteInvocationHandler.executeRemoteMethod(ro, me, this,
+          RemoteInvocationHandler.CALL_TYPE_FUTURE, null, parameters);
+    } catch (DBusExecutionException exDee) {
+      LOGGER.debug("", exDee);
+      throw exDee;
+    } catch (Exception e) {
+      LOGGER.debug("", e);
+      throw new DBusExecutionException(e.getMessage());
+    }
+  }
+
+  /**
+   * Set the timeout for replies to method calls on the given remote object.
+   * When no reply arrives in time, the call fails with a {@link org.freedesktop.dbus.errors.NoReply} error.
+   *
+   * @param _remoteObject remote object (as returned by getRemoteObject)
+   * @param _timeout timeout, 0 to use the default timeout of {@link MethodCall}
+   * @param _unit unit of timeout
+   */
+  public void setReplyTimeout(DBusInterface _remoteObject, long _timeout, TimeUnit _unit) {
+    RemoteObject ro = getImportedObjects().get(_remoteObject);
+    if (null == ro) {
+      throw new IllegalArgumentException("Not a remote object: " + _remoteObject);
+    }
+    ro.setReplyTimeout(_unit.toMillis(_timeout));
+  }
+
   private Class<?>[] createTypesArray(Object... parameters) {
     if (parameters == null) {
       return null;
@@ -770,7 +1031,7 @@ public abstract class AbstractConnection implements Closeable {
                 m.getInterface(), m.getName(), e.getMessage())));
       }
     };
-    executeInWorkerThreadPool(r);
+    executeInWorkerThreadPool(DispatchLane.METHOD_CALL, m, r);
   }
 
   /**
@@ -785,60 +1046,35 @@ public abstract class AbstractConnection implements Closeable {
   private void handleMessage(final DBusSignal _signal, boolean _useThreadPool) {
     LOGGER.debug("Handling incoming signal: {}", _signal);
 
-    List<DBusSigHandler<? extends DBusSignal>> handlers = new ArrayList<>();
-    List<DBusSigHandler<DBusSignal>> genericHandlers = new ArrayList<>();
-
-    Queue<DBusSigHandler<? extends DBusSignal>> t;
-    t = getHandledSignals().get(new SignalTuple(_signal.getInterface(), _signal.getName(), null, null));
-    if (null != t) {
-      handlers.addAll(t);
-    }
-    t = getHandledSignals().get(new SignalTuple(_signal.getInterface(), _signal.getName(), _signal.getPath(), null));
-    if (null != t) {
-      handlers.addAll(t);
-    }
-    t = getHandledSignals().get(new SignalTuple(_signal.getInterface(), _signal.getName(), null, _signal.getSource()));
-    if (null != t) {
-      handlers.addAll(t);
-    }
-    t = getHandledSignals().get(new SignalTuple(_signal.getInterface(), _signal.getName(), _signal.getPath(), _signal.getSource()));
-    if (null != t) {
-      handlers.addAll(t);
-    }
-
-    Queue<DBusSigHandler<DBusSignal>> gt;
-    Set<SignalTuple> allTuples = SignalTuple.getAllPossibleTuples(_signal.getInterface(), _signal.getName(), _signal.getPath(), _signal.getSource());
-    for (SignalTuple tuple : allTuples) {
-      gt = getGenericHandledSignals().get(tuple);
-      if (null != gt) {
-        genericHandlers.addAll(gt);
-      }
-    }
+    List<DBusSigHandler<? extends DBusSignal>> handlers = getHandledSignals().find(_signal.getInterface(),
+        _signal.getName(), _signal.getPath(), _signal.getSource());
+    List<DBusSigHandler<DBusSignal>> genericHandlers = getGenericHandledSignals().find(_signal.getInterface(),
+        _signal.getName(), _signal.getPath(), _signal.getSource());
 
     if (handlers.isEmpty() && genericHandlers.isEmpty()) {
       return;
     }
 
     final AbstractConnection conn = this;
+    // the concrete signal is created once (by the first handler running) and shared by all handlers
+    final SharedSignal shared = handlers.isEmpty() ? null : new SharedSignal(_signal, conn);
     for (final DBusSigHandler<? extends DBusSignal> h : handlers) {
+      if (_useThreadPool && h instanceof ConflatingPropertiesChangedHandler) {
+        conflateSignal((ConflatingPropertiesChangedHandler) h, shared, _signal);
+        continue;
+      }
       LOGGER.trace("Adding Runnable for signal {} with handler {}", _signal, h);
       Runnable command = () -> {
         try {
-          DBusSignal rs;
-          if (_signal instanceof InternalSignal || _signal.getClass().equals(DBusSignal.class)) {
-            rs = _signal.createReal(conn);
-          } else {
-            rs = _signal;
-          }
-          ((DBusSigHandler<DBusSignal>) h).handle(rs);
+          ((DBusSigHandler<DBusSignal>) h).handle(shared.get());
         } catch (DBusException _ex) {
           LOGGER.warn("Exception while running signal handler '{}' for signal '{}':", h, _signal, _ex);
           handleException(conn, _signal, new DBusExecutionException("Error handling signal " + _signal.getInterface()
               + "." + _signal.getName() + ": " + _ex.getMessage()));
         }
       };
-      if (_useThreadPool) {
-        executeInWorkerThreadPool(command);
+      if (_useThreadPool && !runInline(h)) {
+        executeInWorkerThreadPool(DispatchLane.SIGNAL, _signal, command);
       } else {
         command.run();
       }
@@ -847,101 +1083,201 @@ public abstract class AbstractConnection implements Closeable {
     for (final DBusSigHandler<DBusSignal> h : genericHandlers) {
       LOGGER.trace("Adding Runnable for signal {} with handler {}", _signal, h);
       Runnable command = () -> h.handle(_signal);
-      if (_useThreadPool) {
-        executeInWorkerThreadPool(command);
+      if (_useThreadPool && !runInline(h)) {
+        executeInWorkerThreadPool(DispatchLane.SIGNAL, _signal, command);
       } else {
         command.run();
       }
     }
   }
 
-  private void executeInWorkerThreadPool(Runnable task) {
-    workerThreadPoolLock.readLock().lock();
+  /**
+   * Merge the signal into the pending changes of a conflating handler on the reader thread,
+   * so signals are merged in the order they were received. Only schedules a worker if
+   * the handler is not already delivering pending changes.
+   *
+   * @param _handler conflating handler
+   * @param _shared signal to merge
+   * @param _signal signal as received
+   */
+  private void conflateSignal(ConflatingPropertiesChangedHandler _handler, SharedSignal _shared, DBusSignal _signal) {
     try {
-      workerThreadPool.execute(task);
-    } finally {
-      workerThreadPoolLock.readLock().unlock();
+      DBusSignal real = _shared.get();
+      if (real instanceof PropertiesChanged && _handler.offer((PropertiesChanged) real)) {
+        try {
+          executeInWorkerThreadPool(DispatchLane.SIGNAL, _signal, _handler::drain);
+        } catch (RejectedExecutionException _ex) {
+          _handler.cancelDrain();
+          throw _ex;
+        }
+      }
+    } catch (DBusException _ex) {
+      LOGGER.warn("Exception while running signal handler '{}' for signal '{}':", _handler, _signal, _ex);
+      handleException(this, _signal, new DBusExecutionException("Error handling signal " + _signal.getInterface()
+          + "." + _signal.getName() + ": " + _ex.getMessage()));
     }
   }
 
-  private void handleMessage(final Error err) {
-    LOGGER.debug("Handling incoming error: {}", err);
-    MethodCall m = null;
-    if (getPendingCalls() == null) {
-      return;
+  /**
+   * Received signal which is converted to its concrete type on first use.
+   * The result (or the failure) is kept so the signal is deserialized only once for all handlers.
+   */
+  private static final class SharedSignal {
+    private final DBusSignal signal;
+    private final AbstractConnection connection;
+    private DBusSignal real;
+    private DBusException failure;
+
+    SharedSignal(DBusSignal _signal, AbstractConnection _connection) {
+      signal = _signal;
+      connection = _connection;
     }
-    synchronized (getPendingCalls()) {
-      if (getPendingCalls().containsKey(err.getReplySerial())) {
-        m = getPendingCalls().remove(err.getReplySerial());
+
+    synchronized DBusSignal get() throws DBusException {
+      if (null == real && null == failure) {
+        if (signal instanceof InternalSignal || signal.getClass().equals(DBusSignal.class)) {
+          try {
+            real = signal.createReal(connection);
+          } catch (DBusException _ex) {
+            failure = _ex;
+          }
+        } else {
+          real = signal;
+        }
+      }
+      if (null != failure) {
+        throw failure;
       }
+      return real;
     }
-    if (m != null) {
-      m.setReply(err);
-      CallbackHandler<?> cbh;
-      cbh = callbackManager.removeCallback(m);
-      LOGGER.trace("{} = pendingCallbacks.remove({})", cbh, m);
+  }
 
-      // queue callback for execution
-      if (null != cbh) {
-        final CallbackHandler<?> fcbh = cbh;
-        LOGGER.trace("Adding Error Runnable with callback handler {}", fcbh);
-        Runnable command = new Runnable() {
+  /**
+   * Checks if the given signal or callback handler runs on the reader thread, see {@link #setInlineDispatch(boolean)}.
+   *
+   * @param _handler handler
+   * @return true to run the handler directly
+   */
+  private boolean runInline(Object _handler) {
+    return inlineDispatch && NON_BLOCKING_HANDLERS.get(_handler.getClass());
+  }
 
-          @Override
-          public synchronized void run() {
-            try {
-              LOGGER.trace("Running Error Callback for {}", err);
-              DBusCallInfo info = new DBusCallInfo(err);
-              INFOMAP.put(Thread.currentThread(), info);
+  /**
+   * Run a task handling the given message on the executor of the lane,
+   * respecting the {@link DispatchOrder} of this connection.
+   *
+   * @param _lane lane
+   * @param _message message the task belongs to
+   * @param _task task
+   */
+  private void executeInWorkerThreadPool(DispatchLane _lane, Message _message, Runnable _task) {
+    DispatchOrder order = dispatchOrder;
+    dispatchLanes.get(_lane).execute(DispatchOrder.UNORDERED == order ? null : order.keyOf(_message), _task);
+  }
 
-              fcbh.handleError(err.getException());
-              INFOMAP.remove(Thread.currentThread());
+  /**
+   * Run a task handling the reply to a call on the {@link DispatchLane#CALLBACK} lane, e.g. completing the
+   * future of an asynchronous call. If the lane does not accept tasks anymore (disconnected), the task
+   * runs on the calling thread.
+   *
+   * @param _reply reply handled by the task
+   * @param _task task
+   */
+  public void executeReplyHandler(Message _reply, Runnable _task) {
+    try {
+      executeInWorkerThreadPool(DispatchLane.CALLBACK, _reply, _task);
+    } catch (RejectedExecutionException _ex) {
+      _task.run();
+    }
+  }
 
-            } catch (Exception e) {
-              LOGGER.debug("Exception while running error callback.", e);
-            }
+  private void handleMessage(final Error err) {
+    LOGGER.debug("Handling incoming error: {}", err);
+    PendingCall pending = pendingCalls.remove(err.getReplySerial());
+    if (pending != null) {
+      handleReplyError(pending, err);
+    } else {
+      getPendingErrorQueue().add(err);
+    }
+  }
+
+  /**
+   * Set the error as reply of the call and run the callback of the call (if any).
+   *
+   * @param pending call which is no longer pending
+   * @param err error
+   */
+  private void handleReplyError(PendingCall pending, final Error err) {
+    pending.getCall().setReply(err);
+    CallbackHandler<?> cbh = pending.getCallback();
+
+    // queue callback for execution
+    if (null != cbh) {
+      final CallbackHandler<?> fcbh = cbh;
+      LOGGER.trace("Adding Error Runnable with callback handler {}", fcbh);
+      Runnable command = new Runnable() {
+
+        @Override
+        public synchronized void run() {
+          try {
+            LOGGER.trace("Running Error Callback for {}", err);
+            DBusCallInfo info = new DBusCallInfo(err);
+            INFOMAP.put(Thread.currentThread(), info);
+
+            fcbh.handleError(err.getException());
+            INFOMAP.remove(Thread.currentThread());
+
+          } catch (Exception e) {
+            LOGGER.debug("Exception while running error callback.", e);
           }
-        };
-        executeInWorkerThreadPool(command);
+        }
+      };
+      // a timeout is reported by the timer thread, which must not run callbacks
+      if (Thread.currentThread() == readerThread && runInline(fcbh)) {
+        command.run();
+      } else {
+        executeInWorkerThreadPool(DispatchLane.CALLBACK, err, command);
       }
+    }
+  }
 
-    } else {
-      getPendingErrorQueue().add(err);
+  /**
+   * Called when no reply to the given call arrived in time.
+   * The call is no longer pending and completed with a NoReply error.
+   *
+   * @param _call call
+   */
+  void handleReplyTimeout(MethodCall _call) {
+    PendingCall pending = pendingCalls.remove(_call.getSerial(), _call);
+    if (null == pending) {
+      return; // answered in the meantime
+    }
+    LOGGER.debug("No reply to {} within {} ms", _call, _call.getTimeout());
+    try {
+      handleReplyError(pending, new Error("org.freedesktop.DBus.Local", "org.freedesktop.DBus.Error.NoReply",
+          _call.getSerial(), "s", "No reply within specified time"));
+    } catch (DBusException _ex) {
+      LOGGER.error("Error creating reply", _ex);
     }
   }
 
   @SuppressWarnings("unchecked")
   private void handleMessage(final MethodReturn mr) {
     LOGGER.debug("Handling incoming method return: {}", mr);
-    MethodCall m = null;
-
-    if (null == getPendingCalls()) {
-      return;
-    }
-
-    synchronized (getPendingCalls()) {
-      if (getPendingCalls().containsKey(mr.getReplySerial())) {
-        m = getPendingCalls().remove(mr.getReplySerial());
-      }
-    }
+    PendingCall pending = pendingCalls.remove(mr.getReplySerial());
 
-    if (null != m) {
+    if (null != pending) {
+      MethodCall m = pending.getCall();
       m.setReply(mr);
       mr.setCall(m);
       @SuppressWarnings("rawtypes")
-      CallbackHandler cbh = callbackManager.getCallback(m);
-      DBusAsyncReply<?> asr = callbackManager.getCallbackReply(m);
-      callbackManager.removeCallback(m);
+      CallbackHandler cbh = pending.getCallback();
 
       // queue callback for execution
       if (null != cbh) {
         final CallbackHandler<Object> fcbh = cbh;
-        final DBusAsyncReply<?> fasr = asr;
-        if (fasr == null) {
-          LOGGER.debug("Cannot add runnable for method, given method callback was null");
-          return;
-        }
-        LOGGER.trace("Adding Runnable for method {} with callback handler {}", fcbh, fasr.getMethod());
+        final Method method = pending.getMethod();
+        LOGGER.trace("Adding Runnable for method {} with callback handler {}", method, fcbh);
         Runnable r = new Runnable() {
 
           @Override
@@ -951,7 +1287,7 @@ public abstract class AbstractConnection implements Closeable {
               DBusCallInfo info = new DBusCallInfo(mr);
               INFOMAP.put(Thread.currentThread(), info);
               Object convertRV = RemoteInvocationHandler.convertRV(mr.getSig(), mr.getParameters(),
-                  fasr.getMethod(), fasr.getConnection());
+                  method, AbstractConnection.this);
               fcbh.handle(convertRV);
               INFOMAP.remove(Thread.currentThread());
 
@@ -960,7 +1296,11 @@ public abstract class AbstractConnection implements Closeable {
             }
           }
         };
-        executeInWorkerThreadPool(r);
+        if (runInline(fcbh)) {
+          r.run();
+        } else {
+          executeInWorkerThreadPool(DispatchLane.CALLBACK, mr, r);
+        }
       }
 
     } else {
@@ -973,8 +1313,34 @@ public abstract class AbstractConnection implements Closeable {
     }
   }
 
+  /**
+   * Register a callback for the reply to the given call, the call has to be sent afterwards.
+   *
+   * @param _call call
+   * @param _method interface method which is called, used to convert the reply
+   * @param _callback callback
+   */
   public void queueCallback(MethodCall _call, Method _method, CallbackHandler<?> _callback) {
-    callbackManager.queueCallback(_call, _method, _callback, this);
+    _call.updateSerial(nextSerial());
+    registerPendingCall(_call, _callback, _method);
+  }
+
+  private void registerPendingCall(MethodCall _call, CallbackHandler<?> _callback, Method _method) {
+    pendingCalls.put(new PendingCall(_call, _callback, _method,
+        replyTimeoutManager.schedule(_call, _call.getTimeout())));
+  }
+
+  /**
+   * Allocate the serial for a message sent on this connection.
+   *
+   * @return serial, never 0
+   */
+  private long nextSerial() {
+    int serial;
+    do {
+      serial = serialCounter.incrementAndGet();
+    } while (0 == serial);
+    return serial & 0xFFFFFFFFL;
   }
 
   /**
@@ -984,67 +1350,127 @@ public abstract class AbstractConnection implements Closeable {
    */
   private void sendMessageInternally(Message m) {
     try {
-      if (!connected) {
-        throw new NotConnected("Disconnected");
+      prepareMessage(m);
+      transport.writeMessage(m);
+    } catch (Exception e) {
+      handleSendError(m, e);
+      if (e instanceof IOException) {
+        disconnect();
       }
-      if (m instanceof DBusSignal) {
-        ((DBusSignal) m).appendbody(this);
+    }
+  }
+
+  /**
+   * Send several messages to DBus as one batch.
+   *
+   * @param _messages messages to send
+   */
+  void sendMessagesInternally(List<Message> _messages) {
+    if (_messages.size() == 1) {
+      sendMessageInternally(_messages.get(0));
+      return;
+    }
+
+    List<Message> batch = new ArrayList<>(_messages.size());
+    for (Message m : _messages) {
+      try {
+        prepareMessage(m);
+        batch.add(m);
+      } catch (Exception e) {
+        handleSendError(m, e);
       }
+    }
+    if (batch.isEmpty()) {
+      return;
+    }
 
-      if (m instanceof MethodCall) {
-        if (0 == (m.getFlags() & Message.Flags.NO_REPLY_EXPECTED)) {
-          if (null == getPendingCalls()) {
-            ((MethodCall) m).setReply(new Error("org.freedesktop.DBus.Local",
-                "org.freedesktop.DBus.Local.Disconnected", 0, "s", "Disconnected"));
-          } else {
-            synchronized (getPendingCalls()) {
-              getPendingCalls().put(m.getSerial(), (MethodCall) m);
-            }
-          }
-        }
+    try {
+      transport.writeMessages(batch);
+    } catch (Exception e) {
+      for (Message m : batch) {
+        handleSendError(m, e);
+      }
+      if (e instanceof IOException) {
+        disconnect();
       }
+    }
+  }
 
-      transport.writeMessage(m);
+  /**
+   * Prepare a message for sending (append signal body, register pending call).
+   *
+   * @param m message to prepare
+   * @throws DBusException if message could not be prepared or connection is closed
+   */
+  private void prepareMessage(Message m) throws DBusException {
+    if (!connected) {
+      throw new NotConnected("Disconnected");
+    }
+    if (m instanceof DBusSignal) {
+      ((DBusSignal) m).appendbody(this);
+    }
 
-    } catch (Exception e) {
-      LOGGER.debug("Exception while sending message.", e);
-      if (m instanceof MethodCall && e instanceof NotConnected) {
-        try {
-          ((MethodCall) m).setReply(
-              new Error(
-                  "org.freedesktop.DBus.Local",
-              "org.freedesktop.DBus.Local.Disconnected",
-              0,
-                  "s",
-                "Disconnected")
-          );
-        } catch (DBusException exDe) {
-          LOGGER.error("Error sending reply", exDe);
+    if (m instanceof MethodCall) {
+      // calls with a callback already have their serial and are pending
+      PendingCall pending = pendingCalls.get(m.getSerial());
+      if (null == pending || pending.getCall() != m) {
+        m.updateSerial(nextSerial());
+        if (0 == (m.getFlags() & Message.Flags.NO_REPLY_EXPECTED)) {
+          registerPendingCall((MethodCall) m, null, null);
         }
       }
-      if (m instanceof MethodCall && e instanceof DBusExecutionException) {
-        try {
-          ((MethodCall) m).setReply(new Error(m, e));
-        } catch (DBusException exDe) {
-          LOGGER.error("Error setting reply", e);
-        }
-      } else if (m instanceof MethodCall) {
-        try {
-          LOGGER.info("Setting reply to {} as an error", m);
-          ((MethodCall) m).setReply(
-              new Error(m, new DBusExecutionException("Message Failed to Send: " + e.getMessage())));
-        } catch (DBusException exDe) {
-          LOGGER.error("Error setting reply", exDe);
-        }
-      } else if (m instanceof MethodReturn) {
-        try {
-          transport.writeMessage(new Error(m, e));
-        } catch (IOException | DBusException exIo) {
-          LOGGER.debug("Exception writing message", exIo);
-        }
+    } else {
+      m.updateSerial(nextSerial());
+    }
+  }
+
+  /**
+   * Handle an exception which occurred while sending a message.
+   *
+   * @param m message which could not be sent
+   * @param e exception
+   */
+  private void handleSendError(Message m, Exception e) {
+    LOGGER.debug("Exception while sending message.", e);
+    if (m instanceof MethodCall) {
+      // no reply will arrive for a call which was not sent
+      pendingCalls.remove(m.getSerial(), (MethodCall) m);
+    }
+    if (m instanceof MethodCall && e instanceof NotConnected) {
+      try {
+        ((MethodCall) m).setReply(
+            new Error(
+                "org.freedesktop.DBus.Local",
+            "org.freedesktop.DBus.Local.Disconnected",
+            0,
+                "s",
+              "Disconnected")
+        );
+      } catch (DBusException exDe) {
+        LOGGER.error("Error sending reply", exDe);
       }
-      if (e instanceof IOException) {
-        disconnect();
+    }
+    if (m instanceof MethodCall && e instanceof DBusExecutionException) {
+      try {
+        ((MethodCall) m).setReply(new Error(m, e));
+      } catch (DBusException exDe) {
+        LOGGER.error("Error setting reply", e);
+      }
+    } else if (m instanceof MethodCall) {
+      try {
+        LOGGER.info("Setting reply to {} as an error", m);
+        ((MethodCall) m).setReply(
+            new Error(m, new DBusExecutionException("Message Failed to Send: " + e.getMessage())));
+      } catch (DBusException exDe) {
+        LOGGER.error("Error setting reply", exDe);
+      }
+    } else if (m instanceof MethodReturn) {
+      try {
+        Error err = new Error(m, e);
+        err.updateSerial(nextSerial());
+        transport.writeMessage(err);
+      } catch (IOException | DBusException exIo) {
+        LOGGER.debug("Exception writing message", exIo);
       }
     }
   }
@@ -1116,15 +1542,15 @@ public abstract class AbstractConnection implements Closeable {
     return pendingErrorQueue;
   }
 
-  protected Map<SignalTuple, Queue<DBusSigHandler<? extends DBusSignal>>> getHandledSignals() {
+  protected SignalHandlerIndex<DBusSigHandler<? extends DBusSignal>> getHandledSignals() {
     return handledSignals;
   }
 
-  protected Map<SignalTuple, Queue<DBusSigHandler<DBusSignal>>> getGenericHandledSignals() {
+  protected SignalHandlerIndex<DBusSigHandler<DBusSignal>> getGenericHandledSignals() {
     return genericHandledSignals;
   }
 
-  protected Map<Long, MethodCall> getPendingCalls() {
+  protected PendingCallTable getPendingCalls() {
     return pendingCalls;
   }
 
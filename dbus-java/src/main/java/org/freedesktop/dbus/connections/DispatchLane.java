@@ -0,0 +1,30 @@
+package org.freedesktop.dbus.connections;
+
+/**
+ * Kinds of work dispatched by a connection to worker threads.
+ * <p>
+ * Each lane has its own executor (and therefore its own queue), so e.g. a slow signal handler
+ * does not delay incoming method calls or reply callbacks.
+ * </p>
+ *
+ * @see AbstractConnection#setWorkerExecutor(DispatchLane, java.util.concurrent.ExecutorService, boolean)
+ * @see AbstractConnection#getDispatchLaneStats(DispatchLane)
+ */
+public enum DispatchLane {
+  /** Method calls to exported objects. */
+  METHOD_CALL("Method Call"),
+  /** Signal handlers. */
+  SIGNAL("Signal"),
+  /** {@link org.freedesktop.dbus.interfaces.CallbackHandler}s of asynchronous method calls. */
+  CALLBACK("Callback");
+
+  private final String description;
+
+  DispatchLane(String _description) {
+    description = _description;
+  }
+
+  public String getDescription() {
+    return description;
+  }
+}
@@ -0,0 +1,176 @@
+package org.freedesktop.dbus.connections;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Executor of one {@link DispatchLane} of a connection, measuring queue depth and wait time of its tasks.
+ */
+@Slf4j
+class DispatchLaneExecutor {
+  private final DispatchLane lane;
+  /* null if tasks of this lane are not subject to inbound flow control */
+  private final InboundFlowControl flowControl;
+
+  private volatile ExecutorService executor;
+  private volatile boolean ownExecutor;
+  /* shared by all lanes of the connection */
+  private final WorkerExecutorUsage executorUsage;
+  private boolean released;
+  private final ReadWriteLock executorLock = new ReentrantReadWriteLock();
+  private final KeyedOrderedExecutor orderedExecutor = new KeyedOrderedExecutor(this::submit);
+
+  private final AtomicInteger queued = new AtomicInteger();
+  private final LongAdder dispatched = new LongAdder();
+  private final LongAdder totalWaitNanos = new LongAdder();
+  private final AtomicLong maxWaitNanos = new AtomicLong();
+
+  DispatchLaneExecutor(DispatchLane _lane, ExecutorService _executor, boolean _ownExecutor,
+      InboundFlowControl _flowControl, WorkerExecutorUsage _executorUsage) {
+    lane = _lane;
+    flowControl = _flowControl;
+    executor = _executor;
+    ownExecutor = _ownExecutor;
+    executorUsage = _executorUsage;
+    executorUsage.acquire(_executor, _ownExecutor);
+  }
+
+  /**
+   * Run the task on a worker thread.
+   *
+   * @param _key ordering key, tasks with the same key run one after another; null if the task is not ordered
+   * @param _task task
+   */
+  void execute(String _key, Runnable _task) {
+    long queuedAt = System.nanoTime();
+    Runnable measured = () -> {
+      long wait = System.nanoTime() - queuedAt;
+      queued.decrementAndGet();
+      if (null != flowControl) {
+        flowControl.taskStarted();
+      }
+      dispatched.increment();
+      totalWaitNanos.add(wait);
+      maxWaitNanos.accumulateAndGet(wait, Math::max);
+      _task.run();
+    };
+
+    queued.incrementAndGet();
+    if (null != flowControl) {
+      flowControl.taskQueued();
+    }
+    try {
+      if (null == _key) {
+        submit(measured);
+      } else {
+        orderedExecutor.execute(_key, measured);
+      }
+    } catch (RejectedExecutionException _ex) {
+      queued.decrementAndGet();
+      if (null != flowControl) {
+        flowControl.taskStarted();
+      }
+      throw _ex;
+    }
+  }
+
+  private void submit(Runnable _task) {
+    executorLock.readLock().lock();
+    try {
+      executor.execute(_task);
+    } finally {
+      executorLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Replace the executor. Tasks already queued on the previous executor are still run by it,
+   * the previous executor is shut down if it was owned and is not used by another lane.
+   */
+  void setExecutor(ExecutorService _executor, boolean _ownExecutor) {
+    executorLock.writeLock().lock();
+    try {
+      ExecutorService previous = executor;
+      executorUsage.acquire(_executor, _ownExecutor);
+      executor = _executor;
+      ownExecutor = _ownExecutor;
+      if (!released && executorUsage.release(previous)) {
+        previous.shutdown();
+      }
+      released = false;
+    } finally {
+      executorLock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Resize the executor in place, only supported for owned thread pool executors.
+   */
+  void changeThreadCount(int _newPoolSize) {
+    ExecutorService current = executor;
+    if (!ownExecutor || !(current instanceof ThreadPoolExecutor)) {
+      LOGGER.warn("Cannot change thread count of {} executor {}", lane, current);
+      return;
+    }
+    ThreadPoolExecutor pool = (ThreadPoolExecutor) current;
+    if (pool.getMaximumPoolSize() != _newPoolSize) {
+      // core size must never exceed maximum size
+      if (_newPoolSize > pool.getMaximumPoolSize()) {
+        pool.setMaximumPoolSize(_newPoolSize);
+        pool.setCorePoolSize(_newPoolSize);
+      } else {
+        pool.setCorePoolSize(_newPoolSize);
+        pool.setMaximumPoolSize(_newPoolSize);
+      }
+    }
+  }
+
+  /**
+   * Shut down an owned executor and wait for its pending tasks, executors not owned are left alone.
+   * An executor shared with other lanes is shut down by the last lane releasing it.
+   */
+  void shutdown(long _timeout, TimeUnit _unit) throws InterruptedException {
+    ExecutorService current;
+    executorLock.writeLock().lock();
+    try {
+      current = executor;
+      boolean last = !released && executorUsage.release(current);
+      released = true;
+      if (!last) {
+        return;
+      }
+    } finally {
+      executorLock.writeLock().unlock();
+    }
+    // not waiting under the lock: running ordered tasks resubmit their key through submit()
+    current.shutdown();
+    current.awaitTermination(_timeout, _unit);
+  }
+
+  /**
+   * Forcefully stop an owned executor which did not terminate yet.
+   */
+  void shutdownNow() {
+    executorLock.writeLock().lock();
+    try {
+      if (ownExecutor && !executor.isTerminated()) {
+        executor.shutdownNow();
+      }
+    } finally {
+      executorLock.writeLock().unlock();
+    }
+  }
+
+  DispatchLaneStats getStats() {
+    return new DispatchLaneStats(lane, queued.get(), dispatched.sum(), totalWaitNanos.sum(), maxWaitNanos.get());
+  }
+}
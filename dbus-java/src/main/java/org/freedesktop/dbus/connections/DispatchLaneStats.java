@@ -0,0 +1,61 @@
+package org.freedesktop.dbus.connections;
+
+/**
+ * Snapshot of the metrics of a {@link DispatchLane} of a connection.
+ * Wait times are measured from queueing a task until a worker thread starts it.
+ */
+public final class DispatchLaneStats {
+  private final DispatchLane lane;
+  private final int queueDepth;
+  private final long dispatchedTasks;
+  private final long totalWaitNanos;
+  private final long maxWaitNanos;
+
+  DispatchLaneStats(DispatchLane _lane, int _queueDepth, long _dispatchedTasks, long _totalWaitNanos, long _maxWaitNanos) {
+    lane = _lane;
+    queueDepth = _queueDepth;
+    dispatchedTasks = _dispatchedTasks;
+    totalWaitNanos = _totalWaitNanos;
+    maxWaitNanos = _maxWaitNanos;
+  }
+
+  public DispatchLane getLane() {
+    return lane;
+  }
+
+  /**
+   * Number of tasks waiting for a worker thread.
+   *
+   * @return queued tasks
+   */
+  public int getQueueDepth() {
+    return queueDepth;
+  }
+
+  /**
+   * Number of tasks started by a worker thread.
+   *
+   * @return started tasks
+   */
+  public long getDispatchedTasks() {
+    return dispatchedTasks;
+  }
+
+  public long getTotalWaitNanos() {
+    return totalWaitNanos;
+  }
+
+  public long getAverageWaitNanos() {
+    return dispatchedTasks == 0 ? 0 : totalWaitNanos / dispatchedTasks;
+  }
+
+  public long getMaxWaitNanos() {
+    return maxWaitNanos;
+  }
+
+  @Override
+  public String toString() {
+    return "DispatchLaneStats[lane=" + lane + ", queueDepth=" + queueDepth + ", dispatchedTasks=" + dispatchedTasks
+        + ", averageWaitNanos=" + getAverageWaitNanos() + ", maxWaitNanos=" + maxWaitNanos + "]";
+  }
+}
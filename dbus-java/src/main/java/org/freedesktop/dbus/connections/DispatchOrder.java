@@ -0,0 +1,48 @@
+package org.freedesktop.dbus.connections;
+
+import org.freedesktop.dbus.messages.Message;
+
+/**
+ * Ordering guarantee for method calls, signals and callbacks dispatched to the worker executor of a connection.
+ * <p>
+ * With any mode except {@link #UNORDERED}, messages with the same key are handled one after another in
+ * the order they were received, messages with different keys are handled in parallel.
+ * </p>
+ *
+ * @see AbstractConnection#setDispatchOrder(DispatchOrder)
+ */
+public enum DispatchOrder {
+  /** No ordering, every task may run in parallel with any other task (default). */
+  UNORDERED,
+  /** Keep the order of messages from the same sender (unique bus name). */
+  SENDER,
+  /** Keep the order of messages to or from the same object path. */
+  OBJECT_PATH,
+  /** Keep the order of messages of the same interface. */
+  INTERFACE;
+
+  /**
+   * Returns the key of the given message, messages without the field used as key share one key.
+   *
+   * @param _message message
+   * @return key, never null
+   */
+  String keyOf(Message _message) {
+    String key;
+    switch (this) {
+      case SENDER:
+        key = _message.getSource();
+        break;
+      case OBJECT_PATH:
+        key = _message.getPath();
+        break;
+      case INTERFACE:
+        key = _message.getInterface();
+        break;
+      default:
+        key = null;
+        break;
+    }
+    return null == key ? "" : key;
+  }
+}
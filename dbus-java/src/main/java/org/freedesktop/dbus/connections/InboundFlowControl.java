@@ -0,0 +1,67 @@
+package org.freedesktop.dbus.connections;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Stops the {@link IncomingMessageThread} from reading while too many received messages wait for dispatch.
+ * <p>
+ * When the number of queued method calls and signal handlers reaches the high watermark, the reader
+ * pauses until it dropped to the low watermark. Meanwhile the socket buffers fill up and the
+ * sender (the bus or the peer) is slowed down. Reply callbacks are not counted, they only result
+ * from calls made by this connection.
+ * </p>
+ */
+@Slf4j
+class InboundFlowControl {
+  private final AtomicInteger pending = new AtomicInteger();
+  private final Object lock = new Object();
+
+  private volatile int highWatermark = Integer.MAX_VALUE;
+  private volatile int lowWatermark = Integer.MAX_VALUE - 1;
+  private volatile boolean paused;
+
+  void configure(int _highWatermark, int _lowWatermark) {
+    synchronized (lock) {
+      highWatermark = _highWatermark;
+      lowWatermark = _lowWatermark;
+      lock.notifyAll();
+    }
+  }
+
+  void taskQueued() {
+    pending.incrementAndGet();
+  }
+
+  void taskStarted() {
+    if (pending.decrementAndGet() <= lowWatermark && paused) {
+      synchronized (lock) {
+        lock.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Called by the reader before reading the next message, waits while the high watermark is exceeded.
+   *
+   * @throws InterruptedException when the reader is interrupted (terminated) while waiting
+   */
+  void awaitCapacity() throws InterruptedException {
+    if (pending.get() < highWatermark) {
+      return;
+    }
+    synchronized (lock) {
+      paused = true;
+      try {
+        LOGGER.debug("{} messages waiting for dispatch, pausing reader", pending.get());
+        while (pending.get() > lowWatermark) {
+          lock.wait();
+        }
+        LOGGER.debug("Resuming reader with {} messages waiting for dispatch", pending.get());
+      } finally {
+        paused = false;
+      }
+    }
+  }
+}
@@ -34,6 +34,8 @@ public class IncomingMessageThread extends Thread {
 
         // read from the wire
       try {
+        // do not read further messages while too many are waiting for dispatch
+        connection.awaitInboundCapacity();
         // this blocks on outgoing being non-empty or a message being available.
         msg = connection.readIncoming();
         if (msg != null) {
@@ -54,6 +56,11 @@ public class IncomingMessageThread extends Thread {
         if (!terminate) { // only log exceptions if the connection was not intended to be closed
           LOGGER.error("Exception in connection thread.", _ex);
         }
+      } catch (InterruptedException _ex) {
+        LOGGER.trace("Reader thread interrupted while waiting for dispatch", _ex);
+      } catch (RuntimeException _ex) {
+        // a single message must not stop reading from the connection
+        LOGGER.error("Unexpected exception while handling incoming message.", _ex);
       }
     }
     LOGGER.trace("Reader thread terminated");
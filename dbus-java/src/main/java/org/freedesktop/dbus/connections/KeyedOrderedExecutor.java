@@ -0,0 +1,96 @@
+package org.freedesktop.dbus.connections;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Runs tasks with the same key one after another in FIFO order, tasks with different keys in parallel.
+ * <p>
+ * Each key with pending tasks has a queue which is drained by one task on the underlying executor at a time.
+ * After each task the drain is resubmitted, so busy keys do not starve others. The queue of a key is
+ * removed as soon as it is empty, all changes of a queue happen atomically in the key map.
+ * Once the executor is shut down, the remaining tasks of a key are run by the thread which ran its last task.
+ * </p>
+ */
+@Slf4j
+class KeyedOrderedExecutor {
+  private final Executor executor;
+  private final ConcurrentMap<String, Queue<Runnable>> queues = new ConcurrentHashMap<>();
+
+  KeyedOrderedExecutor(Executor _executor) {
+    executor = _executor;
+  }
+
+  /**
+   * Run the task after all tasks previously submitted with the same key.
+   *
+   * @param _key key
+   * @param _task task
+   */
+  void execute(String _key, Runnable _task) {
+    Queue<Runnable> created = new ConcurrentLinkedQueue<>();
+    Queue<Runnable> queue = queues.compute(_key, (k, v) -> {
+      Queue<Runnable> q = null == v ? created : v;
+      q.add(_task);
+      return q;
+    });
+    // the queue is new, so nothing drains it yet
+    if (queue == created) {
+      try {
+        executor.execute(() -> drain(_key, queue));
+      } catch (RejectedExecutionException _ex) {
+        queues.remove(_key, queue);
+        throw _ex;
+      }
+    }
+  }
+
+  private void drain(String _key, Queue<Runnable> _queue) {
+    try {
+      _queue.peek().run();
+    } catch (RuntimeException _ex) {
+      LOGGER.warn("Exception while running task for key {}", _key, _ex);
+    } finally {
+      Queue<Runnable> next = complete(_key);
+      if (null != next) {
+        try {
+          executor.execute(() -> drain(_key, next));
+        } catch (RejectedExecutionException _ex) {
+          // the executor is shut down, run the remaining tasks like it runs its own queued tasks
+          LOGGER.debug("Executor rejected remaining tasks for key {}, running them now", _key, _ex);
+          drainInline(_key, next);
+        }
+      }
+    }
+  }
+
+  private void drainInline(String _key, Queue<Runnable> _queue) {
+    Queue<Runnable> queue = _queue;
+    while (null != queue) {
+      try {
+        queue.peek().run();
+      } catch (RuntimeException _ex) {
+        LOGGER.warn("Exception while running task for key {}", _key, _ex);
+      }
+      queue = complete(_key);
+    }
+  }
+
+  /**
+   * Remove the completed task, drop the queue if it is empty.
+   *
+   * @return queue of the key, null if no tasks are left
+   */
+  private Queue<Runnable> complete(String _key) {
+    return queues.compute(_key, (k, v) -> {
+      v.poll();
+      return v.isEmpty() ? null : v;
+    });
+  }
+}
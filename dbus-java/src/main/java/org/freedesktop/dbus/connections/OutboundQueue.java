@@ -0,0 +1,287 @@
+package org.freedesktop.dbus.connections;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.freedesktop.dbus.exceptions.OutboundQueueFullException;
+import org.freedesktop.dbus.messages.DBusSignal;
+import org.freedesktop.dbus.messages.Message;
+
+/**
+ * Queue of the messages waiting for the {@link SenderThread}, optionally bounded.
+ * <p>
+ * When the queue is full, the {@link OutboundQueuePolicy} decides whether the sender waits,
+ * the message is rejected or signals are discarded. Unbounded by default.
+ * </p>
+ */
+class OutboundQueue {
+  private static final String PROPERTIES_INTERFACE = "org.freedesktop.DBus.Properties";
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition notEmpty = lock.newCondition();
+  private final Condition notFull = lock.newCondition();
+
+  private final ArrayDeque<Message> messages = new ArrayDeque<>();
+  /* queued signals by interface, name, path and destination, only used with CONFLATE */
+  private final Map<ConflationKey, Message> conflatable = new HashMap<>();
+
+  private int capacity = Integer.MAX_VALUE;
+  private OutboundQueuePolicy policy = OutboundQueuePolicy.BLOCK;
+  private boolean closed;
+
+  private long rejected;
+  private long dropped;
+  private long conflated;
+
+  void configure(int _capacity, OutboundQueuePolicy _policy) {
+    lock.lock();
+    try {
+      capacity = _capacity;
+      policy = _policy;
+      if (OutboundQueuePolicy.CONFLATE != _policy) {
+        conflatable.clear();
+      }
+      notFull.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Queue a message, applying the policy if the queue is full.
+   *
+   * @param _message message
+   * @return false if the queue is closed and the message will never be sent
+   * @throws OutboundQueueFullException if the message is rejected
+   */
+  boolean add(Message _message) {
+    lock.lock();
+    try {
+      if (closed) {
+        return false;
+      }
+      ConflationKey key = null;
+      if (OutboundQueuePolicy.CONFLATE == policy && isConflatable(_message)) {
+        key = new ConflationKey(_message);
+        Message queued = conflatable.get(key);
+        if (null != queued) {
+          // the new signal supersedes the queued one, the queue does not grow
+          messages.removeFirstOccurrence(queued);
+          conflated++;
+          enqueue(_message, key);
+          return true;
+        }
+      }
+
+      while (messages.size() >= capacity && !closed) {
+        OutboundQueuePolicy current = policy;
+        if (OutboundQueuePolicy.FAIL_FAST == current) {
+          rejected++;
+          throw new OutboundQueueFullException("Outbound queue full (" + capacity + " messages)");
+        }
+        if (OutboundQueuePolicy.DROP_OLDEST_SIGNAL == current || OutboundQueuePolicy.CONFLATE == current) {
+          if (dropOldestSignal()) {
+            continue;
+          }
+          if (_message instanceof DBusSignal) {
+            // nothing older to drop, the new signal is the oldest one
+            dropped++;
+            return true;
+          }
+        }
+        try {
+          notFull.await();
+        } catch (InterruptedException _ex) {
+          Thread.currentThread().interrupt();
+          rejected++;
+          throw new OutboundQueueFullException("Interrupted while waiting for space in outbound queue");
+        }
+      }
+      if (closed) {
+        // closed while waiting for space
+        return false;
+      }
+      enqueue(_message, key);
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Queue a message regardless of capacity and policy.
+   *
+   * @param _message message
+   * @return false if the queue is closed and the message will never be sent
+   */
+  boolean addUnbounded(Message _message) {
+    lock.lock();
+    try {
+      if (closed) {
+        return false;
+      }
+      messages.addLast(_message);
+      notEmpty.signal();
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  Message take() throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      while (messages.isEmpty()) {
+        notEmpty.await();
+      }
+      return dequeue();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  Message poll(long _timeout, TimeUnit _unit) throws InterruptedException {
+    long nanos = _unit.toNanos(_timeout);
+    lock.lockInterruptibly();
+    try {
+      while (messages.isEmpty()) {
+        if (nanos <= 0) {
+          return null;
+        }
+        nanos = notEmpty.awaitNanos(nanos);
+      }
+      return dequeue();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  void drainTo(List<Message> _target, int _maxMessages) {
+    lock.lock();
+    try {
+      for (int i = 0; i < _maxMessages && !messages.isEmpty(); i++) {
+        _target.add(dequeue());
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  boolean isEmpty() {
+    lock.lock();
+    try {
+      return messages.isEmpty();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Stop accepting messages, senders waiting for space are released. Messages queued so far stay queued.
+   *
+   * @param _wakeup last message to queue, wakes up the consumer
+   */
+  void close(Message _wakeup) {
+    lock.lock();
+    try {
+      if (!closed) {
+        closed = true;
+        messages.addLast(_wakeup);
+        notEmpty.signal();
+      }
+      notFull.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  OutboundQueueStats getStats() {
+    lock.lock();
+    try {
+      return new OutboundQueueStats(policy, capacity, messages.size(), rejected, dropped, conflated);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void enqueue(Message _message, ConflationKey _key) {
+    messages.addLast(_message);
+    if (null != _key) {
+      conflatable.put(_key, _message);
+    }
+    notEmpty.signal();
+  }
+
+  private Message dequeue() {
+    Message message = messages.pollFirst();
+    forget(message);
+    notFull.signal();
+    return message;
+  }
+
+  private boolean dropOldestSignal() {
+    for (Iterator<Message> it = messages.iterator(); it.hasNext();) {
+      Message message = it.next();
+      if (message instanceof DBusSignal) {
+        it.remove();
+        forget(message);
+        dropped++;
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void forget(Message _message) {
+    if (!conflatable.isEmpty() && isConflatable(_message)) {
+      conflatable.remove(new ConflationKey(_message), _message);
+    }
+  }
+
+  /**
+   * PropertiesChanged signals only carry the properties which changed, replacing one would lose changes.
+   */
+  private static boolean isConflatable(Message _message) {
+    return _message instanceof DBusSignal
+        && !("PropertiesChanged".equals(_message.getName()) && PROPERTIES_INTERFACE.equals(_message.getInterface()));
+  }
+
+  /**
+   * Signals with equal keys replace each other.
+   */
+  private static final class ConflationKey {
+    private final String iface;
+    private final String member;
+    private final String path;
+    private final String destination;
+
+    ConflationKey(Message _message) {
+      iface = _message.getInterface();
+      member = _message.getName();
+      path = _message.getPath();
+      destination = _message.getDestination();
+    }
+
+    @Override
+    public boolean equals(Object _obj) {
+      if (!(_obj instanceof ConflationKey)) {
+        return false;
+      }
+      ConflationKey other = (ConflationKey) _obj;
+      return Objects.equals(iface, other.iface) && Objects.equals(member, other.member)
+          && Objects.equals(path, other.path) && Objects.equals(destination, other.destination);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(iface, member, path, destination);
+    }
+  }
+}
@@ -0,0 +1,24 @@
+package org.freedesktop.dbus.connections;
+
+/**
+ * What happens when a message is sent while the outbound queue of a connection is full.
+ *
+ * @see AbstractConnection#setOutboundQueue(int, OutboundQueuePolicy)
+ */
+public enum OutboundQueuePolicy {
+  /** The sending thread waits until there is space in the queue (default). */
+  BLOCK,
+  /** The message is rejected with an {@link org.freedesktop.dbus.exceptions.OutboundQueueFullException}. */
+  FAIL_FAST,
+  /**
+   * The oldest queued signal is discarded to make room. If no signal is queued, a new signal is discarded
+   * and other messages (method calls, replies, errors) wait for space like with {@link #BLOCK}.
+   */
+  DROP_OLDEST_SIGNAL,
+  /**
+   * A signal replaces a queued, not yet sent signal with the same interface, name, object path and destination,
+   * so only the latest one is sent. PropertiesChanged signals are never replaced, as each one only carries
+   * the properties which changed. If the queue is still full, this behaves like {@link #DROP_OLDEST_SIGNAL}.
+   */
+  CONFLATE
+}
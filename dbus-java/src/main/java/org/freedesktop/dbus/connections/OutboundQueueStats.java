@@ -0,0 +1,74 @@
+package org.freedesktop.dbus.connections;
+
+/**
+ * Snapshot of the outbound queue of a connection.
+ */
+public final class OutboundQueueStats {
+  private final OutboundQueuePolicy policy;
+  private final int capacity;
+  private final int queueDepth;
+  private final long rejectedMessages;
+  private final long droppedSignals;
+  private final long conflatedSignals;
+
+  OutboundQueueStats(OutboundQueuePolicy _policy, int _capacity, int _queueDepth, long _rejectedMessages,
+      long _droppedSignals, long _conflatedSignals) {
+    policy = _policy;
+    capacity = _capacity;
+    queueDepth = _queueDepth;
+    rejectedMessages = _rejectedMessages;
+    droppedSignals = _droppedSignals;
+    conflatedSignals = _conflatedSignals;
+  }
+
+  public OutboundQueuePolicy getPolicy() {
+    return policy;
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Number of messages waiting to be sent.
+   *
+   * @return queued messages
+   */
+  public int getQueueDepth() {
+    return queueDepth;
+  }
+
+  /**
+   * Number of messages rejected with an exception because the queue was full.
+   *
+   * @return rejected messages
+   */
+  public long getRejectedMessages() {
+    return rejectedMessages;
+  }
+
+  /**
+   * Number of signals discarded because the queue was full.
+   *
+   * @return dropped signals
+   */
+  public long getDroppedSignals() {
+    return droppedSignals;
+  }
+
+  /**
+   * Number of queued signals replaced by a newer signal.
+   *
+   * @return conflated signals
+   */
+  public long getConflatedSignals() {
+    return conflatedSignals;
+  }
+
+  @Override
+  public String toString() {
+    return "OutboundQueueStats[policy=" + policy + ", capacity=" + capacity + ", queueDepth=" + queueDepth
+        + ", rejectedMessages=" + rejectedMessages + ", droppedSignals=" + droppedSignals
+        + ", conflatedSignals=" + conflatedSignals + "]";
+  }
+}
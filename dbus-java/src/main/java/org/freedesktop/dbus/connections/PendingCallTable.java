@@ -0,0 +1,277 @@
+package org.freedesktop.dbus.connections;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.freedesktop.dbus.interfaces.CallbackHandler;
+import org.freedesktop.dbus.messages.MethodCall;
+
+/**
+ * Method calls of a connection waiting for a reply, keyed by their serial.
+ * <p>
+ * Each entry holds the call together with its callback and reply deadline, so a reply resolves
+ * everything with a single lookup. Serials are kept as primitive longs in open addressing tables
+ * (linear probing), split into stripes with their own lock so sending and receiving threads
+ * rarely contend. Serial 0 is never used by D-Bus and marks empty slots.
+ * </p>
+ */
+public class PendingCallTable {
+  /* power of 2 */
+  private static final int STRIPES = 16;
+
+  private final Stripe[] stripes = new Stripe[STRIPES];
+
+  PendingCallTable() {
+    for (int i = 0; i < STRIPES; i++) {
+      stripes[i] = new Stripe();
+    }
+  }
+
+  /**
+   * Add a pending call, replacing any call with the same serial.
+   *
+   * @param _pending pending call
+   */
+  void put(PendingCall _pending) {
+    long serial = _pending.getCall().getSerial();
+    PendingCall previous = stripe(serial).put(serial, _pending);
+    if (null != previous) {
+      previous.cancelTimeout();
+    }
+  }
+
+  /**
+   * Returns the pending call with the given serial.
+   *
+   * @param _serial serial
+   * @return pending call or null
+   */
+  public PendingCall get(long _serial) {
+    if (0 == _serial) {
+      return null;
+    }
+    return stripe(_serial).get(_serial);
+  }
+
+  /**
+   * Removes the pending call with the given serial (e.g. because its reply was received).
+   *
+   * @param _serial serial
+   * @return removed call or null
+   */
+  public PendingCall remove(long _serial) {
+    if (0 == _serial) {
+      return null;
+    }
+    PendingCall removed = stripe(_serial).remove(_serial, null);
+    if (null != removed) {
+      removed.cancelTimeout();
+    }
+    return removed;
+  }
+
+  /**
+   * Removes the pending call with the given serial, if it belongs to the given call.
+   *
+   * @param _serial serial
+   * @param _call call
+   * @return removed call or null
+   */
+  public PendingCall remove(long _serial, MethodCall _call) {
+    if (0 == _serial) {
+      return null;
+    }
+    PendingCall removed = stripe(_serial).remove(_serial, _call);
+    if (null != removed) {
+      removed.cancelTimeout();
+    }
+    return removed;
+  }
+
+  /**
+   * Removes all pending calls.
+   *
+   * @return removed calls
+   */
+  public List<PendingCall> removeAll() {
+    List<PendingCall> removed = new ArrayList<>();
+    for (Stripe stripe : stripes) {
+      stripe.removeAll(removed);
+    }
+    for (PendingCall pending : removed) {
+      pending.cancelTimeout();
+    }
+    return removed;
+  }
+
+  public int size() {
+    int size = 0;
+    for (Stripe stripe : stripes) {
+      size += stripe.size();
+    }
+    return size;
+  }
+
+  private Stripe stripe(long _serial) {
+    return stripes[(int) (_serial & (STRIPES - 1))];
+  }
+
+  /**
+   * A call waiting for its reply.
+   */
+  public static final class PendingCall {
+    private final MethodCall call;
+    private final CallbackHandler<?> callback;
+    private final Method method;
+    private final ReplyTimeoutManager.Timeout timeout;
+
+    PendingCall(MethodCall _call, CallbackHandler<?> _callback, Method _method, ReplyTimeoutManager.Timeout _timeout) {
+      call = _call;
+      callback = _callback;
+      method = _method;
+      timeout = _timeout;
+    }
+
+    public MethodCall getCall() {
+      return call;
+    }
+
+    /**
+     * Callback to run when the reply arrives.
+     *
+     * @return callback, null if the reply is not handled by a callback
+     */
+    public CallbackHandler<?> getCallback() {
+      return callback;
+    }
+
+    /**
+     * Interface method which was called, used to convert the reply for the callback.
+     *
+     * @return method, null if there is no callback
+     */
+    public Method getMethod() {
+      return method;
+    }
+
+    void cancelTimeout() {
+      if (null != timeout) {
+        timeout.cancel();
+      }
+    }
+  }
+
+  /**
+   * Open addressing table with linear probing, using backward shift deletion (no tombstones).
+   */
+  private static final class Stripe {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private PendingCall[] values = new PendingCall[INITIAL_CAPACITY];
+    private int size;
+
+    synchronized PendingCall get(long _key) {
+      int mask = keys.length - 1;
+      for (int i = index(_key, mask); keys[i] != 0; i = (i + 1) & mask) {
+        if (keys[i] == _key) {
+          return values[i];
+        }
+      }
+      return null;
+    }
+
+    synchronized PendingCall put(long _key, PendingCall _value) {
+      int mask = keys.length - 1;
+      int i = index(_key, mask);
+      for (; keys[i] != 0; i = (i + 1) & mask) {
+        if (keys[i] == _key) {
+          PendingCall previous = values[i];
+          values[i] = _value;
+          return previous;
+        }
+      }
+      keys[i] = _key;
+      values[i] = _value;
+      // keep the load factor at or below 0.5
+      if (++size * 2 > keys.length) {
+        resize();
+      }
+      return null;
+    }
+
+    /**
+     * Removes the entry with the given key, if _call is given only if the entry belongs to this call.
+     */
+    synchronized PendingCall remove(long _key, MethodCall _call) {
+      int mask = keys.length - 1;
+      int i = index(_key, mask);
+      for (; keys[i] != _key; i = (i + 1) & mask) {
+        if (keys[i] == 0) {
+          return null;
+        }
+      }
+      PendingCall removed = values[i];
+      if (null != _call && removed.getCall() != _call) {
+        return null;
+      }
+
+      // shift following entries of the same probe sequence back into the gap
+      int gap = i;
+      for (int j = (i + 1) & mask; keys[j] != 0; j = (j + 1) & mask) {
+        int home = index(keys[j], mask);
+        // move the entry if its home slot is not between the gap and its current slot (cyclic)
+        if (((j - home) & mask) >= ((j - gap) & mask)) {
+          keys[gap] = keys[j];
+          values[gap] = values[j];
+          gap = j;
+        }
+      }
+      keys[gap] = 0;
+      values[gap] = null;
+      size--;
+      return removed;
+    }
+
+    synchronized void removeAll(List<PendingCall> _removed) {
+      for (PendingCall value : values) {
+        if (null != value) {
+          _removed.add(value);
+        }
+      }
+      Arrays.fill(keys, 0);
+      Arrays.fill(values, null);
+      size = 0;
+    }
+
+    synchronized int size() {
+      return size;
+    }
+
+    private void resize() {
+      long[] oldKeys = keys;
+      PendingCall[] oldValues = values;
+      keys = new long[oldKeys.length * 2];
+      values = new PendingCall[oldKeys.length * 2];
+      int mask = keys.length - 1;
+      for (int j = 0; j < oldKeys.length; j++) {
+        if (oldKeys[j] != 0) {
+          int i = index(oldKeys[j], mask);
+          while (keys[i] != 0) {
+            i = (i + 1) & mask;
+          }
+          keys[i] = oldKeys[j];
+          values[i] = oldValues[j];
+        }
+      }
+    }
+
+    private static int index(long _key, int _mask) {
+      // the lowest bits select the stripe, spread the others (fibonacci hashing)
+      long h = (_key >>> 4) * 0x9E3779B97F4A7C15L;
+      return (int) (h >>> 32) & _mask;
+    }
+  }
+}
@@ -0,0 +1,216 @@
+package org.freedesktop.dbus.connections;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import lombok.extern.slf4j.Slf4j;
+import org.freedesktop.dbus.messages.MethodCall;
+
+/**
+ * Tracks the reply deadlines of the pending method calls of a connection using a hashed timer wheel.
+ * <p>
+ * Scheduling and cancelling a deadline is O(1). A single thread advances the wheel every
+ * {@value #TICK_MILLIS} ms and hands all calls whose deadline passed to the connection, which
+ * completes them with a NoReply error. Deadlines are therefore rounded up to the next tick.
+ * Cancelled deadlines are unlinked from their bucket on the next tick.
+ * </p>
+ * <p>
+ * Timeouts too large to be represented in nanoseconds (e.g. {@link Long#MAX_VALUE}) never expire.
+ * </p>
+ */
+@Slf4j
+class ReplyTimeoutManager {
+  static final long TICK_MILLIS = 100;
+  private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(TICK_MILLIS);
+  /* power of 2, with 100 ms ticks one round of the wheel takes 51.2 s */
+  private static final int WHEEL_SIZE = 512;
+  private static final int MASK = WHEEL_SIZE - 1;
+
+  private final AbstractConnection connection;
+
+  /* deadlines are added to and removed from the wheel by the timer thread, buckets are only accessed by this thread */
+  private final Timeout[] wheel = new Timeout[WHEEL_SIZE];
+  private final Queue<Timeout> newTimeouts = new ConcurrentLinkedQueue<>();
+  private final Queue<Timeout> cancelledTimeouts = new ConcurrentLinkedQueue<>();
+
+  private final long startNanos = System.nanoTime();
+  private long tick;
+
+  private Thread timerThread;
+  private volatile boolean terminate;
+
+  ReplyTimeoutManager(AbstractConnection _connection) {
+    connection = _connection;
+  }
+
+  /**
+   * Start tracking the reply deadline of the given call.
+   *
+   * @param _call call waiting for a reply
+   * @param _timeout time to wait for the reply in ms
+   * @return handle to cancel the deadline when the reply arrives
+   */
+  Timeout schedule(MethodCall _call, long _timeout) {
+    long elapsed = System.nanoTime() - startNanos;
+    long nanos = TimeUnit.MILLISECONDS.toNanos(_timeout);
+    if (nanos > Long.MAX_VALUE - elapsed - TICK_NANOS) {
+      // the deadline is not representable, the call waits forever
+      return new Timeout(null, 0);
+    }
+    Timeout t = new Timeout(_call, elapsed + nanos);
+    if (!terminate) {
+      newTimeouts.add(t);
+      ensureStarted();
+    }
+    return t;
+  }
+
+  void terminate() {
+    terminate = true;
+    newTimeouts.clear();
+    cancelledTimeouts.clear();
+    Thread thread;
+    synchronized (this) {
+      thread = timerThread;
+    }
+    if (null != thread) {
+      LockSupport.unpark(thread);
+    }
+  }
+
+  private synchronized void ensureStarted() {
+    if (null == timerThread && !terminate) {
+      timerThread = new Thread(this::run, "DBus Reply Timeout Thread");
+      timerThread.setDaemon(true);
+      timerThread.start();
+    }
+  }
+
+  private void run() {
+    List<MethodCall> expired = new ArrayList<>();
+    while (!terminate) {
+      long sleep = startNanos + (tick + 1) * TICK_NANOS - System.nanoTime();
+      if (sleep > 0) {
+        LockSupport.parkNanos(this, sleep);
+        continue;
+      }
+      transferNewTimeouts();
+      removeCancelledTimeouts();
+      expireBucket((int) (tick & MASK), expired);
+      tick++;
+
+      for (MethodCall call : expired) {
+        try {
+          connection.handleReplyTimeout(call);
+        } catch (RuntimeException _ex) {
+          LOGGER.warn("Error while handling reply timeout of {}", call, _ex);
+        }
+      }
+      expired.clear();
+    }
+    Arrays.fill(wheel, null);
+    cancelledTimeouts.clear();
+    LOGGER.debug("Reply timeout thread terminated");
+  }
+
+  private void transferNewTimeouts() {
+    Timeout t;
+    while ((t = newTimeouts.poll()) != null) {
+      if (null == t.call) {
+        continue;
+      }
+      long deadlineTick = Math.max(tick, (t.deadline + TICK_NANOS - 1) / TICK_NANOS);
+      t.rounds = (deadlineTick - tick) / WHEEL_SIZE;
+      link(t, (int) (deadlineTick & MASK));
+    }
+  }
+
+  private void removeCancelledTimeouts() {
+    Timeout t;
+    while ((t = cancelledTimeouts.poll()) != null) {
+      unlink(t);
+    }
+  }
+
+  private void expireBucket(int _bucket, List<MethodCall> _expired) {
+    Timeout t = wheel[_bucket];
+    while (null != t) {
+      Timeout next = t.next;
+      MethodCall call = t.call;
+      if (null == call) {
+        unlink(t);
+      } else if (t.rounds > 0) {
+        t.rounds--;
+      } else {
+        t.call = null;
+        unlink(t);
+        _expired.add(call);
+      }
+      t = next;
+    }
+  }
+
+  private void link(Timeout _t, int _bucket) {
+    Timeout head = wheel[_bucket];
+    _t.bucket = _bucket;
+    _t.next = head;
+    if (null != head) {
+      head.prev = _t;
+    }
+    wheel[_bucket] = _t;
+  }
+
+  private void unlink(Timeout _t) {
+    if (_t.bucket < 0) {
+      return;
+    }
+    if (null == _t.prev) {
+      wheel[_t.bucket] = _t.next;
+    } else {
+      _t.prev.next = _t.next;
+    }
+    if (null != _t.next) {
+      _t.next.prev = _t.prev;
+    }
+    _t.prev = null;
+    _t.next = null;
+    _t.bucket = -1;
+  }
+
+  /**
+   * Reply deadline of a call.
+   */
+  final class Timeout {
+    private volatile MethodCall call;
+    /* nanoseconds since the start of the manager */
+    private final long deadline;
+    /* accessed by the timer thread only */
+    private long rounds;
+    private int bucket = -1;
+    private Timeout prev;
+    private Timeout next;
+
+    Timeout(MethodCall _call, long _deadline) {
+      call = _call;
+      deadline = _deadline;
+    }
+
+    /**
+     * Stop tracking the deadline (the call has been answered).
+     * The entry is removed from its bucket by the timer thread on its next tick.
+     */
+    void cancel() {
+      if (null != call) {
+        call = null;
+        if (!terminate) {
+          cancelledTimeouts.add(this);
+        }
+      }
+    }
+  }
+}
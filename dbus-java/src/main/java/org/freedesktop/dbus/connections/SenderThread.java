@@ -1,64 +1,169 @@
 package org.freedesktop.dbus.connections;
 
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import org.freedesktop.dbus.messages.Message;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-@SuppressWarnings("unused")
+/**
+ * Thread writing all outgoing messages of a connection.
+ * <p>
+ * By default every message is written (and flushed) on its own.
+ * When coalescing is enabled (max batch size &gt; 1), all messages queued at the time the
+ * thread wakes up are written as one batch and flushed once. If more than one message was
+ * waiting (burst), the thread waits up to the latency budget for further messages to fill
+ * the batch. A single message arriving on an empty queue is always written immediately,
+ * so interactive calls are never delayed.
+ * </p>
+ * <p>
+ * The queue of outgoing messages can be bounded, see {@link OutboundQueuePolicy}.
+ * </p>
+ */
 public class SenderThread extends Thread {
+  /**
+   * Marker to wake up the thread on termination.
+   * Interrupting is not used as it would close an interruptible channel while writing.
+   */
+  private static final Message WAKEUP = new Message() { };
+
   private final Logger logger = LoggerFactory.getLogger(getClass());
 
-  private boolean terminate;
+  private volatile boolean terminate;
+
+  private volatile int maxBatchSize = 1;
+  private volatile long latencyBudgetNanos;
 
-  private final LinkedBlockingQueue<Message> outgoingQueue = new LinkedBlockingQueue<>();
+  private final OutboundQueue outgoingQueue = new OutboundQueue();
 
   private final AbstractConnection abstractConnection;
 
 
   SenderThread(AbstractConnection _abstractConnection) {
     abstractConnection = _abstractConnection;
-    setName("DBUS Sender Thread");
+    setName("DBus Sender Thread");
   }
 
-  @SuppressWarnings("unused")
   public void terminate() {
     terminate = true;
-    interrupt();
+    // from now on messages are refused instead of being queued after the final flush
+    outgoingQueue.close(WAKEUP);
+  }
+
+  public boolean isTerminated() {
+    return terminate;
+  }
+
+  /**
+   * Queue a message for sending.
+   *
+   * @param _message message to send
+   * @param _bounded false to queue the message regardless of capacity and policy, used by threads
+   *          which must never wait or fail (e.g. the reader thread sending error replies)
+   * @return false if the thread was terminated and the message will never be sent
+   * @throws org.freedesktop.dbus.exceptions.OutboundQueueFullException if the queue is full and rejects the message
+   */
+  boolean queueMessage(Message _message, boolean _bounded) {
+    // this thread empties the queue, it must never wait for space
+    if (!_bounded || Thread.currentThread() == this) {
+      return outgoingQueue.addUnbounded(_message);
+    }
+    return outgoingQueue.add(_message);
   }
 
-  @SuppressWarnings("unused")
-  public LinkedBlockingQueue<Message> getOutgoingQueue() {
-    return outgoingQueue;
+  void setOutboundQueue(int _capacity, OutboundQueuePolicy _policy) {
+    if (_capacity < 1) {
+      throw new IllegalArgumentException("Capacity must be at least 1");
+    }
+    outgoingQueue.configure(_capacity, _policy);
+  }
+
+  OutboundQueueStats getOutboundQueueStats() {
+    return outgoingQueue.getStats();
+  }
+
+  /**
+   * Configure coalescing of outgoing messages.
+   *
+   * @param _maxBatchSize maximum number of messages written at once, 1 disables coalescing
+   * @param _latencyBudget maximum time to wait for further messages during a burst, 0 to never wait
+   * @param _unit unit of _latencyBudget
+   */
+  void setCoalescing(int _maxBatchSize, long _latencyBudget, TimeUnit _unit) {
+    if (_maxBatchSize < 1) {
+      throw new IllegalArgumentException("Batch size must be at least 1");
+    }
+    if (_latencyBudget < 0) {
+      throw new IllegalArgumentException("Latency budget must not be negative");
+    }
+    maxBatchSize = _maxBatchSize;
+    latencyBudgetNanos = _unit.toNanos(_latencyBudget);
   }
 
   @Override
   public void run() {
-    Message m;
+    List<Message> batch = new ArrayList<>();
 
     logger.trace("Monitoring outbound queue");
     // block on the outbound queue and send from it
     while (!terminate) {
       try {
-        m = outgoingQueue.take();
-        abstractConnection.sendMessage(m);
+        batch.add(outgoingQueue.take());
+        collectBatch(batch);
       } catch (InterruptedException _ex) {
-        if (!terminate) { // if terminate is true, shutdown was requested, do not log that
-          logger.warn("Interrupted while waiting for a message to send", _ex);
-        }
+        logger.warn("Interrupted while waiting for a message to send", _ex);
       }
+      sendBatch(batch);
     }
 
     logger.debug("Flushing outbound queue and quitting");
     // flush the outbound queue before disconnect.
     while (!outgoingQueue.isEmpty()) {
-      Message poll = outgoingQueue.poll();
-      if (poll != null) {
-        abstractConnection.sendMessage(outgoingQueue.poll());
-      } else {
+      outgoingQueue.drainTo(batch, maxBatchSize);
+      sendBatch(batch);
+    }
+  }
+
+  private void sendBatch(List<Message> _batch) {
+    _batch.removeIf(m -> m == WAKEUP);
+    if (!_batch.isEmpty()) {
+      abstractConnection.sendMessagesInternally(_batch);
+      _batch.clear();
+    }
+  }
+
+  /**
+   * Add further queued messages to the given batch, respecting batch size and latency budget.
+   *
+   * @param _batch batch containing at least one message
+   * @throws InterruptedException when interrupted while waiting for more messages
+   */
+  private void collectBatch(List<Message> _batch) throws InterruptedException {
+    int max = maxBatchSize;
+    if (max <= 1) {
+      return;
+    }
+    outgoingQueue.drainTo(_batch, max - _batch.size());
+
+    long budget = latencyBudgetNanos;
+    if (_batch.size() == 1 || budget <= 0) {
+      return;
+    }
+
+    long deadline = System.nanoTime() + budget;
+    while (_batch.size() < max && !terminate) {
+      long remaining = deadline - System.nanoTime();
+      if (remaining <= 0) {
+        break;
+      }
+      Message next = outgoingQueue.poll(remaining, TimeUnit.NANOSECONDS);
+      if (next == null) {
         break;
       }
+      _batch.add(next);
+      outgoingQueue.drainTo(_batch, max - _batch.size());
     }
   }
 }
@@ -0,0 +1,175 @@
+package org.freedesktop.dbus.connections;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.freedesktop.dbus.DBusMatchRule;
+import org.freedesktop.dbus.SignalTuple;
+
+/**
+ * Signal handlers of a connection, indexed by the match rule they were registered with.
+ * <p>
+ * Registrations are compiled into an immutable tree (interface &rarr; member &rarr; path &rarr; sender)
+ * which is replaced on every change (copy-on-write). Each level has an entry per value and a wildcard
+ * entry for rules not restricting this field, so finding the handlers of a signal is a single walk
+ * without locking. The walk does not allocate unless handlers of several rules match the signal.
+ * </p>
+ *
+ * @param <H> handler type
+ */
+public class SignalHandlerIndex<H> {
+  private static final int LEVELS = 4;
+
+  /* registrations in insertion order, only accessed while holding the lock of this object */
+  private final Map<SignalTuple, List<H>> handlers = new LinkedHashMap<>();
+
+  private volatile Node<H> root;
+
+  public SignalHandlerIndex() {
+  }
+
+  /**
+   * Add a handler for signals matching the given rule.
+   *
+   * @param _rule match rule
+   * @param _handler handler
+   * @return true if this is the first handler of the rule
+   */
+  public synchronized boolean add(DBusMatchRule _rule, H _handler) {
+    SignalTuple key = toKey(_rule);
+    List<H> list = handlers.get(key);
+    boolean first = null == list;
+    list = first ? new ArrayList<>() : new ArrayList<>(list);
+    list.add(_handler);
+    handlers.put(key, Collections.unmodifiableList(list));
+    rebuild();
+    return first;
+  }
+
+  /**
+   * Remove a handler added for the given rule.
+   *
+   * @param _rule match rule
+   * @param _handler handler
+   * @return true if the rule has no handlers left
+   */
+  public synchronized boolean remove(DBusMatchRule _rule, H _handler) {
+    SignalTuple key = toKey(_rule);
+    List<H> list = handlers.get(key);
+    if (null == list) {
+      return false;
+    }
+    list = new ArrayList<>(list);
+    list.remove(_handler);
+    if (list.isEmpty()) {
+      handlers.remove(key);
+    } else {
+      handlers.put(key, Collections.unmodifiableList(list));
+    }
+    rebuild();
+    return list.isEmpty();
+  }
+
+  /**
+   * Returns the handlers of all rules matching a signal with the given fields.
+   *
+   * @param _interface interface of the signal
+   * @param _member name of the signal
+   * @param _path object path of the signal
+   * @param _sender sender of the signal, may be null
+   * @return snapshot of the handlers which must not be modified, never null
+   */
+  public List<H> find(String _interface, String _member, String _path, String _sender) {
+    Node<H> node = root;
+    if (null == node) {
+      return Collections.emptyList();
+    }
+    return find(node, 0, _interface, _member, _path, _sender);
+  }
+
+  private List<H> find(Node<H> _node, int _level, String _interface, String _member, String _path, String _sender) {
+    if (LEVELS == _level) {
+      return _node.handlers;
+    }
+    List<H> found = Collections.emptyList();
+    String value = valueAt(_level, _interface, _member, _path, _sender);
+    if (null != value) {
+      Node<H> child = _node.children.get(value);
+      if (null != child) {
+        found = find(child, _level + 1, _interface, _member, _path, _sender);
+      }
+    }
+    if (null != _node.wildcard) {
+      found = concat(found, find(_node.wildcard, _level + 1, _interface, _member, _path, _sender));
+    }
+    return found;
+  }
+
+  private void rebuild() {
+    if (handlers.isEmpty()) {
+      root = null;
+      return;
+    }
+    Node<H> newRoot = new Node<>();
+    for (Map.Entry<SignalTuple, List<H>> e : handlers.entrySet()) {
+      SignalTuple key = e.getKey();
+      Node<H> node = newRoot;
+      for (int level = 0; level < LEVELS; level++) {
+        String value = valueAt(level, key.getType(), key.getName(), key.getObject(), key.getSource());
+        if (null == value) {
+          if (null == node.wildcard) {
+            node.wildcard = new Node<>();
+          }
+          node = node.wildcard;
+        } else {
+          node = node.children.computeIfAbsent(value, k -> new Node<>());
+        }
+      }
+      node.handlers = e.getValue();
+    }
+    // publish the completed tree, it is never modified afterwards
+    root = newRoot;
+  }
+
+  private static SignalTuple toKey(DBusMatchRule _rule) {
+    return new SignalTuple(_rule.getInterface(), _rule.getMember(), _rule.getObject(), _rule.getSource());
+  }
+
+  private static String valueAt(int _level, String _interface, String _member, String _path, String _sender) {
+    switch (_level) {
+      case 0:
+        return _interface;
+      case 1:
+        return _member;
+      case 2:
+        return _path;
+      default:
+        return _sender;
+    }
+  }
+
+  private static <H> List<H> concat(List<H> _first, List<H> _second) {
+    if (_first.isEmpty()) {
+      return _second;
+    } else if (_second.isEmpty()) {
+      return _first;
+    }
+    List<H> result = new ArrayList<>(_first.size() + _second.size());
+    result.addAll(_first);
+    result.addAll(_second);
+    return result;
+  }
+
+  /**
+   * One level of the index; nodes of the last level hold the handlers.
+   */
+  private static final class Node<H> {
+    private final Map<String, Node<H>> children = new HashMap<>();
+    private Node<H> wildcard;
+    private List<H> handlers = Collections.emptyList();
+  }
+}
@@ -0,0 +1,51 @@
+package org.freedesktop.dbus.connections;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Counts the dispatch lanes of a connection using each executor.
+ * <p>
+ * One executor may serve several lanes (e.g. the executor of an {@link org.freedesktop.dbus.spi.IWorkerExecutorProvider}),
+ * an executor owned by the connection must only be shut down once no lane uses it anymore.
+ * </p>
+ */
+final class WorkerExecutorUsage {
+  private final Map<ExecutorService, Integer> users = new IdentityHashMap<>();
+  private final Set<ExecutorService> owned = Collections.newSetFromMap(new IdentityHashMap<>());
+
+  /**
+   * Register a lane using the executor.
+   *
+   * @param _executor executor
+   * @param _own true if the connection has to shut down the executor
+   */
+  synchronized void acquire(ExecutorService _executor, boolean _own) {
+    users.merge(_executor, 1, Integer::sum);
+    if (_own) {
+      owned.add(_executor);
+    }
+  }
+
+  /**
+   * Unregister a lane which no longer uses the executor.
+   *
+   * @param _executor executor
+   * @return true if the executor is owned by the connection and no other lane uses it, it has to be shut down
+   */
+  synchronized boolean release(ExecutorService _executor) {
+    Integer count = users.get(_executor);
+    if (null == count) {
+      return false;
+    }
+    if (count > 1) {
+      users.put(_executor, count - 1);
+      return false;
+    }
+    users.remove(_executor);
+    return owned.remove(_executor);
+  }
+}
@@ -19,9 +19,9 @@ import org.freedesktop.DBus;
 import org.freedesktop.dbus.DBusMatchRule;
 import org.freedesktop.dbus.RemoteInvocationHandler;
 import org.freedesktop.dbus.RemoteObject;
-import org.freedesktop.dbus.SignalTuple;
 import org.freedesktop.dbus.connections.AbstractConnection;
 import org.freedesktop.dbus.connections.IDisconnectAction;
+import org.freedesktop.dbus.connections.PendingCallTable.PendingCall;
 import org.freedesktop.dbus.errors.Error;
 import org.freedesktop.dbus.exceptions.DBusException;
 import org.freedesktop.dbus.exceptions.DBusExecutionException;
@@ -31,7 +31,6 @@ import org.freedesktop.dbus.interfaces.DBusSigHandler;
 import org.freedesktop.dbus.interfaces.Introspectable;
 import org.freedesktop.dbus.messages.DBusSignal;
 import org.freedesktop.dbus.messages.ExportedObject;
-import org.freedesktop.dbus.messages.MethodCall;
 import org.freedesktop.dbus.types.UInt32;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -39,11 +38,8 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.lang.reflect.Proxy;
 import java.util.*;
-import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
@@ -750,21 +746,14 @@ public final class DBusConnection extends AbstractConnection {
   protected <T extends DBusSignal> void removeSigHandler(DBusMatchRule _rule, DBusSigHandler<T> _handler)
       throws DBusException {
 
-    SignalTuple key = new SignalTuple(_rule.getInterface(), _rule.getMember(), _rule.getObject(), _rule.getSource());
-    Queue<DBusSigHandler<? extends DBusSignal>> dbusSignalList = getHandledSignals().get(key);
-
-    if (null != dbusSignalList) {
-      dbusSignalList.remove(_handler);
-      if (dbusSignalList.isEmpty()) {
-        getHandledSignals().remove(key);
-        try {
-          dbus.RemoveMatch(_rule.toString());
-        } catch (NotConnected exNc) {
-          logger.debug("No connection.", exNc);
-        } catch (DBusExecutionException dbee) {
-          logger.debug("", dbee);
-          throw new DBusException(dbee);
-        }
+    if (getHandledSignals().remove(_rule, _handler)) {
+      try {
+        dbus.RemoveMatch(_rule.toString());
+      } catch (NotConnected exNc) {
+        logger.debug("No connection.", exNc);
+      } catch (DBusExecutionException dbee) {
+        logger.debug("", dbee);
+        throw new DBusException(dbee);
       }
     }
   }
@@ -838,22 +827,8 @@ public final class DBusConnection extends AbstractConnection {
     Objects.requireNonNull(_rule, "Match rule cannot be null");
     Objects.requireNonNull(_handler, "Handler cannot be null");
 
-    AtomicBoolean addMatch = new AtomicBoolean(false); // flag to perform action if this is a new signal key
-
-    SignalTuple key = new SignalTuple(_rule.getInterface(), _rule.getMember(), _rule.getObject(), _rule.getSource());
-
-    Queue<DBusSigHandler<? extends DBusSignal>> dbusSignalList =
-        getHandledSignals().computeIfAbsent(key, v -> {
-          Queue<DBusSigHandler<? extends DBusSignal>> signalList = new ConcurrentLinkedQueue<>();
-          addMatch.set(true);
-          return signalList;
-        });
-
-    // add handler to signal list
-    dbusSignalList.add(_handler);
-
     // add match rule if this rule is new
-    if (addMatch.get()) {
+    if (getHandledSignals().add(_rule, _handler)) {
       try {
         dbus.AddMatch(_rule.toString());
       } catch (DBusExecutionException dbee) {
@@ -886,7 +861,7 @@ public final class DBusConnection extends AbstractConnection {
             try {
               Error err = new Error("org.freedesktop.DBus.Local", "org.freedesktop.DBus.Local.Disconnected",
                   0, "s", "Disconnected");
-              cleanupPendingCalls(err, true);
+              cleanupPendingCalls(err);
 
               synchronized (getPendingErrorQueue()) {
                 getPendingErrorQueue().add(err);
@@ -956,25 +931,9 @@ public final class DBusConnection extends AbstractConnection {
     disconnect();
   }
 
-  private void cleanupPendingCalls(Error _err, boolean _clearPendingCalls) {
-
-    synchronized (getPendingCalls()) {
-      Iterator<Entry<Long, MethodCall>> iter = getPendingCalls().entrySet().iterator();
-      while (iter.hasNext()) {
-        Entry<Long, MethodCall> entry = iter.next();
-        if (entry.getKey() != -1) {
-          MethodCall m = entry.getValue();
-
-          iter.remove();
-
-          if (m != null) {
-            m.setReply(_err);
-          }
-        }
-      }
-      if (_clearPendingCalls) {
-        getPendingCalls().clear();
-      }
+  private void cleanupPendingCalls(Error _err) {
+    for (PendingCall pending : getPendingCalls().removeAll()) {
+      pending.getCall().setReply(_err);
     }
   }
 
@@ -983,20 +942,14 @@ public final class DBusConnection extends AbstractConnection {
    */
   @Override
   public void removeGenericSigHandler(DBusMatchRule _rule, DBusSigHandler<DBusSignal> _handler) throws DBusException {
-    SignalTuple key = new SignalTuple(_rule.getInterface(), _rule.getMember(), _rule.getObject(), _rule.getSource());
-    Queue<DBusSigHandler<DBusSignal>> genericSignalsList = getGenericHandledSignals().get(key);
-    if (null != genericSignalsList) {
-      genericSignalsList.remove(_handler);
-      if (genericSignalsList.isEmpty()) {
-        getGenericHandledSignals().remove(key);
-        try {
-          dbus.RemoveMatch(_rule.toString());
-        } catch (NotConnected exNc) {
-          logger.debug("No connection.", exNc);
-        } catch (DBusExecutionException dbee) {
-          logger.debug("", dbee);
-          throw new DBusException(dbee);
-        }
+    if (getGenericHandledSignals().remove(_rule, _handler)) {
+      try {
+        dbus.RemoveMatch(_rule.toString());
+      } catch (NotConnected exNc) {
+        logger.debug("No connection.", exNc);
+      } catch (DBusExecutionException dbee) {
+        logger.debug("", dbee);
+        throw new DBusException(dbee);
       }
     }
   }
@@ -1006,21 +959,7 @@ public final class DBusConnection extends AbstractConnection {
    */
   @Override
   public void addGenericSigHandler(DBusMatchRule _rule, DBusSigHandler<DBusSignal> _handler) throws DBusException {
-    SignalTuple key = new SignalTuple(_rule.getInterface(), _rule.getMember(), _rule.getObject(), _rule.getSource());
-
-    AtomicBoolean addMatch = new AtomicBoolean(false); // flag to perform action if this is a new signal key
-
-    Queue<DBusSigHandler<DBusSignal>> genericSignalsList =
-        getGenericHandledSignals().computeIfAbsent(key, v -> {
-          Queue<DBusSigHandler<DBusSignal>> signalsList = new ConcurrentLinkedQueue<>();
-          addMatch.set(true);
-
-          return signalsList;
-        });
-
-    genericSignalsList.add(_handler);
-
-    if (addMatch.get()) {
+    if (getGenericHandledSignals().add(_rule, _handler)) {
       try {
         dbus.AddMatch(_rule.toString());
       } catch (DBusExecutionException dbee) {
@@ -1038,7 +977,7 @@ public final class DBusConnection extends AbstractConnection {
         try {
           Error err = new Error("org.freedesktop.DBus.Local", "org.freedesktop.DBus.Local.Disconnected", 0,
               "s", "Disconnected");
-          cleanupPendingCalls(err, false);
+          cleanupPendingCalls(err);
 
           synchronized (getPendingErrorQueue()) {
             getPendingErrorQueue().add(err);
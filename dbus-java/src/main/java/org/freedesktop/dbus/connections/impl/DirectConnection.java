@@ -21,15 +21,12 @@ import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Queue;
 import java.util.Random;
-import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.freedesktop.Hexdump;
 import org.freedesktop.dbus.DBusMatchRule;
 import org.freedesktop.dbus.RemoteInvocationHandler;
 import org.freedesktop.dbus.RemoteObject;
-import org.freedesktop.dbus.SignalTuple;
 import org.freedesktop.dbus.connections.AbstractConnection;
 import org.freedesktop.dbus.connections.transports.TransportFactory;
 import org.freedesktop.dbus.exceptions.DBusException;
@@ -284,51 +281,22 @@ public class DirectConnection extends AbstractConnection {
 
     @Override
     protected <T extends DBusSignal> void removeSigHandler(DBusMatchRule rule, DBusSigHandler<T> handler) throws DBusException {
-        SignalTuple key = new SignalTuple(rule.getInterface(), rule.getMember(), rule.getObject(), rule.getSource());
-        Queue<DBusSigHandler<? extends DBusSignal>> v = getHandledSignals().get(key);
-        if (null != v) {
-            v.remove(handler);
-            if (0 == v.size()) {
-                getHandledSignals().remove(key);
-            }
-        }
+        getHandledSignals().remove(rule, handler);
     }
 
     @Override
     protected <T extends DBusSignal> void addSigHandler(DBusMatchRule rule, DBusSigHandler<T> handler) throws DBusException {
-        SignalTuple key = new SignalTuple(rule.getInterface(), rule.getMember(), rule.getObject(), rule.getSource());
-       
-        Queue<DBusSigHandler<? extends DBusSignal>> v = 
-                getHandledSignals().computeIfAbsent(key, val -> {
-                    Queue<DBusSigHandler<? extends DBusSignal>> l = new ConcurrentLinkedQueue<>();
-                    return l;
-                });
-    
-        v.add(handler);
+        getHandledSignals().add(rule, handler);
     }
 
     @Override
     protected void removeGenericSigHandler(DBusMatchRule rule, DBusSigHandler<DBusSignal> handler) throws DBusException {
-        SignalTuple key = new SignalTuple(rule.getInterface(), rule.getMember(), rule.getObject(), rule.getSource());
-        Queue<DBusSigHandler<DBusSignal>> v = getGenericHandledSignals().get(key);
-        if (null != v) {
-            v.remove(handler);
-            if (0 == v.size()) {
-                getGenericHandledSignals().remove(key);
-            }
-        }
+        getGenericHandledSignals().remove(rule, handler);
     }
 
     @Override
     protected void addGenericSigHandler(DBusMatchRule rule, DBusSigHandler<DBusSignal> handler) throws DBusException {
-        SignalTuple key = new SignalTuple(rule.getInterface(), rule.getMember(), rule.getObject(), rule.getSource());
-        Queue<DBusSigHandler<DBusSignal>> v = 
-                getGenericHandledSignals().computeIfAbsent(key, val -> {
-                    Queue<DBusSigHandler<DBusSignal>> l = new ConcurrentLinkedQueue<>();
-                    return l;
-                });
-
-        v.add(handler);
+        getGenericHandledSignals().add(rule, handler);
     }
 
     @Override
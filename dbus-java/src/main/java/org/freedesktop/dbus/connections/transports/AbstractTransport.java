@@ -5,6 +5,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.Socket;
+import java.util.List;
 import java.util.ServiceConfigurationError;
 import java.util.ServiceLoader;
 
@@ -67,6 +68,27 @@ public abstract class AbstractTransport implements Closeable {
     }
   }
 
+  /**
+   * Write several messages to the underlying socket as one batch.
+   *
+   * @param _msgs messages to write
+   * @throws IOException on write error or if output was already closed or null
+   */
+  public void writeMessages(List<Message> _msgs) throws IOException {
+    if (!fileDescriptorSupported) {
+      for (Message msg : _msgs) {
+        if (Message.ArgumentType.FILEDESCRIPTOR == msg.getType()) {
+          throw new IllegalArgumentException("File descriptors are not supported!");
+        }
+      }
+    }
+    if (outputWriter != null && !outputWriter.isClosed()) {
+      outputWriter.writeMessages(_msgs);
+    } else {
+      throw new IOException("OutputWriter already closed or null");
+    }
+  }
+
   /**
    * Read a message from the underlying socket.
    *
@@ -116,23 +138,28 @@ public abstract class AbstractTransport implements Closeable {
   /**
    * Setup message reader/writer.
    * Will look for SPI provider first, if none is found default implementation is used.
+   * The built-in {@link NioSocketProvider} is only used if no other provider was found.
    * The default implementation does not support file descriptor passing!
    *
    * @param _socket socket to use
    */
   protected void setInputOutput(Socket _socket) {
     try {
+      ISocketProvider builtIn = null;
       for (ISocketProvider provider : spiLoader) {
         logger.debug("Found ISocketProvider {}", provider);
 
-        provider.setFileDescriptorSupport(hasFileDescriptorSupport() && fileDescriptorSupported);
-        inputReader = provider.createReader(_socket);
-        outputWriter = provider.createWriter(_socket);
-        if (inputReader != null && outputWriter != null) {
-          logger.debug("Using ISocketProvider {}", provider);
+        if (provider instanceof NioSocketProvider) {
+          builtIn = provider;
+          continue;
+        }
+        if (initReaderWriter(provider, _socket)) {
           break;
         }
       }
+      if ((inputReader == null || outputWriter == null) && builtIn != null) {
+        initReaderWriter(builtIn, _socket);
+      }
     } catch (ServiceConfigurationError _ex) {
       logger.error("Could not initialize service provider.", _ex);
     } catch (IOException _ex) {
@@ -154,6 +181,25 @@ public abstract class AbstractTransport implements Closeable {
 
   }
 
+  /**
+   * Try to create message reader and writer using the given provider.
+   *
+   * @param _provider provider to use
+   * @param _socket socket to use
+   * @return true if provider created reader and writer
+   * @throws IOException if reader or writer could not be created
+   */
+  private boolean initReaderWriter(ISocketProvider _provider, Socket _socket) throws IOException {
+    _provider.setFileDescriptorSupport(hasFileDescriptorSupport() && fileDescriptorSupported);
+    inputReader = _provider.createReader(_socket);
+    outputWriter = _provider.createWriter(_socket);
+    if (inputReader != null && outputWriter != null) {
+      logger.debug("Using ISocketProvider {}", _provider);
+      return true;
+    }
+    return false;
+  }
+
   @SuppressWarnings("unused")
   protected int getSaslAuthMode() {
     return saslAuthMode;
@@ -2,8 +2,9 @@ package org.freedesktop.dbus.connections.transports;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 
 import org.freedesktop.dbus.connections.BusAddress;
 import org.freedesktop.dbus.connections.SASL;
@@ -33,17 +34,19 @@ public class TcpTransport extends AbstractTransport {
 
     /**
      * Connect to DBus using TCP.
+     * The socket is created using a {@link SocketChannel}, so NIO based
+     * socket providers can use the channel directly.
      * @throws IOException on error
      */
     void connect() throws IOException {
 
         if (getAddress().isListeningSocket()) {
-            try (ServerSocket ss = new ServerSocket()) {
+            try (ServerSocketChannel ss = ServerSocketChannel.open()) {
                 ss.bind(new InetSocketAddress(getAddress().getHost(), getAddress().getPort()));
-                socket = ss.accept();
+                socket = ss.accept().socket();
             }
         } else {
-            socket = new Socket();
+            socket = SocketChannel.open().socket();
             getLogger().trace("Setting timeout to {} on Socket", timeout);
             socket.connect(new InetSocketAddress(getAddress().getHost(), getAddress().getPort()), timeout);
         }
@@ -48,8 +48,8 @@ public class Error extends Message {
     if (null == errorName) {
       throw new MessageFormatException("Must specify error name to Errors.");
     }
-    getHeaders().put(Message.HeaderField.REPLY_SERIAL, replyserial);
-    getHeaders().put(Message.HeaderField.ERROR_NAME, errorName);
+    setHeader(Message.HeaderField.REPLY_SERIAL, replyserial);
+    setHeader(Message.HeaderField.ERROR_NAME, errorName);
 
     List<Object> hargs = new ArrayList<>();
     hargs.add(new Object[]{
@@ -64,7 +64,7 @@ public class Error extends Message {
     });
 
     if (null != source) {
-      getHeaders().put(Message.HeaderField.SENDER, source);
+      setHeader(Message.HeaderField.SENDER, source);
       hargs.add(new Object[]{
           Message.HeaderField.SENDER, new Object[]{
           ArgumentType.STRING_STRING, source
@@ -73,7 +73,7 @@ public class Error extends Message {
     }
 
     if (null != dest) {
-      getHeaders().put(Message.HeaderField.DESTINATION, dest);
+      setHeader(Message.HeaderField.DESTINATION, dest);
       hargs.add(new Object[]{
           Message.HeaderField.DESTINATION, new Object[]{
           ArgumentType.STRING_STRING, dest
@@ -87,12 +87,12 @@ public class Error extends Message {
           ArgumentType.SIGNATURE_STRING, sig
       }
       });
-      getHeaders().put(Message.HeaderField.SIGNATURE, sig);
+      setHeader(Message.HeaderField.SIGNATURE, sig);
       setArgs(args);
     }
 
-    byte[] blen = new byte[4];
-    appendBytes(blen);
+    int blen = (int) getByteCounter();
+    appendint(0, 4);
     append("ua(yv)", getSerial(), hargs.toArray());
     pad((byte) 8);
 
@@ -100,7 +100,7 @@ public class Error extends Message {
     if (null != sig) {
       append(sig, args);
     }
-    marshallint(getByteCounter() - c, blen, 0, 4);
+    marshallint(getByteCounter() - c, blen, 4);
   }
 
   public Error(String source, Message m, Throwable e) throws DBusException {
@@ -0,0 +1,12 @@
+package org.freedesktop.dbus.exceptions;
+
+/**
+ * Thrown when a message is sent while the outbound queue of the connection is full
+ * and the queue policy rejects the message.
+ */
+@SuppressWarnings("serial")
+public class OutboundQueueFullException extends DBusExecutionException {
+  public OutboundQueueFullException(String _message) {
+    super(_message);
+  }
+}
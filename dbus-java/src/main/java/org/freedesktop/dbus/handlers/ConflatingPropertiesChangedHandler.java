@@ -0,0 +1,173 @@
+package org.freedesktop.dbus.handlers;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.freedesktop.dbus.SignalTuple;
+import org.freedesktop.dbus.connections.AbstractConnection;
+import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.interfaces.DBusSigHandler;
+import org.freedesktop.dbus.interfaces.Properties.PropertiesChanged;
+import org.freedesktop.dbus.types.Variant;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Handler for changed properties which only delivers the latest values to the wrapped handler.
+ * <p>
+ * While the wrapped handler is busy, newer PropertiesChanged signals of the same sender, object path
+ * and interface are merged into one pending signal instead of being queued: the latest value of
+ * each property wins, a removed property replaces a changed one and vice versa. The wrapped handler
+ * is never called concurrently.
+ * </p>
+ * <p>
+ * Register it like any other handler, e.g. {@code connection.addSigHandler(PropertiesChanged.class,
+ * new ConflatingPropertiesChangedHandler(handler))}. The connection merges received signals on its
+ * reader thread (in the order they were received) and delivers them on a worker thread.
+ * A merged signal is created locally, it carries the sender, path and interface of the last merged signal.
+ * </p>
+ */
+@Slf4j
+public class ConflatingPropertiesChangedHandler extends AbstractPropertiesChangedHandler {
+  private final DBusSigHandler<PropertiesChanged> delegate;
+
+  /* pending changes by interface, path and sender, guarded by itself */
+  private final Map<SignalTuple, PendingChange> pending = new LinkedHashMap<>();
+  private boolean draining;
+  private long conflated;
+
+  public ConflatingPropertiesChangedHandler(DBusSigHandler<PropertiesChanged> _delegate) {
+    delegate = Objects.requireNonNull(_delegate, "Delegate handler required");
+  }
+
+  @Override
+  public void handle(PropertiesChanged _signal) {
+    if (offer(_signal)) {
+      drain();
+    }
+  }
+
+  /**
+   * Merge the signal into the pending changes. Used by {@link AbstractConnection}, does not call the wrapped handler.
+   *
+   * @param _signal received signal
+   * @return true if the caller has to {@link #drain()} the pending changes, false if a drain is already running
+   */
+  public boolean offer(PropertiesChanged _signal) {
+    SignalTuple key = new SignalTuple(_signal.getInterfaceName(), null, _signal.getPath(), _signal.getSource());
+    synchronized (pending) {
+      PendingChange change = pending.get(key);
+      if (null == change) {
+        change = new PendingChange();
+        pending.put(key, change);
+      } else {
+        conflated++;
+      }
+      change.merge(_signal);
+
+      if (draining) {
+        return false;
+      }
+      draining = true;
+      return true;
+    }
+  }
+
+  /**
+   * Deliver the pending changes to the wrapped handler until there are none left.
+   */
+  public void drain() {
+    boolean done = false;
+    try {
+      while (true) {
+        PendingChange change;
+        synchronized (pending) {
+          Iterator<PendingChange> it = pending.values().iterator();
+          if (!it.hasNext()) {
+            draining = false;
+            done = true;
+            return;
+          }
+          change = it.next();
+          it.remove();
+        }
+
+        try {
+          delegate.handle(change.toSignal());
+        } catch (DBusException | RuntimeException _ex) {
+          LOGGER.warn("Exception while running properties changed handler '{}':", delegate, _ex);
+        }
+      }
+    } finally {
+      if (!done) {
+        // e.g. an Error thrown by the wrapped handler, the next signal starts a new drain
+        cancelDrain();
+      }
+    }
+  }
+
+  /**
+   * Used by {@link AbstractConnection} if the {@link #drain()} requested by {@link #offer(PropertiesChanged)}
+   * could not be run. The pending changes are kept and delivered by the drain of the next signal.
+   */
+  public void cancelDrain() {
+    synchronized (pending) {
+      draining = false;
+    }
+  }
+
+  /**
+   * Number of signals which were merged into a pending signal instead of being delivered.
+   *
+   * @return count
+   */
+  public long getConflatedCount() {
+    synchronized (pending) {
+      return conflated;
+    }
+  }
+
+  /**
+   * Changes of one object and interface which are not yet delivered.
+   */
+  private static final class PendingChange {
+    private final Map<String, Variant<?>> changed = new LinkedHashMap<>();
+    private final Set<String> removed = new LinkedHashSet<>();
+    private PropertiesChanged latest;
+    private int signals;
+
+    void merge(PropertiesChanged _signal) {
+      latest = _signal;
+      signals++;
+      if (null != _signal.getPropertiesChanged()) {
+        for (Map.Entry<String, Variant<?>> e : _signal.getPropertiesChanged().entrySet()) {
+          removed.remove(e.getKey());
+          changed.put(e.getKey(), e.getValue());
+        }
+      }
+      if (null != _signal.getPropertiesRemoved()) {
+        for (String name : _signal.getPropertiesRemoved()) {
+          changed.remove(name);
+          removed.add(name);
+        }
+      }
+    }
+
+    PropertiesChanged toSignal() throws DBusException {
+      if (1 == signals) {
+        return latest;
+      }
+      PropertiesChanged merged = new PropertiesChanged(latest.getPath(), latest.getInterfaceName(), changed,
+          new ArrayList<>(removed));
+      if (null != latest.getSource()) {
+        merged.setSource(latest.getSource());
+      }
+      return merged;
+    }
+  }
+}
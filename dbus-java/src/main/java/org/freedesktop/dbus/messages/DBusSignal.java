@@ -55,7 +55,7 @@ public class DBusSignal extends Message {
 
   private Class<? extends DBusSignal> clazz;
   private boolean bodydone = false;
-  private byte[] blen;
+  private int blen;
 
   DBusSignal() {
   }
@@ -67,9 +67,9 @@ public class DBusSignal extends Message {
     if (null == path || null == member || null == iface) {
       throw new MessageFormatException("Must specify object path, interface and signal name to Signals.");
     }
-    getHeaders().put(Message.HeaderField.PATH, path);
-    getHeaders().put(Message.HeaderField.MEMBER, member);
-    getHeaders().put(Message.HeaderField.INTERFACE, iface);
+    setHeader(Message.HeaderField.PATH, path);
+    setHeader(Message.HeaderField.MEMBER, member);
+    setHeader(Message.HeaderField.INTERFACE, iface);
 
     List<Object> hargs = new ArrayList<>();
     hargs.add(new Object[]{
@@ -89,7 +89,7 @@ public class DBusSignal extends Message {
     });
 
     if (null != source) {
-      getHeaders().put(Message.HeaderField.SENDER, source);
+      setHeader(Message.HeaderField.SENDER, source);
       hargs.add(new Object[]{
           Message.HeaderField.SENDER, new Object[]{
           ArgumentType.STRING_STRING, source
@@ -103,12 +103,12 @@ public class DBusSignal extends Message {
           ArgumentType.SIGNATURE_STRING, sig
       }
       });
-      getHeaders().put(Message.HeaderField.SIGNATURE, sig);
+      setHeader(Message.HeaderField.SIGNATURE, sig);
       setArgs(args);
     }
 
-    blen = new byte[4];
-    appendBytes(blen);
+    blen = (int) getByteCounter();
+    appendint(0, 4);
     long newSerial = getSerial() + 1;
     setSerial(newSerial);
     append("ua(yv)", newSerial, hargs.toArray());
@@ -118,7 +118,7 @@ public class DBusSignal extends Message {
     if (null != sig) {
       append(sig, args);
     }
-    marshallint(getByteCounter() - counter, blen, 0, 4);
+    marshallint(getByteCounter() - counter, blen, 4);
     bodydone = true;
   }
 
@@ -221,9 +221,8 @@ public class DBusSignal extends Message {
         logger.debug("Creating signal of type {} with parameters {}", clazz, Arrays.deepToString(params));
         s = con.newInstance(params);
       }
-      s.getHeaders().putAll(getHeaders());
-      s.setWiredata(getWireData());
-      s.setByteCounter(getWireData().length);
+      s.copyHeaders(this);
+      s.setWireData(this);
       return s;
     } catch (Exception _ex) {
       throw new DBusException(_ex);
@@ -263,9 +262,9 @@ public class DBusSignal extends Message {
       iface = AbstractConnection.DOLLAR_PATTERN.matcher(enc.getName()).replaceAll(".");
     }
 
-    getHeaders().put(Message.HeaderField.PATH, objectpath);
-    getHeaders().put(Message.HeaderField.MEMBER, member);
-    getHeaders().put(Message.HeaderField.INTERFACE, iface);
+    setHeader(Message.HeaderField.PATH, objectpath);
+    setHeader(Message.HeaderField.MEMBER, member);
+    setHeader(Message.HeaderField.INTERFACE, iface);
 
     List<Object> hargs = new ArrayList<>();
     hargs.add(new Object[]{
@@ -309,7 +308,7 @@ public class DBusSignal extends Message {
             ArgumentType.SIGNATURE_STRING, sig
         }
         });
-        getHeaders().put(Message.HeaderField.SIGNATURE, sig);
+        setHeader(Message.HeaderField.SIGNATURE, sig);
         setArgs(args);
       } catch (Exception e) {
         logger.debug("", e);
@@ -317,8 +316,8 @@ public class DBusSignal extends Message {
       }
     }
 
-    blen = new byte[4];
-    appendBytes(blen);
+    blen = (int) getByteCounter();
+    appendint(0, 4);
     long newSerial = getSerial() + 1;
     setSerial(newSerial);
     append("ua(yv)", newSerial, hargs.toArray());
@@ -339,7 +338,7 @@ public class DBusSignal extends Message {
     if (null != args && 0 < args.length) {
       append(sig, args);
     }
-    marshallint(getByteCounter() - counter, blen, 0, 4);
+    marshallint(getByteCounter() - counter, blen, 4);
     bodydone = true;
   }
 
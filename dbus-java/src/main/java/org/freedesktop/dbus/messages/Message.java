@@ -15,20 +15,17 @@ package org.freedesktop.dbus.messages;
 import lombok.extern.slf4j.Slf4j;
 import org.freedesktop.Hexdump;
 import org.freedesktop.dbus.*;
-import org.freedesktop.dbus.connections.AbstractConnection;
 import org.freedesktop.dbus.exceptions.DBusException;
 import org.freedesktop.dbus.exceptions.MarshallingException;
-import org.freedesktop.dbus.exceptions.UnknownTypeCodeException;
-import org.freedesktop.dbus.types.UInt16;
+import org.freedesktop.dbus.exceptions.MessageFormatException;
 import org.freedesktop.dbus.types.UInt32;
-import org.freedesktop.dbus.types.UInt64;
-import org.freedesktop.dbus.types.Variant;
 
 import java.lang.reflect.Array;
-import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
-import java.text.MessageFormat;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 /**
@@ -49,35 +46,63 @@ public class Message {
   /**
    * Position of data offset in int array.
    */
-  private static final int OFFSET_DATA = 1;
+  static final int OFFSET_DATA = 1;
   /**
    * Position of signature offset in int array.
    */
-  private static final int OFFSET_SIG = 0;
+  static final int OFFSET_SIG = 0;
 
   /**
-   * Keep a static reference to each size of padding array to prevent allocation.
+   * Initial size of the marshalling buffer, the buffer grows by doubling its size.
    */
-  private static final byte[][] padding;
-
-  static {
-    padding = new byte[][]{
-        null, new byte[1], new byte[2], new byte[3], new byte[4], new byte[5], new byte[6], new byte[7]
-    };
-  }
+  private static final int INITIAL_BUFFER_SIZE = 256;
 
   /**
-   * Steps to increment the buffer array.
+   * Serials of messages which are not (yet) sent on a connection, the connection assigns its own serial when sending.
    */
-  private static final int BUFFERINCREMENT = 20;
+  private static final AtomicLong GLOBAL_SERIAL = new AtomicLong();
 
-  protected static long globalserial = 0;
-
-  private byte[][] wiredata;
-  private long bytecounter;
-  private final Map<Byte, Object> headers;
+  /**
+   * Marshalling buffer, all values are written into this array in place.
+   */
+  private byte[] wiredata;
+  /**
+   * Number of bytes used in the marshalling buffer (or total length of a received message).
+   */
+  private int bytecounter;
+  /**
+   * Data of a received message (fixed header, header fields and body), null for marshalled messages.
+   */
+  private byte[][] received;
+  /**
+   * True if the marshalling buffer is also used by another message, it is copied before it is changed.
+   */
+  private boolean wiredataShared;
   private List<FileDescriptor> filedescriptors;
 
+  /*
+   * Well-known header fields. Messages are received and routed in a hot loop,
+   * so these are stored in fixed slots instead of a map of boxed values.
+   */
+  private String path;
+  private String iface;
+  private String member;
+  private String errorName;
+  private long replySerial;
+  private String destination;
+  private String sender;
+  private String signature;
+  private long unixFds;
+  /**
+   * Header fields with unknown codes, only created if such a field is present.
+   */
+  private Map<Byte, Object> unknownHeaders;
+  /**
+   * Position of the SENDER field in the received header fields (start and end of its data), -1 if there is none.
+   */
+  private int senderFieldStart = -1;
+  private int senderFieldEnd;
+
 
   private long serial;
   private byte type;
@@ -88,10 +113,6 @@ public class Message {
   private Object[] args;
   private byte[] body;
   private long bodylen = 0;
-  private int preallocated = 0;
-  private int paofs = 0;
-  private byte[] pabuf;
-  private int bufferuse = 0;
 
   /**
    * Returns the name of the given header field.
@@ -133,20 +154,16 @@ public class Message {
    * @throws DBusException on error
    */
   protected Message(byte endian, byte _type, byte _flags) throws DBusException {
-    wiredata = new byte[BUFFERINCREMENT][];
-    headers = new HashMap<>();
+    wiredata = new byte[INITIAL_BUFFER_SIZE];
     filedescriptors = new ArrayList<>();
     big = (Endian.BIG == endian);
     bytecounter = 0;
-    synchronized (Message.class) {
-      serial = ++globalserial;
-    }
+    serial = GLOBAL_SERIAL.incrementAndGet();
 
     LOGGER.debug("Creating message with serial {}", serial);
 
     this.type = _type;
     this.flags = _flags;
-    preallocate(4);
     append("yyyy", endian, _type, _flags, Message.PROTOCOL);
   }
 
@@ -154,8 +171,6 @@ public class Message {
    * Create a blank message. Only to be used when calling populate.
    */
   protected Message() {
-    wiredata = new byte[BUFFERINCREMENT][];
-    headers = new HashMap<>();
     filedescriptors = new ArrayList<>();
     bytecounter = 0;
   }
@@ -164,93 +179,324 @@ public class Message {
    * Create a message from wire-format data.
    *
    * @param _msg     D-Bus serialized data of type yyyuu
-   * @param _headers D-Bus serialized data of type a(yv)
+   * @param _headers D-Bus serialized data of type a(yv), the array length is followed by 4 bytes padding
    * @param _body    D-Bus serialized data of the signature defined in headers.
    */
-  @SuppressWarnings("unchecked")
   void populate(byte[] _msg, byte[] _headers, byte[] _body, List<FileDescriptor> descriptors) throws DBusException {
     big = (_msg[0] == Endian.BIG);
     type = _msg[1];
     flags = _msg[2];
     protover = _msg[3];
-    wiredata[0] = _msg;
-    wiredata[1] = _headers;
-    wiredata[2] = _body;
+    received = new byte[][]{
+        _msg, _headers, _body
+    };
     this.body = _body;
-    bufferuse = 3;
-    bodylen = ((Number) extract(Message.ArgumentType.UINT32_STRING, _msg, 4)[0]).longValue();
-    serial = ((Number) extract(Message.ArgumentType.UINT32_STRING, _msg, 8)[0]).longValue();
-    bytecounter = _msg.length + _headers.length + _body.length;
+    bodylen = demarshallint(_msg, 4, 4);
+    serial = demarshallint(_msg, 8, 4);
+    bytecounter = _msg.length + _headers.length - 4 + _body.length;
     filedescriptors = descriptors;
 
-    LOGGER.trace("Message header: {}", Hexdump.toAscii(_headers));
-    Object[] hs = extract("a(yv)", _headers, 0);
     if (LOGGER.isTraceEnabled()) {
-      LOGGER.trace(Arrays.deepToString(hs));
+      LOGGER.trace("Message header: {}", Hexdump.toAscii(_headers));
     }
-    for (Object o : (List<Object>) hs[0]) {
-      this.headers.put((Byte) ((Object[]) o)[0], ((Variant<Object>) ((Object[]) o)[1]).getValue());
+    parseHeaderFields(_headers);
+  }
+
+  /**
+   * Parses the header fields (a(yv)) of a received message.
+   * The well-known fields are read directly into their slots, other fields are demarshalled as variant.
+   *
+   * @param _headers header fields, the array length is followed by 4 bytes padding
+   * @throws DBusException if a header field is invalid or exceeds the header fields
+   */
+  private void parseHeaderFields(byte[] _headers) throws DBusException {
+    long arrayLength = demarshallint(_headers, 0, 4);
+    if (8 + arrayLength > _headers.length) {
+      throw new MessageFormatException("Header field array length " + arrayLength + " exceeds the header");
+    }
+    int end = 8 + (int) arrayLength;
+    int ofs = 8;
+    while (ofs < end) {
+      // structs are 8 byte aligned, padding is relative to the message start like the fields
+      ofs = (ofs + 7) & ~7;
+      checkHeaderBounds(ofs, 2, end);
+      int fieldStart = ofs;
+      byte field = _headers[ofs++];
+      int siglen = _headers[ofs++] & 0xFF;
+      checkHeaderBounds(ofs, siglen + 1, end);
+      byte sigtype = siglen == 1 ? _headers[ofs] : 0;
+      int sigofs = ofs;
+      ofs += siglen + 1;
+
+      switch (field) {
+        case HeaderField.PATH:
+        case HeaderField.INTERFACE:
+        case HeaderField.MEMBER:
+        case HeaderField.ERROR_NAME:
+        case HeaderField.DESTINATION:
+        case HeaderField.SENDER:
+          if (sigtype != (field == HeaderField.PATH ? ArgumentType.OBJECT_PATH : ArgumentType.STRING)) {
+            throw new MessageFormatException("Invalid type for header field " + getHeaderFieldName(field));
+          }
+          ofs = (ofs + 3) & ~3;
+          checkHeaderBounds(ofs, 4, end);
+          long length = demarshallint(_headers, ofs, 4);
+          checkHeaderBounds(ofs + 4, length + 1, end);
+          setHeader(field, new String(_headers, ofs + 4, (int) length, StandardCharsets.UTF_8));
+          ofs += 4 + length + 1;
+          if (field == HeaderField.SENDER) {
+            senderFieldStart = fieldStart;
+            senderFieldEnd = ofs;
+          }
+          break;
+        case HeaderField.SIGNATURE:
+          if (sigtype != ArgumentType.SIGNATURE) {
+            throw new MessageFormatException("Invalid type for header field " + getHeaderFieldName(field));
+          }
+          checkHeaderBounds(ofs, 1, end);
+          length = _headers[ofs] & 0xFF;
+          checkHeaderBounds(ofs + 1, length + 1, end);
+          signature = new String(_headers, ofs + 1, (int) length, StandardCharsets.US_ASCII);
+          ofs += 1 + length + 1;
+          break;
+        case HeaderField.REPLY_SERIAL:
+        case HeaderField.UNIX_FDS:
+          if (sigtype != ArgumentType.UINT32) {
+            throw new MessageFormatException("Invalid type for header field " + getHeaderFieldName(field));
+          }
+          ofs = (ofs + 3) & ~3;
+          checkHeaderBounds(ofs, 4, end);
+          if (field == HeaderField.REPLY_SERIAL) {
+            replySerial = demarshallint(_headers, ofs, 4);
+          } else {
+            unixFds = demarshallint(_headers, ofs, 4);
+          }
+          ofs += 4;
+          break;
+        default:
+          String sig = new String(_headers, sigofs, siglen, StandardCharsets.US_ASCII);
+          int[] offsets = new int[]{
+              0, ofs
+          };
+          Object value;
+          try {
+            value = extract(sig, _headers, offsets)[0];
+          } catch (IndexOutOfBoundsException _ex) {
+            throw new MessageFormatException("Header field " + field + " exceeds the header");
+          }
+          checkHeaderBounds(ofs, offsets[OFFSET_DATA] - ofs, end);
+          setHeader(field, value);
+          ofs = offsets[OFFSET_DATA];
+          break;
+      }
     }
   }
 
-  protected Map<Byte, Object> getHeaders() {
-    return headers;
+  /**
+   * Checks that a value of a header field lies within the header field array.
+   *
+   * @param _ofs offset of the value
+   * @param _length length of the value
+   * @param _end end of the header field array
+   * @throws MessageFormatException if the value exceeds the array
+   */
+  private static void checkHeaderBounds(int _ofs, long _length, int _end) throws MessageFormatException {
+    if (_length < 0 || _ofs + _length > _end) {
+      throw new MessageFormatException("Header field exceeds the header field array");
+    }
   }
 
-  protected long getByteCounter() {
-    return bytecounter;
+  /**
+   * Sets the value of a header field.
+   *
+   * @param _field header field, see {@link HeaderField}
+   * @param _value value, null removes the field
+   */
+  protected void setHeader(byte _field, Object _value) {
+    switch (_field) {
+      case HeaderField.PATH:
+        path = null == _value ? null : _value.toString();
+        break;
+      case HeaderField.INTERFACE:
+        iface = (String) _value;
+        break;
+      case HeaderField.MEMBER:
+        member = (String) _value;
+        break;
+      case HeaderField.ERROR_NAME:
+        errorName = (String) _value;
+        break;
+      case HeaderField.REPLY_SERIAL:
+        replySerial = null == _value ? 0 : ((Number) _value).longValue();
+        break;
+      case HeaderField.DESTINATION:
+        destination = (String) _value;
+        break;
+      case HeaderField.SENDER:
+        sender = (String) _value;
+        break;
+      case HeaderField.SIGNATURE:
+        signature = (String) _value;
+        break;
+      case HeaderField.UNIX_FDS:
+        unixFds = null == _value ? 0 : ((Number) _value).longValue();
+        break;
+      default:
+        if (null != _value) {
+          if (null == unknownHeaders) {
+            unknownHeaders = new LinkedHashMap<>();
+          }
+          unknownHeaders.put(_field, _value);
+        } else if (null != unknownHeaders) {
+          unknownHeaders.remove(_field);
+        }
+    }
   }
 
-  protected void setByteCounter(long _bytecounter) {
-    bytecounter = _bytecounter;
+  /**
+   * Copies all header fields of the given message to this message.
+   *
+   * @param _source message to copy the header fields from
+   */
+  void copyHeaders(Message _source) {
+    path = _source.path;
+    iface = _source.iface;
+    member = _source.member;
+    errorName = _source.errorName;
+    replySerial = _source.replySerial;
+    destination = _source.destination;
+    sender = _source.sender;
+    signature = _source.signature;
+    unixFds = _source.unixFds;
+    if (null != _source.unknownHeaders) {
+      unknownHeaders = new LinkedHashMap<>(_source.unknownHeaders);
+    }
   }
 
-  protected void setSerial(long _serial) {
-    serial = _serial;
+  /**
+   * Returns all header fields which are set, in the order of their field codes (unknown fields last).
+   * Each entry contains the field code and the value as variant (signature and value), ready to be
+   * marshalled as a(yv).
+   *
+   * @return header fields
+   */
+  private Object[][] getHeaderFields() {
+    List<Object[]> fields = new ArrayList<>();
+    for (byte field = HeaderField.PATH; field <= HeaderField.UNIX_FDS; field++) {
+      Object value = getHeader(field);
+      if (null != value) {
+        fields.add(new Object[]{
+            field, new Object[]{
+            getHeaderFieldSignature(field), value
+        }
+        });
+      }
+    }
+    if (null != unknownHeaders) {
+      for (Map.Entry<Byte, Object> e : unknownHeaders.entrySet()) {
+        fields.add(new Object[]{
+            e.getKey(), e.getValue()
+        });
+      }
+    }
+    return fields.toArray(new Object[0][]);
   }
 
-  @SuppressWarnings("unused")
-  protected byte[][] getWiredata() {
-    return wiredata;
+  private static String getHeaderFieldSignature(byte _field) {
+    switch (_field) {
+      case HeaderField.PATH:
+        return ArgumentType.OBJECT_PATH_STRING;
+      case HeaderField.SIGNATURE:
+        return ArgumentType.SIGNATURE_STRING;
+      case HeaderField.REPLY_SERIAL:
+      case HeaderField.UNIX_FDS:
+        return ArgumentType.UINT32_STRING;
+      default:
+        return ArgumentType.STRING_STRING;
+    }
   }
 
-  protected void setWiredata(byte[][] _wiredata) {
-    wiredata = _wiredata;
+  protected long getByteCounter() {
+    return bytecounter;
+  }
+
+  protected void setSerial(long _serial) {
+    serial = _serial;
   }
 
   /**
-   * Create a buffer of num bytes. Data is copied to this rather than added to the buffer list.
+   * Replace the serial of this message, also in the marshalled header.
+   * Used by the connection sending the message, as serials are unique per connection.
+   * <p>
+   * Wire data shared with other messages (e.g. a received message and the signal created from it)
+   * is copied first, so only this message changes. A message object must not be sent on several
+   * connections at the same time, each connection replaces the serial of the object.
+   * </p>
+   *
+   * @param _serial new serial
    */
-  private void preallocate(int num) {
-    preallocated = 0;
-    pabuf = new byte[num];
-    appendBytes(pabuf);
-    preallocated = num;
-    paofs = 0;
+  public void updateSerial(long _serial) {
+    serial = _serial;
+    if (null != received) {
+      // the received arrays may be shared, only the fixed header is copied
+      byte[] header = Arrays.copyOf(received[0], received[0].length);
+      marshallint(_serial, header, 8, 4);
+      received = new byte[][]{
+          header, received[1], received[2]
+      };
+    } else if (bytecounter >= 12) {
+      marshallint(_serial, 8, 4);
+    }
   }
 
   /**
-   * Ensures there are enough free buffers.
+   * Use the wire data of the given message for this message.
    *
-   * @param num number of free buffers to create.
+   * @param _source message to take the wire data from
    */
-  private void ensureBuffers(int num) {
-    int increase = num - wiredata.length + bufferuse;
-    if (increase > 0) {
-      if (increase < BUFFERINCREMENT) {
-        increase = BUFFERINCREMENT;
-      }
+  protected void setWireData(Message _source) {
+    if (null != _source.wiredata) {
+      _source.wiredataShared = true;
+      wiredataShared = true;
+    }
+    wiredata = _source.wiredata;
+    bytecounter = _source.bytecounter;
+    received = _source.received;
+    senderFieldStart = _source.senderFieldStart;
+    senderFieldEnd = _source.senderFieldEnd;
+  }
 
-      LOGGER.trace("Resizing {}", bufferuse);
+  /**
+   * Ensures the marshalling buffer is large enough to append the given number of bytes.
+   *
+   * @param num number of bytes to append
+   */
+  void ensureCapacity(int num) {
+    int required = bytecounter + num;
+    if (null == wiredata) {
+      wiredata = new byte[Math.max(INITIAL_BUFFER_SIZE, required)];
+    } else if (required > wiredata.length) {
+      int size = Math.max(wiredata.length * 2, required);
+      LOGGER.trace("Resizing marshalling buffer to {}", size);
+      wiredata = Arrays.copyOf(wiredata, size);
+      wiredataShared = false;
+    } else {
+      unshareWiredata();
+    }
+  }
 
-      byte[][] temp = new byte[wiredata.length + increase][];
-      System.arraycopy(wiredata, 0, temp, 0, wiredata.length);
-      wiredata = temp;
+  /**
+   * Copies the marshalling buffer if it is shared with another message, before it is changed.
+   */
+  private void unshareWiredata() {
+    if (wiredataShared) {
+      wiredata = Arrays.copyOf(wiredata, wiredata.length);
+      wiredataShared = false;
     }
   }
 
   /**
-   * Appends a buffer to the buffer list.
+   * Appends a buffer to the marshalling buffer.
    *
    * @param buf buffer byte array
    */
@@ -258,49 +504,19 @@ public class Message {
     if (null == buf) {
       return;
     }
-    if (preallocated > 0) {
-      if (paofs + buf.length > pabuf.length) {
-        throw new ArrayIndexOutOfBoundsException(
-            MessageFormat.format("Array index out of bounds, paofs={0}, pabuf.length={1}, buf.length={2}.",
-                paofs, pabuf.length, buf.length));
-      }
-      System.arraycopy(buf, 0, pabuf, paofs, buf.length);
-      paofs += buf.length;
-      preallocated -= buf.length;
-    } else {
-      if (bufferuse == wiredata.length) {
-        LOGGER.trace("Resizing {}", bufferuse);
-        byte[][] temp = new byte[wiredata.length + BUFFERINCREMENT][];
-        System.arraycopy(wiredata, 0, temp, 0, wiredata.length);
-        wiredata = temp;
-      }
-      wiredata[bufferuse++] = buf;
-      bytecounter += buf.length;
-    }
+    ensureCapacity(buf.length);
+    System.arraycopy(buf, 0, wiredata, bytecounter, buf.length);
+    bytecounter += buf.length;
   }
 
   /**
-   * Appends a byte to the buffer list.
+   * Appends a byte to the marshalling buffer.
    *
    * @param b byte
    */
   protected void appendByte(byte b) {
-    if (preallocated > 0) {
-      pabuf[paofs++] = b;
-      preallocated--;
-    } else {
-      if (bufferuse == wiredata.length) {
-
-        LOGGER.trace("Resizing {}", bufferuse);
-        byte[][] temp = new byte[wiredata.length + BUFFERINCREMENT][];
-        System.arraycopy(wiredata, 0, temp, 0, wiredata.length);
-        wiredata = temp;
-      }
-      wiredata[bufferuse++] = new byte[]{
-          b
-      };
-      bytecounter++;
-    }
+    ensureCapacity(1);
+    wiredata[bytecounter++] = b;
   }
 
   /**
@@ -369,9 +585,9 @@ public class Message {
    * @param width The byte-width of the int.
    */
   public void appendint(long l, int width) {
-    byte[] buf = new byte[width];
-    marshallint(l, buf, 0, width);
-    appendBytes(buf);
+    ensureCapacity(width);
+    marshallint(l, wiredata, bytecounter, width);
+    bytecounter += width;
   }
 
   /**
@@ -389,7 +605,22 @@ public class Message {
       marshallintLittle(l, buf, ofs, width);
     }
 
-    LOGGER.trace("Marshalled int {} to {}", l, Hexdump.toHex(buf, ofs, width));
+    if (LOGGER.isTraceEnabled()) {
+      LOGGER.trace("Marshalled int {} to {}", l, Hexdump.toHex(buf, ofs, width));
+    }
+  }
+
+  /**
+   * Marshalls an integer of a given width into the marshalling buffer of this message, overwriting the data
+   * already appended at the given offset (e.g. a length placeholder). Endianness is determined from the message.
+   *
+   * @param l     The integer to marshall.
+   * @param ofs   The offset in the wire data to marshall to.
+   * @param width The byte-width of the int.
+   */
+  protected void marshallint(long l, int ofs, int width) {
+    unshareWiredata();
+    marshallint(l, wiredata, ofs, width);
   }
 
   /**
@@ -422,8 +653,59 @@ public class Message {
     }
   }
 
+  /**
+   * Returns the wire data of this message as arrays.
+   * Parts of the marshalling buffer which are not used are cut off, which requires copying the data.
+   *
+   * @return wire data, null if the message has no wire data
+   * @deprecated use {@link #getWireBuffers()} which does not copy the data
+   */
+  @Deprecated
   public byte[][] getWireData() {
-    return wiredata;
+    ByteBuffer[] buffers = getWireBuffers();
+    if (null == buffers) {
+      return null;
+    }
+    byte[][] data = new byte[buffers.length][];
+    for (int i = 0; i < buffers.length; i++) {
+      ByteBuffer buf = buffers[i];
+      if (0 == buf.position() && buf.remaining() == buf.array().length) {
+        data[i] = buf.array();
+      } else {
+        data[i] = new byte[buf.remaining()];
+        buf.get(data[i]);
+      }
+    }
+    return data;
+  }
+
+  /**
+   * Returns the wire data of this message as buffers which can be written as they are.
+   * <p>
+   * A marshalled message is a single buffer backed by the marshalling buffer of the message.
+   * A received message consists of the fixed header, the header fields and the body.
+   * </p>
+   * Each call returns new buffer instances, the data itself is never copied.
+   *
+   * @return buffers, null if the message has no wire data
+   */
+  public ByteBuffer[] getWireBuffers() {
+    if (null != received) {
+      // header fields were read with padding after the array length (to align them like on the wire), skip it
+      byte[] header = received[1];
+      return new ByteBuffer[]{
+          ByteBuffer.wrap(received[0]),
+          ByteBuffer.wrap(header, 0, 4),
+          ByteBuffer.wrap(header, 8, header.length - 8),
+          ByteBuffer.wrap(received[2])
+      };
+    }
+    if (null == wiredata) {
+      return null;
+    }
+    return new ByteBuffer[]{
+        ByteBuffer.wrap(wiredata, 0, bytecounter)
+    };
   }
 
   @SuppressWarnings("unused")
@@ -446,14 +728,15 @@ public class Message {
     sb.append(' ');
     sb.append('{');
     sb.append(' ');
-    if (headers.size() == 0) {
+    Object[][] fields = getHeaderFields();
+    if (fields.length == 0) {
       sb.append('}');
     } else {
-      for (Byte field : headers.keySet()) {
-        sb.append(getHeaderFieldName(field));
+      for (Object[] field : fields) {
+        sb.append(getHeaderFieldName((Byte) field[0]));
         sb.append('=');
         sb.append('>');
-        sb.append(headers.get(field).toString());
+        sb.append(field[1] instanceof Object[] ? ((Object[]) field[1])[1] : field[1]);
         sb.append(',');
         sb.append(' ');
       }
@@ -511,284 +794,136 @@ public class Message {
    */
   @SuppressWarnings("unused")
   public Object getHeader(byte _type) {
-    return headers.get(_type);
+    switch (_type) {
+      case HeaderField.PATH:
+        return path;
+      case HeaderField.INTERFACE:
+        return iface;
+      case HeaderField.MEMBER:
+        return member;
+      case HeaderField.ERROR_NAME:
+        return errorName;
+      case HeaderField.REPLY_SERIAL:
+        return 0 == replySerial ? null : new UInt32(replySerial);
+      case HeaderField.DESTINATION:
+        return destination;
+      case HeaderField.SENDER:
+        return sender;
+      case HeaderField.SIGNATURE:
+        return signature;
+      case HeaderField.UNIX_FDS:
+        return 0 == unixFds ? null : new UInt32(unixFds);
+      default:
+        return null == unknownHeaders ? null : unknownHeaders.get(_type);
+    }
   }
 
   /**
-   * Appends a value to the message. The type of the value is read from a D-Bus signature and used to marshall the
-   * value.
+   * Appends an array of primitives to the message, the values are marshalled directly into the buffer.
+   * Arrays whose Java type matches the wire type (e.g. int[] for INT32) are copied with one bulk
+   * transfer through a buffer view in the byte order of the message.
    *
-   * @param sigb   A buffer of the D-Bus signature.
-   * @param sigofs The offset into the signature corresponding to this value.
-   * @param data   The value to marshall.
-   * @return The offset into the signature of the end of this value's type.
+   * @param _type element type
+   * @param _data primitive array
+   * @throws MarshallingException if the array type does not match the element type
    */
-  @SuppressWarnings("unchecked")
-  private int appendone(byte[] sigb, int sigofs, Object data) throws DBusException {
-    try {
-      int i = sigofs;
-      LOGGER.trace("{}", bytecounter);
-      LOGGER.trace("Appending type: {} value: {}", ((char) sigb[i]), data);
-
-      // pad to the alignment of this type.
-      pad(sigb[i]);
-      switch (sigb[i]) {
-        case ArgumentType.BYTE:
-          appendByte(((Number) data).byteValue());
-          break;
-        case ArgumentType.BOOLEAN:
-          appendint((Boolean) data ? 1 : 0, 4);
-          break;
-        case ArgumentType.DOUBLE:
-          long l = Double.doubleToLongBits(((Number) data).doubleValue());
-          appendint(l, 8);
-          break;
-        case ArgumentType.FLOAT:
-          int rf = Float.floatToIntBits(((Number) data).floatValue());
-          appendint(rf, 4);
-          break;
-        case ArgumentType.UINT32:
-          appendint(((Number) data).longValue(), 4);
-          break;
-        case ArgumentType.INT64:
-          appendint(((Number) data).longValue(), 8);
-          break;
-        case ArgumentType.UINT64:
-          if (big) {
-            appendint(((UInt64) data).top(), 4);
-            appendint(((UInt64) data).bottom(), 4);
-          } else {
-            appendint(((UInt64) data).bottom(), 4);
-            appendint(((UInt64) data).top(), 4);
-          }
-          break;
-        case ArgumentType.INT32:
-          appendint(((Number) data).intValue(), 4);
-          break;
-        case ArgumentType.UINT16:
-          appendint(((Number) data).intValue(), 2);
-          break;
-        case ArgumentType.INT16:
-          appendint(((Number) data).shortValue(), 2);
-          break;
-        case ArgumentType.FILEDESCRIPTOR:
-          filedescriptors.add((FileDescriptor) data);
-          appendint(filedescriptors.size() - 1, 4);
-          LOGGER.debug("Just inserted {} as filedescriptor", filedescriptors.size() - 1);
+  void appendPrimitiveArray(byte _type, Object _data) throws MarshallingException {
+    int algn = getAlignment(_type);
+    int len = Array.getLength(_data);
+    if (ArgumentType.BYTE != _type) {
+      ensureCapacity(len * algn);
+    }
+    switch (_type) {
+      case ArgumentType.BYTE:
+        appendBytes((byte[]) _data);
+        break;
+      case ArgumentType.INT16:
+        if (_data instanceof short[]) {
+          wrap(len * algn).asShortBuffer().put((short[]) _data);
+          bytecounter += len * algn;
           break;
-        case ArgumentType.STRING:
-        case ArgumentType.OBJECT_PATH:
-          // Strings are marshalled as a UInt32 with the length,
-          // followed by the String, followed by a null byte.
-          String payload = data.toString();
-          byte[] payloadbytes;
-          payloadbytes = payload.getBytes(StandardCharsets.UTF_8);
-          LOGGER.trace("Appending String of length {}", payloadbytes.length);
-          appendint(payloadbytes.length, 4);
-          appendBytes(payloadbytes);
-          appendBytes(padding[1]);
-          // pad(ArgumentType.STRING);? do we need this?
+        }
+        appendIntegers(_data, len, algn);
+        break;
+      case ArgumentType.INT32:
+        if (_data instanceof int[]) {
+          wrap(len * algn).asIntBuffer().put((int[]) _data);
+          bytecounter += len * algn;
           break;
-        case ArgumentType.SIGNATURE:
-          // Signatures are marshalled as a byte with the length,
-          // followed by the String, followed by a null byte.
-          // Signatures are generally short, so preallocate the array
-          // for the string, length and null byte.
-          if (data instanceof Type[]) {
-            payload = Marshalling.getDBusType((Type[]) data);
-          } else {
-            payload = (String) data;
-          }
-          byte[] pbytes = payload.getBytes();
-          preallocate(2 + pbytes.length);
-          appendByte((byte) pbytes.length);
-          appendBytes(pbytes);
-          appendByte((byte) 0);
+        }
+        appendIntegers(_data, len, algn);
+        break;
+      case ArgumentType.INT64:
+        if (_data instanceof long[]) {
+          wrap(len * algn).asLongBuffer().put((long[]) _data);
+          bytecounter += len * algn;
           break;
-        case ArgumentType.ARRAY:
-          // Arrays are given as a UInt32 for the length in bytes,
-          // padding to the element alignment, then elements in
-          // order. The length is the length from the end of the
-          // initial padding to the end of the last element.
-          if (LOGGER.isTraceEnabled()) {
-            if (data instanceof Object[]) {
-              LOGGER.trace("Appending array: {}", Arrays.deepToString((Object[]) data));
-            }
+        }
+        appendIntegers(_data, len, algn);
+        break;
+      case ArgumentType.BOOLEAN:
+        for (int j = 0; j < len; j++, bytecounter += algn) {
+          marshallint(Array.getBoolean(_data, j) ? 1 : 0, wiredata, bytecounter, algn);
+        }
+        break;
+      case ArgumentType.DOUBLE:
+        if (_data instanceof float[]) {
+          for (int j = 0; j < len; j++, bytecounter += algn) {
+            marshallint(Double.doubleToRawLongBits(((float[]) _data)[j]), wiredata, bytecounter, algn);
           }
+        } else {
+          wrap(len * algn).asDoubleBuffer().put((double[]) _data);
+          bytecounter += len * algn;
+        }
+        break;
+      case ArgumentType.FLOAT:
+        wrap(len * algn).asFloatBuffer().put((float[]) _data);
+        bytecounter += len * algn;
+        break;
+      default:
+        throw new MarshallingException("Primitive array being sent as non-primitive array.");
+    }
+  }
 
-          byte[] alen = new byte[4];
-          appendBytes(alen);
-          pad(sigb[++i]);
-          long c = bytecounter;
-
-          // optimise primitives
-          if (data.getClass().isArray() && data.getClass().getComponentType().isPrimitive()) {
-            byte[] primbuf;
-            int algn = getAlignment(sigb[i]);
-            int len = Array.getLength(data);
-            switch (sigb[i]) {
-              case ArgumentType.BYTE:
-                primbuf = (byte[]) data;
-                break;
-              case ArgumentType.INT16:
-              case ArgumentType.INT32:
-              case ArgumentType.INT64:
-                primbuf = new byte[len * algn];
-                for (int j = 0, k = 0; j < len; j++, k += algn) {
-                  marshallint(Array.getLong(data, j), primbuf, k, algn);
-                }
-                break;
-              case ArgumentType.BOOLEAN:
-                primbuf = new byte[len * algn];
-                for (int j = 0, k = 0; j < len; j++, k += algn) {
-                  marshallint(Array.getBoolean(data, j) ? 1 : 0, primbuf, k, algn);
-                }
-                break;
-              case ArgumentType.DOUBLE:
-                primbuf = new byte[len * algn];
-                if (data instanceof float[]) {
-                  for (int j = 0, k = 0; j < len; j++, k += algn) {
-                    marshallint(Double.doubleToRawLongBits(((float[]) data)[j]), primbuf, k, algn);
-                  }
-                } else {
-                  for (int j = 0, k = 0; j < len; j++, k += algn) {
-                    marshallint(Double.doubleToRawLongBits(((double[]) data)[j]), primbuf, k, algn);
-                  }
-                }
-                break;
-              case ArgumentType.FLOAT:
-                primbuf = new byte[len * algn];
-                for (int j = 0, k = 0; j < len; j++, k += algn) {
-                  marshallint(Float.floatToRawIntBits(((float[]) data)[j]), primbuf, k, algn);
-                }
-                break;
-              default:
-                throw new MarshallingException("Primitive array being sent as non-primitive array.");
-            }
-            appendBytes(primbuf);
-          } else if (data instanceof List) {
-            Object[] contents = ((List<?>) data).toArray();
-            int diff = i;
-            ensureBuffers(contents.length * 4);
-            for (Object o : contents) {
-              diff = appendone(sigb, i, o);
-            }
-            if (contents.length == 0) {
-              diff = EmptyCollectionHelper.determineSignatureOffsetArray(sigb, diff);
-            }
-            i = diff;
-          } else if (data instanceof Map) {
-            int diff = i;
-            Map<Object, Object> map = (Map<Object, Object>) data;
-            ensureBuffers(map.size() * 6);
-            for (Map.Entry<Object, Object> o : map.entrySet()) {
-              diff = appendone(sigb, i, o);
-            }
-            if (map.size() == 0) {
-              diff = EmptyCollectionHelper.determineSignatureOffsetDict(sigb, diff);
-            }
-            i = diff;
-          } else {
-            Object[] contents = (Object[]) data;
-            ensureBuffers(contents.length * 4);
-            int diff = i;
-            for (Object o : contents) {
-              diff = appendone(sigb, i, o);
-            }
-            if (contents.length == 0) {
-              diff = EmptyCollectionHelper.determineSignatureOffsetArray(sigb, diff);
-            }
-            i = diff;
-          }
-          LOGGER.trace("start: {} end: {} length: {}", c, bytecounter, (bytecounter - c));
-          marshallint(bytecounter - c, alen, 0, 4);
-          break;
-        case ArgumentType.STRUCT1:
-          // Structs are aligned to 8 bytes
-          // and simply contain each element marshalled in order
-          Object[] contents;
-          if (data instanceof Container) {
-            contents = ((Container) data).getParameters();
-          } else {
-            contents = (Object[]) data;
-          }
-          ensureBuffers(contents.length * 4);
-          int j = 0;
-          for (i++; sigb[i] != ArgumentType.STRUCT2; i++) {
-            i = appendone(sigb, i, contents[j++]);
-          }
-          break;
-        case ArgumentType.DICT_ENTRY1:
-          // Dict entries are the same as structs.
-          if (data instanceof Map.Entry) {
-            i++;
-            i = appendone(sigb, i, ((Map.Entry<?, ?>) data).getKey());
-            i++;
-            i = appendone(sigb, i, ((Map.Entry<?, ?>) data).getValue());
-            i++;
-          } else {
-            contents = (Object[]) data;
-            j = 0;
-            for (i++; sigb[i] != ArgumentType.DICT_ENTRY2; i++) {
-              i = appendone(sigb, i, contents[j++]);
-            }
-          }
-          break;
-        case ArgumentType.VARIANT:
-          // Variants are marshalled as a signature
-          // followed by the value.
-          if (data instanceof Variant) {
-            Variant<?> var = (Variant<?>) data;
-            appendone(new byte[]{
-                ArgumentType.SIGNATURE
-            }, 0, var.getSig());
-            appendone((var.getSig()).getBytes(), 0, var.getValue());
-          } else if (data instanceof Object[]) {
-            contents = (Object[]) data;
-            appendone(new byte[]{
-                ArgumentType.SIGNATURE
-            }, 0, contents[0]);
-            appendone(((String) contents[0]).getBytes(), 0, contents[1]);
-          } else {
-            String sig = Marshalling.getDBusType(data.getClass())[0];
-            appendone(new byte[]{
-                ArgumentType.SIGNATURE
-            }, 0, sig);
-            appendone((sig).getBytes(), 0, data);
-          }
-          break;
-      }
-      return i;
-    } catch (ClassCastException cce) {
-      LOGGER.debug("Trying to marshall to unconvertible type.", cce);
-      throw new MarshallingException(
-          MessageFormat.format("Trying to marshall to unconvertible type (from {0} to {1}).",
-              data.getClass().getName(), (char) sigb[sigofs]));
+  private void appendIntegers(Object _data, int _len, int _algn) {
+    for (int j = 0; j < _len; j++, bytecounter += _algn) {
+      marshallint(Array.getLong(_data, j), wiredata, bytecounter, _algn);
     }
   }
 
+  /**
+   * Returns a buffer for the given number of bytes at the current position of the wire data,
+   * using the byte order of this message. The capacity has to be ensured before.
+   */
+  private ByteBuffer wrap(int _length) {
+    return ByteBuffer.wrap(wiredata, bytecounter, _length).slice().order(getByteOrder());
+  }
+
+  /**
+   * Byte order of the marshalled data of this message.
+   *
+   * @return byte order
+   */
+  ByteOrder getByteOrder() {
+    return big ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+  }
+
   /**
    * Pad the message to the proper alignment for the given type.
    *
    * @param _type type
    */
   public void pad(byte _type) {
-    LOGGER.trace("padding for {}", (char) _type);
     int a = getAlignment(_type);
-    LOGGER.trace("{} {} {} {}", preallocated, paofs, bytecounter, a);
-    int b = (int) ((bytecounter - preallocated) % a);
+    int b = bytecounter % a;
     if (0 == b) {
       return;
     }
     a = (a - b);
-    if (preallocated > 0) {
-      paofs += a;
-      preallocated -= a;
-    } else {
-      appendBytes(padding[a]);
-    }
-    LOGGER.trace("{} {} {} {}", preallocated, paofs, bytecounter, a);
-
+    // the buffer may be reused, so the padding has to be cleared
+    ensureCapacity(a);
+    Arrays.fill(wiredata, bytecounter, bytecounter + a, (byte) 0);
+    bytecounter += a;
   }
 
   /**
@@ -841,12 +976,12 @@ public class Message {
    * @throws DBusException on error
    */
   public void append(String sig, Object... data) throws DBusException {
-    LOGGER.debug("Appending sig: {} data: {}", sig, Arrays.deepToString(data));
-    byte[] sigb = sig.getBytes();
-    int j = 0;
-    for (int i = 0; i < sigb.length; i++) {
-      LOGGER.trace("Appending item: {} {} {}", i, ((char) sigb[i]), j);
-      i = appendone(sigb, i, data[j++]);
+    if (LOGGER.isDebugEnabled()) {
+      LOGGER.debug("Appending sig: {} data: {}", sig, Arrays.deepToString(data));
+    }
+    TypeCodec[] codecs = TypeCodec.forSignature(sig);
+    for (int j = 0; j < codecs.length; j++) {
+      codecs[j].encode(this, data[j]);
     }
   }
 
@@ -866,253 +1001,6 @@ public class Message {
     return _current + (a - (_current % a));
   }
 
-  /**
-   * Demarshall one value from a buffer.
-   *
-   * @param _signatureBuf A buffer of the D-Bus signature.
-   * @param _dataBuf      The buffer to demarshall from.
-   * @param _offsets      An array of two ints, which holds the position of the current signature offset and the current
-   *                      offset of the data buffer.
-   * @param _contained    converts nested arrays to Lists
-   * @return The demarshalled value.
-   */
-  private Object extractOne(byte[] _signatureBuf, byte[] _dataBuf, int[] _offsets, boolean _contained)
-      throws DBusException {
-
-    LOGGER.trace("Extracting type: {} from offset {}", ((char) _signatureBuf[_offsets[OFFSET_SIG]]),
-        _offsets[OFFSET_DATA]);
-
-    Object rv;
-    _offsets[OFFSET_DATA] = align(_offsets[OFFSET_DATA], _signatureBuf[_offsets[OFFSET_SIG]]);
-    switch (_signatureBuf[_offsets[OFFSET_SIG]]) {
-      case ArgumentType.BYTE:
-        rv = _dataBuf[_offsets[OFFSET_DATA]++];
-        break;
-      case ArgumentType.UINT32:
-        rv = new UInt32(demarshallint(_dataBuf, _offsets[OFFSET_DATA], 4));
-        _offsets[OFFSET_DATA] += 4;
-        break;
-      case ArgumentType.INT32:
-        rv = (int) demarshallint(_dataBuf, _offsets[OFFSET_DATA], 4);
-        _offsets[OFFSET_DATA] += 4;
-        break;
-      case ArgumentType.INT16:
-        rv = (short) demarshallint(_dataBuf, _offsets[OFFSET_DATA], 2);
-        _offsets[OFFSET_DATA] += 2;
-        break;
-      case ArgumentType.UINT16:
-        rv = new UInt16((int) demarshallint(_dataBuf, _offsets[OFFSET_DATA], 2));
-        _offsets[OFFSET_DATA] += 2;
-        break;
-      case ArgumentType.INT64:
-        rv = demarshallint(_dataBuf, _offsets[OFFSET_DATA], 8);
-        _offsets[OFFSET_DATA] += 8;
-        break;
-      case ArgumentType.UINT64:
-        long top;
-        long bottom;
-        if (big) {
-          top = demarshallint(_dataBuf, _offsets[OFFSET_DATA], 4);
-          _offsets[OFFSET_DATA] += 4;
-          bottom = demarshallint(_dataBuf, _offsets[OFFSET_DATA], 4);
-        } else {
-          bottom = demarshallint(_dataBuf, _offsets[OFFSET_DATA], 4);
-          _offsets[OFFSET_DATA] += 4;
-          top = demarshallint(_dataBuf, _offsets[OFFSET_DATA], 4);
-        }
-        rv = new UInt64(top, bottom);
-        _offsets[OFFSET_DATA] += 4;
-        break;
-      case ArgumentType.DOUBLE:
-        long l = demarshallint(_dataBuf, _offsets[OFFSET_DATA], 8);
-        _offsets[OFFSET_DATA] += 8;
-        rv = Double.longBitsToDouble(l);
-        break;
-      case ArgumentType.FLOAT:
-        int rf = (int) demarshallint(_dataBuf, _offsets[OFFSET_DATA], 4);
-        _offsets[OFFSET_DATA] += 4;
-        rv = Float.intBitsToFloat(rf);
-        break;
-      case ArgumentType.BOOLEAN:
-        rf = (int) demarshallint(_dataBuf, _offsets[OFFSET_DATA], 4);
-        _offsets[OFFSET_DATA] += 4;
-        rv = (1 == rf) ? Boolean.TRUE : Boolean.FALSE;
-        break;
-      case ArgumentType.ARRAY:
-        long size = demarshallint(_dataBuf, _offsets[OFFSET_DATA], 4);
-
-        LOGGER.trace("Reading array of size: {}", size);
-        _offsets[OFFSET_DATA] += 4;
-        byte algn = (byte) getAlignment(_signatureBuf[++_offsets[OFFSET_SIG]]);
-        _offsets[OFFSET_DATA] = align(_offsets[OFFSET_DATA], _signatureBuf[_offsets[OFFSET_SIG]]);
-        int length = (int) (size / algn);
-        if (length > AbstractConnection.MAX_ARRAY_LENGTH) {
-          throw new MarshallingException("Arrays must not exceed " + AbstractConnection.MAX_ARRAY_LENGTH);
-        }
-
-        rv = optimizePrimitives(_signatureBuf, _dataBuf, _offsets, size, algn, length);
-
-        if (_contained && !(rv instanceof List) && !(rv instanceof Map)) {
-          rv = ArrayFrob.listify(rv);
-        }
-        break;
-      case ArgumentType.STRUCT1:
-        List<Object> contents = new ArrayList<>();
-        while (_signatureBuf[++_offsets[OFFSET_SIG]] != ArgumentType.STRUCT2) {
-          contents.add(extractOne(_signatureBuf, _dataBuf, _offsets, true));
-        }
-        rv = contents.toArray();
-        break;
-      case ArgumentType.DICT_ENTRY1:
-        Object[] decontents = new Object[2];
-        if (LOGGER.isTraceEnabled()) { // avoid allocating these large heapdumps when trace logging is disabled
-          LOGGER.trace("Extracting Dict Entry ({}) from: {}",
-              Hexdump.toAscii(_signatureBuf, _offsets[OFFSET_SIG], _signatureBuf.length - _offsets[OFFSET_SIG]),
-              Hexdump.toHex(_dataBuf, _offsets[OFFSET_DATA], _dataBuf.length - _offsets[OFFSET_DATA]));
-        }
-        _offsets[OFFSET_SIG]++;
-        decontents[0] = extractOne(_signatureBuf, _dataBuf, _offsets, true);
-        _offsets[OFFSET_SIG]++;
-        decontents[1] = extractOne(_signatureBuf, _dataBuf, _offsets, true);
-        _offsets[OFFSET_SIG]++;
-        rv = decontents;
-        break;
-      case ArgumentType.VARIANT:
-        int[] newofs = new int[]{
-            0, _offsets[OFFSET_DATA]
-        };
-        String sig = (String) extract(ArgumentType.SIGNATURE_STRING, _dataBuf, newofs)[0];
-        newofs[OFFSET_SIG] = 0;
-        rv = new Variant<>(extract(sig, _dataBuf, newofs)[0], sig);
-        _offsets[OFFSET_DATA] = newofs[OFFSET_DATA];
-        break;
-      case ArgumentType.FILEDESCRIPTOR:
-        rv = filedescriptors.get((int) demarshallint(_dataBuf, _offsets[OFFSET_DATA], 4));
-        _offsets[OFFSET_DATA] += 4;
-        break;
-      case ArgumentType.STRING:
-        length = (int) demarshallint(_dataBuf, _offsets[OFFSET_DATA], 4);
-        _offsets[OFFSET_DATA] += 4;
-        rv = new String(_dataBuf, _offsets[OFFSET_DATA], length, StandardCharsets.UTF_8);
-        _offsets[OFFSET_DATA] += length + 1;
-        break;
-      case ArgumentType.OBJECT_PATH:
-        length = (int) demarshallint(_dataBuf, _offsets[OFFSET_DATA], 4);
-        _offsets[OFFSET_DATA] += 4;
-        rv = new ObjectPath(getSource(), new String(_dataBuf, _offsets[OFFSET_DATA], length));
-        _offsets[OFFSET_DATA] += length + 1;
-        break;
-      case ArgumentType.SIGNATURE:
-        length = (_dataBuf[_offsets[OFFSET_DATA]++] & 0xFF);
-        rv = new String(_dataBuf, _offsets[OFFSET_DATA], length);
-        _offsets[OFFSET_DATA] += length + 1;
-        break;
-      default:
-        throw new UnknownTypeCodeException(_signatureBuf[_offsets[OFFSET_SIG]]);
-    }
-    if (LOGGER.isTraceEnabled()) {
-      if (rv instanceof Object[]) {
-        LOGGER.trace("Extracted: {} (now at {})", Arrays.deepToString((Object[]) rv), _offsets[OFFSET_DATA]);
-      } else {
-        LOGGER.trace("Extracted: {} (now at {})", rv, _offsets[OFFSET_DATA]);
-      }
-    }
-    return rv;
-  }
-
-  private Object optimizePrimitives(byte[] _signatureBuf, byte[] _dataBuf, int[] _offsets, long size, byte algn,
-                                    int length)
-      throws DBusException {
-    Object rv;
-    switch (_signatureBuf[_offsets[OFFSET_SIG]]) {
-      case ArgumentType.BYTE:
-        // GP change
-        rv = Arrays.copyOfRange(_dataBuf, _offsets[OFFSET_DATA], _offsets[OFFSET_DATA] + length);
-        // rv = new byte[length];
-        // System.arraycopy(_dataBuf, _offsets[OFFSET_DATA], rv, 0, length);
-        _offsets[OFFSET_DATA] += size;
-        break;
-      case ArgumentType.INT16:
-        rv = new short[length];
-        for (int j = 0; j < length; j++, _offsets[OFFSET_DATA] += algn) {
-          ((short[]) rv)[j] = (short) demarshallint(_dataBuf, _offsets[OFFSET_DATA], algn);
-        }
-        break;
-      case ArgumentType.INT32:
-        rv = new int[length];
-        for (int j = 0; j < length; j++, _offsets[OFFSET_DATA] += algn) {
-          ((int[]) rv)[j] = (int) demarshallint(_dataBuf, _offsets[OFFSET_DATA], algn);
-        }
-        break;
-      case ArgumentType.INT64:
-        rv = new long[length];
-        for (int j = 0; j < length; j++, _offsets[OFFSET_DATA] += algn) {
-          ((long[]) rv)[j] = demarshallint(_dataBuf, _offsets[OFFSET_DATA], algn);
-        }
-        break;
-      case ArgumentType.BOOLEAN:
-        rv = new boolean[length];
-        for (int j = 0; j < length; j++, _offsets[OFFSET_DATA] += algn) {
-          ((boolean[]) rv)[j] = (1 == demarshallint(_dataBuf, _offsets[OFFSET_DATA], algn));
-        }
-        break;
-      case ArgumentType.FLOAT:
-        rv = new float[length];
-        for (int j = 0; j < length; j++, _offsets[OFFSET_DATA] += algn) {
-          ((float[]) rv)[j] = Float.intBitsToFloat((int) demarshallint(_dataBuf, _offsets[OFFSET_DATA], algn));
-        }
-        break;
-      case ArgumentType.DOUBLE:
-        rv = new double[length];
-        for (int j = 0; j < length; j++, _offsets[OFFSET_DATA] += algn) {
-          ((double[]) rv)[j] = Double.longBitsToDouble(demarshallint(_dataBuf, _offsets[OFFSET_DATA], algn));
-        }
-        break;
-      case ArgumentType.DICT_ENTRY1:
-        if (0 == size) {
-          // advance the type parser even on 0-size arrays.
-          List<Type> temp = new ArrayList<>();
-          byte[] temp2 = new byte[_signatureBuf.length - _offsets[OFFSET_SIG]];
-          System.arraycopy(_signatureBuf, _offsets[OFFSET_SIG], temp2, 0, temp2.length);
-          String temp3 = new String(temp2);
-          // ofs[OFFSET_SIG] gets incremented anyway. Leave one character on the stack
-          int temp4 = Marshalling.getJavaType(temp3, temp, 1) - 1;
-          _offsets[OFFSET_SIG] += temp4;
-          LOGGER.trace("Aligned type: {} {} {}", temp3, temp4, _offsets[OFFSET_SIG]);
-        }
-        int ofssave = _offsets[OFFSET_SIG];
-        long end = _offsets[OFFSET_DATA] + size;
-        List<Object[]> entries = new ArrayList<>();
-        while (_offsets[OFFSET_DATA] < end) {
-          _offsets[OFFSET_SIG] = ofssave;
-          entries.add((Object[]) extractOne(_signatureBuf, _dataBuf, _offsets, true));
-        }
-        rv = new DBusMap<>(entries.toArray(new Object[0][]));
-        break;
-      default:
-        if (0 == size) {
-          // advance the type parser even on 0-size arrays.
-          List<Type> temp = new ArrayList<>();
-          byte[] temp2 = new byte[_signatureBuf.length - _offsets[OFFSET_SIG]];
-          System.arraycopy(_signatureBuf, _offsets[OFFSET_SIG], temp2, 0, temp2.length);
-          String temp3 = new String(temp2);
-          // ofs[OFFSET_SIG] gets incremented anyway. Leave one character on the stack
-          int temp4 = Marshalling.getJavaType(temp3, temp, 1) - 1;
-          _offsets[OFFSET_SIG] += temp4;
-          LOGGER.trace("Aligned type: {} {} {}", temp3, temp4, _offsets[OFFSET_SIG]);
-        }
-        ofssave = _offsets[OFFSET_SIG];
-        end = _offsets[OFFSET_DATA] + size;
-        List<Object> contents = new ArrayList<>();
-        while (_offsets[OFFSET_DATA] < end) {
-          _offsets[OFFSET_SIG] = ofssave;
-          contents.add(extractOne(_signatureBuf, _dataBuf, _offsets, true));
-        }
-        rv = contents;
-    }
-    return rv;
-  }
-
   /**
    * Demarshall values from a buffer.
    *
@@ -1142,12 +1030,14 @@ public class Message {
   public Object[] extract(String _signature, byte[] _dataBuf, int[] _offsets) throws DBusException {
     LOGGER.trace("extract({},#{}, {{},{}}", _signature, _dataBuf.length, _offsets[OFFSET_SIG],
         _offsets[OFFSET_DATA]);
-    List<Object> rv = new ArrayList<>();
-    byte[] sigb = _signature.getBytes();
-    for (; _offsets[0] < sigb.length; _offsets[0]++) {
-      rv.add(extractOne(sigb, _dataBuf, _offsets, false));
+    TypeCodec[] codecs = TypeCodec.forSignature(
+        0 == _offsets[OFFSET_SIG] ? _signature : _signature.substring(_offsets[OFFSET_SIG]));
+    Object[] rv = new Object[codecs.length];
+    for (int i = 0; i < codecs.length; i++) {
+      rv[i] = codecs[i].decode(this, _dataBuf, _offsets, false);
     }
-    return rv.toArray();
+    _offsets[OFFSET_SIG] = _signature.length();
+    return rv;
   }
 
   /**
@@ -1156,7 +1046,7 @@ public class Message {
    * @return string
    */
   public String getSource() {
-    return (String) headers.get(HeaderField.SENDER);
+    return sender;
   }
 
   /**
@@ -1165,7 +1055,7 @@ public class Message {
    * @return string
    */
   public String getDestination() {
-    return (String) headers.get(HeaderField.DESTINATION);
+    return destination;
   }
 
   /**
@@ -1174,7 +1064,7 @@ public class Message {
    * @return string
    */
   public String getInterface() {
-    return (String) headers.get(HeaderField.INTERFACE);
+    return iface;
   }
 
   /**
@@ -1183,11 +1073,7 @@ public class Message {
    * @return string
    */
   public String getPath() {
-    Object o = headers.get(HeaderField.PATH);
-    if (null == o) {
-      return null;
-    }
-    return o.toString();
+    return path;
   }
 
   /**
@@ -1197,9 +1083,9 @@ public class Message {
    */
   public String getName() {
     if (this instanceof org.freedesktop.dbus.errors.Error) {
-      return (String) headers.get(HeaderField.ERROR_NAME);
+      return errorName;
     } else {
-      return (String) headers.get(HeaderField.MEMBER);
+      return member;
     }
   }
 
@@ -1209,7 +1095,7 @@ public class Message {
    * @return string
    */
   public String getSig() {
-    return (String) headers.get(HeaderField.SIGNATURE);
+    return signature;
   }
 
   /**
@@ -1236,11 +1122,7 @@ public class Message {
    * @return The reply serial, or 0 if it is not a reply.
    */
   public long getReplySerial() {
-    Number l = (Number) headers.get(HeaderField.REPLY_SERIAL);
-    if (null == l) {
-      return 0;
-    }
-    return l.longValue();
+    return replySerial;
   }
 
   /**
@@ -1251,9 +1133,8 @@ public class Message {
    */
   public Object[] getParameters() throws DBusException {
     if (null == args && null != body) {
-      String sig = (String) headers.get(HeaderField.SIGNATURE);
-      if (null != sig && 0 != body.length) {
-        args = extract(sig, body, 0);
+      if (null != signature && 0 != body.length) {
+        args = extract(signature, body, 0);
       } else {
         args = new Object[0];
       }
@@ -1261,6 +1142,19 @@ public class Message {
     return args;
   }
 
+  /**
+   * Returns a reader to read the body values one by one, without creating the objects
+   * {@link #getParameters()} would create. Each call returns a new reader starting at the first value.
+   *
+   * @return reader, null if this message was not received (has no body data)
+   */
+  public MessageBodyReader getBodyReader() {
+    if (null == body) {
+      return null;
+    }
+    return new MessageBodyReader(body, 0, signature, big ? Endian.BIG : Endian.LITTLE);
+  }
+
   public void setArgs(Object[] _args) {
     this.args = _args;
   }
@@ -1272,27 +1166,70 @@ public class Message {
    * @throws DBusException on error
    */
   public void setSource(String source) throws DBusException {
+    if (null != received && null != source) {
+      if (!source.equals(sender)) {
+        replaceReceivedSender(source);
+      }
+      sender = source;
+      return;
+    }
+    sender = source;
     if (null != body) {
-      wiredata = new byte[BUFFERINCREMENT][];
-      bufferuse = 0;
+      // re-marshall the message, reusing the marshalling buffer if there is one
+      received = null;
       bytecounter = 0;
-      preallocate(12);
+      ensureCapacity(INITIAL_BUFFER_SIZE + body.length);
       append("yyyyuu", big ? Endian.BIG : Endian.LITTLE, type, flags, protover, bodylen, serial);
-      headers.put(HeaderField.SENDER, source);
-      Object[][] newhead = new Object[headers.size()][];
-      int i = 0;
-      for (Byte b : headers.keySet()) {
-        newhead[i] = new Object[2];
-        newhead[i][0] = b;
-        newhead[i][1] = headers.get(b);
-        i++;
-      }
-      append("a(yv)", (Object) newhead);
+      append("a(yv)", (Object) getHeaderFields());
       pad((byte) 8);
       appendBytes(body);
     }
   }
 
+  /**
+   * Replace the SENDER field in the header fields of a received message. Only the header fields are
+   * copied: the old field is cut out and the new one is appended as last field, the body is not touched.
+   * Fields are 8 byte aligned, so the fields after the cut keep their alignment.
+   *
+   * @param _source new sender
+   */
+  private void replaceReceivedSender(String _source) {
+    byte[] headers = received[1];
+    int end = 8 + (int) demarshallint(headers, 0, 4);
+    byte[] name = _source.getBytes(StandardCharsets.UTF_8);
+
+    // header fields without the old SENDER field
+    int keep = end;
+    int tail = 0;
+    if (0 <= senderFieldStart) {
+      keep = senderFieldStart;
+      int next = (senderFieldEnd + 7) & ~7;
+      tail = Math.max(0, end - next);
+    }
+    int fieldStart = (keep + tail + 7) & ~7;
+    int newEnd = fieldStart + 8 + name.length + 1;
+
+    byte[] newHeaders = new byte[(newEnd + 7) & ~7];
+    System.arraycopy(headers, 0, newHeaders, 0, keep);
+    if (0 < tail) {
+      System.arraycopy(headers, end - tail, newHeaders, keep, tail);
+    }
+    marshallint(newEnd - 8, newHeaders, 0, 4);
+    // (y v) with signature 's': code, signature length, 's', nul, then the string length (4 byte aligned)
+    newHeaders[fieldStart] = HeaderField.SENDER;
+    newHeaders[fieldStart + 1] = 1;
+    newHeaders[fieldStart + 2] = ArgumentType.STRING;
+    marshallint(name.length, newHeaders, fieldStart + 4, 4);
+    System.arraycopy(name, 0, newHeaders, fieldStart + 8, name.length);
+
+    senderFieldStart = fieldStart;
+    senderFieldEnd = newEnd;
+    received = new byte[][]{
+        received[0], newHeaders, received[2]
+    };
+    bytecounter = received[0].length + newHeaders.length - 4 + received[2].length;
+  }
+
   /**
    * Type of this message.
    *
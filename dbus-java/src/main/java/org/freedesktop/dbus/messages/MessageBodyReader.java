@@ -0,0 +1,435 @@
+package org.freedesktop.dbus.messages;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import org.freedesktop.dbus.exceptions.MarshallingException;
+import org.freedesktop.dbus.messages.Message.ArgumentType;
+
+/**
+ * Cursor over the body of a received message.
+ * <p>
+ * Values are read one by one in the order given by the message signature, without creating
+ * the boxed values, lists and maps {@link Message#getParameters()} would create.
+ * Containers are entered with {@link #enterArray()}, {@link #enterStruct()}, {@link #enterDictEntry()}
+ * or {@link #enterVariant()} and left with {@link #exitContainer()}, values which are not of interest
+ * can be skipped with {@link #skip()}.
+ * </p>
+ * Example reading a body of signature <code>a(sdx)</code>:
+ * <pre>
+ * MessageBodyReader reader = message.getBodyReader();
+ * reader.enterArray();
+ * while (reader.hasNext()) {
+ *   reader.enterStruct();
+ *   String name = reader.readString();
+ *   double value = reader.readDouble();
+ *   long timestamp = reader.readInt64();
+ *   reader.exitContainer();
+ * }
+ * reader.exitContainer();
+ * </pre>
+ * A reader is not thread safe and is only valid for the message it was created for.
+ * Lengths and signatures read from the body are checked against the message data, malformed
+ * bodies fail with a {@link MarshallingException}.
+ */
+public final class MessageBodyReader {
+
+  /**
+   * Maximum nesting depth of containers (32 arrays and 32 structs are allowed by the specification).
+   */
+  private static final int MAX_DEPTH = 64;
+
+  private static final int KIND_TOP = 0;
+  private static final int KIND_ARRAY = 1;
+  private static final int KIND_STRUCT = 2;
+  private static final int KIND_DICT_ENTRY = 3;
+  private static final int KIND_VARIANT = 4;
+
+  /* lengths are unsigned 32-bit values, larger values do not fit into a byte array anyway */
+  private static final long MAX_LENGTH = Integer.MAX_VALUE;
+
+  private final byte[] data;
+  private final byte endian;
+  private int offset;
+
+  /*
+   * stack of open containers, the signature of the values of a frame is sigs[i] up to sigEnd[i],
+   * the data of a frame ends at dataEnd[i] (the end of the innermost array, or of the body)
+   */
+  private final byte[][] sigs = new byte[MAX_DEPTH + 1][];
+  private final int[] kinds = new int[MAX_DEPTH + 1];
+  private final int[] sigEnd = new int[MAX_DEPTH + 1];
+  private final int[] sigPos = new int[MAX_DEPTH + 1];
+  private final int[] dataEnd = new int[MAX_DEPTH + 1];
+  private int depth;
+
+  MessageBodyReader(byte[] _data, int _offset, String _signature, byte _endian) {
+    data = _data;
+    offset = _offset;
+    endian = _endian;
+    byte[] sig = null == _signature ? new byte[0] : _signature.getBytes(StandardCharsets.US_ASCII);
+    sigs[0] = sig;
+    kinds[0] = KIND_TOP;
+    sigEnd[0] = sig.length;
+    sigPos[0] = 0;
+    dataEnd[0] = _data.length;
+  }
+
+  /**
+   * Checks if there are more values to read in the current container (or the body).
+   *
+   * @return true if another value can be read
+   */
+  public boolean hasNext() {
+    if (KIND_ARRAY == kinds[depth]) {
+      return offset < dataEnd[depth];
+    }
+    return sigPos[depth] < sigEnd[depth];
+  }
+
+  /**
+   * Returns the type code of the next value (see {@link ArgumentType}).
+   *
+   * @return type code
+   * @throws MarshallingException if there are no more values in the current container
+   */
+  public byte peekType() throws MarshallingException {
+    if (!hasNext()) {
+      throw new MarshallingException("No more values to read");
+    }
+    return sigs[depth][sigPos[depth]];
+  }
+
+  public byte readByte() throws MarshallingException {
+    next(ArgumentType.BYTE);
+    checkLength(1);
+    return data[offset++];
+  }
+
+  public boolean readBoolean() throws MarshallingException {
+    next(ArgumentType.BOOLEAN);
+    return 1 == readInt(4);
+  }
+
+  public short readInt16() throws MarshallingException {
+    next(ArgumentType.INT16);
+    return (short) readInt(2);
+  }
+
+  public int readUInt16() throws MarshallingException {
+    next(ArgumentType.UINT16);
+    return (int) readInt(2);
+  }
+
+  public int readInt32() throws MarshallingException {
+    next(ArgumentType.INT32);
+    return (int) readInt(4);
+  }
+
+  public long readUInt32() throws MarshallingException {
+    next(ArgumentType.UINT32);
+    return readInt(4);
+  }
+
+  public long readInt64() throws MarshallingException {
+    next(ArgumentType.INT64);
+    return readInt(8);
+  }
+
+  /**
+   * Reads an unsigned 64-bit value.
+   *
+   * @return value, to be interpreted as unsigned
+   * @throws MarshallingException if the next value is of another type
+   */
+  public long readUInt64() throws MarshallingException {
+    next(ArgumentType.UINT64);
+    return readInt(8);
+  }
+
+  public double readDouble() throws MarshallingException {
+    next(ArgumentType.DOUBLE);
+    return Double.longBitsToDouble(readInt(8));
+  }
+
+  public float readFloat() throws MarshallingException {
+    next(ArgumentType.FLOAT);
+    return Float.intBitsToFloat((int) readInt(4));
+  }
+
+  /**
+   * Reads a file descriptor.
+   *
+   * @return index of the file descriptor in the list of file descriptors of the message
+   * @throws MarshallingException if the next value is of another type
+   */
+  public int readFileDescriptorIndex() throws MarshallingException {
+    next(ArgumentType.FILEDESCRIPTOR);
+    return (int) readInt(4);
+  }
+
+  public String readString() throws MarshallingException {
+    next(ArgumentType.STRING);
+    return readString(readLength(), StandardCharsets.UTF_8);
+  }
+
+  public String readObjectPath() throws MarshallingException {
+    next(ArgumentType.OBJECT_PATH);
+    return readString(readLength(), StandardCharsets.UTF_8);
+  }
+
+  public String readSignature() throws MarshallingException {
+    next(ArgumentType.SIGNATURE);
+    return readString(readSignatureLength(), StandardCharsets.US_ASCII);
+  }
+
+  /**
+   * Enters an array. Use {@link #hasNext()} to check for further elements.
+   *
+   * @return length of the array data in bytes
+   * @throws MarshallingException if the next value is not an array
+   */
+  public int enterArray() throws MarshallingException {
+    byte[] sig = sigs[depth];
+    int elementStart = sigPos[depth] + 1;
+    next(ArgumentType.ARRAY);
+    int length = readLength();
+    // the length does not include the padding before the first element
+    offset = align(offset, sig[elementStart]);
+    checkLength(length);
+    push(KIND_ARRAY, sig, elementStart, skipType(sig, elementStart, sigEnd[depth]), offset + length);
+    return length;
+  }
+
+  /**
+   * Enters a struct.
+   *
+   * @throws MarshallingException if the next value is not a struct
+   */
+  public void enterStruct() throws MarshallingException {
+    byte[] sig = sigs[depth];
+    int start = sigPos[depth] + 1;
+    int end = skipType(sig, sigPos[depth], sigEnd[depth]) - 1;
+    next(ArgumentType.STRUCT1);
+    push(KIND_STRUCT, sig, start, end, dataEnd[depth]);
+  }
+
+  /**
+   * Enters a dict entry (an element of a map).
+   *
+   * @throws MarshallingException if the next value is not a dict entry
+   */
+  public void enterDictEntry() throws MarshallingException {
+    byte[] sig = sigs[depth];
+    int start = sigPos[depth] + 1;
+    int end = skipType(sig, sigPos[depth], sigEnd[depth]) - 1;
+    next(ArgumentType.DICT_ENTRY1);
+    push(KIND_DICT_ENTRY, sig, start, end, dataEnd[depth]);
+  }
+
+  /**
+   * Enters a variant, the signature of the contained value can be checked with {@link #peekType()}.
+   *
+   * @throws MarshallingException if the next value is not a variant
+   */
+  public void enterVariant() throws MarshallingException {
+    next(ArgumentType.VARIANT);
+    int length = readSignatureLength();
+    // the signature is used directly from the message data
+    int start = offset;
+    checkLength(length + 1);
+    if (0 == length || skipType(data, start, start + length) != start + length) {
+      throw new MarshallingException("Variant signature must be a single complete type");
+    }
+    offset += length + 1;
+    push(KIND_VARIANT, data, start, start + length, dataEnd[depth]);
+  }
+
+  /**
+   * Leaves the current container, skipping all values which have not been read.
+   *
+   * @throws MarshallingException if no container was entered
+   */
+  public void exitContainer() throws MarshallingException {
+    if (0 == depth) {
+      throw new MarshallingException("No container to exit");
+    }
+    if (KIND_ARRAY == kinds[depth]) {
+      offset = dataEnd[depth];
+    } else {
+      while (hasNext()) {
+        skip();
+      }
+    }
+    depth--;
+  }
+
+  /**
+   * Skips the next value.
+   *
+   * @throws MarshallingException if there are no more values in the current container
+   */
+  public void skip() throws MarshallingException {
+    switch (peekType()) {
+      case ArgumentType.ARRAY:
+        enterArray();
+        exitContainer();
+        break;
+      case ArgumentType.STRUCT1:
+        enterStruct();
+        exitContainer();
+        break;
+      case ArgumentType.DICT_ENTRY1:
+        enterDictEntry();
+        exitContainer();
+        break;
+      case ArgumentType.VARIANT:
+        enterVariant();
+        exitContainer();
+        break;
+      case ArgumentType.STRING:
+      case ArgumentType.OBJECT_PATH:
+        next(peekType());
+        int length = readLength();
+        checkLength(length + 1L);
+        offset += length + 1;
+        break;
+      case ArgumentType.SIGNATURE:
+        next(ArgumentType.SIGNATURE);
+        int sigLength = readSignatureLength();
+        checkLength(sigLength + 1);
+        offset += sigLength + 1;
+        break;
+      default:
+        byte type = peekType();
+        next(type);
+        // basic types of fixed size, the size equals the alignment
+        checkLength(Message.getAlignment(type));
+        offset += Message.getAlignment(type);
+    }
+  }
+
+  /**
+   * Checks the type of the next value, aligns the data offset and advances the signature position.
+   */
+  private void next(byte _type) throws MarshallingException {
+    byte actual = peekType();
+    if (actual != _type) {
+      throw new MarshallingException(
+          String.format("Trying to read value of type %s, but next value is of type %s", (char) _type, (char) actual));
+    }
+    offset = align(offset, _type);
+    if (KIND_ARRAY == kinds[depth]) {
+      // arrays contain only one type, which is used again for each element
+      return;
+    }
+    sigPos[depth] = skipType(sigs[depth], sigPos[depth], sigEnd[depth]);
+  }
+
+  private void push(int _kind, byte[] _sig, int _start, int _end, int _dataEnd) throws MarshallingException {
+    if (depth == MAX_DEPTH) {
+      throw new MarshallingException("Containers nested too deeply");
+    }
+    depth++;
+    kinds[depth] = _kind;
+    sigs[depth] = _sig;
+    sigEnd[depth] = _end;
+    sigPos[depth] = _start;
+    dataEnd[depth] = _dataEnd;
+  }
+
+  private long readInt(int _width) throws MarshallingException {
+    checkLength(_width);
+    long l = Message.demarshallint(data, offset, endian, _width);
+    offset += _width;
+    return l;
+  }
+
+  /**
+   * Reads the length of a string or an array.
+   */
+  private int readLength() throws MarshallingException {
+    long length = readInt(4);
+    if (length > MAX_LENGTH) {
+      throw new MarshallingException("Invalid length " + length);
+    }
+    checkLength(length);
+    return (int) length;
+  }
+
+  private int readSignatureLength() throws MarshallingException {
+    checkLength(1);
+    return data[offset++] & 0xFF;
+  }
+
+  /**
+   * Reads a string of the given length followed by a nul byte.
+   */
+  private String readString(int _length, Charset _charset) throws MarshallingException {
+    checkLength(_length + 1L);
+    String s = new String(data, offset, _length, _charset);
+    offset += _length + 1;
+    return s;
+  }
+
+  /**
+   * Checks that the given number of bytes is left in the data of the current container (or the body).
+   */
+  private void checkLength(long _length) throws MarshallingException {
+    if (offset > dataEnd[depth] || _length > dataEnd[depth] - offset) {
+      throw new MarshallingException("Value exceeds the message data");
+    }
+  }
+
+  private static int align(int _current, byte _type) {
+    int a = Message.getAlignment(_type);
+    int rest = _current % a;
+    return 0 == rest ? _current : _current + a - rest;
+  }
+
+  /**
+   * Returns the position after the complete type starting at the given position, the type must end before _end.
+   */
+  private static int skipType(byte[] _sig, int _pos, int _end) throws MarshallingException {
+    if (_pos >= _end) {
+      throw new MarshallingException("Incomplete signature");
+    }
+    switch (_sig[_pos]) {
+      case ArgumentType.ARRAY:
+        return skipType(_sig, _pos + 1, _end);
+      case ArgumentType.STRUCT1:
+        int pos = _pos + 1;
+        do {
+          pos = skipType(_sig, pos, _end);
+          if (pos >= _end) {
+            throw new MarshallingException("Incomplete signature");
+          }
+        } while (ArgumentType.STRUCT2 != _sig[pos]);
+        return pos + 1;
+      case ArgumentType.DICT_ENTRY1:
+        pos = skipType(_sig, skipType(_sig, _pos + 1, _end), _end);
+        if (pos >= _end || ArgumentType.DICT_ENTRY2 != _sig[pos]) {
+          throw new MarshallingException("Invalid dict entry in signature");
+        }
+        return pos + 1;
+      case ArgumentType.BYTE:
+      case ArgumentType.BOOLEAN:
+      case ArgumentType.INT16:
+      case ArgumentType.UINT16:
+      case ArgumentType.INT32:
+      case ArgumentType.UINT32:
+      case ArgumentType.INT64:
+      case ArgumentType.UINT64:
+      case ArgumentType.DOUBLE:
+      case ArgumentType.FLOAT:
+      case ArgumentType.STRING:
+      case ArgumentType.OBJECT_PATH:
+      case ArgumentType.SIGNATURE:
+      case ArgumentType.FILEDESCRIPTOR:
+      case ArgumentType.VARIANT:
+        return _pos + 1;
+      default:
+        throw new MarshallingException("Invalid type " + (char) _sig[_pos] + " in signature");
+    }
+  }
+}
@@ -14,9 +14,9 @@ package org.freedesktop.dbus.messages;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 import lombok.extern.slf4j.Slf4j;
-import org.freedesktop.Hexdump;
 import org.freedesktop.dbus.FileDescriptor;
 import org.freedesktop.dbus.connections.impl.DBusConnection;
 import org.freedesktop.dbus.exceptions.DBusException;
@@ -39,8 +39,8 @@ public class MethodCall extends Message {
     if (null == member || null == path) {
       throw new MessageFormatException("Must specify destination, path and function name to MethodCalls.");
     }
-    getHeaders().put(Message.HeaderField.PATH, path);
-    getHeaders().put(Message.HeaderField.MEMBER, member);
+    setHeader(Message.HeaderField.PATH, path);
+    setHeader(Message.HeaderField.MEMBER, member);
 
     List<Object> hargs = new ArrayList<>();
 
@@ -51,7 +51,7 @@ public class MethodCall extends Message {
     });
 
     if (null != source) {
-      getHeaders().put(Message.HeaderField.SENDER, source);
+      setHeader(Message.HeaderField.SENDER, source);
       hargs.add(new Object[]{
           Message.HeaderField.SENDER, new Object[]{
           ArgumentType.STRING_STRING, source
@@ -60,7 +60,7 @@ public class MethodCall extends Message {
     }
 
     if (null != dest) {
-      getHeaders().put(Message.HeaderField.DESTINATION, dest);
+      setHeader(Message.HeaderField.DESTINATION, dest);
       hargs.add(new Object[]{
           Message.HeaderField.DESTINATION, new Object[]{
           ArgumentType.STRING_STRING, dest
@@ -74,7 +74,7 @@ public class MethodCall extends Message {
           ArgumentType.STRING_STRING, iface
       }
       });
-      getHeaders().put(Message.HeaderField.INTERFACE, iface);
+      setHeader(Message.HeaderField.INTERFACE, iface);
     }
 
     hargs.add(new Object[]{
@@ -90,7 +90,7 @@ public class MethodCall extends Message {
           ArgumentType.SIGNATURE_STRING, sig
       }
       });
-      getHeaders().put(Message.HeaderField.SIGNATURE, sig);
+      setHeader(Message.HeaderField.SIGNATURE, sig);
       setArgs(args);
     }
 
@@ -104,7 +104,7 @@ public class MethodCall extends Message {
         }
 
         if( totalFileDes > 0 ){
-            getHeaders().put(Message.HeaderField.UNIX_FDS, totalFileDes);
+            setHeader(Message.HeaderField.UNIX_FDS, totalFileDes);
             hargs.add(new Object[]{
                     Message.HeaderField.UNIX_FDS, new Object[]{
                     ArgumentType.UINT32_STRING, new UInt32( totalFileDes )
@@ -112,8 +112,8 @@ public class MethodCall extends Message {
             });
         }
 
-        byte[] blen = new byte[4];
-        appendBytes(blen);
+        int blen = (int) getByteCounter();
+        appendint(0, 4);
         append("ua(yv)", getSerial(), hargs.toArray());
         pad((byte) 8);
 
@@ -122,8 +122,7 @@ public class MethodCall extends Message {
       append(sig, args);
     }
     LOGGER.debug("Appended body, type: {} start: {} end: {} size: {}", sig, c, getByteCounter(), (getByteCounter() - c));
-    marshallint(getByteCounter() - c, blen, 0, 4);
-    LOGGER.debug("marshalled size ({}): {}", blen, Hexdump.format(blen));
+    marshallint(getByteCounter() - c, blen, 4);
   }
 
     private static long REPLY_WAIT_TIMEOUT = 200000;
@@ -142,6 +141,26 @@ public class MethodCall extends Message {
   // CHECKSTYLE:OFF
   Message reply = null;
   // CHECKSTYLE:ON
+  private Consumer<Message> replyHandler;
+  private long timeout;
+
+  /**
+   * Set the timeout for the reply to this call.
+   *
+   * @param _timeout timeout in ms, 0 to use the default timeout
+   */
+  public void setTimeout(long _timeout) {
+    timeout = _timeout;
+  }
+
+  /**
+   * Timeout for the reply to this call: the timeout set for this call, or the default timeout.
+   *
+   * @return timeout in ms
+   */
+  public long getTimeout() {
+    return timeout > 0 ? timeout : REPLY_WAIT_TIMEOUT;
+  }
 
   public synchronized boolean hasReply() {
     return null != reply;
@@ -169,7 +188,8 @@ public class MethodCall extends Message {
 
   /**
    * Block (if necessary) for a reply.
-   * Default timeout is 20s, or can be configured with setDefaultTimeout()
+   * Waits for the timeout of this call (see {@link #setTimeout(long)}),
+   * by default the timeout configured with setDefaultTimeout()
    *
    * @return The reply to this MethodCall, or null if a timeout happens.
    */
@@ -180,17 +200,44 @@ public class MethodCall extends Message {
       return reply;
     }
     try {
-      wait(REPLY_WAIT_TIMEOUT);
+      wait(getTimeout());
       return reply;
     } catch (InterruptedException exI) {
       return reply;
     }
   }
 
-  public synchronized void setReply(Message _reply) {
+  public void setReply(Message _reply) {
+    Consumer<Message> handler;
+    synchronized (this) {
       LOGGER.trace("Setting reply to {} to {}", this, _reply);
-    this.reply = _reply;
-    notifyAll();
+      this.reply = _reply;
+      handler = replyHandler;
+      replyHandler = null;
+      notifyAll();
+    }
+    if (null != handler) {
+      handler.accept(_reply);
+    }
+  }
+
+  /**
+   * Set a handler receiving the reply without blocking a thread.
+   * The handler is called once on the thread setting the reply (usually the thread reading messages),
+   * or immediately if there already is a reply.
+   *
+   * @param _handler handler for the reply (a {@link MethodReturn} or an {@link org.freedesktop.dbus.errors.Error})
+   */
+  public void setReplyHandler(Consumer<Message> _handler) {
+    Message current;
+    synchronized (this) {
+      current = reply;
+      if (null == current) {
+        replyHandler = _handler;
+        return;
+      }
+    }
+    _handler.accept(current);
   }
 
 }
@@ -35,7 +35,7 @@ public class MethodReturn extends Message {
   public MethodReturn(String source, String dest, long replyserial, String sig, Object... args) throws DBusException {
     super(DBusConnection.getEndianness(), Message.MessageType.METHOD_RETURN, (byte) 0);
 
-    getHeaders().put(Message.HeaderField.REPLY_SERIAL, replyserial);
+    setHeader(Message.HeaderField.REPLY_SERIAL, replyserial);
 
     List<Object> hargs = new ArrayList<>();
     hargs.add(new Object[]{
@@ -45,7 +45,7 @@ public class MethodReturn extends Message {
     });
 
     if (null != source) {
-      getHeaders().put(Message.HeaderField.SENDER, source);
+      setHeader(Message.HeaderField.SENDER, source);
       hargs.add(new Object[]{
           Message.HeaderField.SENDER, new Object[]{
           ArgumentType.STRING_STRING, source
@@ -54,7 +54,7 @@ public class MethodReturn extends Message {
     }
 
     if (null != dest) {
-      getHeaders().put(Message.HeaderField.DESTINATION, dest);
+      setHeader(Message.HeaderField.DESTINATION, dest);
       hargs.add(new Object[]{
           Message.HeaderField.DESTINATION, new Object[]{
           ArgumentType.STRING_STRING, dest
@@ -68,7 +68,7 @@ public class MethodReturn extends Message {
           ArgumentType.SIGNATURE_STRING, sig
       }
       });
-      getHeaders().put(Message.HeaderField.SIGNATURE, sig);
+      setHeader(Message.HeaderField.SIGNATURE, sig);
       setArgs(args);
     }
 
@@ -80,7 +80,7 @@ public class MethodReturn extends Message {
     }
 
     if (totalFileDes > 0) {
-      getHeaders().put(Message.HeaderField.UNIX_FDS, totalFileDes);
+      setHeader(Message.HeaderField.UNIX_FDS, totalFileDes);
       hargs.add(new Object[]{
           Message.HeaderField.UNIX_FDS, new Object[]{
           ArgumentType.UINT32_STRING, new UInt32(totalFileDes)
@@ -88,8 +88,8 @@ public class MethodReturn extends Message {
       });
     }
 
-    byte[] blen = new byte[4];
-    appendBytes(blen);
+    int blen = (int) getByteCounter();
+    appendint(0, 4);
     append("ua(yv)", getSerial(), hargs.toArray());
     pad((byte) 8);
 
@@ -97,7 +97,7 @@ public class MethodReturn extends Message {
     if (null != sig) {
       append(sig, args);
     }
-    marshallint(getByteCounter() - c, blen, 0, 4);
+    marshallint(getByteCounter() - c, blen, 4);
   }
 
   public MethodReturn(MethodCall mc, String sig, Object... args) throws DBusException {
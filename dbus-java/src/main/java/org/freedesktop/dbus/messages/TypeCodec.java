@@ -0,0 +1,755 @@
+package org.freedesktop.dbus.messages;
+
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import lombok.extern.slf4j.Slf4j;
+import org.freedesktop.Hexdump;
+import org.freedesktop.dbus.ArrayFrob;
+import org.freedesktop.dbus.Container;
+import org.freedesktop.dbus.DBusMap;
+import org.freedesktop.dbus.FileDescriptor;
+import org.freedesktop.dbus.Marshalling;
+import org.freedesktop.dbus.ObjectPath;
+import org.freedesktop.dbus.connections.AbstractConnection;
+import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.exceptions.MarshallingException;
+import org.freedesktop.dbus.exceptions.UnknownTypeCodeException;
+import org.freedesktop.dbus.messages.Message.ArgumentType;
+import org.freedesktop.dbus.types.UInt16;
+import org.freedesktop.dbus.types.UInt32;
+import org.freedesktop.dbus.types.UInt64;
+import org.freedesktop.dbus.types.Variant;
+
+/**
+ * Encoder/decoder for a single complete D-Bus type.
+ * <p>
+ * Signatures are compiled once into a tree of codecs (e.g. <code>a{sa(ii)}</code> becomes
+ * an array codec holding a dict entry codec holding a string codec and another array codec ...),
+ * so marshalling and demarshalling values does not have to interpret the signature again.
+ * Compiled signatures are kept in a bounded cache, see {@link #forSignature(String)}.
+ * </p>
+ */
+@Slf4j
+abstract class TypeCodec {
+
+  /**
+   * Maximum number of compiled signatures kept in the cache.
+   */
+  private static final int MAX_CACHED_SIGNATURES = 1024;
+
+  private static final ConcurrentMap<String, TypeCodec[]> CACHE = new ConcurrentHashMap<>();
+
+  static final TypeCodec BYTE = new ByteCodec();
+  static final TypeCodec BOOLEAN = new BooleanCodec();
+  static final TypeCodec INT16 = new Int16Codec();
+  static final TypeCodec UINT16 = new UInt16Codec();
+  static final TypeCodec INT32 = new Int32Codec();
+  static final TypeCodec UINT32 = new UInt32Codec();
+  static final TypeCodec INT64 = new Int64Codec();
+  static final TypeCodec UINT64 = new UInt64Codec();
+  static final TypeCodec DOUBLE = new DoubleCodec();
+  static final TypeCodec FLOAT = new FloatCodec();
+  static final TypeCodec STRING = new StringCodec(ArgumentType.STRING);
+  static final TypeCodec OBJECT_PATH = new StringCodec(ArgumentType.OBJECT_PATH);
+  static final TypeCodec SIGNATURE = new SignatureCodec();
+  static final TypeCodec FILEDESCRIPTOR = new FileDescriptorCodec();
+  static final TypeCodec VARIANT = new VariantCodec();
+
+  private final byte type;
+  private final int alignment;
+
+  TypeCodec(byte _type) {
+    type = _type;
+    alignment = Message.getAlignment(_type);
+  }
+
+  /**
+   * Returns the compiled codecs for the given signature, one codec per complete type.
+   * Signatures are compiled on first use and cached afterwards.
+   *
+   * @param _signature D-Bus signature
+   * @return codecs
+   * @throws DBusException if signature is invalid
+   */
+  static TypeCodec[] forSignature(String _signature) throws DBusException {
+    TypeCodec[] codecs = CACHE.get(_signature);
+    if (null == codecs) {
+      codecs = compile(_signature);
+      if (CACHE.size() >= MAX_CACHED_SIGNATURES) {
+        // cache is full, drop any entry; frequently used signatures will be compiled again soon
+        Iterator<String> it = CACHE.keySet().iterator();
+        if (it.hasNext()) {
+          it.next();
+          it.remove();
+        }
+      }
+      CACHE.putIfAbsent(_signature, codecs);
+    }
+    return codecs;
+  }
+
+  /**
+   * Compiles the given signature into a codec tree, one codec per complete type.
+   *
+   * @param _signature D-Bus signature
+   * @return codecs
+   * @throws DBusException if signature is invalid
+   */
+  static TypeCodec[] compile(String _signature) throws DBusException {
+    byte[] sigb = _signature.getBytes();
+    int[] pos = new int[1];
+    List<TypeCodec> codecs = new ArrayList<>();
+    while (pos[0] < sigb.length) {
+      codecs.add(compileOne(sigb, pos, _signature));
+    }
+    return codecs.toArray(new TypeCodec[0]);
+  }
+
+  private static TypeCodec compileOne(byte[] _sigb, int[] _pos, String _signature) throws DBusException {
+    if (_pos[0] >= _sigb.length) {
+      throw new MarshallingException("Incomplete signature: " + _signature);
+    }
+    byte code = _sigb[_pos[0]++];
+    switch (code) {
+      case ArgumentType.BYTE:
+        return BYTE;
+      case ArgumentType.BOOLEAN:
+        return BOOLEAN;
+      case ArgumentType.INT16:
+        return INT16;
+      case ArgumentType.UINT16:
+        return UINT16;
+      case ArgumentType.INT32:
+        return INT32;
+      case ArgumentType.UINT32:
+        return UINT32;
+      case ArgumentType.INT64:
+        return INT64;
+      case ArgumentType.UINT64:
+        return UINT64;
+      case ArgumentType.DOUBLE:
+        return DOUBLE;
+      case ArgumentType.FLOAT:
+        return FLOAT;
+      case ArgumentType.STRING:
+        return STRING;
+      case ArgumentType.OBJECT_PATH:
+        return OBJECT_PATH;
+      case ArgumentType.SIGNATURE:
+        return SIGNATURE;
+      case ArgumentType.FILEDESCRIPTOR:
+        return FILEDESCRIPTOR;
+      case ArgumentType.VARIANT:
+        return VARIANT;
+      case ArgumentType.ARRAY:
+        return new ArrayCodec(compileOne(_sigb, _pos, _signature));
+      case ArgumentType.STRUCT1:
+        List<TypeCodec> fields = new ArrayList<>();
+        while (_pos[0] < _sigb.length && _sigb[_pos[0]] != ArgumentType.STRUCT2) {
+          fields.add(compileOne(_sigb, _pos, _signature));
+        }
+        if (_pos[0]++ >= _sigb.length) {
+          throw new MarshallingException("Unterminated struct in signature: " + _signature);
+        }
+        return new StructCodec(fields.toArray(new TypeCodec[0]));
+      case ArgumentType.DICT_ENTRY1:
+        TypeCodec key = compileOne(_sigb, _pos, _signature);
+        TypeCodec value = compileOne(_sigb, _pos, _signature);
+        if (_pos[0] >= _sigb.length || _sigb[_pos[0]++] != ArgumentType.DICT_ENTRY2) {
+          throw new MarshallingException("Invalid dict entry in signature: " + _signature);
+        }
+        return new DictEntryCodec(key, value);
+      default:
+        throw new UnknownTypeCodeException(code);
+    }
+  }
+
+  /**
+   * Type code of this codec.
+   *
+   * @return type code
+   */
+  byte getType() {
+    return type;
+  }
+
+  /**
+   * Pads the message to the alignment of this type and marshalls the given value.
+   *
+   * @param _message message to append to
+   * @param _data value
+   * @throws DBusException if value cannot be marshalled
+   */
+  final void encode(Message _message, Object _data) throws DBusException {
+    LOGGER.trace("Appending type: {} value: {}", (char) type, _data);
+    _message.pad(type);
+    try {
+      encodeValue(_message, _data);
+    } catch (ClassCastException _ex) {
+      LOGGER.debug("Trying to marshall to unconvertible type.", _ex);
+      throw new MarshallingException(
+          MessageFormat.format("Trying to marshall to unconvertible type (from {0} to {1}).",
+              _data.getClass().getName(), (char) type));
+    }
+  }
+
+  /**
+   * Aligns the data offset to this type and demarshalls one value.
+   *
+   * @param _message message the data belongs to
+   * @param _dataBuf buffer to demarshall from
+   * @param _offsets offsets, the data offset will be updated to the start of the next value
+   * @param _contained converts nested arrays to Lists
+   * @return demarshalled value
+   * @throws DBusException if value cannot be demarshalled
+   */
+  final Object decode(Message _message, byte[] _dataBuf, int[] _offsets, boolean _contained) throws DBusException {
+    LOGGER.trace("Extracting type: {} from offset {}", (char) type, _offsets[Message.OFFSET_DATA]);
+    _offsets[Message.OFFSET_DATA] = align(_offsets[Message.OFFSET_DATA]);
+    Object rv = decodeValue(_message, _dataBuf, _offsets, _contained);
+    if (LOGGER.isTraceEnabled()) {
+      if (rv instanceof Object[]) {
+        LOGGER.trace("Extracted: {} (now at {})", Arrays.deepToString((Object[]) rv), _offsets[Message.OFFSET_DATA]);
+      } else {
+        LOGGER.trace("Extracted: {} (now at {})", rv, _offsets[Message.OFFSET_DATA]);
+      }
+    }
+    return rv;
+  }
+
+  int align(int _current) {
+    int rest = _current % alignment;
+    return 0 == rest ? _current : _current + alignment - rest;
+  }
+
+  abstract void encodeValue(Message _message, Object _data) throws DBusException;
+
+  abstract Object decodeValue(Message _message, byte[] _dataBuf, int[] _offsets, boolean _contained)
+      throws DBusException;
+
+  /**
+   * Reads an integer at the current data offset and advances the offset.
+   */
+  static long readInt(Message _message, byte[] _dataBuf, int[] _offsets, int _width) {
+    long l = _message.demarshallint(_dataBuf, _offsets[Message.OFFSET_DATA], _width);
+    _offsets[Message.OFFSET_DATA] += _width;
+    return l;
+  }
+
+  static final class ByteCodec extends TypeCodec {
+    ByteCodec() {
+      super(ArgumentType.BYTE);
+    }
+
+    @Override
+    void encodeValue(Message _message, Object _data) {
+      _message.appendByte(((Number) _data).byteValue());
+    }
+
+    @Override
+    Object decodeValue(Message _message, byte[] _dataBuf, int[] _offsets, boolean _contained) {
+      return _dataBuf[_offsets[Message.OFFSET_DATA]++];
+    }
+  }
+
+  static final class BooleanCodec extends TypeCodec {
+    BooleanCodec() {
+      super(ArgumentType.BOOLEAN);
+    }
+
+    @Override
+    void encodeValue(Message _message, Object _data) {
+      _message.appendint((Boolean) _data ? 1 : 0, 4);
+    }
+
+    @Override
+    Object decodeValue(Message _message, byte[] _dataBuf, int[] _offsets, boolean _contained) {
+      return (1 == (int) readInt(_message, _dataBuf, _offsets, 4)) ? Boolean.TRUE : Boolean.FALSE;
+    }
+  }
+
+  static final class Int16Codec extends TypeCodec {
+    Int16Codec() {
+      super(ArgumentType.INT16);
+    }
+
+    @Override
+    void encodeValue(Message _message, Object _data) {
+      _message.appendint(((Number) _data).shortValue(), 2);
+    }
+
+    @Override
+    Object decodeValue(Message _message, byte[] _dataBuf, int[] _offsets, boolean _contained) {
+      return (short) readInt(_message, _dataBuf, _offsets, 2);
+    }
+  }
+
+  static final class UInt16Codec extends TypeCodec {
+    UInt16Codec() {
+      super(ArgumentType.UINT16);
+    }
+
+    @Override
+    void encodeValue(Message _message, Object _data) {
+      _message.appendint(((Number) _data).intValue(), 2);
+    }
+
+    @Override
+    Object decodeValue(Message _message, byte[] _dataBuf, int[] _offsets, boolean _contained) {
+      return new UInt16((int) readInt(_message, _dataBuf, _offsets, 2));
+    }
+  }
+
+  static final class Int32Codec extends TypeCodec {
+    Int32Codec() {
+      super(ArgumentType.INT32);
+    }
+
+    @Override
+    void encodeValue(Message _message, Object _data) {
+      _message.appendint(((Number) _data).intValue(), 4);
+    }
+
+    @Override
+    Object decodeValue(Message _message, byte[] _dataBuf, int[] _offsets, boolean _contained) {
+      return (int) readInt(_message, _dataBuf, _offsets, 4);
+    }
+  }
+
+  static final class UInt32Codec extends TypeCodec {
+    UInt32Codec() {
+      super(ArgumentType.UINT32);
+    }
+
+    @Override
+    void encodeValue(Message _message, Object _data) {
+      _message.appendint(((Number) _data).longValue(), 4);
+    }
+
+    @Override
+    Object decodeValue(Message _message, byte[] _dataBuf, int[] _offsets, boolean _contained) {
+      return new UInt32(readInt(_message, _dataBuf, _offsets, 4));
+    }
+  }
+
+  static final class Int64Codec extends TypeCodec {
+    Int64Codec() {
+      super(ArgumentType.INT64);
+    }
+
+    @Override
+    void encodeValue(Message _message, Object _data) {
+      _message.appendint(((Number) _data).longValue(), 8);
+    }
+
+    @Override
+    Object decodeValue(Message _message, byte[] _dataBuf, int[] _offsets, boolean _contained) {
+      return readInt(_message, _dataBuf, _offsets, 8);
+    }
+  }
+
+  static final class UInt64Codec extends TypeCodec {
+    UInt64Codec() {
+      super(ArgumentType.UINT64);
+    }
+
+    @Override
+    void encodeValue(Message _message, Object _data) {
+      UInt64 value = (UInt64) _data;
+      if (Message.Endian.BIG == _message.getEndianess()) {
+        _message.appendint(value.top(), 4);
+        _message.appendint(value.bottom(), 4);
+      } else {
+        _message.appendint(value.bottom(), 4);
+        _message.appendint(value.top(), 4);
+      }
+    }
+
+    @Override
+    Object decodeValue(Message _message, byte[] _dataBuf, int[] _offsets, boolean _contained) {
+      long top;
+      long bottom;
+      if (Message.Endian.BIG == _message.getEndianess()) {
+        top = readInt(_message, _dataBuf, _offsets, 4);
+        bottom = readInt(_message, _dataBuf, _offsets, 4);
+      } else {
+        bottom = readInt(_message, _dataBuf, _offsets, 4);
+        top = readInt(_message, _dataBuf, _offsets, 4);
+      }
+      return new UInt64(top, bottom);
+    }
+  }
+
+  static final class DoubleCodec extends TypeCodec {
+    DoubleCodec() {
+      super(ArgumentType.DOUBLE);
+    }
+
+    @Override
+    void encodeValue(Message _message, Object _data) {
+      _message.appendint(Double.doubleToLongBits(((Number) _data).doubleValue()), 8);
+    }
+
+    @Override
+    Object decodeValue(Message _message, byte[] _dataBuf, int[] _offsets, boolean _contained) {
+      return Double.longBitsToDouble(readInt(_message, _dataBuf, _offsets, 8));
+    }
+  }
+
+  static final class FloatCodec extends TypeCodec {
+    FloatCodec() {
+      super(ArgumentType.FLOAT);
+    }
+
+    @Override
+    void encodeValue(Message _message, Object _data) {
+      _message.appendint(Float.floatToIntBits(((Number) _data).floatValue()), 4);
+    }
+
+    @Override
+    Object decodeValue(Message _message, byte[] _dataBuf, int[] _offsets, boolean _contained) {
+      return Float.intBitsToFloat((int) readInt(_message, _dataBuf, _offsets, 4));
+    }
+  }
+
+  /**
+   * Strings and object paths are marshalled as a UInt32 with the length,
+   * followed by the String, followed by a null byte.
+   */
+  static final class StringCodec extends TypeCodec {
+    StringCodec(byte _type) {
+      super(_type);
+    }
+
+    @Override
+    void encodeValue(Message _message, Object _data) {
+      byte[] payloadbytes = _data.toString().getBytes(StandardCharsets.UTF_8);
+      LOGGER.trace("Appending String of length {}", payloadbytes.length);
+      _message.ensureCapacity(payloadbytes.length + 5);
+      _message.appendint(payloadbytes.length, 4);
+      _message.appendBytes(payloadbytes);
+      _message.appendByte((byte) 0);
+    }
+
+    @Override
+    Object decodeValue(Message _message, byte[] _dataBuf, int[] _offsets, boolean _contained) {
+      int length = (int) readInt(_message, _dataBuf, _offsets, 4);
+      Object rv;
+      if (ArgumentType.OBJECT_PATH == getType()) {
+        rv = new ObjectPath(_message.getSource(), new String(_dataBuf, _offsets[Message.OFFSET_DATA], length));
+      } else {
+        rv = new String(_dataBuf, _offsets[Message.OFFSET_DATA], length, StandardCharsets.UTF_8);
+      }
+      _offsets[Message.OFFSET_DATA] += length + 1;
+      return rv;
+    }
+  }
+
+  /**
+   * Signatures are marshalled as a byte with the length,
+   * followed by the String, followed by a null byte.
+   */
+  static final class SignatureCodec extends TypeCodec {
+    SignatureCodec() {
+      super(ArgumentType.SIGNATURE);
+    }
+
+    @Override
+    void encodeValue(Message _message, Object _data) throws DBusException {
+      String payload;
+      if (_data instanceof Type[]) {
+        payload = Marshalling.getDBusType((Type[]) _data);
+      } else {
+        payload = (String) _data;
+      }
+      byte[] pbytes = payload.getBytes();
+      _message.ensureCapacity(2 + pbytes.length);
+      _message.appendByte((byte) pbytes.length);
+      _message.appendBytes(pbytes);
+      _message.appendByte((byte) 0);
+    }
+
+    @Override
+    Object decodeValue(Message _message, byte[] _dataBuf, int[] _offsets, boolean _contained) {
+      int length = _dataBuf[_offsets[Message.OFFSET_DATA]++] & 0xFF;
+      String rv = new String(_dataBuf, _offsets[Message.OFFSET_DATA], length);
+      _offsets[Message.OFFSET_DATA] += length + 1;
+      return rv;
+    }
+  }
+
+  static final class FileDescriptorCodec extends TypeCodec {
+    FileDescriptorCodec() {
+      super(ArgumentType.FILEDESCRIPTOR);
+    }
+
+    @Override
+    void encodeValue(Message _message, Object _data) {
+      List<FileDescriptor> filedescriptors = _message.getFiledescriptors();
+      filedescriptors.add((FileDescriptor) _data);
+      _message.appendint(filedescriptors.size() - 1, 4);
+      LOGGER.debug("Just inserted {} as filedescriptor", filedescriptors.size() - 1);
+    }
+
+    @Override
+    Object decodeValue(Message _message, byte[] _dataBuf, int[] _offsets, boolean _contained) {
+      return _message.getFiledescriptors().get((int) readInt(_message, _dataBuf, _offsets, 4));
+    }
+  }
+
+  /**
+   * Variants are marshalled as a signature followed by the value.
+   */
+  static final class VariantCodec extends TypeCodec {
+    VariantCodec() {
+      super(ArgumentType.VARIANT);
+    }
+
+    @Override
+    void encodeValue(Message _message, Object _data) throws DBusException {
+      String sig;
+      Object value;
+      if (_data instanceof Variant) {
+        sig = ((Variant<?>) _data).getSig();
+        value = ((Variant<?>) _data).getValue();
+      } else if (_data instanceof Object[]) {
+        sig = (String) ((Object[]) _data)[0];
+        value = ((Object[]) _data)[1];
+      } else {
+        sig = Marshalling.getDBusType(_data.getClass())[0];
+        value = _data;
+      }
+      SIGNATURE.encode(_message, sig);
+      forSignature(sig)[0].encode(_message, value);
+    }
+
+    @Override
+    Object decodeValue(Message _message, byte[] _dataBuf, int[] _offsets, boolean _contained) throws DBusException {
+      String sig = (String) SIGNATURE.decode(_message, _dataBuf, _offsets, false);
+      Object value = null;
+      for (TypeCodec codec : forSignature(sig)) {
+        Object o = codec.decode(_message, _dataBuf, _offsets, false);
+        if (null == value) {
+          value = o;
+        }
+      }
+      return new Variant<>(value, sig);
+    }
+  }
+
+  /**
+   * Arrays are given as a UInt32 for the length in bytes,
+   * padding to the element alignment, then elements in
+   * order. The length is the length from the end of the
+   * initial padding to the end of the last element.
+   */
+  static final class ArrayCodec extends TypeCodec {
+    private final TypeCodec element;
+
+    ArrayCodec(TypeCodec _element) {
+      super(ArgumentType.ARRAY);
+      element = _element;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    void encodeValue(Message _message, Object _data) throws DBusException {
+      if (LOGGER.isTraceEnabled() && _data instanceof Object[]) {
+        LOGGER.trace("Appending array: {}", Arrays.deepToString((Object[]) _data));
+      }
+
+      int alen = (int) _message.getByteCounter();
+      _message.appendint(0, 4);
+      _message.pad(element.getType());
+      int c = (int) _message.getByteCounter();
+
+      if (_data.getClass().isArray() && _data.getClass().getComponentType().isPrimitive()) {
+        _message.appendPrimitiveArray(element.getType(), _data);
+      } else if (_data instanceof List) {
+        for (Object o : (List<?>) _data) {
+          element.encode(_message, o);
+        }
+      } else if (_data instanceof Map) {
+        for (Map.Entry<Object, Object> o : ((Map<Object, Object>) _data).entrySet()) {
+          element.encode(_message, o);
+        }
+      } else {
+        for (Object o : (Object[]) _data) {
+          element.encode(_message, o);
+        }
+      }
+
+      int end = (int) _message.getByteCounter();
+      LOGGER.trace("start: {} end: {} length: {}", c, end, end - c);
+      _message.marshallint(end - c, alen, 4);
+    }
+
+    @Override
+    Object decodeValue(Message _message, byte[] _dataBuf, int[] _offsets, boolean _contained) throws DBusException {
+      long size = readInt(_message, _dataBuf, _offsets, 4);
+      LOGGER.trace("Reading array of size: {}", size);
+
+      int algn = element.alignment;
+      _offsets[Message.OFFSET_DATA] = element.align(_offsets[Message.OFFSET_DATA]);
+      int length = (int) (size / algn);
+      if (length > AbstractConnection.MAX_ARRAY_LENGTH) {
+        throw new MarshallingException("Arrays must not exceed " + AbstractConnection.MAX_ARRAY_LENGTH);
+      }
+
+      Object rv = decodeElements(_message, _dataBuf, _offsets, size, algn, length);
+      if (_contained && !(rv instanceof List) && !(rv instanceof Map)) {
+        rv = ArrayFrob.listify(rv);
+      }
+      return rv;
+    }
+
+    private Object decodeElements(Message _message, byte[] _dataBuf, int[] _offsets, long _size, int _algn,
+        int _length) throws DBusException {
+      Object rv;
+      switch (element.getType()) {
+        case ArgumentType.BYTE:
+          rv = new byte[_length];
+          view(_message, _dataBuf, _offsets, _length).get((byte[]) rv);
+          break;
+        case ArgumentType.INT16:
+          rv = new short[_length];
+          view(_message, _dataBuf, _offsets, _length * _algn).asShortBuffer().get((short[]) rv);
+          break;
+        case ArgumentType.INT32:
+          rv = new int[_length];
+          view(_message, _dataBuf, _offsets, _length * _algn).asIntBuffer().get((int[]) rv);
+          break;
+        case ArgumentType.INT64:
+          rv = new long[_length];
+          view(_message, _dataBuf, _offsets, _length * _algn).asLongBuffer().get((long[]) rv);
+          break;
+        case ArgumentType.BOOLEAN:
+          rv = new boolean[_length];
+          for (int j = 0; j < _length; j++) {
+            ((boolean[]) rv)[j] = (1 == readInt(_message, _dataBuf, _offsets, _algn));
+          }
+          break;
+        case ArgumentType.FLOAT:
+          rv = new float[_length];
+          view(_message, _dataBuf, _offsets, _length * _algn).asFloatBuffer().get((float[]) rv);
+          break;
+        case ArgumentType.DOUBLE:
+          rv = new double[_length];
+          view(_message, _dataBuf, _offsets, _length * _algn).asDoubleBuffer().get((double[]) rv);
+          break;
+        case ArgumentType.DICT_ENTRY1:
+          long end = _offsets[Message.OFFSET_DATA] + _size;
+          List<Object[]> entries = new ArrayList<>();
+          while (_offsets[Message.OFFSET_DATA] < end) {
+            entries.add((Object[]) element.decode(_message, _dataBuf, _offsets, true));
+          }
+          rv = new DBusMap<>(entries.toArray(new Object[0][]));
+          break;
+        default:
+          end = _offsets[Message.OFFSET_DATA] + _size;
+          List<Object> contents = new ArrayList<>();
+          while (_offsets[Message.OFFSET_DATA] < end) {
+            contents.add(element.decode(_message, _dataBuf, _offsets, true));
+          }
+          rv = contents;
+      }
+      return rv;
+    }
+
+    /**
+     * Returns a view of the given number of bytes at the current data offset in the byte order of the message,
+     * and moves the offset behind them, so primitive arrays can be copied with one bulk transfer.
+     */
+    private static ByteBuffer view(Message _message, byte[] _dataBuf, int[] _offsets, int _length)
+        throws MarshallingException {
+      int offset = _offsets[Message.OFFSET_DATA];
+      if (offset + _length > _dataBuf.length) {
+        throw new MarshallingException("Array exceeds the message data");
+      }
+      _offsets[Message.OFFSET_DATA] += _length;
+      return ByteBuffer.wrap(_dataBuf, offset, _length).slice().order(_message.getByteOrder());
+    }
+  }
+
+  /**
+   * Structs are aligned to 8 bytes and simply contain each element marshalled in order.
+   */
+  static final class StructCodec extends TypeCodec {
+    private final TypeCodec[] fields;
+
+    StructCodec(TypeCodec[] _fields) {
+      super(ArgumentType.STRUCT1);
+      fields = _fields;
+    }
+
+    @Override
+    void encodeValue(Message _message, Object _data) throws DBusException {
+      Object[] contents;
+      if (_data instanceof Container) {
+        contents = ((Container) _data).getParameters();
+      } else {
+        contents = (Object[]) _data;
+      }
+      for (int j = 0; j < fields.length; j++) {
+        fields[j].encode(_message, contents[j]);
+      }
+    }
+
+    @Override
+    Object decodeValue(Message _message, byte[] _dataBuf, int[] _offsets, boolean _contained) throws DBusException {
+      Object[] contents = new Object[fields.length];
+      for (int j = 0; j < fields.length; j++) {
+        contents[j] = fields[j].decode(_message, _dataBuf, _offsets, true);
+      }
+      return contents;
+    }
+  }
+
+  /**
+   * Dict entries are the same as structs.
+   */
+  static final class DictEntryCodec extends TypeCodec {
+    private final TypeCodec key;
+    private final TypeCodec value;
+
+    DictEntryCodec(TypeCodec _key, TypeCodec _value) {
+      super(ArgumentType.DICT_ENTRY1);
+      key = _key;
+      value = _value;
+    }
+
+    @Override
+    void encodeValue(Message _message, Object _data) throws DBusException {
+      if (_data instanceof Map.Entry) {
+        key.encode(_message, ((Map.Entry<?, ?>) _data).getKey());
+        value.encode(_message, ((Map.Entry<?, ?>) _data).getValue());
+      } else {
+        Object[] contents = (Object[]) _data;
+        key.encode(_message, contents[0]);
+        value.encode(_message, contents[1]);
+      }
+    }
+
+    @Override
+    Object decodeValue(Message _message, byte[] _dataBuf, int[] _offsets, boolean _contained) throws DBusException {
+      if (LOGGER.isTraceEnabled()) { // avoid allocating these large heapdumps when trace logging is disabled
+        LOGGER.trace("Extracting Dict Entry from: {}", Hexdump.toHex(_dataBuf,
+            _offsets[Message.OFFSET_DATA], _dataBuf.length - _offsets[Message.OFFSET_DATA]));
+      }
+      return new Object[]{
+          key.decode(_message, _dataBuf, _offsets, true),
+          value.decode(_message, _dataBuf, _offsets, true)
+      };
+    }
+  }
+}
@@ -0,0 +1,142 @@
+package org.freedesktop.dbus.spi;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.ScatteringByteChannel;
+import java.util.Arrays;
+
+import lombok.extern.slf4j.Slf4j;
+import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.exceptions.MessageFormatException;
+import org.freedesktop.dbus.exceptions.MessageProtocolVersionException;
+import org.freedesktop.dbus.messages.Message;
+import org.freedesktop.dbus.messages.MessageFactory;
+
+/**
+ * {@link IMessageReader} reading directly from a (blocking) NIO channel.
+ * <p>
+ * The fixed part of the header is read into a buffer owned by the reader, header fields and body
+ * are read directly into the arrays of the message (with one scattering read loop if supported by the channel).
+ * </p>
+ */
+@Slf4j
+public class ChannelMessageReader implements IMessageReader {
+
+  /**
+   * Fixed header (yyyyuu) plus the length of the header field array.
+   */
+  private static final int FIXED_HEADER_LENGTH = 16;
+
+  private ReadableByteChannel channel;
+  private final ByteBuffer fixedHeader;
+
+  public ChannelMessageReader(ReadableByteChannel _channel) {
+    channel = _channel;
+    fixedHeader = ByteBuffer.allocate(FIXED_HEADER_LENGTH);
+  }
+
+  @Override
+  public Message readMessage() throws IOException, DBusException {
+    fixedHeader.clear();
+    readFully(fixedHeader, 1);
+
+    /* Parse the details from the header */
+    byte endian = fixedHeader.get(0);
+    byte type = fixedHeader.get(1);
+    byte protover = fixedHeader.get(3);
+    if (protover > Message.PROTOCOL) {
+      throw new MessageProtocolVersionException(String.format("Protocol version %s is unsupported", protover));
+    }
+
+    fixedHeader.order(endian == Message.Endian.BIG ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+    long bodylen = fixedHeader.getInt(4) & 0xFFFFFFFFL;
+    long headerlen = fixedHeader.getInt(12) & 0xFFFFFFFFL;
+    if (0 != headerlen % 8) {
+      headerlen += 8 - (headerlen % 8);
+    }
+    if (headerlen + bodylen > Message.MAXIMUM_MESSAGE_LENGTH) {
+      throw new MessageFormatException(String.format("Message length %s exceeds maximum", headerlen + bodylen));
+    }
+
+    byte[] buf = Arrays.copyOf(fixedHeader.array(), 12);
+
+    /* header array length at offset 0, fields start 8-aligned (like on the wire) */
+    byte[] header = new byte[(int) headerlen + 8];
+    System.arraycopy(fixedHeader.array(), 12, header, 0, 4);
+
+    byte[] body = new byte[(int) bodylen];
+
+    readFully(new ByteBuffer[] {ByteBuffer.wrap(header, 8, (int) headerlen), ByteBuffer.wrap(body)}, 2);
+
+    Message m;
+    try {
+      m = MessageFactory.createMessage(type, buf, header, body, null);
+    } catch (DBusException | RuntimeException dbe) {
+      LOGGER.debug("", dbe);
+      throw dbe;
+    }
+
+    LOGGER.debug("=> {}", m);
+    return m;
+  }
+
+  /**
+   * Read from the channel until the given buffers are full.
+   *
+   * @param _bufs buffers to fill in order
+   * @param _stage read stage, only used in the EOF message
+   * @throws IOException when reading fails or EOF is reached
+   */
+  private void readFully(ByteBuffer[] _bufs, int _stage) throws IOException {
+    if (channel instanceof ScatteringByteChannel) {
+      ScatteringByteChannel scattering = (ScatteringByteChannel) channel;
+      long remaining = 0;
+      for (ByteBuffer buf : _bufs) {
+        remaining += buf.remaining();
+      }
+      while (remaining > 0) {
+        long read = scattering.read(_bufs);
+        if (read < 0) {
+          throw new EOFException("Underlying transport returned EOF (" + _stage + ")");
+        }
+        remaining -= read;
+      }
+    } else {
+      for (ByteBuffer buf : _bufs) {
+        readFully(buf, _stage);
+      }
+    }
+  }
+
+  /**
+   * Read from the channel until the given buffer is full.
+   *
+   * @param _buf buffer to fill
+   * @param _stage read stage, only used in the EOF message
+   * @throws IOException when reading fails or EOF is reached
+   */
+  private void readFully(ByteBuffer _buf, int _stage) throws IOException {
+    while (_buf.hasRemaining()) {
+      if (channel.read(_buf) < 0) {
+        throw new EOFException("Underlying transport returned EOF (" + _stage + ")");
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    LOGGER.trace("Closing Message Reader");
+    if (channel != null) {
+      channel.close();
+    }
+    channel = null;
+  }
+
+  @Override
+  public boolean isClosed() {
+    return channel == null;
+  }
+}
@@ -0,0 +1,110 @@
+package org.freedesktop.dbus.spi;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.Arrays;
+import java.util.List;
+
+import lombok.extern.slf4j.Slf4j;
+import org.freedesktop.Hexdump;
+import org.freedesktop.dbus.messages.Message;
+
+/**
+ * {@link IMessageWriter} which writes all wire data fragments of a message
+ * with a single gathering write (writev) instead of one write per fragment.
+ */
+@Slf4j
+public class GatheringMessageWriter implements IMessageWriter {
+
+  private GatheringByteChannel channel;
+  private ByteBuffer[] buffers = new ByteBuffer[0];
+  private int count;
+  private long length;
+
+  public GatheringMessageWriter(GatheringByteChannel _channel) {
+    channel = _channel;
+  }
+
+  @Override
+  public synchronized void writeMessage(Message m) throws IOException {
+    addMessage(m);
+    writeBuffers();
+  }
+
+  @Override
+  public synchronized void writeMessages(List<Message> _messages) throws IOException {
+    for (Message m : _messages) {
+      addMessage(m);
+    }
+    writeBuffers();
+  }
+
+  /**
+   * Add the wire data of the given message to the buffers to write.
+   *
+   * @param m message
+   */
+  private void addMessage(Message m) {
+    LOGGER.debug("<= {}", m);
+    if (null == m) {
+      return;
+    }
+    ByteBuffer[] wiredata = m.getWireBuffers();
+    if (null == wiredata) {
+      LOGGER.warn("Message {} wire-data was null!", m);
+      return;
+    }
+
+    if (buffers.length < count + wiredata.length) {
+      buffers = Arrays.copyOf(buffers, count + wiredata.length);
+    }
+
+    for (ByteBuffer buf : wiredata) {
+      if (LOGGER.isTraceEnabled()) {
+        LOGGER.trace("{}", Hexdump.toHex(buf.array(), buf.position(), buf.remaining()));
+      }
+      if (!buf.hasRemaining()) {
+        continue;
+      }
+      buffers[count++] = buf;
+      length += buf.remaining();
+    }
+  }
+
+  /**
+   * Write all collected buffers using gathering writes.
+   *
+   * @throws IOException when writing fails
+   */
+  private void writeBuffers() throws IOException {
+    try {
+      int first = 0;
+      while (length > 0) {
+        length -= channel.write(buffers, first, count - first);
+        while (first < count && !buffers[first].hasRemaining()) {
+          first++;
+        }
+      }
+    } finally {
+      // do not keep references to the message data
+      Arrays.fill(buffers, 0, count, null);
+      count = 0;
+      length = 0;
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    LOGGER.debug("Closing Message Writer");
+    if (channel != null) {
+      channel.close();
+    }
+    channel = null;
+  }
+
+  @Override
+  public boolean isClosed() {
+    return channel == null;
+  }
+}
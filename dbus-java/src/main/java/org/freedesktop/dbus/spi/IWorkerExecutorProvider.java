@@ -0,0 +1,25 @@
+package org.freedesktop.dbus.spi;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Service provider creating the executor used by a connection to dispatch
+ * method calls, signals and callbacks.
+ * <p>
+ * Implementations are found using {@link java.util.ServiceLoader}. The first provider returning
+ * an executor is used for all dispatch lanes of the connection, if there is none, each lane
+ * uses its own pool of 4 threads. The connection owns the created executor and shuts it down on disconnect.
+ * </p>
+ * To use another executor for a single connection or lane, see
+ * {@link org.freedesktop.dbus.connections.AbstractConnection#setWorkerExecutor(ExecutorService, boolean)} and
+ * {@link org.freedesktop.dbus.connections.AbstractConnection#setWorkerExecutor(org.freedesktop.dbus.connections.DispatchLane, ExecutorService, boolean)}.
+ */
+public interface IWorkerExecutorProvider {
+  /**
+   * Create the worker executor for a new connection.
+   *
+   * @param _address address of the bus the connection is created for
+   * @return executor, null to let the next provider (or the default) create the executor
+   */
+  ExecutorService createWorkerExecutor(String _address);
+}
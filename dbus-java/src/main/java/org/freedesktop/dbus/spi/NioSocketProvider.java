@@ -0,0 +1,51 @@
+package org.freedesktop.dbus.spi;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Built-in {@link ISocketProvider} which reads and writes messages using the
+ * {@link SocketChannel} backing the given socket.
+ * Messages are read with {@link ChannelMessageReader} and written with a single
+ * gathering write per message by {@link GatheringMessageWriter}.
+ * <p>
+ * Sockets without a channel (or with a channel in non-blocking mode) are not
+ * supported, in that case no reader/writer is created and the stream based
+ * default implementation is used.<br>
+ * This provider does not support file descriptor passing, other providers found
+ * by the service loader are always preferred.
+ * </p>
+ */
+public class NioSocketProvider implements ISocketProvider {
+
+  @Override
+  public IMessageReader createReader(Socket _socket) throws IOException {
+    SocketChannel channel = getChannel(_socket);
+    return channel == null ? null : new ChannelMessageReader(channel);
+  }
+
+  @Override
+  public IMessageWriter createWriter(Socket _socket) throws IOException {
+    SocketChannel channel = getChannel(_socket);
+    return channel == null ? null : new GatheringMessageWriter(channel);
+  }
+
+  @Override
+  public void setFileDescriptorSupport(boolean _support) {
+    // file descriptor passing is not supported
+  }
+
+  @Override
+  public boolean isFileDescriptorPassingSupported() {
+    return false;
+  }
+
+  private static SocketChannel getChannel(Socket _socket) {
+    SocketChannel channel = _socket.getChannel();
+    if (channel == null || !channel.isBlocking()) {
+      return null;
+    }
+    return channel;
+  }
+}
@@ -12,8 +12,11 @@
 
 package org.freedesktop.dbus.spi;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
 
 import lombok.extern.slf4j.Slf4j;
 import org.freedesktop.Hexdump;
@@ -25,29 +28,39 @@ public class OutputStreamMessageWriter implements IMessageWriter {
   private OutputStream outputStream;
 
     public OutputStreamMessageWriter(OutputStream _out) {
-        this.outputStream = _out;
+        this.outputStream = new BufferedOutputStream(_out);
     }
 
   public void writeMessage(Message m) throws IOException {
+    writeMessageNoFlush(m);
+    outputStream.flush();
+  }
+
+  @Override
+  public void writeMessages(List<Message> _messages) throws IOException {
+    for (Message m : _messages) {
+      writeMessageNoFlush(m);
+    }
+    outputStream.flush();
+  }
+
+  private void writeMessageNoFlush(Message m) throws IOException {
     LOGGER.debug("<= {}", m);
     if (null == m) {
       return;
     }
-    if (null == m.getWireData()) {
+    ByteBuffer[] wiredata = m.getWireBuffers();
+    if (null == wiredata) {
         LOGGER.warn("Message {} wire-data was null!", m);
       return;
     }
 
-    for (byte[] buf : m.getWireData()) {
+    for (ByteBuffer buf : wiredata) {
       if (LOGGER.isTraceEnabled()) {
-          LOGGER.trace("{}", null == buf ? "" : Hexdump.format(buf));
+          LOGGER.trace("{}", Hexdump.toHex(buf.array(), buf.position(), buf.remaining()));
       }
-      if (null == buf) {
-        break;
-      }
-      outputStream.write(buf);
+      outputStream.write(buf.array(), buf.position(), buf.remaining());
     }
-    outputStream.flush();
   }
 
   @Override
@@ -0,0 +1,145 @@
+package org.freedesktop.dbus.bin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.freedesktop.DBus;
+import org.freedesktop.dbus.connections.impl.DBusConnection;
+import org.freedesktop.dbus.connections.impl.DirectConnection;
+import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.test.helper.SampleClass;
+import org.freedesktop.dbus.test.helper.interfaces.SampleRemoteInterface;
+import org.freedesktop.dbus.test.helper.signals.SampleSignals;
+import org.freedesktop.dbus.types.UInt32;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class DBusDaemonTest {
+  private static final int SELECTOR_LOOPS = 2;
+  private static final int CLIENTS = 40;
+
+  private EmbeddedDBusDaemon daemon;
+  private String address;
+  private final List<DBusConnection> clients = new ArrayList<>();
+
+  @BeforeEach
+  public void setup() throws Exception {
+    address = DirectConnection.createDynamicTCPSession();
+    daemon = new EmbeddedDBusDaemon();
+    daemon.setAddress(address);
+    daemon.setSelectorLoops(SELECTOR_LOOPS);
+    daemon.startInBackground();
+  }
+
+  @AfterEach
+  public void teardown() throws Exception {
+    for (DBusConnection client : clients) {
+      client.disconnect();
+    }
+    daemon.close();
+  }
+
+  @Test
+  public void testManyClientsOnFewThreads() throws Exception {
+    DBusConnection server = connect();
+    server.requestBusName("foo.bar.DaemonTest");
+    server.exportObject("/DaemonTest", new SampleClass(server));
+
+    CountDownLatch signals = new CountDownLatch(CLIENTS);
+    for (int i = 0; i < CLIENTS; i++) {
+      DBusConnection client = connect();
+      client.addSigHandler(SampleSignals.TestStringSignal.class, s -> signals.countDown());
+      SampleRemoteInterface remote = client.getRemoteObject("foo.bar.DaemonTest", "/DaemonTest", SampleRemoteInterface.class);
+      Assertions.assertEquals(new SampleClass(server).getName(), remote.getName());
+    }
+
+    server.sendMessage(new SampleSignals.TestStringSignal("/DaemonTest", "broadcast"));
+    Assertions.assertTrue(signals.await(10, TimeUnit.SECONDS), "Signal not received by all clients");
+
+    int loopThreads = 0;
+    for (Thread t : Thread.getAllStackTraces().keySet()) {
+      if (t.getName().startsWith("DBusDaemon Loop-")) {
+        loopThreads++;
+      }
+    }
+    Assertions.assertEquals(SELECTOR_LOOPS, loopThreads, "Daemon must not start a thread per client");
+  }
+
+  @Test
+  public void testLargeMessages() throws Exception {
+    DBusConnection sender = connect();
+    DBusConnection receiver = connect();
+
+    // larger than socket buffers: read and written in several parts by the daemon
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 4 * 1024 * 1024 / 16; i++) {
+      sb.append("0123456789abcdef");
+    }
+    String content = sb.toString();
+
+    int count = 3;
+    CountDownLatch received = new CountDownLatch(count);
+    AtomicReference<String> wrong = new AtomicReference<>();
+    receiver.addSigHandler(SampleSignals.TestStringSignal.class, s -> {
+      if (!content.equals(s.getContentString())) {
+        wrong.set(s.getContentString().length() + " chars");
+      }
+      received.countDown();
+    });
+    for (int i = 0; i < count; i++) {
+      sender.sendMessage(new SampleSignals.TestStringSignal("/DaemonTest", content));
+    }
+    Assertions.assertTrue(received.await(30, TimeUnit.SECONDS), "Large signals not received");
+    Assertions.assertNull(wrong.get());
+  }
+
+  @Test
+  public void testNameTable() throws Exception {
+    DBusConnection owner = connect();
+    DBusConnection other = connect();
+    DBus bus = other.getRemoteObject("org.freedesktop.DBus", "/org/freedesktop/DBus", DBus.class);
+
+    owner.requestBusName("foo.bar.NameTable");
+    Assertions.assertEquals(owner.getUniqueName(), bus.GetNameOwner("foo.bar.NameTable"));
+    Assertions.assertTrue(bus.NameHasOwner("org.freedesktop.DBus"));
+    List<String> names = Arrays.asList(bus.ListNames());
+    Assertions.assertTrue(names.containsAll(Arrays.asList("org.freedesktop.DBus", "foo.bar.NameTable",
+        owner.getUniqueName(), other.getUniqueName())));
+
+    // names of other clients and of the bus cannot be taken or released
+    Assertions.assertEquals(DBus.DBUS_REQUEST_NAME_REPLY_EXISTS, bus.RequestName("foo.bar.NameTable", new UInt32(0)).intValue());
+    Assertions.assertEquals(DBus.DBUS_RELEASE_NAME_REPLY_NON_EXISTANT, bus.ReleaseName("foo.bar.NameTable").intValue());
+    Assertions.assertEquals(DBus.DBUS_RELEASE_NAME_REPLY_NON_EXISTANT, bus.ReleaseName("org.freedesktop.DBus").intValue());
+
+    // names are released when the owner disconnects
+    owner.disconnect();
+    clients.remove(owner);
+    long deadline = System.currentTimeMillis() + 10000;
+    while (bus.NameHasOwner("foo.bar.NameTable") && System.currentTimeMillis() < deadline) {
+      Thread.sleep(50);
+    }
+    Assertions.assertFalse(bus.NameHasOwner("foo.bar.NameTable"));
+  }
+
+  private DBusConnection connect() throws Exception {
+    // the daemon is started in the background, retry until it accepts connections
+    for (int i = 0;; i++) {
+      try {
+        DBusConnection conn = DBusConnection.getConnection(address, true, false, DBusConnection.TCP_CONNECT_TIMEOUT);
+        clients.add(conn);
+        return conn;
+      } catch (DBusException _ex) {
+        if (i > 50) {
+          throw _ex;
+        }
+        Thread.sleep(100);
+      }
+    }
+  }
+}
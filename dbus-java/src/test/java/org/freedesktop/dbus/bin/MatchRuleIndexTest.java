@@ -0,0 +1,136 @@
+package org.freedesktop.dbus.bin;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.freedesktop.dbus.DBusPath;
+import org.freedesktop.dbus.errors.MatchRuleInvalid;
+import org.freedesktop.dbus.messages.DBusSignal;
+import org.freedesktop.dbus.messages.Message;
+import org.freedesktop.dbus.messages.MessageFactory;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class MatchRuleIndexTest {
+
+  private final MatchRuleIndex index = new MatchRuleIndex();
+  private final DaemonConnection a = new DaemonConnection(null, null, null);
+  private final DaemonConnection b = new DaemonConnection(null, null, null);
+  private final DaemonConnection c = new DaemonConnection(null, null, null);
+
+  @Test
+  public void testParse() {
+    DaemonMatchRule rule = DaemonMatchRule.parse("type='signal',interface='org.foo',member='Bar',arg0='it'\\''s',arg1path='/a/'");
+    Assertions.assertEquals("org.foo", rule.getInterface());
+    Assertions.assertEquals("Bar", rule.getMember());
+    Assertions.assertEquals(rule, DaemonMatchRule.parse("member='Bar', arg1path='/a/',interface=org.foo,type='signal',arg0=it\\'s"));
+    Assertions.assertNotEquals(rule, DaemonMatchRule.parse("type='signal',interface='org.foo',member='Bar'"));
+
+    for (String invalid : Arrays.asList("type='foo'", "member='a',member='b'", "unknown='x'", "arg64='x'",
+        "member='unterminated", "path='/a',path_namespace='/a'", "member")) {
+      Assertions.assertThrows(MatchRuleInvalid.class, () -> DaemonMatchRule.parse(invalid), invalid);
+    }
+  }
+
+  @Test
+  public void testFind() throws Exception {
+    index.add(a, DaemonMatchRule.parse("type='signal',interface='org.foo',member='Changed'"));
+    index.add(b, DaemonMatchRule.parse("type='signal',interface='org.foo'"));
+    index.add(c, DaemonMatchRule.parse("type='signal',path_namespace='/org/foo'"));
+
+    Assertions.assertEquals(set(a, b, c), index.find(signal(":1.1", "/org/foo/x", "org.foo", "Changed"), null, n -> null));
+    Assertions.assertEquals(set(b), index.find(signal(":1.1", "/other", "org.foo", "Removed"), null, n -> null));
+    Assertions.assertEquals(set(c), index.find(signal(":1.1", "/org/foo", "org.bar", "Changed"), null, n -> null));
+    Assertions.assertEquals(set(), index.find(signal(":1.1", "/org/foobar", "org.bar", "Changed"), null, n -> null));
+  }
+
+  @Test
+  public void testArgsAndSender() throws Exception {
+    index.add(a, DaemonMatchRule.parse("member='NameOwnerChanged',arg0='com.example'"));
+    index.add(b, DaemonMatchRule.parse("member='NameOwnerChanged',arg0namespace='com'"));
+    index.add(c, DaemonMatchRule.parse("member='NameOwnerChanged',sender='com.example.Service'"));
+
+    DBusSignal s = new DBusSignal(":1.7", "/org/freedesktop/DBus", "org.freedesktop.DBus", "NameOwnerChanged", "sss",
+        "com.example", "", ":1.7");
+    Assertions.assertEquals(set(a, b), index.find(s, b, n -> null));
+    // the well-known sender name of the rule is owned by the sender
+    Map<String, DaemonConnection> owners = Collections.singletonMap("com.example.Service", b);
+    Assertions.assertEquals(set(a, b, c), index.find(s, b, owners::get));
+  }
+
+  @Test
+  public void testArgsOfReceivedMessage() throws Exception {
+    index.add(a, DaemonMatchRule.parse("member='Changed',arg0='x'"));
+    index.add(b, DaemonMatchRule.parse("member='Changed',arg2path='/org/'"));
+
+    Message s = receive(new DBusSignal(":1.7", "/", "org.foo", "Changed", "saso", "x", new String[]{"a", "b"},
+        new DBusPath("/org/foo")), -1);
+    Assertions.assertEquals(set(a, b), index.find(s, null, n -> null));
+
+    // only the arguments the rule refers to are decoded
+    s = receive(new DBusSignal(":1.7", "/", "org.foo", "Changed", "saso", "x", new String[]{"a", "b"}, new DBusPath("/org/foo")), 8);
+    Assertions.assertEquals(set(a), index.find(s, null, n -> null));
+
+    // undecodable arguments match no rule
+    s = receive(new DBusSignal(":1.7", "/", "org.foo", "Changed", "s", "x"), 0);
+    Assertions.assertEquals(set(), index.find(s, null, n -> null));
+  }
+
+  @Test
+  public void testRemove() throws Exception {
+    DaemonMatchRule rule = DaemonMatchRule.parse("interface='org.foo'");
+    index.add(a, rule);
+    index.add(a, DaemonMatchRule.parse("interface='org.foo'"));
+    index.add(b, rule);
+    DBusSignal s = signal(":1.1", "/", "org.foo", "Changed");
+
+    Assertions.assertTrue(index.remove(a, DaemonMatchRule.parse("interface='org.foo'")));
+    Assertions.assertEquals(set(a, b), index.find(s, null, n -> null), "Rule added twice must be removed twice");
+    Assertions.assertTrue(index.remove(a, rule));
+    Assertions.assertEquals(set(b), index.find(s, null, n -> null));
+    Assertions.assertFalse(index.remove(a, rule));
+
+    index.removeAll(b);
+    Assertions.assertEquals(set(), index.find(s, null, n -> null));
+  }
+
+  private static DBusSignal signal(String _source, String _path, String _iface, String _member) throws Exception {
+    return new DBusSignal(_source, _path, _iface, _member, "s", "x");
+  }
+
+  /**
+   * Split the wire data of the message like a transport does and create the received message.
+   *
+   * @param _message message to receive
+   * @param _corruptAt offset of a length in the body to overwrite with an invalid value, -1 to keep the body intact
+   */
+  private static Message receive(Message _message, int _corruptAt) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (ByteBuffer buf : _message.getWireBuffers()) {
+      byte[] data = new byte[buf.remaining()];
+      buf.get(data);
+      out.write(data);
+    }
+    byte[] data = out.toByteArray();
+
+    byte[] buf = Arrays.copyOf(data, 12);
+    int headerLength = (int) Message.demarshallint(data, 12, data[0], 4);
+    int padded = (headerLength + 7) & ~7;
+    byte[] header = new byte[padded + 8];
+    System.arraycopy(data, 12, header, 0, 4);
+    System.arraycopy(data, 16, header, 8, padded);
+    byte[] body = Arrays.copyOfRange(data, 16 + padded, data.length);
+    if (0 <= _corruptAt) {
+      Arrays.fill(body, _corruptAt, _corruptAt + 4, (byte) 0x7F);
+    }
+    return MessageFactory.createMessage(data[1], buf, header, body, null);
+  }
+
+  private static HashSet<DaemonConnection> set(DaemonConnection... _conns) {
+    return new HashSet<>(Arrays.asList(_conns));
+  }
+}
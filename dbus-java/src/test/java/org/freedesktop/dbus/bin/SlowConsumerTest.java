@@ -0,0 +1,164 @@
+package org.freedesktop.dbus.bin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import org.freedesktop.dbus.connections.DispatchLane;
+import org.freedesktop.dbus.connections.impl.DBusConnection;
+import org.freedesktop.dbus.connections.impl.DirectConnection;
+import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.test.helper.signals.SampleSignals;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class SlowConsumerTest {
+  /* more than the socket buffers of the slow client can take */
+  private static final int SIGNALS = 400;
+  private static final int SIGNAL_SIZE = 64 * 1024;
+  private static final int MAX_MESSAGES = 20;
+  private static final long MAX_BYTES = 1024 * 1024;
+
+  private EmbeddedDBusDaemon daemon;
+  private String address;
+  private final List<DBusConnection> clients = new ArrayList<>();
+  private final CountDownLatch release = new CountDownLatch(1);
+
+  @AfterEach
+  public void teardown() throws Exception {
+    release.countDown();
+    for (DBusConnection client : clients) {
+      client.disconnect();
+    }
+    daemon.close();
+  }
+
+  @Test
+  public void testDropSignals() throws Exception {
+    start(SlowConsumerPolicy.DROP_SIGNALS);
+    DBusConnection sender = connect();
+    DBusConnection slow = connectSlow(new CountDownLatch(SIGNALS));
+    CountDownLatch fastReceived = new CountDownLatch(SIGNALS);
+    connect().addSigHandler(SampleSignals.TestStringSignal.class, s -> fastReceived.countDown());
+
+    sendSignals(sender);
+    Assertions.assertTrue(fastReceived.await(30, TimeUnit.SECONDS), "Slow client delayed the others");
+
+    DaemonConnectionStats stats = daemon.getConnectionStats().get(0);
+    Assertions.assertEquals(slow.getUniqueName(), stats.getName(), "Slow client must have the largest queue");
+    Assertions.assertTrue(stats.isLagging());
+    Assertions.assertTrue(stats.getDroppedSignals() > 0);
+    Assertions.assertTrue(stats.getQueuedMessages() <= MAX_MESSAGES);
+  }
+
+  @Test
+  public void testDisconnect() throws Exception {
+    start(SlowConsumerPolicy.DISCONNECT);
+    DBusConnection sender = connect();
+    DBusConnection slow = connectSlow(new CountDownLatch(SIGNALS));
+    String slowName = slow.getUniqueName();
+    CountDownLatch fastReceived = new CountDownLatch(SIGNALS);
+    connect().addSigHandler(SampleSignals.TestStringSignal.class, s -> fastReceived.countDown());
+
+    sendSignals(sender);
+    Assertions.assertTrue(fastReceived.await(30, TimeUnit.SECONDS), "Slow client delayed the others");
+    Assertions.assertTrue(waitForStats(l -> l.stream().noneMatch(s -> slowName.equals(s.getName()))),
+        "Slow client not disconnected");
+  }
+
+  @Test
+  public void testBlockSender() throws Exception {
+    start(SlowConsumerPolicy.BLOCK_SENDER);
+    DBusConnection sender = connect();
+    String senderName = sender.getUniqueName();
+    CountDownLatch slowReceived = new CountDownLatch(SIGNALS);
+    connectSlow(slowReceived);
+
+    Thread sending = new Thread(() -> {
+      try {
+        sendSignals(sender);
+      } catch (DBusException _ex) {
+        throw new RuntimeException(_ex);
+      }
+    });
+    sending.setDaemon(true);
+    sending.start();
+
+    Assertions.assertTrue(waitForStats(l -> l.stream().anyMatch(s -> senderName.equals(s.getName()) && s.isBlocked())),
+        "Sender of the lagging client not blocked");
+
+    // everything is delivered once the slow client catches up
+    release.countDown();
+    Assertions.assertTrue(slowReceived.await(60, TimeUnit.SECONDS), "Signals lost");
+    Assertions.assertTrue(waitForStats(l -> l.stream().noneMatch(DaemonConnectionStats::isBlocked)),
+        "Sender not resumed");
+  }
+
+  private void start(SlowConsumerPolicy _policy) throws Exception {
+    address = DirectConnection.createDynamicTCPSession();
+    daemon = new EmbeddedDBusDaemon();
+    daemon.setAddress(address);
+    daemon.setSelectorLoops(2);
+    daemon.setOutboundLimits(MAX_MESSAGES, MAX_BYTES, _policy);
+    daemon.startInBackground();
+  }
+
+  private void sendSignals(DBusConnection _sender) throws DBusException {
+    StringBuilder sb = new StringBuilder();
+    while (sb.length() < SIGNAL_SIZE) {
+      sb.append("0123456789abcdef");
+    }
+    String content = sb.toString();
+    for (int i = 0; i < SIGNALS; i++) {
+      _sender.sendMessage(new SampleSignals.TestStringSignal("/SlowConsumerTest", content));
+    }
+  }
+
+  /**
+   * Client which stops reading while its signal handler waits for the release.
+   */
+  private DBusConnection connectSlow(CountDownLatch _received) throws Exception {
+    DBusConnection slow = connect();
+    slow.setInboundFlowControl(2, 1);
+    slow.changeThreadCount(DispatchLane.SIGNAL, 1);
+    slow.addSigHandler(SampleSignals.TestStringSignal.class, s -> {
+      try {
+        release.await();
+      } catch (InterruptedException _ex) {
+        Thread.currentThread().interrupt();
+      }
+      _received.countDown();
+    });
+    return slow;
+  }
+
+  private boolean waitForStats(Predicate<List<DaemonConnectionStats>> _condition) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 30000;
+    while (System.currentTimeMillis() < deadline) {
+      if (_condition.test(daemon.getConnectionStats())) {
+        return true;
+      }
+      Thread.sleep(50);
+    }
+    return false;
+  }
+
+  private DBusConnection connect() throws Exception {
+    // the daemon is started in the background, retry until it accepts connections
+    for (int i = 0;; i++) {
+      try {
+        DBusConnection conn = DBusConnection.getConnection(address, true, false, DBusConnection.TCP_CONNECT_TIMEOUT);
+        clients.add(conn);
+        return conn;
+      } catch (DBusException _ex) {
+        if (i > 50) {
+          throw _ex;
+        }
+        Thread.sleep(100);
+      }
+    }
+  }
+}
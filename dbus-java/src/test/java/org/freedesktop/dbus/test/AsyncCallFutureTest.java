@@ -0,0 +1,81 @@
+package org.freedesktop.dbus.test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.freedesktop.dbus.connections.impl.DBusConnection;
+import org.freedesktop.dbus.connections.impl.DBusConnection.DBusBusType;
+import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.exceptions.DBusExecutionException;
+import org.freedesktop.dbus.fixtures.TestDaemonFixtures;
+import org.freedesktop.dbus.test.helper.SampleClass;
+import org.freedesktop.dbus.test.helper.interfaces.SampleRemoteInterface;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+public class AsyncCallFutureTest {
+  private static final TestDaemonFixtures FIXT = new TestDaemonFixtures();
+
+  private static final String BUS_NAME = "foo.bar.FutureTest";
+  private static final String OBJECT_PATH = "/FutureTest";
+
+  @BeforeAll
+  public static void setup() throws DBusException {
+    FIXT.setup();
+  }
+
+  @AfterAll
+  public static void teardown() throws IOException {
+    FIXT.teardown();
+  }
+
+  @Test
+  public void testFutureCompletedWithReplies() throws Exception {
+    try (DBusConnection serverconn = DBusConnection.getConnection(DBusBusType.SESSION, false, DBusConnection.TCP_CONNECT_TIMEOUT);
+         DBusConnection clientconn = DBusConnection.getConnection(DBusBusType.SESSION, false, DBusConnection.TCP_CONNECT_TIMEOUT)) {
+      serverconn.requestBusName(BUS_NAME);
+      serverconn.exportObject(OBJECT_PATH, new SampleClass(serverconn));
+
+      SampleRemoteInterface remote = clientconn.getRemoteObject(BUS_NAME, OBJECT_PATH, SampleRemoteInterface.class);
+
+      List<CompletableFuture<String>> futures = new ArrayList<>();
+      for (int i = 0; i < 100; i++) {
+        futures.add(clientconn.callMethodFuture(remote, "getName"));
+      }
+      CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+      for (CompletableFuture<String> future : futures) {
+        Assertions.assertEquals(remote.getName(), future.get());
+      }
+
+      CompletableFuture<String> failing = clientconn.callMethodFuture(remote, "getNameAndThrow");
+      ExecutionException ex = Assertions.assertThrows(ExecutionException.class, () -> failing.get(10, TimeUnit.SECONDS));
+      Assertions.assertTrue(ex.getCause() instanceof DBusExecutionException);
+    }
+  }
+
+  @Test
+  public void testDependentStageMayCallRemoteMethods() throws Exception {
+    try (DBusConnection serverconn = DBusConnection.getConnection(DBusBusType.SESSION, false, DBusConnection.TCP_CONNECT_TIMEOUT);
+         DBusConnection clientconn = DBusConnection.getConnection(DBusBusType.SESSION, false, DBusConnection.TCP_CONNECT_TIMEOUT)) {
+      serverconn.requestBusName(BUS_NAME);
+      serverconn.exportObject(OBJECT_PATH, new ReplyTimeoutTest.SlowObject());
+
+      ReplyTimeoutTest.SlowInterface remote = clientconn.getRemoteObject(BUS_NAME, OBJECT_PATH,
+          ReplyTimeoutTest.SlowInterface.class);
+
+      // the stage is added before the reply arrives and waits for another reply,
+      // it must not run on the thread reading the replies
+      CompletableFuture<String> future = clientconn.<String>callMethodFuture(remote, "slow")
+          .thenApply(r -> Thread.currentThread().getName() + ":" + r + ":" + remote.fast());
+      String result = future.get(10, TimeUnit.SECONDS);
+      Assertions.assertFalse(result.startsWith("DBusConnection:"), result);
+      Assertions.assertTrue(result.endsWith(":done:done"), result);
+    }
+  }
+}
@@ -0,0 +1,83 @@
+package org.freedesktop.dbus.test;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.util.Collections;
+
+import org.freedesktop.dbus.messages.Message;
+import org.freedesktop.dbus.messages.MethodCall;
+import org.freedesktop.dbus.spi.ChannelMessageReader;
+import org.freedesktop.dbus.spi.GatheringMessageWriter;
+import org.freedesktop.dbus.types.UInt32;
+import org.freedesktop.dbus.types.Variant;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ChannelMessageReaderWriterTest {
+
+  @Test
+  public void testWriteAndReadMessages() throws Exception {
+    Pipe pipe = Pipe.open();
+
+    try (GatheringMessageWriter writer = new GatheringMessageWriter(pipe.sink());
+         ChannelMessageReader reader = new ChannelMessageReader(pipe.source())) {
+
+      MethodCall small = new MethodCall("org.foo.Bar", "/org/foo/Bar", "org.foo.Bar", "Ping", (byte) 0, null);
+      MethodCall large = new MethodCall("org.foo.Bar", "/org/foo/Bar", "org.foo.Bar", "Store", (byte) 0,
+          "sayu", "some text", new byte[4096], new UInt32(42));
+
+      writer.writeMessage(small);
+      Message read = reader.readMessage();
+      Assertions.assertTrue(read instanceof MethodCall);
+      Assertions.assertEquals(small.getSerial(), read.getSerial());
+      Assertions.assertEquals("Ping", read.getName());
+
+      // large message has to be written in a separate thread, it may not fit into the pipe buffer
+      Thread writerThread = new Thread(() -> {
+        try {
+          writer.writeMessage(large);
+        } catch (Exception _ex) {
+          throw new RuntimeException(_ex);
+        }
+      });
+      writerThread.start();
+      read = reader.readMessage();
+      writerThread.join();
+
+      Assertions.assertEquals(large.getSerial(), read.getSerial());
+      Assertions.assertEquals("sayu", read.getSig());
+      Object[] params = read.getParameters();
+      Assertions.assertEquals("some text", params[0]);
+      Assertions.assertEquals(4096, ((byte[]) params[1]).length);
+      Assertions.assertEquals(new UInt32(42), params[2]);
+    }
+  }
+
+  @Test
+  public void testReceivedMessageKeepsWireFormat() throws Exception {
+    Pipe pipe = Pipe.open();
+
+    try (GatheringMessageWriter writer = new GatheringMessageWriter(pipe.sink());
+         ChannelMessageReader reader = new ChannelMessageReader(pipe.source())) {
+
+      MethodCall call = new MethodCall("org.foo.Bar", "/org/foo/Bar", "org.foo.Bar", "Store", (byte) 0,
+          "sa{sv}", "text", Collections.singletonMap("key", new Variant<>(42)));
+      writer.writeMessage(call);
+      Message read = reader.readMessage();
+
+      Assertions.assertArrayEquals(toBytes(call.getWireBuffers()), toBytes(read.getWireBuffers()));
+    }
+  }
+
+  private static byte[] toBytes(ByteBuffer[] _buffers) {
+    int length = 0;
+    for (ByteBuffer buf : _buffers) {
+      length += buf.remaining();
+    }
+    ByteBuffer all = ByteBuffer.allocate(length);
+    for (ByteBuffer buf : _buffers) {
+      all.put(buf);
+    }
+    return all.array();
+  }
+}
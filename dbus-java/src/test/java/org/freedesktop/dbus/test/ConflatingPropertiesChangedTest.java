@@ -0,0 +1,117 @@
+package org.freedesktop.dbus.test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.freedesktop.dbus.connections.impl.DBusConnection;
+import org.freedesktop.dbus.connections.impl.DBusConnection.DBusBusType;
+import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.fixtures.TestDaemonFixtures;
+import org.freedesktop.dbus.handlers.ConflatingPropertiesChangedHandler;
+import org.freedesktop.dbus.interfaces.Properties.PropertiesChanged;
+import org.freedesktop.dbus.types.Variant;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+public class ConflatingPropertiesChangedTest {
+  private static final TestDaemonFixtures FIXT = new TestDaemonFixtures();
+
+  @BeforeAll
+  public static void setup() throws DBusException {
+    FIXT.setup();
+  }
+
+  @AfterAll
+  public static void teardown() throws IOException {
+    FIXT.teardown();
+  }
+
+  @Test
+  public void testLatestValuesWin() throws Exception {
+    try (DBusConnection sender = DBusConnection.getConnection(DBusBusType.SESSION, false, DBusConnection.TCP_CONNECT_TIMEOUT);
+         DBusConnection receiver = DBusConnection.getConnection(DBusBusType.SESSION, false, DBusConnection.TCP_CONNECT_TIMEOUT)) {
+
+      CountDownLatch release = new CountDownLatch(1);
+      CountDownLatch done = new CountDownLatch(2);
+      List<PropertiesChanged> received = Collections.synchronizedList(new ArrayList<>());
+      ConflatingPropertiesChangedHandler handler = new ConflatingPropertiesChangedHandler(s -> {
+        received.add(s);
+        try {
+          // keep the handler busy until all signals arrived
+          release.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException _ex) {
+          Thread.currentThread().interrupt();
+        }
+        done.countDown();
+      });
+      receiver.addSigHandler(PropertiesChanged.class, handler);
+
+      sender.sendMessage(changed(props("a", 1), Collections.emptyList()));
+      sender.sendMessage(changed(props("a", 2, "b", 1), Collections.emptyList()));
+      sender.sendMessage(changed(props("a", 3), Collections.emptyList()));
+      sender.sendMessage(changed(props("c", 1), Collections.singletonList("b")));
+
+      long deadline = System.currentTimeMillis() + 10000;
+      while (handler.getConflatedCount() < 2 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      release.countDown();
+      Assertions.assertTrue(done.await(10, TimeUnit.SECONDS));
+      Thread.sleep(200);
+
+      Assertions.assertEquals(2, received.size(), "Expected the busy period to be delivered as one signal");
+      Assertions.assertEquals(props("a", 1), received.get(0).getPropertiesChanged());
+
+      PropertiesChanged merged = received.get(1);
+      Assertions.assertEquals(props("a", 3, "c", 1), merged.getPropertiesChanged());
+      Assertions.assertEquals(Collections.singletonList("b"), merged.getPropertiesRemoved());
+      Assertions.assertEquals("/conflate", merged.getPath());
+      Assertions.assertEquals("foo.Bar", merged.getInterfaceName());
+      Assertions.assertEquals(sender.getUniqueName(), merged.getSource());
+      Assertions.assertEquals(2, handler.getConflatedCount());
+    }
+  }
+
+  @Test
+  public void testDrainRestartsAfterFailure() throws Exception {
+    List<PropertiesChanged> received = new ArrayList<>();
+    ConflatingPropertiesChangedHandler handler = new ConflatingPropertiesChangedHandler(s -> {
+      received.add(s);
+      if (1 == received.size()) {
+        throw new AssertionError("handler failed");
+      }
+    });
+
+    Assertions.assertThrows(AssertionError.class, () -> handler.handle(changed(props("a", 1), Collections.emptyList())));
+    handler.handle(changed(props("a", 2), Collections.emptyList()));
+    Assertions.assertEquals(2, received.size(), "Handler not called after a failed drain");
+
+    // the drain could not be scheduled, the change is delivered with the next one
+    Assertions.assertTrue(handler.offer(changed(props("b", 1), Collections.emptyList())));
+    handler.cancelDrain();
+    Assertions.assertTrue(handler.offer(changed(props("c", 1), Collections.emptyList())));
+    handler.drain();
+    Assertions.assertEquals(3, received.size());
+    Assertions.assertEquals(props("b", 1, "c", 1), received.get(2).getPropertiesChanged());
+  }
+
+  private static PropertiesChanged changed(Map<String, Variant<?>> _changed, List<String> _removed) throws DBusException {
+    return new PropertiesChanged("/conflate", "foo.Bar", _changed, _removed);
+  }
+
+  private static Map<String, Variant<?>> props(Object... _nameValues) {
+    Map<String, Variant<?>> props = new LinkedHashMap<>();
+    for (int i = 0; i < _nameValues.length; i += 2) {
+      props.put((String) _nameValues[i], new Variant<>(_nameValues[i + 1]));
+    }
+    return props;
+  }
+}
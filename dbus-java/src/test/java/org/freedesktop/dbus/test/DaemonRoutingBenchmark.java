@@ -0,0 +1,135 @@
+package org.freedesktop.dbus.test;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.freedesktop.dbus.bin.EmbeddedDBusDaemon;
+import org.freedesktop.dbus.connections.impl.DBusConnection;
+import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.test.helper.signals.SampleSignals;
+
+/**
+ * Measures the routing throughput of the embedded daemon with 1, 2, 4 and 8 selector loops (routing shards).
+ * <p>
+ * Eight sender/receiver pairs are connected to the daemon, every receiver listens to the signals of its sender.
+ * All senders emit their signals at the same time, reported is the time until every receiver has seen
+ * every signal of its sender. The clients run in the same JVM, so the numbers only scale as far as
+ * there are cores left for the daemon.
+ * </p>
+ * Run with: <code>java org.freedesktop.dbus.test.DaemonRoutingBenchmark [signals per sender]</code>
+ */
+public final class DaemonRoutingBenchmark {
+
+  private static final int[] SHARDS = {1, 2, 4, 8};
+  private static final int PAIRS = 8;
+
+  private DaemonRoutingBenchmark() {
+
+  }
+
+  public static void main(String[] _args) throws Exception {
+    int signals = _args.length > 0 ? Integer.parseInt(_args[0]) : 5000;
+
+    // warm up
+    run(SHARDS[0], signals);
+
+    for (int shards : SHARDS) {
+      long nanos = run(shards, signals);
+      long total = (long) PAIRS * signals;
+      System.out.printf("%d shards: %7d signals in %8.1f ms, %9.0f signals/s%n",
+          shards, total, nanos / 1e6, total / (nanos / 1e9));
+    }
+  }
+
+  private static long run(int _shards, int _signals) throws Exception {
+    int port;
+    try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+      port = socket.getLocalPort();
+    }
+    String address = "tcp:host=localhost,port=" + port;
+
+    try (EmbeddedDBusDaemon daemon = new EmbeddedDBusDaemon()) {
+      daemon.setAddress(address);
+      daemon.setSelectorLoops(_shards);
+      daemon.startInBackground();
+
+      List<DBusConnection> connections = new ArrayList<>();
+      try {
+        return measure(address, connections, _signals);
+      } finally {
+        for (DBusConnection connection : connections) {
+          connection.disconnect();
+        }
+      }
+    }
+  }
+
+  private static long measure(String _address, List<DBusConnection> _connections, int _signals) throws Exception {
+    List<DBusConnection> senders = new ArrayList<>();
+    CountDownLatch warmup = new CountDownLatch(PAIRS);
+    CountDownLatch done = new CountDownLatch(PAIRS * _signals);
+    for (int i = 0; i < PAIRS; i++) {
+      DBusConnection sender = connect(_address);
+      DBusConnection receiver = connect(_address);
+      _connections.add(sender);
+      _connections.add(receiver);
+      senders.add(sender);
+      receiver.addSigHandler(SampleSignals.TestStringSignal.class, sender.getUniqueName(), s -> {
+        if ("warmup".equals(s.getContentString())) {
+          warmup.countDown();
+        } else {
+          done.countDown();
+        }
+      });
+    }
+
+    // the match rules are in place once the first signal arrives
+    for (DBusConnection sender : senders) {
+      sender.sendMessage(new SampleSignals.TestStringSignal("/benchmark", "warmup"));
+    }
+    if (!warmup.await(1, TimeUnit.MINUTES)) {
+      throw new IllegalStateException("Warmup signals have not been delivered");
+    }
+
+    List<Thread> threads = new ArrayList<>();
+    for (DBusConnection sender : senders) {
+      Thread t = new Thread(() -> {
+        try {
+          for (int i = 0; i < _signals; i++) {
+            sender.sendMessage(new SampleSignals.TestStringSignal("/benchmark", "signal"));
+          }
+        } catch (DBusException _ex) {
+          throw new IllegalStateException(_ex);
+        }
+      });
+      threads.add(t);
+    }
+
+    long start = System.nanoTime();
+    for (Thread t : threads) {
+      t.start();
+    }
+    if (!done.await(5, TimeUnit.MINUTES)) {
+      throw new IllegalStateException("Not all signals have been delivered");
+    }
+    return System.nanoTime() - start;
+  }
+
+  private static DBusConnection connect(String _address) throws Exception {
+    // the daemon is started in the background, retry until it accepts connections
+    for (int i = 0;; i++) {
+      try {
+        return DBusConnection.getConnection(_address, true, false);
+      } catch (DBusException _ex) {
+        if (i > 50) {
+          throw _ex;
+        }
+        Thread.sleep(100);
+      }
+    }
+  }
+}
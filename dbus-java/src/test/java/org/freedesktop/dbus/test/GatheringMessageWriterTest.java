@@ -0,0 +1,123 @@
+package org.freedesktop.dbus.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.Arrays;
+
+import org.freedesktop.dbus.messages.Message;
+import org.freedesktop.dbus.messages.MethodCall;
+import org.freedesktop.dbus.spi.GatheringMessageWriter;
+import org.freedesktop.dbus.types.UInt32;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class GatheringMessageWriterTest {
+
+  @Test
+  public void testOneWritePerMessage() throws Exception {
+    RecordingChannel channel = new RecordingChannel(Integer.MAX_VALUE);
+    MethodCall call = call("Ping");
+
+    try (GatheringMessageWriter writer = new GatheringMessageWriter(channel)) {
+      writer.writeMessage(call);
+    }
+
+    Assertions.assertEquals(1, channel.writes);
+    Assertions.assertArrayEquals(toBytes(call), channel.data.toByteArray());
+  }
+
+  @Test
+  public void testPartialWrites() throws Exception {
+    // the channel accepts only a few bytes per write, the rest has to be written by further calls
+    RecordingChannel channel = new RecordingChannel(7);
+    MethodCall first = new MethodCall("org.foo.Bar", "/org/foo/Bar", "org.foo.Bar", "Store", (byte) 0,
+        "sayu", "some text", new byte[1000], new UInt32(42));
+    MethodCall second = call("Ping");
+
+    try (GatheringMessageWriter writer = new GatheringMessageWriter(channel)) {
+      writer.writeMessages(Arrays.asList(first, null, second));
+    }
+
+    ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    expected.write(toBytes(first));
+    expected.write(toBytes(second));
+    Assertions.assertArrayEquals(expected.toByteArray(), channel.data.toByteArray());
+    Assertions.assertTrue(channel.writes > 1);
+  }
+
+  @Test
+  public void testClose() throws Exception {
+    RecordingChannel channel = new RecordingChannel(Integer.MAX_VALUE);
+    GatheringMessageWriter writer = new GatheringMessageWriter(channel);
+    Assertions.assertFalse(writer.isClosed());
+
+    writer.close();
+    Assertions.assertTrue(writer.isClosed());
+    Assertions.assertFalse(channel.isOpen());
+  }
+
+  private static MethodCall call(String _member) throws Exception {
+    return new MethodCall("org.foo.Bar", "/org/foo/Bar", "org.foo.Bar", _member, (byte) 0, null);
+  }
+
+  private static byte[] toBytes(Message _message) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (ByteBuffer buf : _message.getWireBuffers()) {
+      byte[] data = new byte[buf.remaining()];
+      buf.get(data);
+      out.write(data, 0, data.length);
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * Channel recording the written data, writing at most the given number of bytes per call.
+   */
+  private static final class RecordingChannel implements GatheringByteChannel {
+    private final ByteArrayOutputStream data = new ByteArrayOutputStream();
+    private final int maxPerWrite;
+    private int writes;
+    private boolean open = true;
+
+    RecordingChannel(int _maxPerWrite) {
+      maxPerWrite = _maxPerWrite;
+    }
+
+    @Override
+    public long write(ByteBuffer[] _srcs, int _offset, int _length) throws IOException {
+      writes++;
+      long written = 0;
+      for (int i = _offset; i < _offset + _length && written < maxPerWrite; i++) {
+        ByteBuffer src = _srcs[i];
+        int n = (int) Math.min(src.remaining(), maxPerWrite - written);
+        byte[] chunk = new byte[n];
+        src.get(chunk);
+        data.write(chunk, 0, n);
+        written += n;
+      }
+      return written;
+    }
+
+    @Override
+    public long write(ByteBuffer[] _srcs) throws IOException {
+      return write(_srcs, 0, _srcs.length);
+    }
+
+    @Override
+    public int write(ByteBuffer _src) throws IOException {
+      return (int) write(new ByteBuffer[] {_src});
+    }
+
+    @Override
+    public boolean isOpen() {
+      return open;
+    }
+
+    @Override
+    public void close() {
+      open = false;
+    }
+  }
+}
@@ -0,0 +1,71 @@
+package org.freedesktop.dbus.test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.freedesktop.dbus.connections.DispatchLane;
+import org.freedesktop.dbus.connections.impl.DBusConnection;
+import org.freedesktop.dbus.connections.impl.DBusConnection.DBusBusType;
+import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.fixtures.TestDaemonFixtures;
+import org.freedesktop.dbus.test.helper.signals.SampleSignals;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+public class InboundFlowControlTest {
+  private static final TestDaemonFixtures FIXT = new TestDaemonFixtures();
+
+  private static final int SIGNALS = 100;
+  private static final int HIGH_WATERMARK = 10;
+
+  @BeforeAll
+  public static void setup() throws DBusException {
+    FIXT.setup();
+  }
+
+  @AfterAll
+  public static void teardown() throws IOException {
+    FIXT.teardown();
+  }
+
+  @Test
+  public void testReaderPausesAtHighWatermark() throws Exception {
+    try (DBusConnection receiver = DBusConnection.getConnection(DBusBusType.SESSION, false, DBusConnection.TCP_CONNECT_TIMEOUT);
+         DBusConnection sender = DBusConnection.getConnection(DBusBusType.SESSION, false, DBusConnection.TCP_CONNECT_TIMEOUT)) {
+      receiver.setInboundFlowControl(HIGH_WATERMARK, 2);
+      receiver.changeThreadCount(DispatchLane.SIGNAL, 1);
+
+      CountDownLatch release = new CountDownLatch(1);
+      CountDownLatch handled = new CountDownLatch(SIGNALS);
+      receiver.addSigHandler(SampleSignals.TestStringSignal.class, s -> {
+        try {
+          release.await();
+        } catch (InterruptedException _ex) {
+          Thread.currentThread().interrupt();
+        }
+        handled.countDown();
+      });
+
+      for (int i = 0; i < SIGNALS; i++) {
+        sender.sendMessage(new SampleSignals.TestStringSignal("/org/foo", "signal " + i));
+      }
+
+      // the queue fills up to the high watermark, then the reader stops
+      long deadline = System.currentTimeMillis() + 10000;
+      while (receiver.getDispatchLaneStats(DispatchLane.SIGNAL).getQueueDepth() < HIGH_WATERMARK - 1
+          && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      Thread.sleep(500);
+      int depth = receiver.getDispatchLaneStats(DispatchLane.SIGNAL).getQueueDepth();
+      Assertions.assertTrue(depth <= HIGH_WATERMARK, "Queue depth " + depth + " exceeds high watermark");
+
+      // all signals are delivered after resuming
+      release.countDown();
+      Assertions.assertTrue(handled.await(30, TimeUnit.SECONDS));
+    }
+  }
+}
@@ -0,0 +1,129 @@
+package org.freedesktop.dbus.test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.freedesktop.dbus.annotations.NonBlockingHandler;
+import org.freedesktop.dbus.connections.impl.DBusConnection;
+import org.freedesktop.dbus.connections.impl.DBusConnection.DBusBusType;
+import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.exceptions.DBusExecutionException;
+import org.freedesktop.dbus.fixtures.TestDaemonFixtures;
+import org.freedesktop.dbus.interfaces.CallbackHandler;
+import org.freedesktop.dbus.interfaces.DBusSigHandler;
+import org.freedesktop.dbus.test.helper.SampleClass;
+import org.freedesktop.dbus.test.helper.interfaces.SampleRemoteInterface;
+import org.freedesktop.dbus.test.helper.signals.SampleSignals;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+public class InlineDispatchTest {
+  private static final TestDaemonFixtures FIXT = new TestDaemonFixtures();
+
+  /** name of the thread reading messages of a connection */
+  private static final String READER_THREAD = "DBusConnection";
+
+  @BeforeAll
+  public static void setup() throws DBusException {
+    FIXT.setup();
+  }
+
+  @AfterAll
+  public static void teardown() throws IOException {
+    FIXT.teardown();
+  }
+
+  @Test
+  public void testNonBlockingHandlersRunInline() throws Exception {
+    try (DBusConnection conn = DBusConnection.getConnection(DBusBusType.SESSION, false, DBusConnection.TCP_CONNECT_TIMEOUT)) {
+      conn.setInlineDispatch(true);
+
+      InlineHandler inline = new InlineHandler();
+      CompletableFuture<String> other = new CompletableFuture<>();
+      conn.addSigHandler(SampleSignals.TestStringSignal.class, inline);
+      conn.addSigHandler(SampleSignals.TestStringSignal.class, s -> other.complete(Thread.currentThread().getName()));
+      conn.sendMessage(new SampleSignals.TestStringSignal("/org/foo", "text"));
+
+      Assertions.assertEquals(READER_THREAD, inline.thread.get(10, TimeUnit.SECONDS));
+      Assertions.assertNotEquals(READER_THREAD, other.get(10, TimeUnit.SECONDS));
+    }
+  }
+
+  @Test
+  public void testNonBlockingCallbacksRunInline() throws Exception {
+    try (DBusConnection serverconn = DBusConnection.getConnection(DBusBusType.SESSION, false, DBusConnection.TCP_CONNECT_TIMEOUT);
+         DBusConnection clientconn = DBusConnection.getConnection(DBusBusType.SESSION, false, DBusConnection.TCP_CONNECT_TIMEOUT)) {
+      serverconn.requestBusName("foo.bar.InlineTest");
+      serverconn.exportObject("/InlineTest", new SampleClass(serverconn));
+      SampleRemoteInterface remote = clientconn.getRemoteObject("foo.bar.InlineTest", "/InlineTest", SampleRemoteInterface.class);
+
+      clientconn.setInlineDispatch(true);
+      InlineCallback inline = new InlineCallback();
+      clientconn.callWithCallback(remote, "getName", inline);
+      Assertions.assertEquals(READER_THREAD, inline.thread.get(10, TimeUnit.SECONDS));
+
+      // not annotated, may block
+      CompletableFuture<String> other = new CompletableFuture<>();
+      clientconn.callWithCallback(remote, "getName", new CallbackHandler<String>() {
+        @Override
+        public void handle(String _r) {
+          other.complete(Thread.currentThread().getName());
+        }
+
+        @Override
+        public void handleError(DBusExecutionException _e) {
+          other.completeExceptionally(_e);
+        }
+      });
+      Assertions.assertNotEquals(READER_THREAD, other.get(10, TimeUnit.SECONDS));
+    }
+  }
+
+  @Test
+  public void testTimeoutCallbacksUseWorker() throws Exception {
+    try (DBusConnection serverconn = DBusConnection.getConnection(DBusBusType.SESSION, false, DBusConnection.TCP_CONNECT_TIMEOUT);
+         DBusConnection clientconn = DBusConnection.getConnection(DBusBusType.SESSION, false, DBusConnection.TCP_CONNECT_TIMEOUT)) {
+      serverconn.requestBusName("foo.bar.InlineTimeoutTest");
+      serverconn.exportObject("/InlineTest", new ReplyTimeoutTest.SlowObject());
+      ReplyTimeoutTest.SlowInterface remote = clientconn.getRemoteObject("foo.bar.InlineTimeoutTest", "/InlineTest",
+          ReplyTimeoutTest.SlowInterface.class);
+      clientconn.setReplyTimeout(remote, 100, TimeUnit.MILLISECONDS);
+
+      clientconn.setInlineDispatch(true);
+      InlineCallback inline = new InlineCallback();
+      clientconn.callWithCallback(remote, "slow", inline);
+      String thread = inline.errorThread.get(10, TimeUnit.SECONDS);
+      Assertions.assertNotEquals(READER_THREAD, thread);
+      Assertions.assertNotEquals("DBus Reply Timeout Thread", thread);
+    }
+  }
+
+  @NonBlockingHandler
+  private static class InlineHandler implements DBusSigHandler<SampleSignals.TestStringSignal> {
+    private final CompletableFuture<String> thread = new CompletableFuture<>();
+
+    @Override
+    public void handle(SampleSignals.TestStringSignal _signal) {
+      thread.complete(Thread.currentThread().getName());
+    }
+  }
+
+  @NonBlockingHandler
+  private static class InlineCallback implements CallbackHandler<String> {
+    private final CompletableFuture<String> thread = new CompletableFuture<>();
+    private final CompletableFuture<String> errorThread = new CompletableFuture<>();
+
+    @Override
+    public void handle(String _r) {
+      thread.complete(Thread.currentThread().getName());
+    }
+
+    @Override
+    public void handleError(DBusExecutionException _e) {
+      errorThread.complete(Thread.currentThread().getName());
+    }
+  }
+}
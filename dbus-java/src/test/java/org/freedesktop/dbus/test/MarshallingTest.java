@@ -8,8 +8,10 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.GenericDeclaration;
 import java.lang.reflect.Type;
 import java.lang.reflect.TypeVariable;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -20,10 +22,14 @@ import org.freedesktop.dbus.Struct;
 import org.freedesktop.dbus.annotations.DBusInterfaceName;
 import org.freedesktop.dbus.annotations.Position;
 import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.exceptions.MarshallingException;
+import org.freedesktop.dbus.exceptions.MessageFormatException;
 import org.freedesktop.dbus.interfaces.DBusInterface;
 import org.freedesktop.dbus.messages.DBusSignal;
 import org.freedesktop.dbus.messages.Message;
 import org.freedesktop.dbus.messages.MessageFactory;
+import org.freedesktop.dbus.messages.MethodCall;
+import org.freedesktop.dbus.test.helper.signals.SampleSignals;
 import org.freedesktop.dbus.types.DBusListType;
 import org.freedesktop.dbus.types.Variant;
 import org.junit.jupiter.api.Assertions;
@@ -93,6 +99,104 @@ public class MarshallingTest {
 
   }
 
+  @Test
+  public void testSetSourceOnReceivedMessage() throws Exception {
+    DBusSignal[] signals = new DBusSignal[]{
+        new DBusSignal(null, "/org/foo", "org.foo.Bar", "Changed", "sas", "value", new String[]{"a", "b"}),
+        new DBusSignal(":1.1", "/org/foo", "org.foo.Bar", "Changed", "s", "value"),
+        new DBusSignal(":1.100000", "/org/foo", "org.foo.Bar", "Changed", "s", "value")
+    };
+    for (DBusSignal local : signals) {
+      Message received = receive(local);
+      byte[] body = received.getWireBuffers()[3].array();
+      received.setSource(":1.42");
+      Assertions.assertSame(body, received.getWireBuffers()[3].array(), "Body must not be copied");
+
+      // the patched message is read like any other message
+      Message forwarded = receive(received);
+      Assertions.assertEquals(":1.42", forwarded.getSource());
+      Assertions.assertEquals(local.getPath(), forwarded.getPath());
+      Assertions.assertEquals(local.getInterface(), forwarded.getInterface());
+      Assertions.assertEquals(local.getName(), forwarded.getName());
+      Assertions.assertEquals(local.getSig(), forwarded.getSig());
+      Assertions.assertEquals(local.getSerial(), forwarded.getSerial());
+      Assertions.assertEquals(local.getParameters()[0], forwarded.getParameters()[0]);
+    }
+  }
+
+  @Test
+  public void testUpdateSerialDoesNotChangeSharedWireData() throws Exception {
+    DBusSignal local = new SampleSignals.TestStringSignal("/org/foo", "value");
+    local.appendbody(null);
+    DBusSignal received = (DBusSignal) receive(local);
+    long serial = received.getSerial();
+
+    // the typed signal shares the wire data of the received one
+    DBusSignal typed = received.createReal(null);
+    typed.updateSerial(serial + 1000);
+
+    Assertions.assertEquals(serial + 1000, receive(typed).getSerial());
+    Assertions.assertEquals(serial, received.getSerial());
+    Assertions.assertEquals(serial, receive(received).getSerial());
+  }
+
+  @Test
+  public void testInvalidHeaderFieldLength() throws Exception {
+    byte[][] parts = split(new DBusSignal(null, "/org/foo", "org.foo.Bar", "Changed", "s", "value"));
+    byte[] header = parts[1].clone();
+    // length of the first field (PATH, 'o'), behind field code, signature and alignment
+    Arrays.fill(header, 12, 16, (byte) 0x7F);
+    Assertions.assertThrows(MessageFormatException.class,
+        () -> MessageFactory.createMessage(parts[0][1], parts[0], header, parts[2], null));
+
+    byte[] truncated = Arrays.copyOf(parts[1], 16);
+    Assertions.assertThrows(MessageFormatException.class,
+        () -> MessageFactory.createMessage(parts[0][1], parts[0], truncated, parts[2], null));
+  }
+
+  @Test
+  public void testByteArrayExceedingBody() throws Exception {
+    byte[][] parts = split(new MethodCall("org.foo.Bar", "/org/foo/Bar", "org.foo.Bar", "Store", (byte) 0,
+        "ay", new byte[] {1, 2, 3}));
+    byte[] body = parts[2].clone();
+    // array length larger than the remaining body, in either byte order
+    body[2] = 0x10;
+    Message msg = MessageFactory.createMessage(parts[0][1], parts[0], parts[1], body, null);
+    Assertions.assertThrows(MarshallingException.class, msg::getParameters);
+  }
+
+  /**
+   * Split the wire data of the message like a transport does and create the received message.
+   */
+  private static Message receive(Message _message) throws Exception {
+    byte[][] parts = split(_message);
+    return MessageFactory.createMessage(parts[0][1], parts[0], parts[1], parts[2], null);
+  }
+
+  /**
+   * Split the wire data of the message into fixed header, header fields (with padding after the length) and body.
+   */
+  private static byte[][] split(Message _message) {
+    int size = 0;
+    for (ByteBuffer buf : _message.getWireBuffers()) {
+      size += buf.remaining();
+    }
+    ByteBuffer wire = ByteBuffer.allocate(size);
+    for (ByteBuffer buf : _message.getWireBuffers()) {
+      wire.put(buf);
+    }
+    byte[] data = wire.array();
+
+    byte[] buf = Arrays.copyOf(data, 12);
+    int headerLength = (int) Message.demarshallint(data, 12, data[0], 4);
+    int padded = (headerLength + 7) & ~7;
+    byte[] header = new byte[padded + 8];
+    System.arraycopy(data, 12, header, 0, 4);
+    System.arraycopy(data, 16, header, 8, padded);
+    byte[] body = Arrays.copyOfRange(data, 16 + padded, data.length);
+    return new byte[][] {buf, header, body};
+  }
+
 
   /*
    ******************************************
@@ -0,0 +1,222 @@
+package org.freedesktop.dbus.test;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.freedesktop.dbus.exceptions.MarshallingException;
+import org.freedesktop.dbus.messages.Message;
+import org.freedesktop.dbus.messages.MessageBodyReader;
+import org.freedesktop.dbus.messages.MethodCall;
+import org.freedesktop.dbus.spi.ChannelMessageReader;
+import org.freedesktop.dbus.spi.GatheringMessageWriter;
+import org.freedesktop.dbus.test.helper.structs.ProfileStruct;
+import org.freedesktop.dbus.types.UInt32;
+import org.freedesktop.dbus.types.UInt64;
+import org.freedesktop.dbus.types.Variant;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class MessageBodyReaderTest {
+
+  @Test
+  public void testReadValues() throws Exception {
+    Map<String, Variant<?>> props = new LinkedHashMap<>();
+    props.put("Name", new Variant<>("foo"));
+    props.put("Size", new Variant<>(42));
+
+    Message read = roundTrip(new MethodCall("org.foo.Bar", "/org/foo/Bar", "org.foo.Bar", "Store", (byte) 0,
+        "ya(sux)a{sv}dfbo", (byte) 7,
+        Arrays.asList(new ProfileStruct("a", new UInt32(1), 10L), new ProfileStruct("b", new UInt32(2), 20L)),
+        props, 1.5d, 2.25f, true, "/org/foo"));
+
+    MessageBodyReader reader = read.getBodyReader();
+    Assertions.assertEquals((byte) 7, reader.readByte());
+
+    reader.enterArray();
+    for (int i = 1; i <= 2; i++) {
+      Assertions.assertTrue(reader.hasNext());
+      reader.enterStruct();
+      Assertions.assertEquals(i == 1 ? "a" : "b", reader.readString());
+      Assertions.assertEquals(i, reader.readUInt32());
+      Assertions.assertEquals(i * 10L, reader.readInt64());
+      Assertions.assertFalse(reader.hasNext());
+      reader.exitContainer();
+    }
+    Assertions.assertFalse(reader.hasNext());
+    reader.exitContainer();
+
+    reader.enterArray();
+    reader.enterDictEntry();
+    Assertions.assertEquals("Name", reader.readString());
+    reader.enterVariant();
+    Assertions.assertEquals('s', reader.peekType());
+    Assertions.assertEquals("foo", reader.readString());
+    reader.exitContainer();
+    reader.exitContainer();
+    reader.enterDictEntry();
+    Assertions.assertEquals("Size", reader.readString());
+    reader.enterVariant();
+    Assertions.assertEquals(42, reader.readInt32());
+    reader.exitContainer();
+    reader.exitContainer();
+    reader.exitContainer();
+
+    Assertions.assertEquals(1.5d, reader.readDouble());
+    Assertions.assertEquals(2.25f, reader.readFloat());
+    Assertions.assertTrue(reader.readBoolean());
+    Assertions.assertEquals("/org/foo", reader.readObjectPath());
+    Assertions.assertFalse(reader.hasNext());
+  }
+
+  @Test
+  public void testSkipValues() throws Exception {
+    Message read = roundTrip(new MethodCall("org.foo.Bar", "/org/foo/Bar", "org.foo.Bar", "Store", (byte) 0,
+        "a(sux)vgyt", Arrays.asList(new ProfileStruct("a", new UInt32(1), 10L)), new Variant<>("text"), "a{sv}",
+        (byte) 1, new UInt64(99L)));
+
+    MessageBodyReader reader = read.getBodyReader();
+    reader.skip();
+    reader.skip();
+    reader.skip();
+
+    // leave a struct before reading all of its values
+    reader = read.getBodyReader();
+    reader.enterArray();
+    reader.enterStruct();
+    Assertions.assertEquals("a", reader.readString());
+    reader.exitContainer();
+    Assertions.assertFalse(reader.hasNext());
+    reader.exitContainer();
+
+    reader.enterVariant();
+    reader.exitContainer();
+    Assertions.assertEquals("a{sv}", reader.readSignature());
+    reader.skip();
+    Assertions.assertEquals(99L, reader.readUInt64());
+    Assertions.assertFalse(reader.hasNext());
+  }
+
+  @Test
+  public void testWrongType() throws Exception {
+    Message read = roundTrip(new MethodCall("org.foo.Bar", "/org/foo/Bar", "org.foo.Bar", "Store", (byte) 0,
+        "s", "text"));
+
+    MessageBodyReader reader = read.getBodyReader();
+    Assertions.assertThrows(MarshallingException.class, reader::readInt32);
+    Assertions.assertThrows(MarshallingException.class, reader::exitContainer);
+    Assertions.assertEquals("text", reader.readString());
+    Assertions.assertThrows(MarshallingException.class, reader::skip);
+  }
+
+  @Test
+  public void testNoReaderForOutgoingMessage() throws Exception {
+    MethodCall call = new MethodCall("org.foo.Bar", "/org/foo/Bar", "org.foo.Bar", "Store", (byte) 0, "s", "text");
+    Assertions.assertNull(call.getBodyReader());
+  }
+
+  @Test
+  public void testInvalidStringLength() throws Exception {
+    MethodCall call = new MethodCall("org.foo.Bar", "/org/foo/Bar", "org.foo.Bar", "Store", (byte) 0, "s", "text");
+    for (long length : new long[] {100, 0x7FFFFFF0L, 0xFFFFFFFFL}) {
+      Assertions.assertThrows(MarshallingException.class, () -> corrupt(call, 0, length).getBodyReader().readString());
+      Assertions.assertThrows(MarshallingException.class, () -> corrupt(call, 0, length).getBodyReader().skip());
+    }
+  }
+
+  @Test
+  public void testInvalidArrayLength() throws Exception {
+    // body: array length, "a" at 4, "b" at 12, array ends at 18, uint32 at 20
+    MethodCall call = new MethodCall("org.foo.Bar", "/org/foo/Bar", "org.foo.Bar", "Store", (byte) 0,
+        "asu", new String[] {"a", "b"}, new UInt32(7));
+    for (long length : new long[] {100, 0x7FFFFFF0L, 0xFFFFFFFFL}) {
+      Assertions.assertThrows(MarshallingException.class, () -> corrupt(call, 0, length).getBodyReader().enterArray());
+      Assertions.assertThrows(MarshallingException.class, () -> corrupt(call, 0, length).getBodyReader().skip());
+    }
+
+    // the string fits into the body, but not into the array
+    MessageBodyReader reader = corrupt(call, 4, 10).getBodyReader();
+    reader.enterArray();
+    Assertions.assertThrows(MarshallingException.class, reader::readString);
+    MessageBodyReader skipping = corrupt(call, 4, 10).getBodyReader();
+    skipping.enterArray();
+    Assertions.assertThrows(MarshallingException.class, () -> {
+      while (skipping.hasNext()) {
+        skipping.skip();
+      }
+    });
+  }
+
+  @Test
+  public void testInvalidVariantSignature() throws Exception {
+    // body: signature length, "s", nul, padding, string
+    MethodCall call = new MethodCall("org.foo.Bar", "/org/foo/Bar", "org.foo.Bar", "Store", (byte) 0,
+        "vu", new Variant<>("text"), new UInt32(7));
+    byte[][] signatures = {
+        {1, '('}, // incomplete struct
+        {1, 'a'}, // incomplete array
+        {1, 'z'}, // unknown type
+        {2, 's', 's', 0}, // more than one type
+        {0, 0}, // no type
+        {(byte) 200, 's'} // exceeds the body
+    };
+    for (byte[] sig : signatures) {
+      Assertions.assertThrows(MarshallingException.class, () -> corrupt(call, 0, sig).getBodyReader().enterVariant());
+      Assertions.assertThrows(MarshallingException.class, () -> corrupt(call, 0, sig).getBodyReader().skip());
+    }
+    MessageBodyReader reader = corrupt(call, 0, new byte[] {1, 's'}).getBodyReader();
+    reader.enterVariant();
+    Assertions.assertEquals("text", reader.readString());
+  }
+
+  /**
+   * Transfer the message, replacing the uint32 at the given body offset with the given value.
+   */
+  private static Message corrupt(Message _message, int _bodyOffset, long _value) throws Exception {
+    byte[] value = new byte[4];
+    Message.marshallintBig(_value, value, 0, 4);
+    if (Message.Endian.LITTLE == _message.getEndianess()) {
+      for (int i = 0; i < 2; i++) {
+        byte b = value[i];
+        value[i] = value[3 - i];
+        value[3 - i] = b;
+      }
+    }
+    return corrupt(_message, _bodyOffset, value);
+  }
+
+  /**
+   * Transfer the message, replacing the body bytes at the given offset.
+   */
+  private static Message corrupt(Message _message, int _bodyOffset, byte[] _bytes) throws Exception {
+    int size = 0;
+    for (ByteBuffer buf : _message.getWireBuffers()) {
+      size += buf.remaining();
+    }
+    ByteBuffer wire = ByteBuffer.allocate(size);
+    for (ByteBuffer buf : _message.getWireBuffers()) {
+      wire.put(buf.duplicate());
+    }
+    byte[] data = wire.array();
+    int bodyStart = data.length - (int) Message.demarshallint(data, 4, data[0], 4);
+    System.arraycopy(_bytes, 0, data, bodyStart + _bodyOffset, _bytes.length);
+
+    Pipe pipe = Pipe.open();
+    try (ChannelMessageReader reader = new ChannelMessageReader(pipe.source())) {
+      pipe.sink().write(ByteBuffer.wrap(data));
+      pipe.sink().close();
+      return reader.readMessage();
+    }
+  }
+
+  private static Message roundTrip(Message _message) throws Exception {
+    Pipe pipe = Pipe.open();
+    try (GatheringMessageWriter writer = new GatheringMessageWriter(pipe.sink());
+         ChannelMessageReader reader = new ChannelMessageReader(pipe.source())) {
+      writer.writeMessage(_message);
+      return reader.readMessage();
+    }
+  }
+}
@@ -0,0 +1,192 @@
+package org.freedesktop.dbus.test;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import org.freedesktop.dbus.messages.Message;
+import org.freedesktop.dbus.messages.MethodCall;
+import org.freedesktop.dbus.messages.MethodReturn;
+import org.freedesktop.dbus.spi.ChannelMessageReader;
+import org.freedesktop.dbus.spi.GatheringMessageWriter;
+import org.freedesktop.dbus.spi.IMessageWriter;
+import org.freedesktop.dbus.spi.OutputStreamMessageWriter;
+
+/**
+ * Compares {@link OutputStreamMessageWriter} and {@link GatheringMessageWriter} on small method calls.
+ * <p>
+ * Each round trip writes a small method call, the peer reads it and answers with a method return
+ * written by the same kind of writer. Reported are the number of write calls (syscalls) per message
+ * and the round trip latency over TCP loopback. Nagle's algorithm is disabled on both ends like the
+ * transport does, otherwise the latency of the writer doing several writes is dominated by delayed ACKs.
+ * </p>
+ * Run with: <code>java org.freedesktop.dbus.test.MessageWriterBenchmark [iterations]</code>
+ */
+public final class MessageWriterBenchmark {
+
+  private MessageWriterBenchmark() {
+
+  }
+
+  public static void main(String[] _args) throws Exception {
+    int iterations = _args.length > 0 ? Integer.parseInt(_args[0]) : 2000;
+
+    run("OutputStreamMessageWriter", iterations, ch -> {
+      try {
+        return new Counted(new CountingOutputStreamWriter(ch.socket().getOutputStream()));
+      } catch (IOException _ex) {
+        throw new RuntimeException(_ex);
+      }
+    });
+    run("GatheringMessageWriter", iterations, ch -> new Counted(new CountingGatheringWriter(ch)));
+  }
+
+  private static void run(String _name, int _iterations, Function<SocketChannel, Counted> _writerFactory) throws Exception {
+    try (ServerSocketChannel server = ServerSocketChannel.open()) {
+      server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+
+      AtomicReference<Exception> peerFailure = new AtomicReference<>();
+      Thread peer = new Thread(() -> {
+        try (SocketChannel ch = server.accept()) {
+          ch.setOption(StandardSocketOptions.TCP_NODELAY, true);
+          ChannelMessageReader reader = new ChannelMessageReader(ch);
+          IMessageWriter writer = _writerFactory.apply(ch).writer;
+          for (int i = 0; i < _iterations; i++) {
+            Message m = reader.readMessage();
+            writer.writeMessage(new MethodReturn(m.getSource(), m.getSerial(), "i", i));
+          }
+        } catch (Exception _ex) {
+          peerFailure.set(_ex);
+        }
+      });
+      peer.start();
+
+      try (SocketChannel ch = SocketChannel.open(server.getLocalAddress())) {
+        ch.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        ChannelMessageReader reader = new ChannelMessageReader(ch);
+        Counted counted = _writerFactory.apply(ch);
+        long[] latencies = new long[_iterations];
+
+        for (int i = 0; i < _iterations; i++) {
+          MethodCall call = new MethodCall("org.foo.Bench", "/org/foo/Bench", "org.foo.Bench", "Call", (byte) 0,
+              "sii", "bench", i, i * 2);
+          long start = System.nanoTime();
+          counted.writer.writeMessage(call);
+          reader.readMessage();
+          latencies[i] = System.nanoTime() - start;
+        }
+        peer.join();
+        if (null != peerFailure.get()) {
+          throw new IllegalStateException("Peer failed", peerFailure.get());
+        }
+
+        Arrays.sort(latencies);
+        System.out.printf("%-26s writes/msg: %6.2f  median: %8.1f us  p99: %8.1f us%n", _name,
+            (double) counted.writeCalls() / _iterations,
+            latencies[_iterations / 2] / 1000.0,
+            latencies[(int) (_iterations * 0.99)] / 1000.0);
+      }
+    }
+  }
+
+  private static final class Counted {
+    private final IMessageWriter writer;
+
+    Counted(IMessageWriter _writer) {
+      writer = _writer;
+    }
+
+    long writeCalls() {
+      if (writer instanceof CountingOutputStreamWriter) {
+        return ((CountingOutputStreamWriter) writer).counter.count;
+      }
+      return ((CountingGatheringWriter) writer).counter.count;
+    }
+  }
+
+  private static final class CountingOutputStreamWriter extends OutputStreamMessageWriter {
+    private final CountingOutputStream counter;
+
+    CountingOutputStreamWriter(OutputStream _out) {
+      this(new CountingOutputStream(_out));
+    }
+
+    private CountingOutputStreamWriter(CountingOutputStream _out) {
+      super(_out);
+      counter = _out;
+    }
+  }
+
+  private static final class CountingGatheringWriter extends GatheringMessageWriter {
+    private final CountingChannel counter;
+
+    CountingGatheringWriter(SocketChannel _channel) {
+      this(new CountingChannel(_channel));
+    }
+
+    private CountingGatheringWriter(CountingChannel _channel) {
+      super(_channel);
+      counter = _channel;
+    }
+  }
+
+  private static final class CountingOutputStream extends FilterOutputStream {
+    private long count;
+
+    CountingOutputStream(OutputStream _out) {
+      super(_out);
+    }
+
+    @Override
+    public void write(byte[] _b, int _off, int _len) throws IOException {
+      count++;
+      out.write(_b, _off, _len);
+    }
+  }
+
+  private static final class CountingChannel implements GatheringByteChannel {
+    private final SocketChannel delegate;
+    private long count;
+
+    CountingChannel(SocketChannel _delegate) {
+      delegate = _delegate;
+    }
+
+    @Override
+    public long write(ByteBuffer[] _srcs, int _offset, int _length) throws IOException {
+      count++;
+      return delegate.write(_srcs, _offset, _length);
+    }
+
+    @Override
+    public long write(ByteBuffer[] _srcs) throws IOException {
+      return write(_srcs, 0, _srcs.length);
+    }
+
+    @Override
+    public int write(ByteBuffer _src) throws IOException {
+      count++;
+      return delegate.write(_src);
+    }
+
+    @Override
+    public boolean isOpen() {
+      return delegate.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+      delegate.close();
+    }
+  }
+}
@@ -0,0 +1,123 @@
+package org.freedesktop.dbus.test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.freedesktop.dbus.connections.DispatchLane;
+import org.freedesktop.dbus.connections.DispatchOrder;
+import org.freedesktop.dbus.connections.impl.DBusConnection;
+import org.freedesktop.dbus.connections.impl.DBusConnection.DBusBusType;
+import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.fixtures.TestDaemonFixtures;
+import org.freedesktop.dbus.test.helper.signals.SampleSignals;
+import org.freedesktop.dbus.types.UInt32;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+public class OrderedDispatchTest {
+  private static final TestDaemonFixtures FIXT = new TestDaemonFixtures();
+
+  private static final int SIGNALS = 300;
+
+  @BeforeAll
+  public static void setup() throws DBusException {
+    FIXT.setup();
+  }
+
+  @AfterAll
+  public static void teardown() throws IOException {
+    FIXT.teardown();
+  }
+
+  @Test
+  public void testSignalsOfSenderAreHandledInOrder() throws Exception {
+    try (DBusConnection receiver = DBusConnection.getConnection(DBusBusType.SESSION, false, DBusConnection.TCP_CONNECT_TIMEOUT);
+         DBusConnection sender1 = DBusConnection.getConnection(DBusBusType.SESSION, false, DBusConnection.TCP_CONNECT_TIMEOUT);
+         DBusConnection sender2 = DBusConnection.getConnection(DBusBusType.SESSION, false, DBusConnection.TCP_CONNECT_TIMEOUT)) {
+      receiver.setDispatchOrder(DispatchOrder.SENDER);
+      receiver.changeThreadCount((byte) 8);
+
+      Map<String, List<Long>> received = new ConcurrentHashMap<>();
+      Map<String, AtomicInteger> running = new ConcurrentHashMap<>();
+      AtomicBoolean overlapping = new AtomicBoolean();
+      CountDownLatch done = new CountDownLatch(2 * SIGNALS);
+
+      receiver.addSigHandler(SampleSignals.TestSignal.class, s -> {
+        AtomicInteger active = running.computeIfAbsent(s.getSource(), k -> new AtomicInteger());
+        if (active.incrementAndGet() > 1) {
+          overlapping.set(true);
+        }
+        // each list is only written by the handlers of one sender
+        received.computeIfAbsent(s.getSource(), k -> new ArrayList<>()).add(s.getNumber().longValue());
+        Thread.yield();
+        active.decrementAndGet();
+        done.countDown();
+      });
+
+      for (int i = 0; i < SIGNALS; i++) {
+        sender1.sendMessage(new SampleSignals.TestSignal("/ordered", "s1", new UInt32(i)));
+        sender2.sendMessage(new SampleSignals.TestSignal("/ordered", "s2", new UInt32(i)));
+      }
+
+      Assertions.assertTrue(done.await(30, TimeUnit.SECONDS));
+      Assertions.assertFalse(overlapping.get(), "Handlers of one sender ran concurrently");
+      Assertions.assertEquals(2, received.size());
+      for (List<Long> numbers : received.values()) {
+        Assertions.assertEquals(SIGNALS, numbers.size());
+        for (int i = 0; i < SIGNALS; i++) {
+          Assertions.assertEquals(i, numbers.get(i).longValue());
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testDisconnectWithBacklog() throws Exception {
+    int backlog = 20;
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger handled = new AtomicInteger();
+    try (DBusConnection sender = DBusConnection.getConnection(DBusBusType.SESSION, false, DBusConnection.TCP_CONNECT_TIMEOUT)) {
+      DBusConnection receiver = DBusConnection.getConnection(DBusBusType.SESSION, false, DBusConnection.TCP_CONNECT_TIMEOUT);
+      receiver.setDispatchOrder(DispatchOrder.SENDER);
+      receiver.addSigHandler(SampleSignals.TestSignal.class, s -> {
+        try {
+          release.await();
+        } catch (InterruptedException _ex) {
+          Thread.currentThread().interrupt();
+        }
+        handled.incrementAndGet();
+      });
+
+      for (int i = 0; i < backlog; i++) {
+        sender.sendMessage(new SampleSignals.TestSignal("/ordered", "s", new UInt32(i)));
+      }
+      long deadline = System.currentTimeMillis() + 10000;
+      while (receiver.getDispatchLaneStats(DispatchLane.SIGNAL).getQueueDepth() < backlog - 1
+          && System.currentTimeMillis() < deadline) {
+        Thread.sleep(5);
+      }
+
+      // the key of the sender still has a backlog while the lanes are shut down
+      long start = System.nanoTime();
+      Thread disconnect = new Thread(receiver::disconnect);
+      disconnect.start();
+      Thread.sleep(500);
+      release.countDown();
+      disconnect.join(30000);
+      long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+      Assertions.assertTrue(millis < 5000, "Disconnect took " + millis + " ms");
+      // the backlog is not dropped when the executor is shut down
+      Assertions.assertEquals(backlog, handled.get());
+      Assertions.assertEquals(0, receiver.getDispatchLaneStats(DispatchLane.SIGNAL).getQueueDepth());
+    }
+  }
+}
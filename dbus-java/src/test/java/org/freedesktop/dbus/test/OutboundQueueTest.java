@@ -0,0 +1,230 @@
+package org.freedesktop.dbus.test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.freedesktop.dbus.connections.AbstractConnection;
+import org.freedesktop.dbus.connections.OutboundQueuePolicy;
+import org.freedesktop.dbus.connections.OutboundQueueStats;
+import org.freedesktop.dbus.connections.impl.DBusConnection;
+import org.freedesktop.dbus.connections.impl.DBusConnection.DBusBusType;
+import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.exceptions.DBusExecutionException;
+import org.freedesktop.dbus.exceptions.OutboundQueueFullException;
+import org.freedesktop.dbus.fixtures.TestDaemonFixtures;
+import org.freedesktop.dbus.interfaces.DBusInterface;
+import org.freedesktop.dbus.interfaces.Properties.PropertiesChanged;
+import org.freedesktop.dbus.messages.DBusSignal;
+import org.freedesktop.dbus.test.helper.interfaces.SampleRemoteInterface;
+import org.freedesktop.dbus.test.helper.signals.SampleSignals;
+import org.freedesktop.dbus.types.UInt32;
+import org.freedesktop.dbus.types.Variant;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+public class OutboundQueueTest {
+  private static final TestDaemonFixtures FIXT = new TestDaemonFixtures();
+
+  private static volatile CountDownLatch release;
+
+  @BeforeAll
+  public static void setup() throws DBusException {
+    FIXT.setup();
+  }
+
+  @AfterAll
+  public static void teardown() throws IOException {
+    FIXT.teardown();
+  }
+
+  @Test
+  public void testFailFast() throws Exception {
+    try (DBusConnection conn = DBusConnection.getConnection(DBusBusType.SESSION, false, DBusConnection.TCP_CONNECT_TIMEOUT)) {
+      conn.setOutboundQueue(2, OutboundQueuePolicy.FAIL_FAST);
+      stallSender(conn);
+
+      conn.sendMessage(signal("/a", 1));
+      conn.sendMessage(signal("/b", 2));
+      Assertions.assertThrows(OutboundQueueFullException.class, () -> conn.sendMessage(signal("/c", 3)));
+
+      OutboundQueueStats stats = conn.getOutboundQueueStats();
+      Assertions.assertEquals(2, stats.getQueueDepth());
+      Assertions.assertEquals(1, stats.getRejectedMessages());
+      release.countDown();
+    }
+  }
+
+  @Test
+  public void testDropOldestSignal() throws Exception {
+    try (DBusConnection conn = DBusConnection.getConnection(DBusBusType.SESSION, false, DBusConnection.TCP_CONNECT_TIMEOUT)) {
+      conn.setOutboundQueue(2, OutboundQueuePolicy.DROP_OLDEST_SIGNAL);
+      stallSender(conn);
+
+      for (int i = 0; i < 5; i++) {
+        conn.sendMessage(signal("/p" + i, i));
+      }
+
+      OutboundQueueStats stats = conn.getOutboundQueueStats();
+      Assertions.assertEquals(2, stats.getQueueDepth());
+      Assertions.assertEquals(3, stats.getDroppedSignals());
+      release.countDown();
+    }
+  }
+
+  @Test
+  public void testConflate() throws Exception {
+    try (DBusConnection conn = DBusConnection.getConnection(DBusBusType.SESSION, false, DBusConnection.TCP_CONNECT_TIMEOUT)) {
+      conn.setOutboundQueue(10, OutboundQueuePolicy.CONFLATE);
+      stallSender(conn);
+
+      for (int i = 0; i < 5; i++) {
+        conn.sendMessage(signal("/same", i));
+      }
+      conn.sendMessage(signal("/other", 0));
+
+      OutboundQueueStats stats = conn.getOutboundQueueStats();
+      Assertions.assertEquals(2, stats.getQueueDepth());
+      Assertions.assertEquals(4, stats.getConflatedSignals());
+      release.countDown();
+    }
+  }
+
+  @Test
+  public void testConflateKeepsDistinctSignals() throws Exception {
+    try (DBusConnection conn = DBusConnection.getConnection(DBusBusType.SESSION, false, DBusConnection.TCP_CONNECT_TIMEOUT)) {
+      conn.setOutboundQueue(10, OutboundQueuePolicy.CONFLATE);
+      stallSender(conn);
+
+      // signals for different peers
+      conn.sendMessage(new StallInterface.UnicastSignal("/same", ":1.1000"));
+      conn.sendMessage(new StallInterface.UnicastSignal("/same", ":1.1001"));
+      // every PropertiesChanged carries other properties
+      conn.sendMessage(new PropertiesChanged("/same", "org.foo.Bar",
+          Collections.singletonMap("A", new Variant<>(1)), Collections.emptyList()));
+      conn.sendMessage(new PropertiesChanged("/same", "org.foo.Bar",
+          Collections.singletonMap("B", new Variant<>(2)), Collections.emptyList()));
+
+      OutboundQueueStats stats = conn.getOutboundQueueStats();
+      Assertions.assertEquals(4, stats.getQueueDepth());
+      Assertions.assertEquals(0, stats.getConflatedSignals());
+      release.countDown();
+    }
+  }
+
+  @Test
+  public void testReaderThreadRepliesWhenFull() throws Exception {
+    try (DBusConnection conn = DBusConnection.getConnection(DBusBusType.SESSION, false, DBusConnection.TCP_CONNECT_TIMEOUT);
+         DBusConnection caller = DBusConnection.getConnection(DBusBusType.SESSION, false, DBusConnection.TCP_CONNECT_TIMEOUT)) {
+      conn.setOutboundQueue(1, OutboundQueuePolicy.FAIL_FAST);
+      stallSender(conn);
+      conn.sendMessage(signal("/a", 1));
+
+      // the reader thread of conn replies with an error, it must be queued although the queue is full
+      SampleRemoteInterface remote = caller.getRemoteObject(conn.getUniqueName(), "/unknown", SampleRemoteInterface.class);
+      CompletableFuture<Throwable> result = CompletableFuture.supplyAsync(() -> {
+        try {
+          remote.getName();
+          return null;
+        } catch (Throwable _ex) {
+          return _ex;
+        }
+      });
+      long deadline = System.currentTimeMillis() + 10000;
+      while (conn.getOutboundQueueStats().getQueueDepth() < 2 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      Assertions.assertEquals(2, conn.getOutboundQueueStats().getQueueDepth());
+      release.countDown();
+
+      Assertions.assertTrue(result.get(10, TimeUnit.SECONDS) instanceof DBusExecutionException);
+      // the reader thread is still running
+      Assertions.assertTrue(CompletableFuture.supplyAsync(() -> {
+        try {
+          remote.getName();
+          return null;
+        } catch (Throwable _ex) {
+          return _ex;
+        }
+      }).get(10, TimeUnit.SECONDS) instanceof DBusExecutionException);
+    }
+  }
+
+  @Test
+  public void testWaitingCallFailsOnDisconnect() throws Exception {
+    try (DBusConnection conn = DBusConnection.getConnection(DBusBusType.SESSION, false, DBusConnection.TCP_CONNECT_TIMEOUT)) {
+      conn.setOutboundQueue(1, OutboundQueuePolicy.BLOCK);
+      stallSender(conn);
+      conn.sendMessage(signal("/a", 1));
+
+      // waits for space in the full queue
+      SampleRemoteInterface remote = conn.getRemoteObject(conn.getUniqueName(), "/unknown", SampleRemoteInterface.class);
+      CompletableFuture<Throwable> result = CompletableFuture.supplyAsync(() -> {
+        try {
+          remote.getName();
+          return null;
+        } catch (Throwable _ex) {
+          return _ex;
+        }
+      });
+      Thread.sleep(200);
+      Assertions.assertFalse(result.isDone());
+
+      Thread disconnect = new Thread(conn::disconnect);
+      disconnect.start();
+      try {
+        // the call is refused once the queue is closed instead of being queued behind the final flush
+        Assertions.assertTrue(result.get(5, TimeUnit.SECONDS) instanceof DBusExecutionException);
+      } finally {
+        release.countDown();
+        disconnect.join();
+      }
+    }
+  }
+
+  /**
+   * Let the sender thread block while sending a signal, so further messages stay queued.
+   */
+  private static void stallSender(DBusConnection _conn) throws Exception {
+    release = new CountDownLatch(1);
+    _conn.sendMessage(new StallInterface.StallSignal("/stall"));
+    long deadline = System.currentTimeMillis() + 10000;
+    while (_conn.getOutboundQueueStats().getQueueDepth() > 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+  }
+
+  private static DBusSignal signal(String _path, int _number) throws DBusException {
+    return new SampleSignals.TestSignal(_path, "value", new UInt32(_number));
+  }
+
+  public interface StallInterface extends DBusInterface {
+    class StallSignal extends DBusSignal {
+      public StallSignal(String _path) throws DBusException {
+        super(_path);
+      }
+
+      @Override
+      public void appendbody(AbstractConnection _conn) throws DBusException {
+        try {
+          release.await();
+        } catch (InterruptedException _ex) {
+          Thread.currentThread().interrupt();
+        }
+        super.appendbody(_conn);
+      }
+    }
+
+    class UnicastSignal extends DBusSignal {
+      public UnicastSignal(String _path, String _destination) throws DBusException {
+        super(_path);
+        // only seen by the queue, the marshalled header is not changed
+        setHeader(HeaderField.DESTINATION, _destination);
+      }
+    }
+  }
+}
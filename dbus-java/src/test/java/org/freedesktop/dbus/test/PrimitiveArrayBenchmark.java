@@ -0,0 +1,99 @@
+package org.freedesktop.dbus.test;
+
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+
+import org.freedesktop.dbus.connections.AbstractConnection;
+import org.freedesktop.dbus.messages.Message;
+import org.freedesktop.dbus.messages.MethodCall;
+import org.freedesktop.dbus.spi.ChannelMessageReader;
+
+/**
+ * Measures marshalling and unmarshalling of primitive arrays (<code>ai</code>, <code>ax</code>, <code>ad</code>)
+ * with 1K, 64K and 1M elements in both byte orders.
+ * <p>
+ * Encoding creates a method call containing the array, decoding unmarshalls the body of a received
+ * message again (the parameters are reset before every iteration).
+ * </p>
+ * Run with: <code>java org.freedesktop.dbus.test.PrimitiveArrayBenchmark [seconds per case]</code>
+ */
+public final class PrimitiveArrayBenchmark {
+
+  private static final int[] SIZES = {1024, 64 * 1024, 1024 * 1024};
+
+  private PrimitiveArrayBenchmark() {
+
+  }
+
+  public static void main(String[] _args) throws Exception {
+    double seconds = _args.length > 0 ? Double.parseDouble(_args[0]) : 2;
+
+    for (byte endian : new byte[] {Message.Endian.LITTLE, Message.Endian.BIG}) {
+      AbstractConnection.setEndianness(endian);
+      for (int size : SIZES) {
+        int[] ints = new int[size];
+        long[] longs = new long[size];
+        double[] doubles = new double[size];
+        for (int i = 0; i < size; i++) {
+          ints[i] = i;
+          longs[i] = i * 31L;
+          doubles[i] = i * 0.5d;
+        }
+        run(endian, "ai", ints, size * 4L, seconds);
+        run(endian, "ax", longs, size * 8L, seconds);
+        run(endian, "ad", doubles, size * 8L, seconds);
+      }
+    }
+  }
+
+  private static void run(byte _endian, String _sig, Object _array, long _bytes, double _seconds) throws Exception {
+    long budget = (long) (_seconds * 1_000_000_000L);
+
+    // warm up and create the message to decode
+    Message received = read(create(_sig, _array));
+    received.getParameters();
+
+    long encodeOps = 0;
+    long start = System.nanoTime();
+    long elapsed;
+    do {
+      create(_sig, _array);
+      encodeOps++;
+      elapsed = System.nanoTime() - start;
+    } while (elapsed < budget / 2);
+    double encodeNanos = (double) elapsed / encodeOps;
+
+    long decodeOps = 0;
+    start = System.nanoTime();
+    do {
+      received.setArgs(null);
+      received.getParameters();
+      decodeOps++;
+      elapsed = System.nanoTime() - start;
+    } while (elapsed < budget / 2);
+    double decodeNanos = (double) elapsed / decodeOps;
+
+    System.out.printf("%-6s %s %8d elements  encode: %10.1f us (%7.0f MB/s)  decode: %10.1f us (%7.0f MB/s)%n",
+        _endian == Message.Endian.BIG ? "big" : "little", _sig, Array.getLength(_array),
+        encodeNanos / 1000, _bytes / encodeNanos * 1000, decodeNanos / 1000, _bytes / decodeNanos * 1000);
+  }
+
+  private static Message create(String _sig, Object _array) throws Exception {
+    return new MethodCall("org.foo.Bench", "/org/foo/Bench", "org.foo.Bench", "Store", (byte) 0, _sig, _array);
+  }
+
+  private static Message read(Message _message) throws Exception {
+    ByteBuffer[] wiredata = _message.getWireBuffers();
+    int length = 0;
+    for (ByteBuffer buf : wiredata) {
+      length += buf.remaining();
+    }
+    ByteBuffer all = ByteBuffer.allocate(length);
+    for (ByteBuffer buf : wiredata) {
+      all.put(buf);
+    }
+    return new ChannelMessageReader(Channels.newChannel(new ByteArrayInputStream(all.array()))).readMessage();
+  }
+}
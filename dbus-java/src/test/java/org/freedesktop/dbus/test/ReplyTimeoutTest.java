@@ -0,0 +1,124 @@
+package org.freedesktop.dbus.test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.freedesktop.dbus.connections.impl.DBusConnection;
+import org.freedesktop.dbus.connections.impl.DBusConnection.DBusBusType;
+import org.freedesktop.dbus.errors.NoReply;
+import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.exceptions.DBusExecutionException;
+import org.freedesktop.dbus.fixtures.TestDaemonFixtures;
+import org.freedesktop.dbus.interfaces.CallbackHandler;
+import org.freedesktop.dbus.interfaces.DBusInterface;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+public class ReplyTimeoutTest {
+  private static final TestDaemonFixtures FIXT = new TestDaemonFixtures();
+
+  private static final String BUS_NAME = "foo.bar.TimeoutTest";
+  private static final String OBJECT_PATH = "/TimeoutTest";
+
+  @BeforeAll
+  public static void setup() throws DBusException {
+    FIXT.setup();
+  }
+
+  @AfterAll
+  public static void teardown() throws IOException {
+    FIXT.teardown();
+  }
+
+  @Test
+  public void testCallsFailWithNoReplyAfterTimeout() throws Exception {
+    try (DBusConnection serverconn = DBusConnection.getConnection(DBusBusType.SESSION, false, DBusConnection.TCP_CONNECT_TIMEOUT);
+         DBusConnection clientconn = DBusConnection.getConnection(DBusBusType.SESSION, false, DBusConnection.TCP_CONNECT_TIMEOUT)) {
+      serverconn.requestBusName(BUS_NAME);
+      serverconn.exportObject(OBJECT_PATH, new SlowObject());
+
+      SlowInterface remote = clientconn.getRemoteObject(BUS_NAME, OBJECT_PATH, SlowInterface.class);
+      clientconn.setReplyTimeout(remote, 200, TimeUnit.MILLISECONDS);
+
+      long start = System.currentTimeMillis();
+      Assertions.assertThrows(NoReply.class, remote::slow);
+      Assertions.assertTrue(System.currentTimeMillis() - start < 900);
+
+      CompletableFuture<String> future = clientconn.callMethodFuture(remote, "slow");
+      ExecutionException ex = Assertions.assertThrows(ExecutionException.class, () -> future.get(900, TimeUnit.MILLISECONDS));
+      Assertions.assertTrue(ex.getCause() instanceof NoReply);
+
+      CompletableFuture<DBusExecutionException> callbackError = new CompletableFuture<>();
+      clientconn.callWithCallback(remote, "slow", new CallbackHandler<String>() {
+        @Override
+        public void handle(String _r) {
+          callbackError.complete(null);
+        }
+
+        @Override
+        public void handleError(DBusExecutionException _e) {
+          callbackError.complete(_e);
+        }
+      });
+      Assertions.assertTrue(callbackError.get(900, TimeUnit.MILLISECONDS) instanceof NoReply);
+
+      // calls answered in time are not affected
+      clientconn.setReplyTimeout(remote, 5, TimeUnit.SECONDS);
+      Assertions.assertEquals("done", remote.fast());
+    }
+  }
+
+  @Test
+  public void testUnlimitedTimeout() throws Exception {
+    try (DBusConnection serverconn = DBusConnection.getConnection(DBusBusType.SESSION, false, DBusConnection.TCP_CONNECT_TIMEOUT);
+         DBusConnection clientconn = DBusConnection.getConnection(DBusBusType.SESSION, false, DBusConnection.TCP_CONNECT_TIMEOUT)) {
+      serverconn.requestBusName(BUS_NAME);
+      serverconn.exportObject(OBJECT_PATH, new SlowObject());
+
+      // a deadline beyond the range of System.nanoTime() must not expire immediately
+      SlowInterface remote = clientconn.getRemoteObject(BUS_NAME, OBJECT_PATH, SlowInterface.class);
+      clientconn.setReplyTimeout(remote, Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+      Assertions.assertEquals("done", remote.slow());
+
+      clientconn.setReplyTimeout(remote, Long.MAX_VALUE / 2, TimeUnit.NANOSECONDS);
+      Assertions.assertEquals("done", remote.slow());
+    }
+  }
+
+  public interface SlowInterface extends DBusInterface {
+    String slow();
+
+    String fast();
+  }
+
+  public static class SlowObject implements SlowInterface {
+    @Override
+    public String slow() {
+      try {
+        Thread.sleep(1000);
+      } catch (InterruptedException _ex) {
+        Thread.currentThread().interrupt();
+      }
+      return "done";
+    }
+
+    @Override
+    public String fast() {
+      return "done";
+    }
+
+    @Override
+    public boolean isRemote() {
+      return false;
+    }
+
+    @Override
+    public String getObjectPath() {
+      return OBJECT_PATH;
+    }
+  }
+}
@@ -0,0 +1,111 @@
+package org.freedesktop.dbus.test;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.freedesktop.dbus.bin.EmbeddedDBusDaemon;
+import org.freedesktop.dbus.connections.impl.DBusConnection;
+import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.interfaces.DBusSigHandler;
+import org.freedesktop.dbus.interfaces.Properties.PropertiesChanged;
+import org.freedesktop.dbus.types.Variant;
+
+/**
+ * Measures the delivery of <code>PropertiesChanged</code> signals to 1, 10 and 100 handlers.
+ * <p>
+ * A connection emits signals with ten changed properties through an embedded daemon, another connection
+ * has the handlers registered. Reported is the time until every handler has seen every signal.
+ * </p>
+ * Run with: <code>java org.freedesktop.dbus.test.SignalDispatchBenchmark [signals]</code>
+ */
+public final class SignalDispatchBenchmark {
+
+  private static final int[] HANDLERS = {1, 10, 100};
+
+  private SignalDispatchBenchmark() {
+
+  }
+
+  public static void main(String[] _args) throws Exception {
+    int signals = _args.length > 0 ? Integer.parseInt(_args[0]) : 2000;
+
+    int port;
+    try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+      port = socket.getLocalPort();
+    }
+    String address = "tcp:host=localhost,port=" + port;
+
+    try (EmbeddedDBusDaemon daemon = new EmbeddedDBusDaemon()) {
+      daemon.setAddress(address);
+      daemon.startInBackground();
+
+      try (DBusConnection sender = connect(address);
+           DBusConnection receiver = connect(address)) {
+        Map<String, Variant<?>> changed = new LinkedHashMap<>();
+        for (int i = 0; i < 10; i++) {
+          changed.put("Property" + i, new Variant<>("value " + i));
+        }
+
+        // warm up
+        run(sender, receiver, changed, 10, signals);
+
+        for (int handlers : HANDLERS) {
+          long nanos = run(sender, receiver, changed, handlers, signals);
+          System.out.printf("%3d handlers: %6d signals in %7.1f ms, %8.1f us/signal%n",
+              handlers, signals, nanos / 1e6, nanos / 1e3 / signals);
+        }
+      }
+    }
+  }
+
+  private static long run(DBusConnection _sender, DBusConnection _receiver, Map<String, Variant<?>> _changed,
+      int _handlers, int _signals) throws Exception {
+    CountDownLatch done = new CountDownLatch(_handlers * _signals);
+    List<DBusSigHandler<PropertiesChanged>> handlers = new ArrayList<>();
+    for (int i = 0; i < _handlers; i++) {
+      DBusSigHandler<PropertiesChanged> handler = s -> {
+        if (s.getPropertiesChanged().size() == _changed.size()) {
+          done.countDown();
+        }
+      };
+      handlers.add(handler);
+      _receiver.addSigHandler(PropertiesChanged.class, handler);
+    }
+
+    long start = System.nanoTime();
+    for (int i = 0; i < _signals; i++) {
+      _sender.sendMessage(new PropertiesChanged("/org/freedesktop/dbus/benchmark", "org.foo.Benchmark",
+          _changed, Collections.emptyList()));
+    }
+    if (!done.await(5, TimeUnit.MINUTES)) {
+      throw new IllegalStateException("Not all signals have been delivered");
+    }
+    long nanos = System.nanoTime() - start;
+
+    for (DBusSigHandler<PropertiesChanged> handler : handlers) {
+      _receiver.removeSigHandler(PropertiesChanged.class, handler);
+    }
+    return nanos;
+  }
+
+  private static DBusConnection connect(String _address) throws Exception {
+    // the daemon is started in the background, retry until it accepts connections
+    for (int i = 0;; i++) {
+      try {
+        return DBusConnection.getConnection(_address, true, false);
+      } catch (DBusException _ex) {
+        if (i > 50) {
+          throw _ex;
+        }
+        Thread.sleep(100);
+      }
+    }
+  }
+}
@@ -0,0 +1,53 @@
+package org.freedesktop.dbus.test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.freedesktop.dbus.DBusMatchRule;
+import org.freedesktop.dbus.connections.SignalHandlerIndex;
+import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.test.helper.signals.SampleSignals;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class SignalHandlerIndexTest {
+  private static final String IFACE = "org.foo.Iface";
+
+  @Test
+  public void testFindMatchesWildcards() throws DBusException {
+    SignalHandlerIndex<String> index = new SignalHandlerIndex<>();
+    Assertions.assertTrue(index.find(IFACE, "Changed", "/a", ":1.1").isEmpty());
+
+    Assertions.assertTrue(index.add(new DBusMatchRule("signal", IFACE, "Changed", null), "member"));
+    Assertions.assertTrue(index.add(new DBusMatchRule("signal", IFACE, "Changed", "/a"), "path"));
+    Assertions.assertTrue(index.add(new DBusMatchRule("signal", IFACE, null, null), "iface"));
+    Assertions.assertTrue(index.add(new DBusMatchRule("signal", null, "Changed", null), "noiface"));
+    Assertions.assertTrue(index.add(new DBusMatchRule(SampleSignals.TestSignal.class, ":1.1", null), "sender"));
+    Assertions.assertFalse(index.add(new DBusMatchRule("signal", IFACE, "Changed", null), "member2"));
+
+    Assertions.assertEquals(new HashSet<>(Arrays.asList("member", "member2", "path", "iface", "noiface")),
+        new HashSet<>(index.find(IFACE, "Changed", "/a", ":1.1")));
+    Assertions.assertEquals(new HashSet<>(Arrays.asList("member", "member2", "iface", "noiface")),
+        new HashSet<>(index.find(IFACE, "Changed", "/b", null)));
+    Assertions.assertEquals(Arrays.asList("iface"), index.find(IFACE, "Other", "/a", ":1.1"));
+    Assertions.assertTrue(index.find("org.foo.Other", "Other", "/a", ":1.1").isEmpty());
+
+    DBusMatchRule typed = new DBusMatchRule(SampleSignals.TestSignal.class, ":1.1", null);
+    Assertions.assertEquals(Arrays.asList("sender"), index.find(typed.getInterface(), typed.getMember(), "/x", ":1.1"));
+    Assertions.assertTrue(index.find(typed.getInterface(), typed.getMember(), "/x", ":1.2").isEmpty());
+  }
+
+  @Test
+  public void testRemove() {
+    SignalHandlerIndex<String> index = new SignalHandlerIndex<>();
+    DBusMatchRule rule = new DBusMatchRule("signal", IFACE, "Changed", null);
+    index.add(rule, "a");
+    index.add(rule, "b");
+
+    Assertions.assertFalse(index.remove(rule, "a"));
+    Assertions.assertEquals(Arrays.asList("b"), index.find(IFACE, "Changed", "/a", null));
+    Assertions.assertTrue(index.remove(rule, "b"));
+    Assertions.assertTrue(index.find(IFACE, "Changed", "/a", null).isEmpty());
+    Assertions.assertFalse(index.remove(rule, "b"));
+  }
+}
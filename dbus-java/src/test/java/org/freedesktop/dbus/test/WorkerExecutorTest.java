@@ -0,0 +1,187 @@
+package org.freedesktop.dbus.test;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.freedesktop.dbus.connections.DispatchLane;
+import org.freedesktop.dbus.connections.DispatchLaneStats;
+import org.freedesktop.dbus.connections.impl.DBusConnection;
+import org.freedesktop.dbus.connections.impl.DBusConnection.DBusBusType;
+import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.fixtures.TestDaemonFixtures;
+import org.freedesktop.dbus.spi.IWorkerExecutorProvider;
+import org.freedesktop.dbus.test.helper.SampleClass;
+import org.freedesktop.dbus.test.helper.interfaces.SampleRemoteInterface;
+import org.freedesktop.dbus.test.helper.signals.SampleSignals;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+public class WorkerExecutorTest {
+  private static final TestDaemonFixtures FIXT = new TestDaemonFixtures();
+
+  @BeforeAll
+  public static void setup() throws DBusException {
+    FIXT.setup();
+  }
+
+  @AfterAll
+  public static void teardown() throws IOException {
+    FIXT.teardown();
+  }
+
+  @Test
+  public void testSignalsAreDispatchedByCustomExecutor() throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "Custom Worker"));
+    try (DBusConnection conn = DBusConnection.getConnection(DBusBusType.SESSION, false, DBusConnection.TCP_CONNECT_TIMEOUT)) {
+      conn.setWorkerExecutor(executor, false);
+
+      CompletableFuture<String> handlerThread = new CompletableFuture<>();
+      conn.addSigHandler(SampleSignals.TestStringSignal.class,
+          s -> handlerThread.complete(Thread.currentThread().getName()));
+      conn.sendMessage(new SampleSignals.TestStringSignal("/org/foo", "text"));
+
+      Assertions.assertEquals("Custom Worker", handlerThread.get(10, TimeUnit.SECONDS));
+    }
+    // executor is managed by the caller and must not be shut down by the connection
+    Assertions.assertFalse(executor.isShutdown());
+    executor.shutdown();
+  }
+
+  @Test
+  public void testOwnedExecutorIsShutDown() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try (DBusConnection conn = DBusConnection.getConnection(DBusBusType.SESSION, false, DBusConnection.TCP_CONNECT_TIMEOUT)) {
+      conn.setWorkerExecutor(executor, true);
+      conn.changeThreadCount((byte) 8);
+    }
+    Assertions.assertTrue(executor.isShutdown());
+  }
+
+  @Test
+  public void testSwapOneLaneOfSharedOwnedExecutor() throws Exception {
+    ExecutorService shared = Executors.newFixedThreadPool(2);
+    ExecutorService signals = Executors.newSingleThreadExecutor();
+    try (DBusConnection conn = DBusConnection.getConnection(DBusBusType.SESSION, false, DBusConnection.TCP_CONNECT_TIMEOUT)) {
+      conn.setWorkerExecutor(shared, true);
+      conn.setWorkerExecutor(DispatchLane.SIGNAL, signals, false);
+      // still used by the other lanes
+      Assertions.assertFalse(shared.isShutdown());
+    }
+    Assertions.assertTrue(shared.isShutdown());
+    Assertions.assertFalse(signals.isShutdown());
+    signals.shutdown();
+  }
+
+  @Test
+  public void testSwapOneLaneOfProvidedExecutor() throws Exception {
+    ExecutorService signals = Executors.newSingleThreadExecutor(r -> new Thread(r, "Custom Worker"));
+    Path dir = Files.createTempDirectory("provider");
+    Path services = dir.resolve("META-INF/services/" + IWorkerExecutorProvider.class.getName());
+    Files.createDirectories(services.getParent());
+    Files.write(services, SingleExecutorProvider.class.getName().getBytes(StandardCharsets.UTF_8));
+
+    Thread current = Thread.currentThread();
+    ClassLoader previous = current.getContextClassLoader();
+    DBusConnection serverconn;
+    // the provider is only visible to the service loader while the connection is created
+    try (URLClassLoader loader = new URLClassLoader(new URL[] {dir.toUri().toURL()}, getClass().getClassLoader())) {
+      current.setContextClassLoader(loader);
+      serverconn = DBusConnection.getConnection(DBusBusType.SESSION, false, DBusConnection.TCP_CONNECT_TIMEOUT);
+    } finally {
+      current.setContextClassLoader(previous);
+    }
+    ExecutorService provided = SingleExecutorProvider.created;
+    Assertions.assertNotNull(provided);
+
+    try (DBusConnection clientconn = DBusConnection.getConnection(DBusBusType.SESSION, false, DBusConnection.TCP_CONNECT_TIMEOUT)) {
+      serverconn.requestBusName("foo.bar.ProviderTest");
+      SampleClass exported = new SampleClass(serverconn);
+      serverconn.exportObject("/ProviderTest", exported);
+      serverconn.setWorkerExecutor(DispatchLane.SIGNAL, signals, false);
+      Assertions.assertFalse(provided.isShutdown());
+
+      // method calls still run on the provided executor
+      SampleRemoteInterface remote = clientconn.getRemoteObject("foo.bar.ProviderTest", "/ProviderTest",
+          SampleRemoteInterface.class);
+      Assertions.assertEquals(exported.getName(), remote.getName());
+
+      CompletableFuture<String> handlerThread = new CompletableFuture<>();
+      serverconn.addSigHandler(SampleSignals.TestStringSignal.class,
+          s -> handlerThread.complete(Thread.currentThread().getName()));
+      clientconn.sendMessage(new SampleSignals.TestStringSignal("/org/foo", "text"));
+      Assertions.assertEquals("Custom Worker", handlerThread.get(10, TimeUnit.SECONDS));
+    } finally {
+      serverconn.close();
+    }
+    Assertions.assertTrue(provided.isShutdown());
+    Assertions.assertFalse(signals.isShutdown());
+    signals.shutdown();
+  }
+
+  @Test
+  public void testBlockedSignalLaneDoesNotDelayMethodCalls() throws Exception {
+    try (DBusConnection serverconn = DBusConnection.getConnection(DBusBusType.SESSION, false, DBusConnection.TCP_CONNECT_TIMEOUT);
+         DBusConnection clientconn = DBusConnection.getConnection(DBusBusType.SESSION, false, DBusConnection.TCP_CONNECT_TIMEOUT)) {
+      serverconn.requestBusName("foo.bar.LaneTest");
+      SampleClass exported = new SampleClass(serverconn);
+      serverconn.exportObject("/LaneTest", exported);
+      serverconn.changeThreadCount(DispatchLane.SIGNAL, 1);
+
+      CountDownLatch release = new CountDownLatch(1);
+      CountDownLatch handled = new CountDownLatch(2);
+      serverconn.addSigHandler(SampleSignals.TestStringSignal.class, s -> {
+        try {
+          release.await();
+        } catch (InterruptedException _ex) {
+          Thread.currentThread().interrupt();
+        }
+        handled.countDown();
+      });
+      clientconn.sendMessage(new SampleSignals.TestStringSignal("/org/foo", "first"));
+      clientconn.sendMessage(new SampleSignals.TestStringSignal("/org/foo", "second"));
+
+      // wait until the second signal queues up behind the blocked handler
+      long deadline = System.currentTimeMillis() + 10000;
+      while (serverconn.getDispatchLaneStats(DispatchLane.SIGNAL).getQueueDepth() < 1
+          && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      Assertions.assertEquals(1, serverconn.getDispatchLaneStats(DispatchLane.SIGNAL).getQueueDepth());
+
+      SampleRemoteInterface remote = clientconn.getRemoteObject("foo.bar.LaneTest", "/LaneTest", SampleRemoteInterface.class);
+      Assertions.assertEquals(exported.getName(), remote.getName());
+
+      release.countDown();
+      Assertions.assertTrue(handled.await(10, TimeUnit.SECONDS));
+      DispatchLaneStats stats = serverconn.getDispatchLaneStats(DispatchLane.SIGNAL);
+      Assertions.assertEquals(0, stats.getQueueDepth());
+      Assertions.assertTrue(stats.getDispatchedTasks() >= 2);
+      Assertions.assertTrue(stats.getMaxWaitNanos() > 0);
+      Assertions.assertTrue(serverconn.getDispatchLaneStats(DispatchLane.METHOD_CALL).getDispatchedTasks() >= 1);
+    }
+  }
+
+  /**
+   * Provider creating one executor, registered for {@link #testSwapOneLaneOfProvidedExecutor()} only.
+   */
+  public static class SingleExecutorProvider implements IWorkerExecutorProvider {
+    private static volatile ExecutorService created;
+
+    @Override
+    public ExecutorService createWorkerExecutor(String _address) {
+      created = Executors.newFixedThreadPool(4);
+      return created;
+    }
+  }
+}